@@ -20,13 +20,20 @@ import alfio.config.support.ArrayColumnMapper;
 import alfio.config.support.EnumTypeColumnMapper;
 import alfio.config.support.JSONColumnMapper;
 import alfio.config.support.PlatformProvider;
+import alfio.config.support.PoolMetricsTrackerFactory;
+import alfio.config.support.ReplicaRoutingDataSource;
+import alfio.config.support.ThreadFactories;
 import alfio.extension.ExtensionService;
 import alfio.job.Jobs;
 import alfio.job.executor.*;
 import alfio.manager.*;
 import alfio.manager.i18n.MessageSourceManager;
+import alfio.manager.support.ReadReplica;
 import alfio.manager.system.AdminJobManager;
 import alfio.manager.system.ConfigurationManager;
+import alfio.manager.system.MetricsRegistry;
+import alfio.manager.system.ScheduledJobCoordinator;
+import alfio.manager.wallet.GoogleWalletManager;
 import alfio.repository.*;
 import alfio.repository.system.AdminJobQueueRepository;
 import alfio.repository.system.ConfigurationRepository;
@@ -41,14 +48,17 @@ import ch.digitalfondue.npjt.EnableNpjt;
 import ch.digitalfondue.npjt.mapper.ColumnMapperFactory;
 import ch.digitalfondue.npjt.mapper.ParameterConverter;
 import com.zaxxer.hikari.HikariDataSource;
-import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.api.MigrationVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
 import org.springframework.context.annotation.*;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.Profiles;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -56,11 +66,13 @@ import org.springframework.jdbc.datasource.AbstractDataSource;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.interceptor.TransactionAttribute;
 
 import javax.sql.DataSource;
 import java.net.http.HttpClient;
@@ -97,7 +109,7 @@ public class DataSourceConfiguration {
 
     @Bean
     @Profile({"!"+Initializer.PROFILE_INTEGRATION_TEST, "travis"})
-    public DataSource getDataSource(Environment env, PlatformProvider platform) {
+    public DataSource getDataSource(Environment env, PlatformProvider platform, MetricsRegistry metricsRegistry) {
         if(platform == PlatformProvider.CLOUD_FOUNDRY || platform == PlatformProvider.DRY_RUN) {
             return new FakeCFDataSource();
         } else {
@@ -109,6 +121,10 @@ public class DataSourceConfiguration {
             dataSource.setMaximumPoolSize(platform.getMaxActive(env));
             dataSource.setMinimumIdle(platform.getMinIdle(env));
             dataSource.setConnectionTimeout(1000L);
+            dataSource.setPoolName("alfio-primary");
+            if(metricsRegistry.isEnabled()) {
+                dataSource.setMetricsTrackerFactory(new PoolMetricsTrackerFactory(metricsRegistry));
+            }
 
             log.debug("Connection pool properties: max active {}, initial size {}", dataSource.getMaximumPoolSize(), dataSource.getMinimumIdle());
 
@@ -122,19 +138,55 @@ public class DataSourceConfiguration {
                 log.warn("You're accessing the database using a superuser. This is highly discouraged since it will disable the row security policy checks.");
             }
 
-            //
-            return dataSource;
+            String replicaUrl = env.getProperty("datasource.replica.url");
+            if(replicaUrl == null || replicaUrl.isBlank()) {
+                return dataSource;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setJdbcUrl(replicaUrl);
+            replica.setUsername(env.getProperty("datasource.replica.username", dataSource.getUsername()));
+            replica.setPassword(env.getProperty("datasource.replica.password", dataSource.getPassword()));
+            replica.setDriverClassName("org.postgresql.Driver");
+            replica.setMaximumPoolSize(env.getProperty("datasource.replica.connections.max-active", Integer.class, dataSource.getMaximumPoolSize()));
+            replica.setMinimumIdle(env.getProperty("datasource.replica.connections.min-idle", Integer.class, dataSource.getMinimumIdle()));
+            replica.setConnectionTimeout(1000L);
+            replica.setReadOnly(true);
+            replica.setPoolName("alfio-replica");
+            if(metricsRegistry.isEnabled()) {
+                replica.setMetricsTrackerFactory(new PoolMetricsTrackerFactory(metricsRegistry));
+            }
+            long maxLag = env.getProperty("datasource.replica.max-lag-ms", Long.class, 1000L);
+            log.info("Read replica enabled. Max active {}, max lag {} ms", replica.getMaximumPoolSize(), maxLag);
+            return new ReplicaRoutingDataSource(dataSource, replica, maxLag,
+                env.getProperty("datasource.replica.lag-check-interval-ms", Long.class, 5000L),
+                env.getProperty("datasource.replica.retry-after-ms", Long.class, 30_000L));
         }
     }
 
     @Bean
-    public PlatformTransactionManager platformTransactionManager(DataSource dataSource) {
-        return new CustomDataSourceTransactionManager(dataSource);
+    public PlatformTransactionManager platformTransactionManager(DataSource dataSource, Environment environment) {
+        return new CustomDataSourceTransactionManager(dataSource,
+            environment.getProperty("datasource.replica.route-read-only-transactions", Boolean.class, false));
     }
 
     private static class CustomDataSourceTransactionManager extends DataSourceTransactionManager {
-        CustomDataSourceTransactionManager(DataSource dataSource) {
+
+        private final boolean routeAllReadOnly;
+
+        CustomDataSourceTransactionManager(DataSource dataSource, boolean routeAllReadOnly) {
             super(dataSource);
+            this.routeAllReadOnly = routeAllReadOnly;
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            // the connection is acquired here, and stays bound to the transaction until it completes
+            ReplicaRoutingDataSource.withReplica(useReplica(definition), () -> super.doBegin(transaction, definition));
+        }
+
+        private boolean useReplica(TransactionDefinition definition) {
+            return definition.isReadOnly()
+                && (routeAllReadOnly || (definition instanceof TransactionAttribute attribute && attribute.getLabels().contains(ReadReplica.LABEL)));
         }
 
         @Override
@@ -161,8 +213,22 @@ public class DataSourceConfiguration {
 
     @Bean
     @Profile("!"+Initializer.PROFILE_INTEGRATION_TEST)
-    public Supplier<Executor> getNewSingleThreadExecutorSupplier() {
-        return Executors::newSingleThreadExecutor;
+    public Supplier<Executor> getNewSingleThreadExecutorSupplier(Environment environment) {
+        var threadFactory = ThreadFactories.create(environment, "extension-async-", false);
+        return () -> Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * When running on virtual threads, Spring Boot would replace the scheduler with a {@code SimpleAsyncTaskScheduler},
+     * which could run the same fixed-rate job concurrently if its previous execution took longer than the period.
+     * Here we keep the same scheduling semantics as the platform scheduler, but let its workers be virtual threads.
+     */
+    @Bean(name = "taskScheduler")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public ThreadPoolTaskScheduler virtualThreadsTaskScheduler(ThreadPoolTaskSchedulerBuilder builder, Environment environment) {
+        var scheduler = builder.build();
+        scheduler.setThreadFactory(ThreadFactories.create(environment, scheduler.getThreadNamePrefix(), false));
+        return scheduler;
     }
 
     @Bean
@@ -221,12 +287,13 @@ public class DataSourceConfiguration {
     }
 
     @Bean
-    public HttpClient getHttpClient() {
+    public HttpClient getHttpClient(Environment environment) {
+        Executor executor = ThreadFactories.virtualThreadsEnabled(environment)
+            ? new VirtualThreadTaskExecutor("httpClient-thread-")
+            : Executors.newCachedThreadPool(ThreadFactories.create(environment, "httpClient-thread-", false));
         return HttpClient.newBuilder()
             .version(HttpClient.Version.HTTP_1_1)
-            .executor(Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
-                .namingPattern("httpClient-thread-%d")
-                .build()))
+            .executor(executor)
             .build();
     }
 
@@ -245,12 +312,15 @@ public class DataSourceConfiguration {
                      SpecialPriceTokenGenerator specialPriceTokenGenerator,
                      WaitingQueueSubscriptionProcessor waitingQueueSubscriptionProcessor,
                      TicketReservationManager ticketReservationManager,
-                     AdminJobManager adminJobManager
+                     AdminJobManager adminJobManager,
+                     MetricsRegistry metricsRegistry,
+                     ScheduledJobCoordinator scheduledJobCoordinator,
+                     AdminExportManager adminExportManager
                      ) {
         return new Jobs(adminReservationRequestManager, fileUploadManager,
             notificationManager, specialPriceTokenGenerator, ticketReservationManager,
             waitingQueueSubscriptionProcessor,
-            adminJobManager);
+            adminJobManager, metricsRegistry, scheduledJobCoordinator, adminExportManager);
     }
 
     @Bean
@@ -261,12 +331,16 @@ public class DataSourceConfiguration {
                                     BillingDocumentJobExecutor billingDocumentJobExecutor,
                                     AssignTicketToSubscriberJobExecutor assignTicketToSubscriberJobExecutor,
                                     RetryFailedExtensionJobExecutor retryFailedExtensionJobExecutor,
-                                    RetryFailedReservationConfirmationExecutor retryFailedReservationConfirmationExecutor) {
+                                    RetryFailedReservationConfirmationExecutor retryFailedReservationConfirmationExecutor,
+                                    GoogleWalletProvisioningJobExecutor googleWalletProvisioningJobExecutor,
+                                    AdminExportJobExecutor adminExportJobExecutor,
+                                    MetricsRegistry metricsRegistry) {
         return new AdminJobManager(
-            List.of(reservationJobExecutor, billingDocumentJobExecutor, assignTicketToSubscriberJobExecutor, retryFailedExtensionJobExecutor, retryFailedReservationConfirmationExecutor),
+            List.of(reservationJobExecutor, billingDocumentJobExecutor, assignTicketToSubscriberJobExecutor, retryFailedExtensionJobExecutor, retryFailedReservationConfirmationExecutor, googleWalletProvisioningJobExecutor, adminExportJobExecutor),
             adminJobQueueRepository,
             transactionManager,
-            clockProvider);
+            clockProvider,
+            metricsRegistry);
     }
 
     @Bean
@@ -310,6 +384,16 @@ public class DataSourceConfiguration {
         return new RetryFailedReservationConfirmationExecutor(reservationFinalizer, json);
     }
 
+    @Bean
+    GoogleWalletProvisioningJobExecutor googleWalletProvisioningJobExecutor(GoogleWalletManager googleWalletManager) {
+        return new GoogleWalletProvisioningJobExecutor(googleWalletManager);
+    }
+
+    @Bean
+    AdminExportJobExecutor adminExportJobExecutor(AdminExportManager adminExportManager) {
+        return new AdminExportJobExecutor(adminExportManager);
+    }
+
     @Bean
     @Profile(Initializer.PROFILE_DEMO)
     DemoModeDataManager demoModeDataManager(UserRepository userRepository,
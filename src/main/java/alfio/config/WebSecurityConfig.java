@@ -17,14 +17,22 @@
 package alfio.config;
 
 import alfio.config.authentication.OpenIdUserSynchronizer;
+import alfio.config.support.AnonymousSessionPolicy;
+import alfio.config.support.SignedCookieCsrfTokenRepository;
 import alfio.manager.ExtensionManager;
 import alfio.manager.user.UserManager;
 import alfio.repository.user.AuthorityRepository;
 import alfio.repository.user.OrganizationRepository;
 import alfio.repository.user.UserRepository;
 import alfio.repository.user.join.UserOrganizationRepository;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -32,19 +40,46 @@ import org.springframework.security.web.csrf.CsrfTokenRepository;
 import org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
 @Configuration(proxyBeanMethods = false)
 @EnableWebSecurity
 public class WebSecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(WebSecurityConfig.class);
     public static final String CSRF_PARAM_NAME = "_csrf";
+    private static final String CSRF_HEADER_NAME = "X-CSRF-TOKEN";
     private static final String CSRF_SESSION_ATTRIBUTE = "CSRF_SESSION_ATTRIBUTE";
+    private static final String CSRF_SIGNING_KEY_PROPERTY = "alfio.session.csrf-signing-key";
+
+    @Bean
+    public AnonymousSessionPolicy anonymousSessionPolicy(Environment environment) {
+        return new AnonymousSessionPolicy(environment);
+    }
 
     @Bean
-    public CsrfTokenRepository getCsrfTokenRepository() {
+    public CsrfTokenRepository getCsrfTokenRepository(AnonymousSessionPolicy anonymousSessionPolicy, Environment environment) {
         HttpSessionCsrfTokenRepository repository = new HttpSessionCsrfTokenRepository();
         repository.setSessionAttributeName(CSRF_SESSION_ATTRIBUTE);
         repository.setParameterName(CSRF_PARAM_NAME);
-        return repository;
+        repository.setHeaderName(CSRF_HEADER_NAME);
+        if (!anonymousSessionPolicy.isStateless()) {
+            return repository;
+        }
+        var configuredKey = environment.getProperty(CSRF_SIGNING_KEY_PROPERTY);
+        boolean live = environment.acceptsProfiles(Profiles.of(Initializer.PROFILE_LIVE));
+        byte[] signingKey;
+        if (StringUtils.isBlank(configuredKey)) {
+            // a random key would be different on every node: without sticky sessions, CSRF validation would fail
+            Validate.validState(!live, "%s must be set when %s is enabled", CSRF_SIGNING_KEY_PROPERTY, AnonymousSessionPolicy.STATELESS_PROPERTY);
+            log.error("{} is not set. Using a random key: CSRF tokens of anonymous visitors will be valid only on this node.", CSRF_SIGNING_KEY_PROPERTY);
+            signingKey = new byte[32];
+            new SecureRandom().nextBytes(signingKey);
+        } else {
+            signingKey = configuredKey.getBytes(StandardCharsets.UTF_8);
+        }
+        return new SignedCookieCsrfTokenRepository(repository, CSRF_HEADER_NAME, CSRF_PARAM_NAME, signingKey, live);
     }
 
     @Bean
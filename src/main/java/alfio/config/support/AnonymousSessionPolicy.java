@@ -0,0 +1,57 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.config.support;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.core.env.Environment;
+
+/**
+ * Decides whether anonymous visitors get a (persistent) HTTP session.
+ *
+ * By default, a session is created for every visitor. If {@code alfio.session.stateless-anonymous} is set,
+ * anonymous browsing does not create any session: the CSRF token is stored in a signed cookie
+ * (see {@link SignedCookieCsrfTokenRepository}) and the session is created only on login.
+ */
+public class AnonymousSessionPolicy {
+
+    public static final String STATELESS_PROPERTY = "alfio.session.stateless-anonymous";
+
+    private final boolean stateless;
+
+    public AnonymousSessionPolicy(Environment environment) {
+        this(environment.getProperty(STATELESS_PROPERTY, Boolean.class, false));
+    }
+
+    AnonymousSessionPolicy(boolean stateless) {
+        this.stateless = stateless;
+    }
+
+    public boolean isStateless() {
+        return stateless;
+    }
+
+    /**
+     * Returns the current session. A new session is created only if anonymous browsing is not stateless.
+     *
+     * @param request the current request
+     * @return the current session, or {@code null}
+     */
+    public HttpSession getSession(HttpServletRequest request) {
+        return request.getSession(!stateless);
+    }
+}
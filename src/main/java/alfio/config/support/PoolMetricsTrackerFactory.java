@@ -0,0 +1,72 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.config.support;
+
+import alfio.manager.system.MetricsRegistry;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import static alfio.manager.system.MetricsRegistry.labels;
+
+/**
+ * Publishes the connection pool usage and the time spent waiting for a connection.
+ */
+public class PoolMetricsTrackerFactory implements MetricsTrackerFactory {
+
+    private static final String CONNECTIONS = "alfio_db_pool_connections";
+    private static final String CONNECTIONS_HELP = "Connections in the pool, by state";
+
+    private final MetricsRegistry metricsRegistry;
+
+    public PoolMetricsTrackerFactory(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        registerConnectionGauge(poolName, "active", poolStats, PoolStats::getActiveConnections);
+        registerConnectionGauge(poolName, "idle", poolStats, PoolStats::getIdleConnections);
+        registerConnectionGauge(poolName, "total", poolStats, PoolStats::getTotalConnections);
+        registerConnectionGauge(poolName, "max", poolStats, PoolStats::getMaxConnections);
+        metricsRegistry.registerGauge("alfio_db_pool_pending_threads", "Threads waiting for a connection", labels("pool", poolName), poolStats::getPendingThreads);
+        var poolLabel = labels("pool", poolName);
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                metricsRegistry.recordDuration("alfio_db_pool_acquire_seconds", "Time spent waiting for a connection", poolLabel, elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                metricsRegistry.recordDuration("alfio_db_pool_usage_seconds", "Time a connection has been borrowed from the pool", poolLabel, TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                metricsRegistry.increment("alfio_db_pool_timeouts_total", "Connection requests that timed out", poolLabel);
+            }
+        };
+    }
+
+    private void registerConnectionGauge(String poolName, String state, PoolStats poolStats, ToIntFunction<PoolStats> accessor) {
+        metricsRegistry.registerGauge(CONNECTIONS, CONNECTIONS_HELP, labels("pool", poolName, "state", state), () -> accessor.applyAsInt(poolStats));
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.config.support;
+
+import alfio.manager.system.MetricsRegistry;
+import ch.digitalfondue.npjt.QueryRepository;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+/**
+ * Wraps the {@link QueryRepository} beans in order to record the latency of each repository method.
+ * Active only if metrics have been enabled.
+ */
+@Component
+public class QueryRepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    private final MetricsRegistry metricsRegistry;
+
+    public QueryRepositoryMetricsPostProcessor(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if(!metricsRegistry.isEnabled()) {
+            return bean;
+        }
+        var interfaces = bean.getClass().getInterfaces();
+        var repositoryInterface = Arrays.stream(interfaces)
+            .filter(i -> i.isAnnotationPresent(QueryRepository.class))
+            .findFirst();
+        if(repositoryInterface.isEmpty()) {
+            return bean;
+        }
+        var repositoryName = repositoryInterface.get().getSimpleName();
+        return Proxy.newProxyInstance(repositoryInterface.get().getClassLoader(), interfaces, (proxy, method, args) -> {
+            if(method.getDeclaringClass() == Object.class) {
+                return invoke(bean, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return invoke(bean, method, args);
+            } finally {
+                metricsRegistry.recordQuery(repositoryName, method.getName(), System.nanoTime() - start);
+            }
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
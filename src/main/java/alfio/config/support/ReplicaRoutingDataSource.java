@@ -0,0 +1,180 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.config.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Routes the connection requests to a streaming replica, if the caller has explicitly requested it
+ * (see {@link #withReplica(boolean, Runnable)}), and to the primary otherwise.
+ * <p>
+ * The replica is skipped if its replay lag exceeds the configured threshold, or if it could not be reached:
+ * in this case the primary is used until {@code retryAfterMillis} have elapsed.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final ThreadLocal<Boolean> REPLICA_REQUESTED = new ThreadLocal<>();
+    // lag is 0 if the replica has replayed everything it received. This also works if the primary is used as replica
+    private static final String LAG_QUERY = """
+        select case when not pg_is_in_recovery() or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 \
+         else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000, 0) end\
+        """;
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long maxLagMillis;
+    private final long lagCheckIntervalMillis;
+    private final long retryAfterMillis;
+    private final LongSupplier clock;
+    private final AtomicBoolean checkingLag = new AtomicBoolean();
+    private volatile long lagMillis;
+    private volatile long lastLagCheck = Long.MIN_VALUE;
+    private volatile long unavailableUntil = Long.MIN_VALUE;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    DataSource replica,
+                                    long maxLagMillis,
+                                    long lagCheckIntervalMillis,
+                                    long retryAfterMillis) {
+        this(primary, replica, maxLagMillis, lagCheckIntervalMillis, retryAfterMillis, System::currentTimeMillis);
+    }
+
+    ReplicaRoutingDataSource(DataSource primary,
+                             DataSource replica,
+                             long maxLagMillis,
+                             long lagCheckIntervalMillis,
+                             long retryAfterMillis,
+                             LongSupplier clock) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagMillis = maxLagMillis;
+        this.lagCheckIntervalMillis = lagCheckIntervalMillis;
+        this.retryAfterMillis = retryAfterMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs the given action, routing the connections requested by it to the replica if {@code replica} is {@code true}.
+     * Connections are bound to the transaction when it begins, so the transaction manager needs to call this only around
+     * the transaction start.
+     */
+    public static void withReplica(boolean replica, Runnable action) {
+        var previous = REPLICA_REQUESTED.get();
+        REPLICA_REQUESTED.set(replica);
+        try {
+            action.run();
+        } finally {
+            if(previous == null) {
+                REPLICA_REQUESTED.remove();
+            } else {
+                REPLICA_REQUESTED.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if(!Boolean.TRUE.equals(REPLICA_REQUESTED.get())) {
+            return primary.getConnection();
+        }
+        long now = clock.getAsLong();
+        if(now < unavailableUntil) {
+            return primary.getConnection();
+        }
+        boolean lagCheckDue = lastLagCheck == Long.MIN_VALUE || now - lastLagCheck >= lagCheckIntervalMillis;
+        if(!lagCheckDue && lagMillis > maxLagMillis) {
+            return primary.getConnection();
+        }
+        Connection connection;
+        try {
+            connection = replica.getConnection();
+            if(lagCheckDue && checkingLag.compareAndSet(false, true)) {
+                try {
+                    updateLag(connection, now);
+                } finally {
+                    checkingLag.set(false);
+                }
+            }
+        } catch (SQLException e) {
+            unavailableUntil = now + retryAfterMillis;
+            log.warn("Cannot use the read replica, falling back to the primary for the next {} ms", retryAfterMillis, e);
+            return primary.getConnection();
+        }
+        if(lagMillis > maxLagMillis) {
+            connection.close();
+            return primary.getConnection();
+        }
+        return connection;
+    }
+
+    private void updateLag(Connection connection, long now) throws SQLException {
+        long previous = lagMillis;
+        try (var statement = connection.createStatement(); var resultSet = statement.executeQuery(LAG_QUERY)) {
+            lagMillis = resultSet.next() ? (long) resultSet.getDouble(1) : 0L;
+            lastLagCheck = now;
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        if(previous <= maxLagMillis && lagMillis > maxLagMillis) {
+            log.warn("Read replica lag is {} ms, routing all the requests to the primary", lagMillis);
+        } else if(previous > maxLagMillis && lagMillis <= maxLagMillis) {
+            log.info("Read replica lag is back to {} ms", lagMillis);
+        }
+    }
+
+    /**
+     * Connections with explicit credentials are always requested to the primary
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    @Override
+    public void close() {
+        IllegalStateException failure = null;
+        for (DataSource dataSource : new DataSource[]{replica, primary}) {
+            if(dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    if(e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if(failure == null) {
+                        failure = new IllegalStateException("Cannot close the data sources", e);
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.config.support;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.CsrfTokenRepository;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository;
+import org.springframework.web.util.WebUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * {@link CsrfTokenRepository} which does not require a session for anonymous visitors.
+ * <p>
+ * If the request has a session, the token is stored there, as usual. Otherwise, it is stored in an HttpOnly cookie,
+ * together with its HMAC signature, so that a token not generated by alf.io is rejected.
+ * <p>
+ * The signature is not bound to the visitor: a valid token/cookie pair can be replayed by whoever obtained it.
+ * For this reason, when the cookie is secure it is named with the {@code __Host-} prefix, which prevents
+ * a sibling subdomain from setting it on the visitor's browser.
+ */
+public class SignedCookieCsrfTokenRepository implements CsrfTokenRepository {
+
+    static final String COOKIE_NAME = "ALFIO_CSRF";
+    static final String SECURE_COOKIE_NAME = "__Host-" + COOKIE_NAME;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String SEPARATOR = ".";
+
+    private final HttpSessionCsrfTokenRepository sessionRepository;
+    private final String headerName;
+    private final String parameterName;
+    private final SecretKeySpec signingKey;
+    private final boolean secureCookie;
+    private final String cookieName;
+
+    public SignedCookieCsrfTokenRepository(HttpSessionCsrfTokenRepository sessionRepository,
+                                           String headerName,
+                                           String parameterName,
+                                           byte[] signingKey,
+                                           boolean secureCookie) {
+        this.sessionRepository = sessionRepository;
+        this.headerName = headerName;
+        this.parameterName = parameterName;
+        this.signingKey = new SecretKeySpec(signingKey, HMAC_ALGORITHM);
+        this.secureCookie = secureCookie;
+        this.cookieName = secureCookie ? SECURE_COOKIE_NAME : COOKIE_NAME;
+    }
+
+    @Override
+    public CsrfToken generateToken(HttpServletRequest request) {
+        return sessionRepository.generateToken(request);
+    }
+
+    @Override
+    public void saveToken(CsrfToken token, HttpServletRequest request, HttpServletResponse response) {
+        boolean hasSession = request.getSession(false) != null;
+        if (hasSession || token == null) {
+            sessionRepository.saveToken(token, request, response);
+        }
+        if (token == null || hasSession) {
+            // the session, if present, takes precedence. The cookie is not needed anymore
+            if (WebUtils.getCookie(request, cookieName) != null) {
+                response.addCookie(buildCookie("", 0));
+            }
+        } else {
+            response.addCookie(buildCookie(token.getToken() + SEPARATOR + sign(token.getToken()), -1));
+        }
+    }
+
+    @Override
+    public CsrfToken loadToken(HttpServletRequest request) {
+        if (request.getSession(false) != null) {
+            var token = sessionRepository.loadToken(request);
+            if (token != null) {
+                return token;
+            }
+        }
+        var cookie = WebUtils.getCookie(request, cookieName);
+        if (cookie == null) {
+            return null;
+        }
+        var value = cookie.getValue();
+        var token = StringUtils.substringBeforeLast(value, SEPARATOR);
+        var signature = StringUtils.substringAfterLast(value, SEPARATOR);
+        if (StringUtils.isAnyEmpty(token, signature)
+            || !MessageDigest.isEqual(sign(token).getBytes(StandardCharsets.UTF_8), signature.getBytes(StandardCharsets.UTF_8))) {
+            return null;
+        }
+        return new DefaultCsrfToken(headerName, parameterName, token);
+    }
+
+    private Cookie buildCookie(String value, int maxAge) {
+        var cookie = new Cookie(cookieName, value);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge(maxAge);
+        cookie.setSecure(secureCookie);
+        if (secureCookie) {
+            cookie.setAttribute("SameSite", "Strict");
+        }
+        return cookie;
+    }
+
+    private String sign(String token) {
+        try {
+            var mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.config.support;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the factories for the threads used by alf.io's own executors.
+ * If virtual threads have been enabled ({@code spring.threads.virtual.enabled=true}) and the JVM supports them (21+),
+ * the returned factory creates virtual threads, so that the executors follow the same model as request handling.
+ */
+public final class ThreadFactories {
+
+    private ThreadFactories() {
+    }
+
+    public static boolean virtualThreadsEnabled(Environment environment) {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    /**
+     * @param environment the current environment
+     * @param namePrefix prefix for the thread name. A progressive number will be appended to it
+     * @param daemon whether the platform threads should be daemon threads. Virtual threads are always daemon threads.
+     * @return the {@link ThreadFactory}
+     */
+    public static ThreadFactory create(Environment environment, String namePrefix, boolean daemon) {
+        if(virtualThreadsEnabled(environment)) {
+            return new VirtualThreadTaskExecutor(namePrefix).getVirtualThreadFactory();
+        }
+        return BasicThreadFactory.builder()
+            .namingPattern(namePrefix + "%d")
+            .daemon(daemon)
+            .build();
+    }
+}
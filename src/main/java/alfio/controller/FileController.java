@@ -16,20 +16,25 @@
  */
 package alfio.controller;
 
+import alfio.controller.support.FileResponseWriter;
 import alfio.manager.FileUploadManager;
 import alfio.model.FileBlobMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.EOFException;
 import java.io.IOException;
 import java.util.Optional;
 
 @Controller
 public class FileController {
 
+    private static final Logger log = LoggerFactory.getLogger(FileController.class);
     private final FileUploadManager manager;
 
     private static final String MAX_AGE_6_MONTH = "max-age=15778463";
@@ -57,12 +62,13 @@ public class FileController {
             if (digest.equals(digestNoneMatchHeader)) {
                 response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
             } else {
-                response.setContentType(metadata.getContentType());
-                response.setContentLength(metadata.getContentSize());
                 response.setHeader("ETag", metadata.getId()); //id = digest
                 response.setHeader("Cache-Control", MAX_AGE_6_MONTH);
-                try (var os = response.getOutputStream()) {
-                    manager.outputFile(digest, os);
+                try {
+                    FileResponseWriter.write(manager.getFile(digest), metadata.getContentType(), request, response);
+                } catch (EOFException ex) {
+                    // this happens when the browser closes the stream on its end.
+                    log.trace("got EOFException", ex);
                 }
             }
         } else {
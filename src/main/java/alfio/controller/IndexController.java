@@ -17,6 +17,7 @@
 package alfio.controller;
 
 import alfio.controller.support.DataPreloaderManager;
+import alfio.controller.support.IndexPageTemplate;
 import alfio.model.TicketReservationStatusAndValidation;
 import alfio.repository.EventRepository;
 import alfio.repository.SubscriptionRepository;
@@ -25,7 +26,6 @@ import alfio.util.RequestUtils;
 import ch.digitalfondue.jfiveparse.Document;
 import ch.digitalfondue.jfiveparse.JFiveParse;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.ResponseEntity;
@@ -37,7 +37,6 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Optional;
@@ -50,7 +49,7 @@ public class IndexController {
 
     private static final String TEXT_HTML_CHARSET_UTF_8 = "text/html;charset=UTF-8";
     private static final String UTF_8 = "UTF-8";
-    private final Document indexPage;
+    private final IndexPageTemplate indexPage;
     private final Document openGraphPage;
     private final EventRepository eventRepository;
     private final TicketReservationRepository ticketReservationRepository;
@@ -71,7 +70,7 @@ public class IndexController {
              var idxOpenIs = new ClassPathResource("alfio/web-templates/event-open-graph-page.html").getInputStream();
              var idxIsR = new InputStreamReader(idxIs, StandardCharsets.UTF_8);
              var idxOpenGraphReader = new InputStreamReader(idxOpenIs, StandardCharsets.UTF_8)) {
-            indexPage = JFiveParse.parse(idxIsR);
+            indexPage = IndexPageTemplate.compile(JFiveParse.parse(idxIsR));
             openGraphPage = JFiveParse.parse(idxOpenGraphReader);
         } catch (IOException e) {
             throw new IllegalStateException(e);
@@ -170,26 +169,24 @@ public class IndexController {
                              @RequestParam(value = "lang", required = false) String lang,
                              ServletWebRequest request,
                              HttpServletResponse response,
-                             HttpSession session,
                              Authentication authentication) throws IOException {
 
         response.setContentType(TEXT_HTML_CHARSET_UTF_8);
         response.setCharacterEncoding(UTF_8);
 
-        try (var os = response.getOutputStream(); var osw = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
-            var doc = dataPreloaderManager.generateIndexDocument(
-                eventShortName,
-                subscriptionId,
-                userAgent,
-                lang,
-                request,
-                response,
-                session,
-                authentication,
-                openGraphPage,
-                indexPage
-            );
-            JFiveParse.serialize(doc, osw);
+        var page = dataPreloaderManager.generateIndexPage(
+            eventShortName,
+            subscriptionId,
+            userAgent,
+            lang,
+            request,
+            response,
+            authentication,
+            openGraphPage,
+            indexPage
+        );
+        try (var os = response.getOutputStream()) {
+            page.writeTo(os);
         }
     }
 
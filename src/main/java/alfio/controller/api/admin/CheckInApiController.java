@@ -18,12 +18,14 @@ package alfio.controller.api.admin;
 
 import alfio.manager.AccessService;
 import alfio.manager.CheckInManager;
+import alfio.manager.CheckInStatisticsPublisher;
 import alfio.manager.EventManager;
 import alfio.manager.support.*;
 import alfio.manager.system.ConfigurationManager;
 import alfio.model.EventAndOrganizationId;
 import alfio.model.FullTicketInfo;
 import alfio.model.checkin.AttendeeSearchResults;
+import alfio.model.checkin.CheckInDelta;
 import alfio.model.system.ConfigurationKeys;
 import alfio.util.Json;
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -38,9 +40,13 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.Principal;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -55,16 +61,23 @@ public class CheckInApiController {
 
     private static final Logger log = LoggerFactory.getLogger(CheckInApiController.class);
     private static final String ALFIO_TIMESTAMP_HEADER = "Alfio-TIME";
+    private static final long STATISTICS_STREAM_TIMEOUT = DateUtils.MILLIS_PER_MINUTE * 30;
     private final CheckInManager checkInManager;
     private final EventManager eventManager;
     private final ConfigurationManager configurationManager;
     private final AccessService accessService;
+    private final CheckInStatisticsPublisher checkInStatisticsPublisher;
 
-    public CheckInApiController(CheckInManager checkInManager, EventManager eventManager, ConfigurationManager configurationManager, AccessService accessService) {
+    public CheckInApiController(CheckInManager checkInManager,
+                                EventManager eventManager,
+                                ConfigurationManager configurationManager,
+                                AccessService accessService,
+                                CheckInStatisticsPublisher checkInStatisticsPublisher) {
         this.checkInManager = checkInManager;
         this.eventManager = eventManager;
         this.configurationManager = configurationManager;
         this.accessService = accessService;
+        this.checkInStatisticsPublisher = checkInStatisticsPublisher;
     }
 
     @Data
@@ -196,6 +209,29 @@ public class CheckInApiController {
         accessService.checkEventMembership(principal, eventName, AccessService.CHECKIN_ROLES);
         return checkInManager.getStatistics(eventName, categories, principal.getName());
     }
+
+    @GetMapping(value = "/check-in/event/{eventName}/statistics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamStatistics(@PathVariable String eventName,
+                                                       @RequestParam(name = "categoryId", required = false) List<Integer> categories,
+                                                       Principal principal) {
+        accessService.checkEventMembership(principal, eventName, AccessService.CHECKIN_ROLES);
+        return checkInManager.findEventWithStatisticsEnabled(eventName, principal.getName())
+            .map(event -> {
+                var emitter = new SseEmitter(STATISTICS_STREAM_TIMEOUT);
+                var unsubscribe = checkInStatisticsPublisher.subscribe(event.getId(), categories, statistics -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("statistics").data(statistics, MediaType.APPLICATION_JSON));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                emitter.onCompletion(unsubscribe);
+                emitter.onTimeout(unsubscribe);
+                emitter.onError(e -> unsubscribe.run());
+                return ResponseEntity.ok(emitter);
+            })
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
     
     @PostMapping("/check-in/{eventId}/ticket/{ticketIdentifier}/confirm-on-site-payment")
     public OnSitePaymentConfirmation confirmOnSitePayment(@PathVariable int eventId, @PathVariable String ticketIdentifier, Principal principal) {
@@ -276,25 +312,43 @@ public class CheckInApiController {
 
         validateIdList(ids);
         return eventManager.getOptionalByName(eventName, principal.getName())
-            .map(event -> {
-                Set<String> addFields = loadLabelLayout(event)
-                    .map(layout -> {
-                        Set<String> union = new HashSet<>(layout.content.thirdRow);
-                        union.addAll(layout.content.additionalRows);
-                        union.addAll(layout.qrCode.additionalInfo);
-                        if(additionalFields != null && !additionalFields.isEmpty()) {
-                            union.addAll(additionalFields);
-                        }
-                        return union;
-                    })
-                    .orElseGet(() -> {
-                        if(additionalFields != null && !additionalFields.isEmpty()) {
-                            return new HashSet<>(additionalFields);
-                        }
-                        return Collections.singleton("company");
-                    });
-                return checkInManager.getEncryptedAttendeesInformation(event, addFields, ids);
-            }).orElse(Collections.emptyMap());
+            .map(event -> checkInManager.getEncryptedAttendeesInformation(event, getAdditionalFields(event, additionalFields), ids))
+            .orElse(Collections.emptyMap());
+    }
+
+    /**
+     * Delta sync for offline check-in: returns only the attendees changed since the given cursor, and
+     * the ids of the tickets which have been revoked. The returned cursor must be used for the next call.
+     */
+    @GetMapping("/check-in/{eventName}/offline-delta")
+    public ResponseEntity<CheckInDelta> getOfflineEncryptedDelta(@PathVariable String eventName,
+                                                                 @RequestParam(value = "since", required = false, defaultValue = "0") long since,
+                                                                 @RequestParam(value = "additionalField", required = false) List<String> additionalFields,
+                                                                 Principal principal) {
+        accessService.checkEventMembership(principal, eventName, AccessService.CHECKIN_ROLES);
+        return eventManager.getOptionalByName(eventName, principal.getName())
+            .flatMap(event -> checkInManager.getEncryptedAttendeesDelta(event, getAdditionalFields(event, additionalFields), since))
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED));
+    }
+
+    private Set<String> getAdditionalFields(EventAndOrganizationId event, List<String> additionalFields) {
+        return loadLabelLayout(event)
+            .map(layout -> {
+                Set<String> union = new HashSet<>(layout.content.thirdRow);
+                union.addAll(layout.content.additionalRows);
+                union.addAll(layout.qrCode.additionalInfo);
+                if(additionalFields != null && !additionalFields.isEmpty()) {
+                    union.addAll(additionalFields);
+                }
+                return union;
+            })
+            .orElseGet(() -> {
+                if(additionalFields != null && !additionalFields.isEmpty()) {
+                    return new HashSet<>(additionalFields);
+                }
+                return Collections.singleton("company");
+            });
     }
 
     private static void validateIdList(@RequestBody List<Integer> ids) {
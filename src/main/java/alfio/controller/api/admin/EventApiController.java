@@ -26,6 +26,7 @@ import alfio.manager.*;
 import alfio.manager.i18n.I18nManager;
 import alfio.manager.payment.custom.offline.CustomOfflineConfigurationManager;
 import alfio.manager.payment.custom.offline.CustomOfflineConfigurationManager.CustomOfflinePaymentMethodDoesNotExistException;
+import alfio.manager.support.ExportData;
 import alfio.manager.support.extension.ExtensionCapability;
 import alfio.manager.system.ConfigurationLevel;
 import alfio.manager.system.ConfigurationManager;
@@ -35,15 +36,13 @@ import alfio.model.TicketReservationInvoicingAdditionalInfo.ItalianEInvoicing;
 import alfio.model.metadata.AlfioMetadata;
 import alfio.model.modification.*;
 import alfio.model.result.ValidationResult;
+import alfio.model.system.AdminExport;
 import alfio.model.system.ConfigurationKeys;
 import alfio.model.transaction.PaymentProxy;
 import alfio.model.transaction.Transaction;
 import alfio.model.user.Organization;
-import alfio.model.user.Role;
-import alfio.model.user.User;
 import alfio.repository.EventDescriptionRepository;
 import alfio.repository.PurchaseContextFieldRepository;
-import alfio.repository.SponsorScanRepository;
 import alfio.repository.TicketCategoryRepository;
 import alfio.util.*;
 
@@ -84,14 +83,13 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
-import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import static alfio.manager.EventExportManager.*;
 import static alfio.util.Validator.*;
 import static alfio.util.Wrappers.optionally;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -104,7 +102,6 @@ public class EventApiController {
 
     private static final Logger log = LoggerFactory.getLogger(EventApiController.class);
     private static final String OK = "OK";
-    private static final String CUSTOM_FIELDS_PREFIX = "custom:";
     public static final String UNHANDLED_EXCEPTION = "unhandled exception";
     private final EventManager eventManager;
     private final EventStatisticsManager eventStatisticsManager;
@@ -115,7 +112,6 @@ public class EventApiController {
     private final EventDescriptionRepository eventDescriptionRepository;
     private final TicketHelper ticketHelper;
     private final UserManager userManager;
-    private final SponsorScanRepository sponsorScanRepository;
     private final PaymentManager paymentManager;
     private final TemplateManager templateManager;
     private final FileUploadManager fileUploadManager;
@@ -124,6 +120,8 @@ public class EventApiController {
     private final ClockProvider clockProvider;
     private final AccessService accessService;
     private final CustomOfflineConfigurationManager customOfflineConfigurationManager;
+    private final EventExportManager eventExportManager;
+    private final AdminExportManager adminExportManager;
 
 
     @ExceptionHandler(DataAccessException.class)
@@ -434,178 +432,45 @@ public class EventApiController {
         return ResponseEntity.ok(OK);
     }
 
-    private static final String PAYMENT_METHOD = "Payment Method";
-    private static final String EXTERNAL_REFERENCE = "External Reference";
-    static final List<String> FIXED_FIELDS = Arrays.asList("ID", "Category", "Event", "Status", "OriginalPrice", "PaidPrice", "Discount", "VAT", "ReservationID", "Full Name", "First Name", "Last Name", "E-Mail", "Locked", "Language", "Confirmation", "Billing Address", "Country Code", "Promo Code","Payment ID", PAYMENT_METHOD, EXTERNAL_REFERENCE);
     private static final List<SerializablePair<String, String>> FIXED_PAIRS = FIXED_FIELDS.stream().map(f -> SerializablePair.of(f, f)).collect(toList());
-    private static final String FISCAL_CODE = "Fiscal Code";
-    private static final String REFERENCE_TYPE = "Reference Type";
-    private static final List<String> ITALIAN_E_INVOICING_FIELDS = List.of(FISCAL_CODE, REFERENCE_TYPE, "Addressee Code", "PEC");
 
     @GetMapping("/events/{eventName}/export")
     public void downloadAllTicketsCSV(@PathVariable String eventName, @RequestParam(name = "format", defaultValue = "excel") String format, HttpServletRequest request, HttpServletResponse response, Principal principal) throws IOException {
         accessService.checkEventOwnership(principal, eventName);
         List<String> fields = Arrays.asList(Optional.ofNullable(request.getParameterValues("fields")).orElse(new String[] {}));
-        Event event = loadEvent(eventName, principal);
-        Map<Integer, TicketCategory> categoriesMap = eventManager.loadTicketCategories(event).stream().collect(Collectors.toMap(TicketCategory::getId, Function.identity()));
-        ZoneId eventZoneId = event.getZoneId();
-
-        if ("excel".equals(format)) {
-            exportTicketExcel(event.getShortName(), response, principal, fields, categoriesMap, eventZoneId);
-        } else {
-            exportTicketCSV(event.getShortName(), response, principal, fields, categoriesMap, eventZoneId);
-        }
-    }
-
-    private void exportTicketExcel(String eventName, HttpServletResponse response, Principal principal, List<String> fields, Map<Integer,TicketCategory> categoriesMap, ZoneId eventZoneId) throws IOException {
-        ExportUtils.exportExcel(eventName + "-export.xlsx",
-            eventName + " export",
-            exportHeader(fields),
-            exportLines(eventName, principal, fields, categoriesMap, eventZoneId), response);
-
+        // rows are loaded before writing, so that the response is not written while holding a connection
+        writeExport(eventExportManager.loadAttendees(eventName, fields, principal.getName()), format, response);
     }
 
-    private void exportTicketCSV(String eventName, HttpServletResponse response,
-                           Principal principal, List<String> fields,
-                           Map<Integer, TicketCategory> categoriesMap,
-                           ZoneId eventZoneId) throws IOException {
-        ExportUtils.exportCsv(eventName + "-export.csv", exportHeader(fields), exportLines(eventName, principal, fields, categoriesMap, eventZoneId), response);
-    }
-
-    private String[] exportHeader(List<String> fields) {
-        return fields.stream().map(f -> {
-            if(f.startsWith(CUSTOM_FIELDS_PREFIX)) {
-                return f.substring(CUSTOM_FIELDS_PREFIX.length());
-            }
-            return f;
-        }).toArray(String[]::new);
-    }
-
-    private Stream<String[]> exportLines(String eventName, Principal principal, List<String> fields, Map<Integer, TicketCategory> categoriesMap, ZoneId eventZoneId) {
-        var username = principal.getName();
-        var eInvoicingEnabled = configurationManager.isItalianEInvoicingEnabled(eventManager.getEventAndOrganizationId(eventName, username));
-
-        return eventManager.findAllConfirmedTicketsForCSV(eventName, username).stream().map(trs -> {
-            Ticket t = trs.getTicket();
-            var currencyCode = t.getCurrencyCode();
-            TicketReservation reservation = trs.getTicketReservation();
-            List<String> line = new ArrayList<>();
-            if(fields.contains("ID")) {line.add(t.getUuid());}
-            if(fields.contains("Category")) {line.add(categoriesMap.get(t.getCategoryId()).getName());}
-            if(fields.contains("Event")) {line.add(eventName);}
-            if(fields.contains("Status")) {line.add(t.getStatus().toString());}
-            if(fields.contains("OriginalPrice")) {line.add(MonetaryUtil.centsToUnit(t.getSrcPriceCts(), currencyCode).toString());}
-            if(fields.contains("PaidPrice")) {line.add(MonetaryUtil.centsToUnit(t.getFinalPriceCts(), currencyCode).toString());}
-            if(fields.contains("Discount")) {line.add(MonetaryUtil.centsToUnit(t.getDiscountCts(), currencyCode).toString());}
-            if(fields.contains("VAT")) {line.add(MonetaryUtil.centsToUnit(t.getVatCts(), currencyCode).toString());}
-            if(fields.contains("ReservationID")) {line.add(t.getTicketsReservationId());}
-            if(fields.contains("Full Name")) {line.add(t.getFullName());}
-            if(fields.contains("First Name")) {line.add(t.getFirstName());}
-            if(fields.contains("Last Name")) {line.add(t.getLastName());}
-            if(fields.contains("E-Mail")) {line.add(t.getEmail());}
-            if(fields.contains("Locked")) {line.add(String.valueOf(t.getLockedAssignment()));}
-            if(fields.contains("Language")) {line.add(String.valueOf(t.getUserLanguage()));}
-            if(fields.contains("Confirmation")) {line.add(reservation.getConfirmationTimestamp().withZoneSameInstant(eventZoneId).toString());}
-            if(fields.contains("Billing Address")) {line.add(reservation.getBillingAddress());}
-            if(fields.contains("Country Code")) {line.add(reservation.getVatCountryCode());}
-            if(fields.contains("Promo Code")) {line.add(trs.getPromoCode());}
-            boolean paymentIdRequested = fields.contains("Payment ID");
-            boolean paymentGatewayRequested = fields.contains(PAYMENT_METHOD);
-            if((paymentIdRequested || paymentGatewayRequested)) {
-                Optional<Transaction> transaction = trs.getTransaction();
-                if(paymentIdRequested) { line.add(Objects.toString(transaction.map(Transaction::getPaymentId).orElse(null), transaction.map(Transaction::getTransactionId).orElse(""))); }
-                if(paymentGatewayRequested) { line.add(transaction.map(tr -> tr.getPaymentProxy().name()).orElse("")); }
-            }
-            if(fields.contains(EXTERNAL_REFERENCE)) {line.add(t.getExtReference());}
-
-            if(eInvoicingEnabled) {
-                var billingDetails = trs.getBillingDetails();
-                var optionalInvoicingData = Optional.ofNullable(billingDetails.getInvoicingAdditionalInfo()).map(TicketReservationInvoicingAdditionalInfo::getItalianEInvoicing);
-                if(fields.contains(FISCAL_CODE)) {line.add(optionalInvoicingData.map(ItalianEInvoicing::getFiscalCode).orElse(""));}
-                if(fields.contains(REFERENCE_TYPE)) {line.add(optionalInvoicingData.map(ItalianEInvoicing::getReferenceTypeAsString).orElse(""));}
-                if(fields.contains("Addressee Code")) {line.add(optionalInvoicingData.map(ItalianEInvoicing::getAddresseeCode).orElse(""));}
-                if(fields.contains("PEC")) {line.add(optionalInvoicingData.map(ItalianEInvoicing::getPec).orElse(""));}
-            }
-
-            //obviously not optimized
-            Map<String, List<String>> additionalValues = purchaseContextFieldRepository.findAllValuesForTicketId(t.getId());
-
-            Predicate<String> contains = FIXED_FIELDS::contains;
-
-            fields.stream().filter(contains.negate()).filter(f -> f.startsWith(CUSTOM_FIELDS_PREFIX)).forEachOrdered(field -> {
-                String customFieldName = field.substring(CUSTOM_FIELDS_PREFIX.length());
-                line.add(String.join("; ", additionalValues.getOrDefault(customFieldName, List.of())).replace("\"", ""));
-            });
-
-            return line.toArray(new String[0]);
-        });
+    @PostMapping("/events/{eventName}/export/async")
+    public ResponseEntity<AdminExport> requestTicketsExport(@PathVariable String eventName, @RequestParam(name = "format", defaultValue = "excel") String format, HttpServletRequest request, Principal principal) {
+        accessService.checkEventOwnership(principal, eventName);
+        List<String> fields = Arrays.asList(Optional.ofNullable(request.getParameterValues("fields")).orElse(new String[] {}));
+        var event = eventManager.getEventAndOrganizationId(eventName, principal.getName());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(adminExportManager.requestExport(AdminExport.Type.ATTENDEES, event.getId(), format, Map.of("fields", fields), principal.getName()));
     }
 
     @GetMapping("/events/{eventName}/sponsor-scan/export")
     public void downloadSponsorScanExport(@PathVariable String eventName, @RequestParam(name = "format", defaultValue = "excel") String format, HttpServletResponse response, Principal principal) throws IOException {
         accessService.checkEventOwnership(principal, eventName);
-        var event = eventManager.getSingleEvent(eventName, principal.getName());
-        List<PurchaseContextFieldConfiguration> fields = purchaseContextFieldRepository.findAdditionalFieldsForEvent(event.getId());
-
-        List<String> header = new ArrayList<>();
-        header.add("Username/Api Key");
-        header.add("Description");
-        header.add("Timestamp");
-        header.add("Full name");
-        header.add("Email");
-        header.addAll(fields.stream().map(PurchaseContextFieldConfiguration::getName).toList());
-        header.add("Sponsor notes");
-        header.add("Lead Status");
-        header.add("Operator");
-
-        Stream<String[]> sponsorScans = userManager.findAllEnabledUsers(principal.getName()).stream()
-            .map(u -> Pair.of(u, userManager.getUserRole(u)))
-            .filter(p -> p.getRight() == Role.SPONSOR)
-            .flatMap(p -> sponsorScanRepository.loadSponsorData(event.getId(), p.getKey().getId(), SponsorScanRepository.DEFAULT_TIMESTAMP)
-                .stream()
-                .map(v -> Pair.of(v, purchaseContextFieldRepository.findAllValuesForTicketId(v.getTicket().getId()))))
-            .map(p -> {
-                DetailedScanData data = p.getLeft();
-                Map<String, List<String>> descriptions = p.getRight();
-                return Pair.of(data, fields.stream()
-                    .map(x -> String.join("; ", descriptions.getOrDefault(x.getName(), List.of()))).collect(toList()));
-            }).map(p -> {
-                List<String> line = new ArrayList<>();
-                Ticket ticket = p.getLeft().getTicket();
-                SponsorScan sponsorScan = p.getLeft().getSponsorScan();
-                User user = userManager.findUser(sponsorScan.getUserId(), principal);
-                line.add(user.getUsername());
-                line.add(user.getDescription());
-                line.add(sponsorScan.getTimestamp().toString());
-                line.add(ticket.getFullName());
-                line.add(ticket.getEmail());
-
-                line.addAll(p.getRight());
-
-                line.add(sponsorScan.getNotes());
-                line.add(sponsorScan.getLeadStatus().name());
-                line.add(sponsorScan.getOperator());
-                return line.toArray(new String[0]);
-            });
-
-        if ("excel".equals(format)) {
-            exportSponsorScanExcel(event.getShortName(), header, sponsorScans, response);
-        } else {
-            exportSponsorScanCSV(event.getShortName(), header, sponsorScans, response);
-        }
+        writeExport(eventExportManager.loadSponsorScans(eventName, principal.getName()), format, response);
     }
 
-    private void exportSponsorScanExcel(String eventName, List<String> header, Stream<String[]> sponsorScans,
-                                        HttpServletResponse response) throws IOException {
-        ExportUtils.exportExcel(eventName + "-sponsor-scan.xlsx",
-            eventName + " sponsor scan",
-            header.toArray(new String[0]),
-            sponsorScans, response);
+    @PostMapping("/events/{eventName}/sponsor-scan/export/async")
+    public ResponseEntity<AdminExport> requestSponsorScanExport(@PathVariable String eventName, @RequestParam(name = "format", defaultValue = "excel") String format, Principal principal) {
+        accessService.checkEventOwnership(principal, eventName);
+        var event = eventManager.getEventAndOrganizationId(eventName, principal.getName());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(adminExportManager.requestExport(AdminExport.Type.SPONSOR_SCANS, event.getId(), format, Map.of(), principal.getName()));
     }
 
-    private void exportSponsorScanCSV(String eventName, List<String> header, Stream<String[]> sponsorScans,
-                                      HttpServletResponse response) throws IOException {
-        ExportUtils.exportCsv(eventName + "-sponsor-scan.csv", header.toArray(new String[0]), sponsorScans, response);
+    private static void writeExport(ExportData data, String format, HttpServletResponse response) throws IOException {
+        if ("excel".equals(format)) {
+            ExportUtils.exportExcel(data, response);
+        } else {
+            ExportUtils.exportCsv(data, response);
+        }
     }
 
     @GetMapping("/events/{eventName}/fields")
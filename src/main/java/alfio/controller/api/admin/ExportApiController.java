@@ -16,39 +16,60 @@
  */
 package alfio.controller.api.admin;
 
+import alfio.manager.AdminExportManager;
 import alfio.manager.ExportManager;
-import alfio.model.ReservationsByEvent;
-import alfio.model.support.ReservationInfo;
-import alfio.model.support.TicketInfo;
-import alfio.util.MonetaryUtil;
-import ch.digitalfondue.basicxlsx.StreamingWorkbook;
-import ch.digitalfondue.basicxlsx.Style;
+import alfio.model.system.AdminExport;
+import alfio.util.ExportUtils;
 import org.springframework.http.HttpStatus;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.security.Principal;
 import java.time.LocalDate;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Map;
 
-import static alfio.util.ExportUtils.addSheetToWorkbook;
-import static alfio.util.ExportUtils.exportExcel;
-import static java.util.Objects.*;
+import static java.util.Objects.requireNonNull;
 
 @RestController
 @RequestMapping("/admin/api/export")
 public class ExportApiController {
 
     private final ExportManager exportManager;
+    private final AdminExportManager adminExportManager;
 
-    public ExportApiController(ExportManager exportManager) {
+    public ExportApiController(ExportManager exportManager,
+                               AdminExportManager adminExportManager) {
         this.exportManager = exportManager;
+        this.adminExportManager = adminExportManager;
+    }
+
+    @GetMapping("/{exportId}/status")
+    public ResponseEntity<AdminExport> getExportStatus(@PathVariable String exportId, Principal principal) {
+        return ResponseEntity.of(adminExportManager.findExport(exportId, principal.getName()));
+    }
+
+    @GetMapping("/{exportId}/download")
+    public void downloadExport(@PathVariable String exportId, HttpServletResponse response, Principal principal) throws IOException {
+        var optionalExport = adminExportManager.findExport(exportId, principal.getName());
+        if (optionalExport.isEmpty()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        var export = optionalExport.get();
+        if (export.status() != AdminExport.Status.READY) {
+            response.setStatus(HttpStatus.CONFLICT.value());
+            return;
+        }
+        response.setContentType(export.contentType());
+        response.setContentLengthLong(export.contentSize());
+        response.setHeader("Content-Disposition", "attachment; filename=" + export.fileName());
+        ExportUtils.markAsNoIndex(response);
+        try (var out = response.getOutputStream()) {
+            adminExportManager.writeContent(export, out);
+        }
     }
 
     @GetMapping("/reservations")
@@ -56,86 +77,25 @@ public class ExportApiController {
                                   @RequestParam(name = "to") String to,
                                   HttpServletResponse response,
                                   Principal principal) throws IOException {
-        var allEvents = exportManager.reservationsForInterval(LocalDate.parse(requireNonNull(from)),
-            LocalDate.parse(requireNonNull(to)), requireNonNull(principal));
-        if (allEvents.isEmpty()) {
+        var data = exportManager.reservationsExport(LocalDate.parse(requireNonNull(from)),
+            LocalDate.parse(requireNonNull(to)), requireNonNull(principal).getName());
+        if (data.sheets().isEmpty()) {
             response.setContentType("text/plain");
             response.setStatus(HttpStatus.PRECONDITION_REQUIRED.value());
             response.getWriter().write("No reservations found for the selected period");
         } else {
-            exportExcel("all-reservations.xlsx", response, workbook -> writeSheets(allEvents, workbook));
+            ExportUtils.exportExcel(data, response);
         }
     }
 
-    private static void writeSheets(List<ReservationsByEvent> allEvents, StreamingWorkbook workbook) {
-        var header = new String[] {
-            "Event Name",
-            "Reservation ID",
-            "Confirmation Date",
-            "Billed to",
-            "Tax ID",
-            "Tax Code",
-            "Invoice #",
-            "Amount",
-            "Tax",
-            "Currency",
-            "Payment Type",
-            "Ticket ID",
-            "Ticket Type",
-            "Ticket Amount",
-            "Ticket Tax",
-            "Attendee",
-            "Status"
-        };
-        var headerStyle = workbook.defineStyle().font().bold(true).build();
-        allEvents.stream().sorted(Comparator.comparing(ReservationsByEvent::getEventShortName))
-            .forEach(e -> addSheet(workbook, header, headerStyle, e));
-    }
-
-    private static void addSheet(StreamingWorkbook workbook, String[] header, Style headerStyle, ReservationsByEvent eventWithReservations) {
-        var rowData = eventWithReservations.getReservations().stream()
-                .sorted(Comparator.comparing(ReservationInfo::getConfirmationTimestamp))
-                .flatMap(r -> ticketRows(eventWithReservations, r));
-        addSheetToWorkbook(eventWithReservations.getEventShortName(), header, rowData, workbook, headerStyle);
-    }
-
-    private static Stream<String[]> ticketRows(ReservationsByEvent eventWithReservations, ReservationInfo r) {
-        return r.getTickets().stream()
-            .map(t -> buildTicketRow(eventWithReservations, r, t));
-    }
-
-    private static String[] buildTicketRow(ReservationsByEvent eventWithReservations,
-                                           ReservationInfo r,
-                                           TicketInfo t) {
-        return new String[]{
-            eventWithReservations.getDisplayName(),
-            r.getId(),
-            r.getConfirmationTimestamp(),
-            billingCompanyOrFullName(r),
-            r.getTaxId(),
-            r.getTaxCode(),
-            r.getInvoiceNumber(),
-            formatAmount(r.getSrcPriceCts(), r.getCurrency()),
-            formatAmount(r.getTaxCts(), r.getCurrency()),
-            r.getCurrency(),
-            r.getPaymentType().name(),
-            t.getId(),
-            t.getType(),
-            formatAmount(t.getSrcPriceCts(), r.getCurrency()),
-            formatAmount(t.getTaxCts(), r.getCurrency()),
-            (requireNonNullElse(t.getFirstName(), "") + " " + requireNonNullElse(t.getLastName(), "")).trim(),
-            t.getStatus()
-        };
-    }
-
-    private static String billingCompanyOrFullName(ReservationInfo r) {
-        return requireNonNullElseGet(r.getCompanyName(), () -> r.getFirstName() + " " + r.getLastName());
-    }
-
-    private static String formatAmount(Integer originalCts, String currency) {
-        if (originalCts == null) {
-            return "";
+    @PostMapping("/reservations/async")
+    public ResponseEntity<AdminExport> requestReservationsExport(@RequestParam(name = "from") String from,
+                                                                 @RequestParam(name = "to") String to,
+                                                                 Principal principal) {
+        if (LocalDate.parse(requireNonNull(from)).isAfter(LocalDate.parse(requireNonNull(to)))) {
+            return ResponseEntity.badRequest().build();
         }
-        return MonetaryUtil.formatCents(originalCts, currency);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(adminExportManager.requestExport(AdminExport.Type.RESERVATIONS, null, "excel", Map.of("from", List.of(from), "to", List.of(to)), principal.getName()));
     }
 }
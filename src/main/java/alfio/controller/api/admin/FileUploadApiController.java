@@ -17,6 +17,7 @@
 package alfio.controller.api.admin;
 
 import alfio.manager.FileUploadManager;
+import alfio.model.BlobCacheStatistics;
 import alfio.model.modification.UploadBase64FileModification;
 
 import org.slf4j.Logger;
@@ -44,4 +45,9 @@ public class FileUploadApiController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @GetMapping("/system/blob-cache/statistics")
+    public BlobCacheStatistics getBlobCacheStatistics() {
+        return fileUploadManager.getCacheStatistics();
+    }
 }
@@ -16,6 +16,7 @@
  */
 package alfio.controller.api.admin;
 
+import alfio.controller.support.FileResponseWriter;
 import alfio.controller.support.TemplateProcessor;
 import alfio.manager.*;
 import alfio.manager.i18n.MessageSourceManager;
@@ -31,6 +32,7 @@ import alfio.util.LocaleUtil;
 import alfio.util.TemplateManager;
 import alfio.util.TemplateResource;
 import com.samskivert.mustache.MustacheException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
@@ -293,48 +295,36 @@ public class ResourceController {
 
     //------------------
     @GetMapping("/resource/{name:.*}")
-    public void outputContent(@PathVariable String name, Principal principal, HttpServletResponse response) throws IOException {
+    public void outputContent(@PathVariable String name, Principal principal, HttpServletRequest request, HttpServletResponse response) throws IOException {
         checkAccess(principal);
         if (!uploadedResourceManager.hasResource(name)) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
         UploadedResource metadata = uploadedResourceManager.get(name);
-        try (OutputStream os = response.getOutputStream()) {
-            response.setContentType(metadata.getContentType());
-            response.setContentLength(metadata.getContentSize());
-            uploadedResourceManager.outputResource(name, os);
-        }
+        FileResponseWriter.write(uploadedResourceManager.getFile(metadata), metadata.getContentType(), request, response);
     }
 
     @GetMapping("/resource-organization/{organizationId}/{name:.*}")
-    public void outputContent(@PathVariable int organizationId, @PathVariable String name, Principal principal, HttpServletResponse response) throws IOException {
+    public void outputContent(@PathVariable int organizationId, @PathVariable String name, Principal principal, HttpServletRequest request, HttpServletResponse response) throws IOException {
         checkAccess(organizationId, principal);
         if (!uploadedResourceManager.hasResource(organizationId, name)) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
         UploadedResource metadata = uploadedResourceManager.get(organizationId, name);
-        try (OutputStream os = response.getOutputStream()) {
-            response.setContentType(metadata.getContentType());
-            response.setContentLength(metadata.getContentSize());
-            uploadedResourceManager.outputResource(organizationId, name, os);
-        }
+        FileResponseWriter.write(uploadedResourceManager.getFile(metadata), metadata.getContentType(), request, response);
     }
 
     @GetMapping("/resource-event/{organizationId}/{eventId}/{name:.*}")
-    public void outputContent(@PathVariable int organizationId, @PathVariable int eventId, @PathVariable String name, Principal principal, HttpServletResponse response) throws IOException {
+    public void outputContent(@PathVariable int organizationId, @PathVariable int eventId, @PathVariable String name, Principal principal, HttpServletRequest request, HttpServletResponse response) throws IOException {
         checkAccess(organizationId, eventId, principal);
         if (!uploadedResourceManager.hasResource(organizationId, eventId, name)) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
         UploadedResource metadata = uploadedResourceManager.get(organizationId, eventId, name);
-        try (OutputStream os = response.getOutputStream()) {
-            response.setContentType(metadata.getContentType());
-            response.setContentLength(metadata.getContentSize());
-            uploadedResourceManager.outputResource(organizationId, eventId, name, os);
-        }
+        FileResponseWriter.write(uploadedResourceManager.getFile(metadata), metadata.getContentType(), request, response);
     }
 
     //------------------
@@ -19,6 +19,7 @@ package alfio.controller.api.admin;
 import alfio.manager.AccessService;
 import alfio.manager.SpecialPriceManager;
 import alfio.model.SpecialPrice;
+import alfio.model.SpecialPriceGenerationStatus;
 import alfio.model.modification.SendCodeModification;
 import alfio.model.modification.UploadBase64FileModification;
 import com.fasterxml.jackson.databind.MappingIterator;
@@ -106,6 +107,13 @@ public class SpecialPriceApiController {
         return specialPriceManager.loadSentCodes(eventName, categoryId, principal.getName());
     }
 
+    @GetMapping("/events/{eventName}/categories/{categoryId}/code-generation-status")
+    public SpecialPriceGenerationStatus getCodeGenerationStatus(@PathVariable String eventName,
+                                                                @PathVariable int categoryId,
+                                                                Principal principal) {
+        return specialPriceManager.getCodeGenerationStatus(eventName, categoryId, principal.getName());
+    }
+
     @DeleteMapping("/events/{eventName}/categories/{categoryId}/codes/{codeId}/recipient")
     public boolean clearRecipientData(@PathVariable String eventName,
                                       @PathVariable int categoryId,
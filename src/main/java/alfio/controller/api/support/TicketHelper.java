@@ -31,6 +31,8 @@ import alfio.repository.TicketRepository;
 import alfio.repository.user.OrganizationRepository;
 import alfio.util.*;
 import alfio.util.Validator.AdvancedTicketAssignmentValidator;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.AllArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Strings;
@@ -54,6 +56,10 @@ import static java.util.Objects.requireNonNullElse;
 @AllArgsConstructor
 public class TicketHelper {
 
+    // the list of countries depends only on the JDK, therefore it can be computed once for each locale
+    private static final Cache<Pair<Locale, Boolean>, List<LocalizedCountry>> SORTED_COUNTRIES = Caffeine.newBuilder()
+        .maximumSize(200)
+        .build();
     private static final Set<TicketReservation.TicketReservationStatus> PENDING_RESERVATION_STATUSES = EnumSet.of(TicketReservation.TicketReservationStatus.PENDING, TicketReservation.TicketReservationStatus.OFFLINE_PAYMENT);
 
     private final TicketReservationManager ticketReservationManager;
@@ -220,11 +226,11 @@ public class TicketHelper {
     }
 
     public static List<LocalizedCountry> getSortedLocalizedCountries(Locale locale) {
-        return sortCountries(getLocalizedCountries(locale).stream());
+        return SORTED_COUNTRIES.get(Pair.of(locale, false), k -> sortCountries(getLocalizedCountries(locale).stream()));
     }
 
     public static List<LocalizedCountry> getSortedLocalizedVatCountries(Locale locale) {
-        return sortCountries(getLocalizedCountriesForVat(locale).stream());
+        return SORTED_COUNTRIES.get(Pair.of(locale, true), k -> sortCountries(getLocalizedCountriesForVat(locale).stream()));
     }
 
     private static List<LocalizedCountry> sortCountries(Stream<Pair<String, String>> countries) {
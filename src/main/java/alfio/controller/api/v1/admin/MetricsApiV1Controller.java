@@ -0,0 +1,53 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.controller.api.v1.admin;
+
+import alfio.manager.AccessService;
+import alfio.manager.system.MetricsRegistry;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/api/v1/admin/system/metrics")
+public class MetricsApiV1Controller {
+
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8");
+    private final MetricsRegistry metricsRegistry;
+    private final AccessService accessService;
+
+    public MetricsApiV1Controller(MetricsRegistry metricsRegistry, AccessService accessService) {
+        this.metricsRegistry = metricsRegistry;
+        this.accessService = accessService;
+    }
+
+    /**
+     * Metrics in Prometheus text format. Requires the system API key and {@code alfio.metrics.enabled=true}
+     */
+    @GetMapping
+    public ResponseEntity<String> scrape(Principal principal) {
+        accessService.ensureSystemApiKey(principal);
+        if(!metricsRegistry.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(PROMETHEUS_TEXT).body(metricsRegistry.scrape());
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.controller.api.v1.admin;
+
+import alfio.manager.AccessService;
+import alfio.manager.system.ScheduledJobCoordinator;
+import alfio.model.system.ScheduledJobLease;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/admin/system/jobs")
+public class ScheduledJobsApiV1Controller {
+
+    private final ScheduledJobCoordinator scheduledJobCoordinator;
+    private final AccessService accessService;
+
+    public ScheduledJobsApiV1Controller(ScheduledJobCoordinator scheduledJobCoordinator, AccessService accessService) {
+        this.scheduledJobCoordinator = scheduledJobCoordinator;
+        this.accessService = accessService;
+    }
+
+    /**
+     * Which node owns each scheduled job. Requires the system API key
+     */
+    @GetMapping("/leases")
+    public ScheduledJobLeases getLeases(Principal principal) {
+        accessService.ensureSystemApiKey(principal);
+        return new ScheduledJobLeases(scheduledJobCoordinator.getNodeId(), scheduledJobCoordinator.getLeases());
+    }
+
+    public record ScheduledJobLeases(String currentNode, List<ScheduledJobLease> leases) {
+    }
+}
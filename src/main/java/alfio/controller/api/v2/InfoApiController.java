@@ -16,6 +16,7 @@
  */
 package alfio.controller.api.v2;
 
+import alfio.config.support.AnonymousSessionPolicy;
 import alfio.controller.api.v2.model.AlfioInfo;
 import alfio.manager.system.ConfigurationManager;
 import lombok.AllArgsConstructor;
@@ -23,7 +24,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/api/v2/")
@@ -31,9 +32,10 @@ import jakarta.servlet.http.HttpSession;
 public class InfoApiController {
 
     private final ConfigurationManager configurationManager;
+    private final AnonymousSessionPolicy anonymousSessionPolicy;
 
     @GetMapping("info")
-    public AlfioInfo getInfo(HttpSession session) {
-        return configurationManager.getInfo(session);
+    public AlfioInfo getInfo(HttpServletRequest request) {
+        return configurationManager.getInfo(anonymousSessionPolicy.getSession(request));
     }
 }
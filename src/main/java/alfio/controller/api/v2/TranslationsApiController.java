@@ -23,22 +23,35 @@ import alfio.manager.i18n.I18nManager;
 import alfio.manager.i18n.MessageSourceManager;
 import alfio.manager.system.ConfigurationManager;
 import alfio.model.system.ConfigurationKeys;
+import alfio.util.Json;
 import alfio.util.LocaleUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.text.Collator;
+import java.time.Duration;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v2/")
 public class TranslationsApiController {
 
+    // the list of countries can change only with a new deployment (JDK upgrade)
+    private static final CacheControl COUNTRIES_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+
     private final MessageSourceManager messageSourceManager;
     private final ConfigurationManager configurationManager;
     private final I18nManager i18nManager;
+    private final Cache<Pair<String, String>, Payload> countriesCache = Caffeine.newBuilder()
+        .maximumSize(200)
+        .build();
 
     public TranslationsApiController(MessageSourceManager messageSourceManager, ConfigurationManager configurationManager, I18nManager i18nManager) {
         this.messageSourceManager = messageSourceManager;
@@ -47,32 +60,49 @@ public class TranslationsApiController {
     }
 
     @GetMapping("/public/i18n/bundle/{lang}")
-    public Map<String, String> getPublicTranslations(@PathVariable String lang,
-                                                     @RequestParam(value = "withSystemOverride", defaultValue = "true", required = false) boolean withSystemOverride) {
-        return messageSourceManager.getBundleAsMap("alfio.i18n.public", withSystemOverride, lang, MessageSourceManager.PUBLIC_FRONTEND);
+    public ResponseEntity<String> getPublicTranslations(@PathVariable String lang,
+                                                        @RequestParam(value = "withSystemOverride", defaultValue = "true", required = false) boolean withSystemOverride) {
+        var bundle = messageSourceManager.getBundle("alfio.i18n.public", withSystemOverride, lang, MessageSourceManager.PUBLIC_FRONTEND);
+        return toResponse(bundle.json(), bundle.hash(), CacheControl.noCache());
     }
 
     @GetMapping("/admin/i18n/bundle/{lang}")
-    public Map<String, String> getAdminTranslations(@PathVariable String lang,
-                                                    @RequestParam(value = "withSystemOverride", defaultValue = "true", required = false) boolean withSystemOverride) {
-        return messageSourceManager.getBundleAsMap("alfio.i18n.public", withSystemOverride, lang, MessageSourceManager.ADMIN_FRONTEND);
+    public ResponseEntity<String> getAdminTranslations(@PathVariable String lang,
+                                                       @RequestParam(value = "withSystemOverride", defaultValue = "true", required = false) boolean withSystemOverride) {
+        var bundle = messageSourceManager.getBundle("alfio.i18n.public", withSystemOverride, lang, MessageSourceManager.ADMIN_FRONTEND);
+        return toResponse(bundle.json(), bundle.hash(), CacheControl.noCache());
     }
 
     @GetMapping("/public/i18n/countries/{lang}")
-    public List<LocalizedCountry> getCountries(@PathVariable String lang) {
-        return TicketHelper.getSortedLocalizedCountries(LocaleUtil.forLanguageTag(lang));
+    public ResponseEntity<String> getCountries(@PathVariable String lang) {
+        var payload = countriesCache.get(Pair.of("countries", lang),
+            k -> Payload.of(TicketHelper.getSortedLocalizedCountries(LocaleUtil.forLanguageTag(lang))));
+        return toResponse(payload.json(), payload.hash(), COUNTRIES_CACHE_CONTROL);
     }
 
     @GetMapping("/public/i18n/countries-vat/{lang}")
-    public List<LocalizedCountry> getCountriesForVat(@PathVariable String lang) {
-        return TicketHelper.getSortedLocalizedVatCountries(LocaleUtil.forLanguageTag(lang));
+    public ResponseEntity<String> getCountriesForVat(@PathVariable String lang) {
+        var payload = countriesCache.get(Pair.of("countries-vat", lang),
+            k -> Payload.of(TicketHelper.getSortedLocalizedVatCountries(LocaleUtil.forLanguageTag(lang))));
+        return toResponse(payload.json(), payload.hash(), COUNTRIES_CACHE_CONTROL);
     }
 
     @GetMapping("/public/i18n/eu-countries-vat/{lang}")
-    public List<LocalizedCountry> getEuCountriesForVat(@PathVariable String lang) {
-        var countries = TicketHelper.getLocalizedEUCountriesForVat(LocaleUtil.forLanguageTag(lang),
-            configurationManager.getForSystem(ConfigurationKeys.EU_COUNTRIES_LIST).getRequiredValue());
-        return fromPair(countries);
+    public ResponseEntity<String> getEuCountriesForVat(@PathVariable String lang) {
+        var euCountries = configurationManager.getForSystem(ConfigurationKeys.EU_COUNTRIES_LIST).getRequiredValue();
+        // the list is configurable, so we include it in the key
+        var payload = countriesCache.get(Pair.of("eu-countries-vat/" + euCountries, lang),
+            k -> Payload.of(fromPair(TicketHelper.getLocalizedEUCountriesForVat(LocaleUtil.forLanguageTag(lang), euCountries))));
+        return toResponse(payload.json(), payload.hash(), CacheControl.noCache());
+    }
+
+    private static ResponseEntity<String> toResponse(String json, String hash, CacheControl cacheControl) {
+        // If-None-Match is evaluated by Spring MVC: if the ETag matches, a 304 is returned without writing the body
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(hash)
+            .cacheControl(cacheControl)
+            .body(json);
     }
 
     private static List<LocalizedCountry> fromPair(List<Pair<String, String>> countries) {
@@ -89,4 +119,11 @@ public class TranslationsApiController {
             .map(cl -> new Language(cl.locale().getLanguage(), cl.getDisplayLanguage()))
             .toList();
     }
+
+    private record Payload(String json, String hash) {
+        private static Payload of(Object content) {
+            var json = Json.toJson(content);
+            return new Payload(json, DigestUtils.sha256Hex(json));
+        }
+    }
 }
@@ -40,9 +40,15 @@ public class AnalyticsConfiguration {
     public static AnalyticsConfiguration build(Map<ConfigurationKeys, ConfigurationManager.MaybeConfiguration> conf, HttpSession session) {
         var googAnalyticsKey = StringUtils.trimToNull(conf.get(GOOGLE_ANALYTICS_KEY).getValueOrNull());
         var googAnalyticsScrambled = conf.get(GOOGLE_ANALYTICS_ANONYMOUS_MODE).getValueAsBooleanOrDefault();
+        return new AnalyticsConfiguration(googAnalyticsKey, googAnalyticsScrambled, null).forSession(session);
+    }
 
-        var sessionId = session.getId();
-        var clientId = googAnalyticsKey != null && googAnalyticsScrambled && sessionId != null ? DigestUtils.sha256Hex(sessionId) : null;
-        return new AnalyticsConfiguration(googAnalyticsKey, googAnalyticsScrambled, clientId);
+    /**
+     * @param session the current session, or {@code null} if anonymous visitors don't have a session
+     */
+    public AnalyticsConfiguration forSession(HttpSession session) {
+        var sessionId = session != null ? session.getId() : null;
+        var sessionClientId = googleAnalyticsKey != null && googleAnalyticsScrambledInfo && sessionId != null ? DigestUtils.sha256Hex(sessionId) : null;
+        return new AnalyticsConfiguration(googleAnalyticsKey, googleAnalyticsScrambledInfo, sessionClientId);
     }
 }
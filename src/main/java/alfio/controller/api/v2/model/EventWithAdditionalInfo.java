@@ -250,6 +250,17 @@ public class EventWithAdditionalInfo implements DateValidity, ApiPurchaseContext
         return embeddingConfiguration;
     }
 
+    /**
+     * Returns a copy of this object, bound to the information which cannot be shared between requests.
+     */
+    public EventWithAdditionalInfo withRequestData(AnalyticsConfiguration analyticsConfiguration, Integer availableTicketsCount) {
+        return new EventWithAdditionalInfo(event, mapUrl, organization, description, bankAccount, bankAccountOwner,
+            formattedBeginDate, formattedBeginTime, formattedEndDate, formattedEndTime,
+            invoicingConfiguration, captchaConfiguration, assignmentConfiguration, promotionsConfiguration,
+            analyticsConfiguration, offlinePaymentConfiguration, embeddingConfiguration, i18nOverride,
+            availableTicketsCount, customCss, canApplySubscriptions);
+    }
+
     @AllArgsConstructor
     @Getter
     public static class CaptchaConfiguration {
@@ -16,6 +16,7 @@
  */
 package alfio.controller.api.v2.user;
 
+import alfio.config.support.AnonymousSessionPolicy;
 import alfio.controller.api.v2.model.EventWithAdditionalInfo;
 import alfio.controller.api.v2.model.*;
 import alfio.controller.api.v2.user.support.EventLoader;
@@ -39,7 +40,6 @@ import alfio.repository.TicketRepository;
 import alfio.util.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.tuple.Pair;
@@ -82,6 +82,7 @@ public class EventApiV2Controller {
     private final EventLoader eventLoader;
     private final ExtensionManager extensionManager;
     private final AdditionalServiceManager additionalServiceManager;
+    private final AnonymousSessionPolicy anonymousSessionPolicy;
 
     public EventApiV2Controller(EventManager eventManager,
                                 EventRepository eventRepository,
@@ -98,7 +99,8 @@ public class EventApiV2Controller {
                                 PromoCodeRequestManager promoCodeRequestManager,
                                 EventLoader eventLoader,
                                 ExtensionManager extensionManager,
-                                AdditionalServiceManager additionalServiceManager) {
+                                AdditionalServiceManager additionalServiceManager,
+                                AnonymousSessionPolicy anonymousSessionPolicy) {
         this.eventManager = eventManager;
         this.eventRepository = eventRepository;
         this.configurationManager = configurationManager;
@@ -115,6 +117,7 @@ public class EventApiV2Controller {
         this.eventLoader = eventLoader;
         this.extensionManager = extensionManager;
         this.additionalServiceManager = additionalServiceManager;
+        this.anonymousSessionPolicy = anonymousSessionPolicy;
     }
 
 
@@ -138,8 +141,8 @@ public class EventApiV2Controller {
     }
 
     @GetMapping("event/{eventName}")
-    public ResponseEntity<EventWithAdditionalInfo> getEvent(@PathVariable String eventName, HttpSession session) {
-        return eventLoader.loadEventInfo(eventName, session).map(eventWithAdditionalInfo -> new ResponseEntity<>(eventWithAdditionalInfo, getCorsHeaders(), HttpStatus.OK))
+    public ResponseEntity<EventWithAdditionalInfo> getEvent(@PathVariable String eventName, HttpServletRequest request) {
+        return eventLoader.loadEventInfo(eventName, anonymousSessionPolicy.getSession(request)).map(eventWithAdditionalInfo -> new ResponseEntity<>(eventWithAdditionalInfo, getCorsHeaders(), HttpStatus.OK))
             .orElseGet(() -> ResponseEntity.notFound().headers(getCorsHeaders()).build());
     }
 
@@ -16,6 +16,7 @@
  */
 package alfio.controller.api.v2.user;
 
+import alfio.config.support.AnonymousSessionPolicy;
 import alfio.controller.api.support.CurrencyDescriptor;
 import alfio.controller.api.v2.model.*;
 import alfio.controller.api.v2.user.support.PurchaseContextInfoBuilder;
@@ -33,7 +34,7 @@ import alfio.repository.user.OrganizationRepository;
 import alfio.util.ClockProvider;
 import alfio.util.MonetaryUtil;
 import alfio.util.ReservationUtil;
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import org.joda.money.CurrencyUnit;
 import org.springframework.context.MessageSource;
@@ -64,6 +65,7 @@ public class SubscriptionsApiController {
     private final OrganizationRepository organizationRepository;
     private final MessageSourceManager messageSourceManager;
     private final ClockProvider clockProvider;
+    private final AnonymousSessionPolicy anonymousSessionPolicy;
 
 
     @GetMapping("subscriptions")
@@ -108,13 +110,13 @@ public class SubscriptionsApiController {
     }
 
     @GetMapping("subscription/{id}")
-    public ResponseEntity<SubscriptionDescriptorWithAdditionalInfo> getSubscriptionInfo(@PathVariable String id, HttpSession session) {
+    public ResponseEntity<SubscriptionDescriptorWithAdditionalInfo> getSubscriptionInfo(@PathVariable String id, HttpServletRequest request) {
         var res = subscriptionManager.getSubscriptionById(UUID.fromString(id));
         return res
             .map(s -> {
                 var configurationsValues = PurchaseContextInfoBuilder.configurationsValues(s, configurationManager);
                 var invoicingInfo = PurchaseContextInfoBuilder.invoicingInfo(configurationManager, configurationsValues);
-                var analyticsConf = AnalyticsConfiguration.build(configurationsValues, session);
+                var analyticsConf = AnalyticsConfiguration.build(configurationsValues, anonymousSessionPolicy.getSession(request));
                 var captchaConf = PurchaseContextInfoBuilder.captchaConfiguration(configurationManager, configurationsValues);
                 var bankAccount = configurationsValues.get(BANK_ACCOUNT_NR).getValueOrDefault("");
                 var bankAccountOwner = Arrays.asList(configurationsValues.get(BANK_ACCOUNT_OWNER).getValueOrDefault("").split("\n"));
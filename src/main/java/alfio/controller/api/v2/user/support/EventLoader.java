@@ -28,10 +28,14 @@ import alfio.model.modification.support.LocationDescriptor;
 import alfio.model.system.ConfigurationKeys;
 import alfio.repository.*;
 import alfio.repository.user.OrganizationRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.AllArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
 import jakarta.servlet.http.HttpSession;
+import java.time.Duration;
 import java.util.*;
 
 import static alfio.model.system.ConfigurationKeys.*;
@@ -49,8 +53,35 @@ public class EventLoader {
     private final TicketRepository ticketRepository;
     private final PromoCodeDiscountRepository promoCodeRepository;
     private final SubscriptionRepository subscriptionRepository;
+    // public event data, without the request-specific parts. Entries are validated against the version stamp
+    // maintained by the database (see event_public_data_version and public_data_system_version), so that changes are picked up by all nodes
+    private final Cache<Integer, EventSnapshot> snapshotCache = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .expireAfterAccess(Duration.ofHours(1))
+        .build();
 
     public Optional<EventWithAdditionalInfo> loadEventInfo(String eventName, HttpSession session) {
+        return eventRepository.findDataVersionByShortName(eventName)
+            .flatMap(dataVersion -> {
+                var snapshot = snapshotCache.getIfPresent(dataVersion.eventId());
+                if (snapshot == null || snapshot.version() != dataVersion.version()) {
+                    var loaded = loadSnapshot(eventName, dataVersion.version());
+                    if (loaded.isEmpty()) {
+                        return Optional.empty();
+                    }
+                    // keep the most recent snapshot, in case of concurrent loading
+                    snapshot = snapshotCache.asMap().merge(dataVersion.eventId(), loaded.get(), (a, b) -> a.version() >= b.version() ? a : b);
+                }
+                var eventInfo = snapshot.eventInfo();
+                Integer availableTicketsCount = null;
+                if (snapshot.displayTicketsLeft()) {
+                    availableTicketsCount = ticketRepository.countFreeTicketsForPublicStatistics(dataVersion.eventId());
+                }
+                return Optional.of(eventInfo.withRequestData(eventInfo.getAnalyticsConfiguration().forSession(session), availableTicketsCount));
+            });
+    }
+
+    private Optional<EventSnapshot> loadSnapshot(String eventName, long version) {
         return eventRepository.findOptionalByShortName(eventName).filter(e -> e.getStatus() != Event.Status.DISABLED)//
             .map(event -> {
                 //
@@ -97,14 +128,14 @@ public class EventLoader {
                 var promoConf = new EventWithAdditionalInfo.PromotionsConfiguration(hasAccessPromotions, usePartnerCode);
                 //
 
-                //analytics configuration
-                var analyticsConf = AnalyticsConfiguration.build(configurationsValues, session);
+                //analytics configuration. The client ID is bound to the session, therefore it is added for each request
+                var analyticsConf = new AnalyticsConfiguration(
+                    StringUtils.trimToNull(configurationsValues.get(GOOGLE_ANALYTICS_KEY).getValueOrNull()),
+                    configurationsValues.get(GOOGLE_ANALYTICS_ANONYMOUS_MODE).getValueAsBooleanOrDefault(),
+                    null);
                 //
 
-                Integer availableTicketsCount = null;
-                if (configurationsValues.get(DISPLAY_TICKETS_LEFT_INDICATOR).getValueAsBooleanOrDefault()) {
-                    availableTicketsCount = ticketRepository.countFreeTicketsForPublicStatistics(event.getId());
-                }
+                boolean displayTicketsLeft = configurationsValues.get(DISPLAY_TICKETS_LEFT_INDICATOR).getValueAsBooleanOrDefault();
 
                 var customCss = configurationsValues.get(EVENT_CUSTOM_CSS).getValueOrNull();
 
@@ -112,17 +143,21 @@ public class EventLoader {
 
                 var offlinePaymentConfiguration = new OfflinePaymentConfiguration(configurationsValues.get(SHOW_ONLY_BASIC_INSTRUCTIONS).getValueAsBooleanOrDefault());
 
-                return new EventWithAdditionalInfo(event, locationDescriptor.mapUrl(), organization, descriptions,
+                var eventInfo = new EventWithAdditionalInfo(event, locationDescriptor.mapUrl(), organization, descriptions,
                     bankAccount, bankAccountOwner,
                     formattedDates.beginDate, formattedDates.beginTime,
                     formattedDates.endDate, formattedDates.endTime,
                     invoicingConf, captchaConf, assignmentConf, promoConf, analyticsConf, offlinePaymentConfiguration,
                     new EmbeddingConfiguration(configurationsValues.get(EMBED_POST_MESSAGE_ORIGIN).getValueOrNull()),
-                    MessageSourceManager.convertPlaceholdersForEachLanguage(i18nOverride), availableTicketsCount, customCss, hasLinkedSubscription);
+                    MessageSourceManager.convertPlaceholdersForEachLanguage(i18nOverride), null, customCss, hasLinkedSubscription);
+                return new EventSnapshot(version, eventInfo, displayTicketsLeft);
             });
     }
 
     public boolean isRecaptchaForTicketSelectionEnabled(Map<ConfigurationKeys, ConfigurationManager.MaybeConfiguration> configurationValues) {
         return PurchaseContextInfoBuilder.isRecaptchaForTicketSelectionEnabled(configurationValues);
     }
+
+    private record EventSnapshot(long version, EventWithAdditionalInfo eventInfo, boolean displayTicketsLeft) {
+    }
 }
@@ -17,6 +17,7 @@
 package alfio.controller.support;
 
 import alfio.config.authentication.support.OpenIdPrincipal;
+import alfio.config.support.AnonymousSessionPolicy;
 import alfio.controller.api.support.TicketHelper;
 import alfio.controller.api.v2.model.Language;
 import alfio.controller.api.v2.user.support.EventLoader;
@@ -41,15 +42,14 @@ import ch.digitalfondue.jfiveparse.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
-import org.apache.commons.collections4.IterableUtils;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.web.csrf.CsrfTokenRepository;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.request.ServletWebRequest;
-import org.springframework.web.util.UriUtils;
 
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -68,6 +68,7 @@ public class DataPreloaderManager {
 
     private final ConfigurationManager configurationManager;
     private final CsrfTokenRepository csrfTokenRepository;
+    private final AnonymousSessionPolicy anonymousSessionPolicy;
     private final EventLoader eventLoader;
     private final CSPConfigurer cspConfigurer;
     private final PurchaseContextManager purchaseContextManager;
@@ -78,9 +79,10 @@ public class DataPreloaderManager {
     private final EventDescriptionRepository eventDescriptionRepository;
     private final Json json;
 
-    public DataPreloaderManager(ConfigurationManager configurationManager, CsrfTokenRepository csrfTokenRepository, EventLoader eventLoader, CSPConfigurer cspConfigurer, PurchaseContextManager purchaseContextManager, EventRepository eventRepository, MessageSourceManager messageSourceManager, OrganizationRepository organizationRepository, FileUploadRepository fileUploadRepository, EventDescriptionRepository eventDescriptionRepository, Json json) {
+    public DataPreloaderManager(ConfigurationManager configurationManager, CsrfTokenRepository csrfTokenRepository, AnonymousSessionPolicy anonymousSessionPolicy, EventLoader eventLoader, CSPConfigurer cspConfigurer, PurchaseContextManager purchaseContextManager, EventRepository eventRepository, MessageSourceManager messageSourceManager, OrganizationRepository organizationRepository, FileUploadRepository fileUploadRepository, EventDescriptionRepository eventDescriptionRepository, Json json) {
         this.configurationManager = configurationManager;
         this.csrfTokenRepository = csrfTokenRepository;
+        this.anonymousSessionPolicy = anonymousSessionPolicy;
         this.eventLoader = eventLoader;
         this.cspConfigurer = cspConfigurer;
         this.purchaseContextManager = purchaseContextManager;
@@ -93,48 +95,48 @@ public class DataPreloaderManager {
     }
 
     @Transactional
-    public Document generateIndexDocument(String eventShortName,
-                                          String subscriptionId,
-                                          String userAgent,
-                                          String lang,
-                                          ServletWebRequest request,
-                                          HttpServletResponse response,
-                                          HttpSession session,
-                                          Authentication authentication,
-                                          Document openGraphPage,
-                                          Document indexPage) {
+    public IndexPageTemplate.Page generateIndexPage(String eventShortName,
+                                                    String subscriptionId,
+                                                    String userAgent,
+                                                    String lang,
+                                                    ServletWebRequest request,
+                                                    HttpServletResponse response,
+                                                    Authentication authentication,
+                                                    Document openGraphPage,
+                                                    IndexPageTemplate indexPage) {
         var nonce = cspConfigurer.addCspHeader(response, detectConfigurationLevel(eventShortName, subscriptionId), true);
         if (eventShortName != null && RequestUtils.isSocialMediaShareUA(userAgent) && eventRepository.existsByShortName(eventShortName)) {
-            return getOpenGraphPage((Document) openGraphPage.cloneNode(true), eventShortName, request, lang);
+            var page = getOpenGraphPage((Document) openGraphPage.cloneNode(true), eventShortName, request, lang);
+            return out -> {
+                var osw = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                JFiveParse.serialize(page, osw);
+                osw.flush();
+            };
         } else {
             var baseCustomCss = configurationManager.getForSystem(BASE_CUSTOM_CSS).getValueOrNull();
-            Document idx = (Document) indexPage.cloneNode(true);
-            if (authentication instanceof OAuth2AuthenticationToken oauth
+            var httpServletRequest = requireNonNull(request.getNativeRequest(HttpServletRequest.class));
+            var session = anonymousSessionPolicy.getSession(httpServletRequest);
+            boolean signedUp = authentication instanceof OAuth2AuthenticationToken oauth
                 && oauth.getPrincipal() instanceof OpenIdPrincipal principal
                 && principal.isSignedUp()
-                && session.isNew()) {
-                Optional.ofNullable(IterableUtils.get(idx.getElementsByTagName("html"), 0))
-                    .ifPresent(html -> html.setAttribute("data-signed-up", "true"));
+                && session != null
+                && session.isNew();
+            var head = new IndexPageTemplate.Head();
+            head.script(json.asJsonString(configurationManager.getInfo(session)), APPLICATION_JSON, "preload-info", null);
+            if (session != null) {
+                head.meta("GID", session.getId());
             }
-            idx.getElementsByTagName("script").forEach(element -> element.setAttribute(NONCE, nonce));
-            var head = idx.getElementsByTagName("head").get(0);
-            head.appendChild(buildScripTag(json.asJsonString(configurationManager.getInfo(session)), APPLICATION_JSON, "preload-info", null));
-            var httpServletRequest = requireNonNull(request.getNativeRequest(HttpServletRequest.class));
-            head.appendChild(buildMetaTag("GID", request.getSessionId()));
             var csrf = csrfTokenRepository.loadToken(httpServletRequest);
             if (csrf == null) {
                 csrf = csrfTokenRepository.generateToken(httpServletRequest);
             }
-            head.appendChild(buildMetaTag("XSRF_TOKEN", csrf.getToken()));
+            head.meta("XSRF_TOKEN", csrf.getToken());
             if (baseCustomCss != null) {
-                var style = new Element("style");
-                style.setAttribute("type", "text/css");
-                style.appendChild(new Text(baseCustomCss));
-                head.appendChild(style);
+                head.style(baseCustomCss);
             }
-            head.appendChild(buildMetaTag("authentication-enabled", Boolean.toString(configurationManager.isPublicOpenIdEnabled())));
-            preloadEventData(eventShortName, request, session, eventLoader, head, messageSourceManager, idx, json, lang);
-            return idx;
+            head.meta("authentication-enabled", Boolean.toString(configurationManager.isPublicOpenIdEnabled()));
+            var pageLang = preloadEventData(eventShortName, request, session, eventLoader, head, messageSourceManager, json, lang);
+            return out -> indexPage.write(out, nonce, pageLang, signedUp, head);
         }
     }
 
@@ -190,10 +192,6 @@ public class DataPreloaderManager {
         return buildMetaTag(PROPERTY, propertyValue, contentValue);
     }
 
-    private static Element buildMetaTag(String name, String content) {
-        return buildMetaTag("name", name, content);
-    }
-
     private static Element buildMetaTag(String property, String propertyValue, String content) {
         var meta = new Element("meta");
         meta.setAttribute(property, propertyValue);
@@ -221,49 +219,40 @@ public class DataPreloaderManager {
         return locale;
     }
 
-    private static Element buildScripTag(String content, String type, String id, String param) {
-        var encodedContent = UriUtils.encodeFragment(content, StandardCharsets.UTF_8);
-        var e = new Element("script");
-        e.appendChild(new Text(encodedContent));
-        e.setAttribute("type", type);
-        e.setAttribute("id", id);
-        if (param != null) {
-            e.setAttribute("data-param", param);
-        }
-        return e;
-    }
-
-    public static void preloadEventData(String eventShortName,
-                                 ServletWebRequest request,
-                                 HttpSession session,
-                                 EventLoader eventLoader,
-                                 Element head,
-                                 MessageSourceManager messageSourceManager,
-                                 Node idx,
-                                 Json json,
-                                 String lang) {
+    /**
+     * Adds the event info, the translations and the countries to the given head.
+     *
+     * @return the language of the page
+     */
+    public static String preloadEventData(String eventShortName,
+                                          ServletWebRequest request,
+                                          HttpSession session,
+                                          EventLoader eventLoader,
+                                          IndexPageTemplate.Head head,
+                                          MessageSourceManager messageSourceManager,
+                                          Json json,
+                                          String lang) {
         String preloadLang = Objects.requireNonNullElse(lang, "en");
         if (eventShortName != null) {
             var eventInfoOptional = eventLoader.loadEventInfo(eventShortName, session);
             if (eventInfoOptional.isPresent()) {
                 var ev = eventInfoOptional.get();
-                head.appendChild(buildScripTag(json.asJsonString(ev), APPLICATION_JSON, "preload-event", eventShortName));
+                head.script(json.asJsonString(ev), APPLICATION_JSON, "preload-event", eventShortName);
                 preloadLang = getMatchingLocale(request, ev.getContentLanguages().stream().map(Language::getLocale).toList(), lang).getLanguage();
                 if (ZonedDateTime.now(ClockProvider.clock()).isAfter(((Event)ev.purchaseContext()).getEnd())) {
                     // event is over.
-                    head.appendChild(buildMetaTag("robots", "noindex"));
+                    head.meta("robots", "noindex");
                 }
             }
         }
-        head.appendChild(buildScripTag(json.asJsonString(messageSourceManager.getBundleAsMap("alfio.i18n.public", true, preloadLang, MessageSourceManager.PUBLIC_FRONTEND)), "application/json", "preload-bundle", preloadLang));
-        head.appendChild(buildScripTag(countriesForVatAsJson(json, preloadLang), "application/json", "preload-vat-countries", preloadLang));
-        head.appendChild(buildScripTag(countriesAsJson(json, preloadLang), "application/json", "preload-countries", preloadLang));
+        head.script(messageSourceManager.getBundle("alfio.i18n.public", true, preloadLang, MessageSourceManager.PUBLIC_FRONTEND).json(), "application/json", "preload-bundle", preloadLang);
+        head.script(countriesForVatAsJson(json, preloadLang), "application/json", "preload-vat-countries", preloadLang);
+        head.script(countriesAsJson(json, preloadLang), "application/json", "preload-countries", preloadLang);
         // add fallback in english
         if (!"en".equals(preloadLang)) {
-            head.appendChild(buildScripTag(json.asJsonString(messageSourceManager.getBundleAsMap("alfio.i18n.public", true, "en", MessageSourceManager.PUBLIC_FRONTEND)), "application/json", "preload-bundle", "en"));
+            head.script(messageSourceManager.getBundle("alfio.i18n.public", true, "en", MessageSourceManager.PUBLIC_FRONTEND).json(), "application/json", "preload-bundle", "en");
         }
-        var htmlElement = IterableUtils.get(idx.getElementsByTagName("html"), 0);
-        htmlElement.setAttribute("lang", preloadLang);
+        return preloadLang;
     }
 
     private static String countriesForVatAsJson(Json json, String preloadLang) {
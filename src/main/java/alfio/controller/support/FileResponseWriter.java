@@ -0,0 +1,174 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.controller.support;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.ClassUtils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * Writes a file to the response, honoring {@code HEAD} and single-range {@code Range} requests.
+ * When running on Jetty, the content is handed over as a memory-mapped buffer, so that it
+ * goes from the page cache to the socket without being copied on the heap. The buffer is handed
+ * to the container's own output stream, bypassing the response wrappers (e.g. the ones added by Spring Security),
+ * and unmapped as soon as it has been written.
+ */
+public final class FileResponseWriter {
+
+    private static final Pattern SINGLE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    private static final Logger log = LoggerFactory.getLogger(FileResponseWriter.class);
+    private static final boolean JETTY_OUTPUT_PRESENT = ClassUtils.isPresent("org.eclipse.jetty.ee10.servlet.HttpOutput", FileResponseWriter.class.getClassLoader());
+    private static final MethodHandle INVOKE_CLEANER = lookupCleaner();
+
+    private FileResponseWriter() {
+    }
+
+    public static void write(File file, String contentType, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = file.length();
+        long start = 0;
+        long end = length - 1;
+        var rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType);
+        if (StringUtils.isNotBlank(rangeHeader)) {
+            var matcher = SINGLE_RANGE.matcher(rangeHeader.trim());
+            // multiple ranges are not supported. In this case we serve the whole content, as allowed by RFC 9110
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                var first = matcher.group(1);
+                var last = matcher.group(2);
+                if (first.isEmpty()) {
+                    // suffix range: last N bytes
+                    start = Math.max(0, length - parseLong(last));
+                } else {
+                    start = parseLong(first);
+                    end = last.isEmpty() ? end : Math.min(end, parseLong(last));
+                }
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || count <= 0) {
+            return;
+        }
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (JETTY_OUTPUT_PRESENT && count <= Integer.MAX_VALUE && JettyOutput.sendContent(response, channel, start, count)) {
+                return;
+            }
+            var target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new EOFException("unexpected end of file " + file);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    private static long parseLong(String value) {
+        // values too big to be parsed are anyway outside the file
+        return value.length() > 18 ? Long.MAX_VALUE : Long.parseLong(value);
+    }
+
+    /**
+     * Returns the output stream of the container, skipping the response wrappers
+     */
+    static ServletOutputStream containerOutputStream(ServletResponse response) throws IOException {
+        var current = response;
+        while (current instanceof ServletResponseWrapper wrapper) {
+            current = wrapper.getResponse();
+        }
+        return current.getOutputStream();
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            log.warn("cannot release mapped buffer", e);
+        }
+    }
+
+    private static MethodHandle lookupCleaner() {
+        try {
+            var unsafeClass = Class.forName("sun.misc.Unsafe");
+            var field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.info("mapped buffers will be released by the garbage collector", e);
+            return null;
+        }
+    }
+
+    /**
+     * isolated in order to avoid loading Jetty classes when running in a different container
+     */
+    private static final class JettyOutput {
+        private static boolean sendContent(HttpServletResponse response, FileChannel channel, long start, long count) throws IOException {
+            if (containerOutputStream(response) instanceof org.eclipse.jetty.ee10.servlet.HttpOutput httpOutput) {
+                // commit the response through the wrappers, so that they can still add their headers
+                response.flushBuffer();
+                var buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, count);
+                try {
+                    // blocking: returns once the whole buffer has been written
+                    httpOutput.sendContent(buffer);
+                } finally {
+                    unmap(buffer);
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -20,10 +20,14 @@ import alfio.model.ContentLanguage;
 import alfio.model.Event;
 import alfio.model.LocalizedContent;
 import alfio.util.MustacheCustomTag;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -33,6 +37,13 @@ public class Formatters {
 
     public static final String LINK_NEW_TAB_KEY = "link.new-tab";
     private static final Logger log = LoggerFactory.getLogger(Formatters.class);
+    // max ~16MB of rendered HTML (1 char = 2 bytes)
+    private static final long RENDERED_MARKDOWN_CACHE_MAX_CHARS = 8L * 1024 * 1024;
+    private static final Cache<RenderedMarkdownKey, String> RENDERED_MARKDOWN_CACHE = Caffeine.newBuilder()
+        .maximumWeight(RENDERED_MARKDOWN_CACHE_MAX_CHARS)
+        .weigher((RenderedMarkdownKey key, String value) -> value.length())
+        .expireAfterAccess(Duration.ofHours(1L))
+        .build();
 
     private Formatters() {
     }
@@ -91,8 +102,23 @@ public class Formatters {
         var res = new HashMap<String, String>();
         in.forEach((k, v) -> {
             var targetBlankMessage = messageSource != null ? messageSource.getMessage(LINK_NEW_TAB_KEY, null, Locale.forLanguageTag(k)) : null;
-            res.put(k, MustacheCustomTag.renderToHtmlCommonmarkEscaped(v, targetBlankMessage));
+            res.put(k, renderCommonMark(v, targetBlankMessage));
         });
         return res;
     }
+
+    /**
+     * Descriptions change only when edited by an admin, so the rendered HTML is cached by content hash
+     * and by "new tab" label (which depends on the locale).
+     */
+    private static String renderCommonMark(String content, String targetBlankMessage) {
+        if (content == null) {
+            return MustacheCustomTag.renderToHtmlCommonmarkEscaped(null, targetBlankMessage);
+        }
+        var key = new RenderedMarkdownKey(DigestUtils.sha256Hex(content), targetBlankMessage);
+        return RENDERED_MARKDOWN_CACHE.get(key, k -> MustacheCustomTag.renderToHtmlCommonmarkEscaped(content, targetBlankMessage));
+    }
+
+    private record RenderedMarkdownKey(String contentHash, String targetBlankMessage) {
+    }
 }
@@ -0,0 +1,159 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.controller.support;
+
+import ch.digitalfondue.jfiveparse.Comment;
+import ch.digitalfondue.jfiveparse.Document;
+import ch.digitalfondue.jfiveparse.JFiveParse;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static alfio.controller.Constants.CONTENT;
+import static alfio.controller.Constants.NONCE;
+
+/**
+ * Index page of the public frontend, pre-serialized into static byte segments.
+ * The dynamic parts (CSP nonce, attributes of the html element and the additional head elements)
+ * are written between the segments, so that there's no need to clone and serialize the whole DOM for each request.
+ */
+public final class IndexPageTemplate {
+
+    private static final String NONCE_PLACEHOLDER = "alfio-nonce-placeholder";
+    private static final String HTML_ATTRIBUTES_PLACEHOLDER = "data-alfio-html-attributes";
+    private static final String HEAD_PLACEHOLDER = "alfio-head-placeholder";
+    private static final Pattern PLACEHOLDERS = Pattern.compile(Pattern.quote(NONCE_PLACEHOLDER)
+        + "|" + Pattern.quote(" " + HTML_ATTRIBUTES_PLACEHOLDER + "=\"\"")
+        + "|" + Pattern.quote("<!--" + HEAD_PLACEHOLDER + "-->"));
+
+    private enum Placeholder { NONCE, HTML_ATTRIBUTES, HEAD }
+
+    private final List<byte[]> segments;
+    private final List<Placeholder> placeholders;
+
+    private IndexPageTemplate(List<byte[]> segments, List<Placeholder> placeholders) {
+        this.segments = segments;
+        this.placeholders = placeholders;
+    }
+
+    public static IndexPageTemplate compile(Document source) {
+        var document = (Document) source.cloneNode(true);
+        document.getElementsByTagName("script").forEach(element -> element.setAttribute(NONCE, NONCE_PLACEHOLDER));
+        var html = document.getElementsByTagName("html").get(0);
+        html.removeAttribute("lang");
+        html.setAttribute(HTML_ATTRIBUTES_PLACEHOLDER, "");
+        document.getElementsByTagName("head").get(0).appendChild(new Comment(HEAD_PLACEHOLDER));
+
+        var serialized = JFiveParse.serialize(document);
+        var matcher = PLACEHOLDERS.matcher(serialized);
+        var segments = new ArrayList<byte[]>();
+        var placeholders = new ArrayList<Placeholder>();
+        int start = 0;
+        while (matcher.find()) {
+            segments.add(serialized.substring(start, matcher.start()).getBytes(StandardCharsets.UTF_8));
+            var match = matcher.group();
+            if (match.equals(NONCE_PLACEHOLDER)) {
+                placeholders.add(Placeholder.NONCE);
+            } else if (match.contains(HTML_ATTRIBUTES_PLACEHOLDER)) {
+                placeholders.add(Placeholder.HTML_ATTRIBUTES);
+            } else {
+                placeholders.add(Placeholder.HEAD);
+            }
+            start = matcher.end();
+        }
+        segments.add(serialized.substring(start).getBytes(StandardCharsets.UTF_8));
+        return new IndexPageTemplate(List.copyOf(segments), List.copyOf(placeholders));
+    }
+
+    public void write(OutputStream out, String nonce, String lang, boolean signedUp, Head head) throws IOException {
+        var nonceBytes = escapeAttribute(nonce).getBytes(StandardCharsets.UTF_8);
+        var htmlAttributes = " lang=\"" + escapeAttribute(lang) + "\"" + (signedUp ? " data-signed-up=\"true\"" : "");
+        var htmlAttributesBytes = htmlAttributes.getBytes(StandardCharsets.UTF_8);
+        var headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < placeholders.size(); i++) {
+            out.write(segments.get(i));
+            switch (placeholders.get(i)) {
+                case NONCE -> out.write(nonceBytes);
+                case HTML_ATTRIBUTES -> out.write(htmlAttributesBytes);
+                case HEAD -> out.write(headBytes);
+            }
+        }
+        out.write(segments.get(segments.size() - 1));
+    }
+
+    // same escaping rules applied by JFiveParse while serializing attributes
+    private static String escapeAttribute(String value) {
+        var sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> sb.append("&amp;");
+                case '"' -> sb.append("&quot;");
+                case '\u00A0' -> sb.append("&nbsp;");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    @FunctionalInterface
+    public interface Page {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Elements to be added at the end of the head
+     */
+    public static final class Head {
+        private final StringBuilder content = new StringBuilder();
+
+        public Head script(String content, String type, String id, String param) {
+            this.content.append("<script type=\"").append(escapeAttribute(type))
+                .append("\" id=\"").append(escapeAttribute(id)).append('"');
+            if (param != null) {
+                this.content.append(" data-param=\"").append(escapeAttribute(param)).append('"');
+            }
+            this.content.append('>').append(UriUtils.encodeFragment(content, StandardCharsets.UTF_8)).append("</script>");
+            return this;
+        }
+
+        public Head meta(String name, String content) {
+            return meta("name", name, content);
+        }
+
+        public Head meta(String property, String propertyValue, String content) {
+            this.content.append("<meta ").append(property).append("=\"").append(escapeAttribute(propertyValue))
+                .append("\" " + CONTENT + "=\"").append(escapeAttribute(content)).append("\">");
+            return this;
+        }
+
+        public Head style(String css) {
+            this.content.append("<style type=\"text/css\">").append(css).append("</style>");
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return content.toString();
+        }
+    }
+}
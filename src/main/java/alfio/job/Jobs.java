@@ -20,6 +20,9 @@ import alfio.config.Initializer;
 import alfio.manager.*;
 import alfio.manager.system.AdminJobExecutor;
 import alfio.manager.system.AdminJobManager;
+import alfio.manager.system.MetricsRegistry;
+import alfio.manager.system.ScheduledJobCoordinator;
+import alfio.model.system.ScheduledJobPartition;
 import lombok.AllArgsConstructor;
 import org.apache.commons.lang3.time.DateUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -32,10 +35,13 @@ import org.springframework.stereotype.Component;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * <p>Scheduled jobs. Important: all the jobs must be able to run on multiple instance at the same time.</p>
  * <p>Take great care in placing a select id ... for update skip locked to avoid multiple job execution for the same object</p>
+ * <p>Each job (or partition of a job) is run by one node at a time (see {@link ScheduledJobCoordinator}), but two nodes
+ * can still overlap during a fail-over.</p>
  * <p>Note: it's a separate package, as we need to ensure that the called method are public (and possibly @Transactional!)</p>
  *
  */
@@ -50,6 +56,7 @@ public class Jobs {
     private static final int THIRTY_SECONDS = 1000 * 30;
     private static final int FIVE_SECONDS = 1000 * 5;
     private static final int THIRTY_MINUTES = 30 * ONE_MINUTE;
+    private static final int ONE_HOUR = 60 * ONE_MINUTE;
     private static final String EVERY_HOUR = "0 0 0/1 * * ?";
 
     private final AdminReservationRequestManager adminReservationRequestManager;
@@ -59,132 +66,112 @@ public class Jobs {
     private final TicketReservationManager ticketReservationManager;
     private final WaitingQueueSubscriptionProcessor waitingQueueSubscriptionProcessor;
     private final AdminJobManager adminJobManager;
+    private final MetricsRegistry metricsRegistry;
+    private final ScheduledJobCoordinator jobCoordinator;
+    private final AdminExportManager adminExportManager;
 
 
     //cron each minute: "0 0/1 * * * ?"
 
-    @Scheduled(fixedRate = ONE_MINUTE * 60)
+    @Scheduled(fixedRate = ONE_HOUR)
     public void cleanupUnreferencedBlobFiles() {
-        log.trace("running job cleanupUnreferencedBlobFiles");
-        try {
-            fileUploadManager.cleanupUnreferencedBlobFiles(DateUtils.addDays(new Date(), -1));
-        } finally {
-            log.trace("end job cleanupUnreferencedBlobFiles");
-        }
+        runJob("cleanupUnreferencedBlobFiles", ONE_HOUR, () -> fileUploadManager.cleanupUnreferencedBlobFiles(DateUtils.addDays(new Date(), -1)));
     }
 
 
     @Scheduled(fixedRate = THIRTY_SECONDS)
     public void generateSpecialPriceCodes() {
-        log.trace("running job generateSpecialPriceCodes");
-        try {
-            specialPriceTokenGenerator.generatePendingCodes();
-        } finally {
-            log.trace("end job generateSpecialPriceCodes");
-        }
+        runJob("generateSpecialPriceCodes", THIRTY_SECONDS, specialPriceTokenGenerator::generatePendingCodes);
     }
 
 
     //run each hour
     @Scheduled(cron = EVERY_HOUR)
     public void sendOfflinePaymentReminderToEventOrganizers() {
-        log.trace("running job sendOfflinePaymentReminderToEventOrganizers");
-        try {
-            adminJobManager.scheduleExecution(AdminJobExecutor.JobName.SEND_OFFLINE_PAYMENT_TO_ORGANIZER, Map.of());
-        } finally {
-            log.trace("end job sendOfflinePaymentReminderToEventOrganizers");
-        }
+        runCronJob("sendOfflinePaymentReminderToEventOrganizers", ONE_HOUR, () -> adminJobManager.scheduleExecution(AdminJobExecutor.JobName.SEND_OFFLINE_PAYMENT_TO_ORGANIZER, Map.of()));
     }
 
     @Scheduled(cron = EVERY_HOUR)
     public void assignTicketsToSubscribers() {
-        log.trace("running job assignTicketsToSubscribers");
-        try {
-            adminJobManager.scheduleExecution(AdminJobExecutor.JobName.ASSIGN_TICKETS_TO_SUBSCRIBERS, Map.of());
-        } finally {
-            log.trace("end job assignTicketsToSubscribers");
-        }
+        runCronJob("assignTicketsToSubscribers", ONE_HOUR, () -> adminJobManager.scheduleExecution(AdminJobExecutor.JobName.ASSIGN_TICKETS_TO_SUBSCRIBERS, Map.of()));
     }
 
 
     @Scheduled(fixedRate = FIVE_SECONDS)
     public void sendEmails() {
-        log.trace("running job sendEmails");
-        try {
-            notificationManager.sendWaitingMessages();
-        } finally {
-            log.trace("end job sendEmails");
-        }
+        runPartitionedJob("sendEmails", FIVE_SECONDS, notificationManager::sendWaitingMessages);
     }
 
     @Scheduled(fixedRate = FIVE_SECONDS)
     public void processReservationRequests() {
-        log.trace("running job processReservationRequests");
-        try {
+        runJob("processReservationRequests", FIVE_SECONDS, () -> {
             long start = System.currentTimeMillis();
             Pair<Integer, Integer> result = adminReservationRequestManager.processPendingReservations();
             if (result.getLeft() > 0 || result.getRight() > 0) {
                 log.info("ProcessReservationRequests: got {} success and {} failures. Elapsed {} ms", result.getLeft(), result.getRight(), System.currentTimeMillis() - start);
             }
-        } finally {
-            log.trace("end job processReservationRequests");
-        }
+        });
     }
 
 
     @Scheduled(fixedRate = THIRTY_MINUTES)
     public void sendOfflinePaymentReminder() {
-        log.trace("running job sendOfflinePaymentReminder");
-        try {
-            adminJobManager.scheduleExecution(AdminJobExecutor.JobName.SEND_OFFLINE_PAYMENT_REMINDER, Map.of());
-        } finally {
-            log.trace("end job sendOfflinePaymentReminder");
-        }
+        runJob("sendOfflinePaymentReminder", THIRTY_MINUTES, () -> adminJobManager.scheduleExecution(AdminJobExecutor.JobName.SEND_OFFLINE_PAYMENT_REMINDER, Map.of()));
     }
 
     @Scheduled(fixedRate = THIRTY_MINUTES)
     public void sendTicketAssignmentReminder() {
-        log.trace("running job sendTicketAssignmentReminder");
-        try {
-            adminJobManager.scheduleExecution(AdminJobExecutor.JobName.SEND_TICKET_ASSIGNMENT_REMINDER, Map.of());
-        } finally {
-            log.trace("end job sendTicketAssignmentReminder");
-        }
+        runJob("sendTicketAssignmentReminder", THIRTY_MINUTES, () -> adminJobManager.scheduleExecution(AdminJobExecutor.JobName.SEND_TICKET_ASSIGNMENT_REMINDER, Map.of()));
     }
 
 
     @Scheduled(fixedRate = THIRTY_SECONDS)
     public void cleanupExpiredPendingReservation() {
-        log.trace("running job cleanupExpiredPendingReservation");
-        try {
+        runJob("cleanupExpiredPendingReservation", THIRTY_SECONDS, () -> {
             //cleanup reservation that have a expiration older than "now minus 10 minutes": this give some additional slack.
             final Date expirationDate = DateUtils.addMinutes(new Date(), -10);
             ticketReservationManager.cleanupExpiredReservations(expirationDate);
             ticketReservationManager.cleanupExpiredOfflineReservations(expirationDate);
             ticketReservationManager.markExpiredInPaymentReservationAsStuck(expirationDate);
-        } finally {
-            log.trace("end job cleanupExpiredPendingReservation");
-        }
+        });
     }
 
 
     @Scheduled(fixedRate = THIRTY_SECONDS)
     public void processReleasedTickets() {
-        log.trace("running job processReleasedTickets");
-        try {
-            waitingQueueSubscriptionProcessor.handleWaitingTickets();
-        } finally {
-            log.trace("end job processReleasedTickets");
-        }
+        runJob("processReleasedTickets", THIRTY_SECONDS, waitingQueueSubscriptionProcessor::handleWaitingTickets);
     }
 
     @Scheduled(fixedRateString = "#{environment.acceptsProfiles('dev') ? (1000 * 60) : (30 * 60 * 1000)}")
     public void checkOfflinePaymentsStatus() {
-        log.trace("running job checkOfflinePaymentsStatus");
+        runJob("checkOfflinePaymentsStatus", THIRTY_MINUTES, () -> adminJobManager.scheduleExecution(AdminJobExecutor.JobName.CHECK_OFFLINE_PAYMENTS, Map.of()));
+    }
+
+    @Scheduled(fixedRate = THIRTY_MINUTES)
+    public void cleanupExpiredExports() {
+        runJob("cleanupExpiredExports", THIRTY_MINUTES, adminExportManager::cleanupExpiredExports);
+    }
+
+    private void runJob(String jobName, long periodMillis, Runnable job) {
+        jobCoordinator.runExclusively(jobName, periodMillis, () -> measure(jobName, job));
+    }
+
+    private void runCronJob(String jobName, long periodMillis, Runnable job) {
+        jobCoordinator.runOncePerTrigger(jobName, periodMillis, () -> measure(jobName, job));
+    }
+
+    private void runPartitionedJob(String jobName, long periodMillis, Consumer<ScheduledJobPartition> job) {
+        jobCoordinator.runPartitioned(jobName, periodMillis, partition -> measure(jobName, () -> job.accept(partition)));
+    }
+
+    private void measure(String jobName, Runnable job) {
+        log.trace("running job {}", jobName);
+        long jobStart = System.nanoTime();
         try {
-            adminJobManager.scheduleExecution(AdminJobExecutor.JobName.CHECK_OFFLINE_PAYMENTS, Map.of());
+            job.run();
         } finally {
-            log.trace("end job checkOfflinePaymentsStatus");
+            log.trace("end job {}", jobName);
+            metricsRegistry.recordJob(jobName, System.nanoTime() - jobStart);
         }
     }
 }
@@ -0,0 +1,43 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.job.executor;
+
+import alfio.manager.AdminExportManager;
+import alfio.manager.system.AdminJobExecutor;
+import alfio.model.system.AdminJobSchedule;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+public class AdminExportJobExecutor implements AdminJobExecutor {
+
+    private final AdminExportManager adminExportManager;
+
+    public AdminExportJobExecutor(AdminExportManager adminExportManager) {
+        this.adminExportManager = adminExportManager;
+    }
+
+    @Override
+    public Set<JobName> getJobNames() {
+        return EnumSet.of(JobName.GENERATE_EXPORT);
+    }
+
+    @Override
+    public String process(AdminJobSchedule schedule) {
+        return adminExportManager.generate((String) schedule.getMetadata().get(AdminExportManager.EXPORT_ID));
+    }
+}
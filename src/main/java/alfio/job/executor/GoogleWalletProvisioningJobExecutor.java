@@ -0,0 +1,46 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.job.executor;
+
+import alfio.manager.system.AdminJobExecutor;
+import alfio.manager.wallet.GoogleWalletManager;
+import alfio.model.system.AdminJobSchedule;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+public class GoogleWalletProvisioningJobExecutor implements AdminJobExecutor {
+
+    public static final String RESERVATION_ID = "reservationId";
+    private final GoogleWalletManager googleWalletManager;
+
+    public GoogleWalletProvisioningJobExecutor(GoogleWalletManager googleWalletManager) {
+        this.googleWalletManager = googleWalletManager;
+    }
+
+    @Override
+    public Set<JobName> getJobNames() {
+        return EnumSet.of(JobName.PROVISION_GOOGLE_WALLET_OBJECTS);
+    }
+
+    @Override
+    public String process(AdminJobSchedule schedule) {
+        var reservationId = (String) schedule.getMetadata().get(RESERVATION_ID);
+        int created = googleWalletManager.provisionWalletObjects(reservationId);
+        return "created " + created + " wallet objects for reservation " + reservationId;
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.manager.support.ExportData;
+import alfio.manager.system.AdminJobExecutor.JobName;
+import alfio.manager.system.AdminJobManager;
+import alfio.model.system.AdminExport;
+import alfio.repository.EventRepository;
+import alfio.repository.system.AdminExportRepository;
+import alfio.repository.system.AdminJobQueueRepository;
+import alfio.util.ClockProvider;
+import alfio.util.ExportUtils;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates the admin exports in background. The export is written to a temporary file, then stored in the database
+ * in chunks, so that any node can serve the download once the export is ready.
+ */
+@Component
+@Transactional
+public class AdminExportManager {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminExportManager.class);
+    public static final String EXPORT_ID = "exportId";
+    private static final String EXCEL = "excel";
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int PROGRESS_UPDATE_INTERVAL = 500;
+
+    private final AdminExportRepository adminExportRepository;
+    private final AdminJobQueueRepository adminJobQueueRepository;
+    private final EventExportManager eventExportManager;
+    private final ExportManager exportManager;
+    private final EventRepository eventRepository;
+    private final ClockProvider clockProvider;
+    private final TransactionTemplate requiresNewTransactionTemplate;
+    private final long expirationHours;
+    private final long reuseWindowSeconds;
+
+    public AdminExportManager(AdminExportRepository adminExportRepository,
+                              AdminJobQueueRepository adminJobQueueRepository,
+                              EventExportManager eventExportManager,
+                              ExportManager exportManager,
+                              EventRepository eventRepository,
+                              ClockProvider clockProvider,
+                              PlatformTransactionManager transactionManager,
+                              Environment environment) {
+        this.adminExportRepository = adminExportRepository;
+        this.adminJobQueueRepository = adminJobQueueRepository;
+        this.eventExportManager = eventExportManager;
+        this.exportManager = exportManager;
+        this.eventRepository = eventRepository;
+        this.clockProvider = clockProvider;
+        this.requiresNewTransactionTemplate = new TransactionTemplate(transactionManager, new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        this.expirationHours = environment.getProperty("alfio.export.expiration-hours", Long.class, 24L);
+        this.reuseWindowSeconds = environment.getProperty("alfio.export.reuse-window-seconds", Long.class, 60L);
+    }
+
+    /**
+     * Requests the generation of an export. If the same user has already requested the same export, and the export
+     * is still being generated or has been completed recently, the existing one is returned.
+     * The reservations export is always generated in Excel format, since it contains one sheet per event.
+     *
+     * @return the export
+     */
+    public AdminExport requestExport(AdminExport.Type type, Integer eventId, String format, Map<String, List<String>> parameters, String username) {
+        var normalizedFormat = EXCEL.equals(format) || type == AdminExport.Type.RESERVATIONS ? EXCEL : "csv";
+        var requestHash = requestHash(type, eventId, normalizedFormat, parameters, username);
+        var now = ZonedDateTime.now(clockProvider.getClock());
+        var existing = adminExportRepository.findReusable(requestHash, now.minusSeconds(reuseWindowSeconds));
+        if(existing.isPresent()) {
+            log.trace("returning existing export {}", existing.get().id());
+            return existing.get();
+        }
+        var id = UUID.randomUUID().toString();
+        int result = adminExportRepository.insert(id, type, eventId, normalizedFormat, username, requestHash, parameters, now, now.plusHours(expirationHours));
+        if(result == 0) {
+            // another request has registered the same export in the meantime
+            return adminExportRepository.findReusable(requestHash, now.minusSeconds(reuseWindowSeconds)).orElseThrow(IllegalStateException::new);
+        }
+        AdminJobManager.executionScheduler(JobName.GENERATE_EXPORT, Map.of(EXPORT_ID, id), now).apply(adminJobQueueRepository);
+        return adminExportRepository.findOptionalById(id).orElseThrow(IllegalStateException::new);
+    }
+
+    public Optional<AdminExport> findExport(String id, String username) {
+        return adminExportRepository.findOptionalById(id)
+            .filter(e -> e.username().equals(username));
+    }
+
+    public void writeContent(AdminExport export, OutputStream out) {
+        adminExportRepository.writeContent(export.id(), out);
+    }
+
+    /**
+     * Generates the given export. Errors are saved on the export itself, so that they can be shown to the user.
+     *
+     * @return a description of the result
+     */
+    public String generate(String exportId) {
+        var optionalExport = adminExportRepository.findOptionalById(exportId)
+            .filter(e -> e.status() == AdminExport.Status.PENDING || e.status() == AdminExport.Status.IN_PROGRESS);
+        if(optionalExport.isEmpty()) {
+            return "export " + exportId + " not found or already completed";
+        }
+        var export = optionalExport.get();
+        try {
+            var data = loadData(export);
+            if(data.sheets().isEmpty()) {
+                requiresNewTransactionTemplate.executeWithoutResult(status -> adminExportRepository.markFailed(exportId, "No reservations found for the selected period", ZonedDateTime.now(clockProvider.getClock())));
+                return "export " + exportId + " is empty";
+            }
+            requiresNewTransactionTemplate.executeWithoutResult(status -> adminExportRepository.markInProgress(exportId, data.size()));
+            Path file = Files.createTempFile("alfio-export", ".tmp");
+            try {
+                boolean excel = EXCEL.equals(export.format());
+                try (OutputStream out = Files.newOutputStream(file)) {
+                    var tracked = trackProgress(exportId, data);
+                    if(excel) {
+                        ExportUtils.writeExcel(out, workbook -> ExportUtils.addSheetsToWorkbook(tracked, workbook));
+                    } else {
+                        var sheet = tracked.sheets().get(0);
+                        ExportUtils.writeCsv(sheet.header(), sheet.rows(), out);
+                    }
+                }
+                var fileName = data.fileName() + (excel ? ".xlsx" : ".csv");
+                var contentType = excel ? "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet" : "text/csv;charset=UTF-8";
+                long size = Files.size(file);
+                requiresNewTransactionTemplate.executeWithoutResult(status -> {
+                    storeChunks(exportId, file);
+                    adminExportRepository.markReady(exportId, fileName, contentType, size, ZonedDateTime.now(clockProvider.getClock()));
+                });
+                return "generated export " + exportId + " (" + data.size() + " rows)";
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (Exception e) {
+            log.warn("Error while generating export " + exportId, e);
+            requiresNewTransactionTemplate.executeWithoutResult(status -> adminExportRepository.markFailed(exportId, Objects.toString(e.getMessage(), e.getClass().getSimpleName()), ZonedDateTime.now(clockProvider.getClock())));
+            return "export " + exportId + " failed";
+        }
+    }
+
+    public void cleanupExpiredExports() {
+        var deleted = adminExportRepository.deleteExpired(ZonedDateTime.now(clockProvider.getClock()));
+        if(!deleted.isEmpty()) {
+            log.trace("Deleted {} expired exports", deleted.size());
+        }
+    }
+
+    private ExportData loadData(AdminExport export) {
+        var parameters = export.parameters();
+        return switch (export.type()) {
+            case ATTENDEES -> eventExportManager.attendees(eventName(export), parameters.getOrDefault("fields", List.of()), export.username());
+            case SPONSOR_SCANS -> eventExportManager.sponsorScans(eventName(export), export.username());
+            case RESERVATIONS -> exportManager.reservationsExport(LocalDate.parse(parameters.get("from").get(0)), LocalDate.parse(parameters.get("to").get(0)), export.username());
+        };
+    }
+
+    private String eventName(AdminExport export) {
+        return eventRepository.findById(Objects.requireNonNull(export.eventId())).getShortName();
+    }
+
+    private ExportData trackProgress(String exportId, ExportData data) {
+        // the counter is shared between sheets, since the progress refers to the whole export
+        var counter = new AtomicInteger();
+        return new ExportData(data.fileName(), data.size(), data.sheets().stream()
+            .map(s -> new ExportData.Sheet(s.name(), s.header(), trackProgress(exportId, counter, s.rows())))
+            .toList());
+    }
+
+    private Stream<String[]> trackProgress(String exportId, AtomicInteger counter, Stream<String[]> rows) {
+        return rows.peek(r -> {
+            int count = counter.incrementAndGet();
+            if(count % PROGRESS_UPDATE_INTERVAL == 0) {
+                requiresNewTransactionTemplate.executeWithoutResult(status -> adminExportRepository.updateProgress(exportId, count));
+            }
+        });
+    }
+
+    private void storeChunks(String exportId, Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            int index = 0;
+            byte[] chunk;
+            while((chunk = in.readNBytes(CHUNK_SIZE)).length > 0) {
+                adminExportRepository.insertChunk(exportId, index++, chunk);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String requestHash(AdminExport.Type type, Integer eventId, String format, Map<String, List<String>> parameters, String username) {
+        var serializedParameters = new TreeMap<>(parameters).entrySet().stream()
+            .map(e -> e.getKey() + "=" + String.join(",", e.getValue()))
+            .collect(Collectors.joining("&"));
+        return DigestUtils.sha256Hex(String.join("::", type.name(), String.valueOf(eventId), format, username, serializedParameters));
+    }
+}
@@ -16,6 +16,7 @@
  */
 package alfio.manager;
 
+import alfio.config.support.ThreadFactories;
 import alfio.model.*;
 import alfio.model.api.v1.admin.TicketReservationCreationRequest;
 import alfio.model.modification.AdminReservationModification;
@@ -34,19 +35,24 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.ZonedDateTime;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -57,9 +63,11 @@ import static org.apache.commons.collections4.CollectionUtils.size;
 
 @Component
 @Transactional
-public class AdminReservationRequestManager {
+public class AdminReservationRequestManager implements DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(AdminReservationRequestManager.class);
+    static final int BATCH_SIZE = 50;
+    private static final long MAX_RUN_DURATION_MILLIS = TimeUnit.SECONDS.toMillis(30);
     private final AdminReservationManager adminReservationManager;
     private final EventManager eventManager;
     private final UserRepository userRepository;
@@ -67,6 +75,7 @@ public class AdminReservationRequestManager {
     private final EventRepository eventRepository;
     private final PlatformTransactionManager transactionManager;
     private final ClockProvider clockProvider;
+    private final ExecutorService workers;
 
     public AdminReservationRequestManager(AdminReservationManager adminReservationManager,
                                           EventManager eventManager,
@@ -74,7 +83,8 @@ public class AdminReservationRequestManager {
                                           AdminReservationRequestRepository adminReservationRequestRepository,
                                           EventRepository eventRepository,
                                           PlatformTransactionManager transactionManager,
-                                          ClockProvider clockProvider) {
+                                          ClockProvider clockProvider,
+                                          Environment environment) {
         this.adminReservationManager = adminReservationManager;
         this.eventManager = eventManager;
         this.userRepository = userRepository;
@@ -82,6 +92,17 @@ public class AdminReservationRequestManager {
         this.eventRepository = eventRepository;
         this.transactionManager = transactionManager;
         this.clockProvider = clockProvider;
+        int poolSize = environment.getProperty("alfio.admin-reservation-request.workers", Integer.class, 4);
+        this.workers = Executors.newFixedThreadPool(poolSize, ThreadFactories.create(environment, "admin-reservation-request-", true));
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        // let the running batches complete: each run is bounded by MAX_RUN_DURATION_MILLIS
+        workers.shutdown();
+        if(!workers.awaitTermination(MAX_RUN_DURATION_MILLIS, TimeUnit.MILLISECONDS)) {
+            workers.shutdownNow();
+        }
     }
 
     public Result<AdminReservationRequestStats> getRequestStatus(String requestId, String eventName, String username) {
@@ -150,29 +171,71 @@ public class AdminReservationRequestManager {
             .orElseGet(() -> Result.error(ErrorCode.ReservationError.UPDATE_FAILED));
     }
 
-    //TODO: rewrite, and add test!
+    /**
+     * Processes the pending requests. Requests are partitioned by event and each partition is handled by a worker
+     * of a bounded pool, in batches of {@link #BATCH_SIZE} requests. Every batch is committed on its own, so that the
+     * progress is immediately visible through {@link #getRequestStatus(String, String, String)}.
+     *
+     * @return the number of successful and failed requests
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Pair<Integer, Integer> processPendingReservations() {
-        Map<Boolean, List<MapSqlParameterSource>> result = adminReservationRequestRepository.findPendingForUpdate(1000)
-            .stream()
-            .map(id -> {
-                AdminReservationRequest request = adminReservationRequestRepository.fetchCompleteById(id);
+        var eventIds = adminReservationRequestRepository.findEventsWithPendingRequests();
+        if(eventIds.isEmpty()) {
+            return Pair.of(0, 0);
+        }
+        long deadline = System.currentTimeMillis() + MAX_RUN_DURATION_MILLIS;
+        var futures = eventIds.stream()
+            .map(eventId -> CompletableFuture.supplyAsync(() -> processPendingReservationsForEvent(eventId, deadline), workers))
+            .toList();
+        int success = 0;
+        int failures = 0;
+        for (var future : futures) {
+            var result = future.join();
+            success += result.getLeft();
+            failures += result.getRight();
+        }
+        return Pair.of(success, failures);
+    }
 
-                Result<Triple<TicketReservation, List<Ticket>, Event>> reservationResult = Result.fromNullable(eventRepository.findOptionalById((int) request.getEventId()).orElse(null), ErrorCode.EventError.NOT_FOUND)
-                    .flatMap(e -> Result.fromNullable(userRepository.findOptionalById((int) request.getUserId()).map(u -> Pair.of(e, u)).orElse(null), ErrorCode.EventError.ACCESS_DENIED))
+    private Pair<Integer, Integer> processPendingReservationsForEvent(long eventId, long deadline) {
+        int success = 0;
+        int failures = 0;
+        var template = new TransactionTemplate(transactionManager, new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        try {
+            Pair<Integer, Integer> batch;
+            do {
+                batch = Objects.requireNonNull(template.execute(status -> processBatch(eventId)));
+                success += batch.getLeft();
+                failures += batch.getRight();
+                log.debug("processed {} requests for event {}", success + failures, eventId);
+            } while (batch.getLeft() + batch.getRight() == BATCH_SIZE && System.currentTimeMillis() < deadline);
+        } catch (Exception e) {
+            log.warn("error while processing reservation requests for event " + eventId, e);
+        }
+        return Pair.of(success, failures);
+    }
+
+    private Pair<Integer, Integer> processBatch(long eventId) {
+        var requests = adminReservationRequestRepository.findPendingForUpdate(eventId, BATCH_SIZE);
+        if(requests.isEmpty()) {
+            return Pair.of(0, 0);
+        }
+        var event = eventRepository.findOptionalById((int) eventId);
+        var users = new HashMap<Long, Optional<User>>();
+        Map<Boolean, List<MapSqlParameterSource>> result = requests.stream()
+            .map(request -> {
+                Result<Triple<TicketReservation, List<Ticket>, Event>> reservationResult = Result.fromNullable(event.orElse(null), ErrorCode.EventError.NOT_FOUND)
+                    .flatMap(e -> Result.fromNullable(users.computeIfAbsent(request.getUserId(), id -> userRepository.findOptionalById(id.intValue())).map(u -> Pair.of(e, u)).orElse(null), ErrorCode.EventError.ACCESS_DENIED))
                     .flatMap(p -> processReservation(request, p.getLeft(), p.getRight()));
-                return buildParameterSource(id, reservationResult);
+                return buildParameterSource(request.getId(), reservationResult);
             }).collect(Collectors.partitioningBy(ps -> AdminReservationRequest.Status.SUCCESS.name().equals(ps.getValue("status"))));
 
-        result.values().forEach(list -> {
-            try {
-                adminReservationRequestRepository.updateStatus(list);
-            } catch(Exception e) {
-                log.warn("cannot update the status of "+list.size()+" reservations", e);
-            }
-        });
+        result.values().stream()
+            .filter(list -> !list.isEmpty())
+            .forEach(adminReservationRequestRepository::updateStatus);
 
         return Pair.of(size(result.get(true)), size(result.get(false)));
-
     }
 
     private Result<Triple<TicketReservation, List<Ticket>, Event>> processReservation(AdminReservationRequest request, Event event, User user) {
@@ -72,7 +72,7 @@ public class BillingDocumentManager {
     private final TicketReservationRepository ticketReservationRepository;
     private final ClockProvider clockProvider;
     private final ExtensionManager extensionManager;
-    private final InvoiceSequencesRepository invoiceSequencesRepository;
+    private final BillingDocumentNumberAllocator billingDocumentNumberAllocator;
 
 
     public Optional<ZonedDateTime> findFirstInvoiceDate(int eventId) {
@@ -172,8 +172,7 @@ public class BillingDocumentManager {
         });
 
         return optionalInvoiceNumber.or(() -> {
-            int invoiceSequence = invoiceSequencesRepository.lockSequenceForUpdate(spec.getPurchaseContext().getOrganizationId());
-            invoiceSequencesRepository.incrementSequenceFor(spec.getPurchaseContext().getOrganizationId());
+            int invoiceSequence = billingDocumentNumberAllocator.allocateInvoiceNumber(spec.getPurchaseContext().getOrganizationId(), reservationId);
             return Optional.of(formatDocumentNumber(spec.getPurchaseContext(), invoiceSequence));
         });
     }
@@ -191,8 +190,7 @@ public class BillingDocumentManager {
                 if (configurationManager.getFor(REUSE_INVOICE_NUMBER_FOR_CREDIT_NOTE, purchaseContext.getConfigurationLevel()).getValueAsBooleanOrDefault()) {
                     return reservation.getInvoiceNumber();
                 } else {
-                    int creditNoteSequence = invoiceSequencesRepository.lockSequenceForUpdate(purchaseContext.getOrganizationId(), CREDIT_NOTE);
-                    invoiceSequencesRepository.incrementSequenceFor(purchaseContext.getOrganizationId(), CREDIT_NOTE);
+                    int creditNoteSequence = billingDocumentNumberAllocator.nextCreditNoteNumber(purchaseContext.getOrganizationId());
                     return formatDocumentNumber(purchaseContext, creditNoteSequence);
                 }
             });
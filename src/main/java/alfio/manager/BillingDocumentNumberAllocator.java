@@ -0,0 +1,64 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.model.BillingDocument;
+import alfio.repository.InvoiceSequencesRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Allocates gapless numbers from the per-organization {@code invoice_sequences}.
+ * <p>
+ * Numbers are allocated within the caller's transaction, so that a rollback gives the number back and the sequence
+ * stays gapless. The row lock on the sequence is held until the caller commits, therefore callers must allocate
+ * the number in a short transaction: {@link ReservationFinalizer} commits the invoice number before completing
+ * the reservation.
+ * The allocated invoice number is bound to the reservation, so that a retry of the same confirmation gets back
+ * the number which has already been allocated.
+ */
+@Component
+public class BillingDocumentNumberAllocator {
+
+    private final InvoiceSequencesRepository invoiceSequencesRepository;
+
+    public BillingDocumentNumberAllocator(InvoiceSequencesRepository invoiceSequencesRepository) {
+        this.invoiceSequencesRepository = invoiceSequencesRepository;
+    }
+
+    /**
+     * Returns the invoice number for the given reservation, allocating a new one if necessary.
+     *
+     * @param organizationId the organization owning the sequence
+     * @param reservationId the reservation
+     * @return the invoice sequence value
+     */
+    public int allocateInvoiceNumber(int organizationId, String reservationId) {
+        return invoiceSequencesRepository.findAllocatedNumber(organizationId, BillingDocument.Type.INVOICE, reservationId)
+            .orElseGet(() -> invoiceSequencesRepository.allocateNumber(organizationId, BillingDocument.Type.INVOICE, reservationId));
+    }
+
+    /**
+     * Returns the next credit note number. A credit note is not bound to a reservation until the billing document
+     * is saved, therefore the number is allocated within the current transaction, in order to keep the sequence gapless.
+     *
+     * @param organizationId the organization owning the sequence
+     * @return the credit note sequence value
+     */
+    public int nextCreditNoteNumber(int organizationId) {
+        return invoiceSequencesRepository.getAndIncrementSequenceFor(organizationId, BillingDocument.Type.CREDIT_NOTE);
+    }
+}
@@ -23,6 +23,9 @@ import alfio.model.Ticket.TicketStatus;
 import alfio.model.api.v1.admin.CheckInLogEntry;
 import alfio.model.audit.ScanAudit;
 import alfio.model.checkin.AttendeeSearchResults;
+import alfio.model.checkin.CheckInChange;
+import alfio.model.checkin.CheckInDelta;
+import alfio.model.checkin.EncryptedAttendee;
 import alfio.model.decorator.TicketPriceContainer;
 import alfio.model.support.CheckInOutputColorConfiguration;
 import alfio.model.transaction.PaymentProxy;
@@ -36,6 +39,7 @@ import lombok.AllArgsConstructor;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.tuple.Pair;
@@ -78,6 +82,7 @@ public class CheckInManager {
     private static final Logger log = LoggerFactory.getLogger(CheckInManager.class);
     static final Pattern CYPHER_SPLITTER = Pattern.compile("\\|");
     private static final int SEARCH_ATTENDEES_LIMIT = 20;
+    private static final int DELTA_CHUNK_SIZE = 1000;
     private final TicketRepository ticketRepository;
     private final EventRepository eventRepository;
     private final TicketReservationRepository ticketReservationRepository;
@@ -409,6 +414,7 @@ public class CheckInManager {
             .orElse(Collections.emptyList());
     }
 
+    @ReadReplica
     public List<FullTicketInfo> getAttendeesInformation(int eventId, List<Integer> ids, String username) {
         return eventRepository.findOptionalById(eventId)
             .filter(EventManager.checkOwnership(username, organizationRepository))
@@ -424,91 +430,116 @@ public class CheckInManager {
         return isOfflineCheckInEnabled().and(configurationManager.areBooleanSettingsEnabledForEvent(LABEL_PRINTING_ENABLED));
     }
 
+    @ReadReplica
     public Map<String,String> getEncryptedAttendeesInformation(Event ev, Set<String> additionalFields, List<Integer> ids) {
 
+        return Optional.ofNullable(ev).filter(isOfflineCheckInEnabled())
+            .map(event -> encryptAttendees(event, additionalFields, ids).stream()
+                .collect(toMap(EncryptedAttendee::key, EncryptedAttendee::payload)))
+            .orElseGet(Collections::emptyMap);
+    }
+
+    /**
+     * Returns the check-in information changed since the given cursor, plus the ids of the tickets which
+     * are no longer valid for check-in. Use 0 as cursor in order to retrieve the full list.
+     */
+    @ReadReplica
+    public Optional<CheckInDelta> getEncryptedAttendeesDelta(Event ev, Set<String> additionalFields, long since) {
         return Optional.ofNullable(ev).filter(isOfflineCheckInEnabled()).map(event -> {
-            boolean caseInsensitiveQRCode = ev.supportsQRCodeCaseInsensitive();
-            Map<Integer, TicketCategory> categories = ticketCategoryRepository.findByEventIdAsMap(event.getId());
-            String eventKey = event.getPrivateKey();
-
-            Function<FullTicketInfo, String> hashedHMAC = ticket -> DigestUtils.sha256Hex(ticket.hmacTicketInfo(eventKey, caseInsensitiveQRCode));
-            var outputColorConfiguration = getOutputColorConfiguration(event, configurationManager);
-
-            // fetch polls for event, in order to determine if we have to print PIN or not
-            var polls = pollRepository.findAllForEvent(event.getId());
-            boolean hasPolls = !polls.isEmpty();
-            var allowedTags = hasPolls ? polls.stream().flatMap(p -> p.allowedTags().stream()).toList() : List.<String>of();
-
-            Function<FullTicketInfo, String> encryptedBody = ticket -> {
-                Map<String, String> info = new HashMap<>();
-                info.put("firstName", ticket.getFirstName());
-                info.put("lastName", ticket.getLastName());
-                info.put("fullName", ticket.getFullName());
-                info.put("email", ticket.getEmail());
-                info.put("status", ticket.getStatus().toString());
-                info.put("uuid", ticket.getUuid());
-                if(hasPolls && (allowedTags.isEmpty() || CollectionUtils.containsAny(allowedTags, ticket.getTags()))) {
-                    info.put("pin", PinGenerator.uuidToPin(ticket.getUuid()));
-                }
-                info.put("category", ticket.getTicketCategory().getName());
-                if(outputColorConfiguration != null) {
-                    info.put("boxColor", detectBoxColor(outputColorConfiguration, ticket.getCategoryId()));
-                }
+            // must be read before the changes, so that no change is lost
+            long cursor = ticketRepository.getCheckInChangeWatermark();
+            var changes = ticketRepository.findCheckInChanges(event.getId(), Math.max(since, 0), cursor);
+            var partitioned = changes.stream().collect(Collectors.partitioningBy(CheckInChange::active,
+                Collectors.mapping(CheckInChange::ticketId, Collectors.toList())));
+            var changed = ListUtils.partition(partitioned.get(true), DELTA_CHUNK_SIZE).stream()
+                .flatMap(ids -> encryptAttendees(event, additionalFields, ids).stream())
+                .toList();
+            return new CheckInDelta(cursor, changed, partitioned.get(false));
+        });
+    }
+
+    private List<EncryptedAttendee> encryptAttendees(Event event, Set<String> additionalFields, List<Integer> ids) {
+        boolean caseInsensitiveQRCode = event.supportsQRCodeCaseInsensitive();
+        Map<Integer, TicketCategory> categories = ticketCategoryRepository.findByEventIdAsMap(event.getId());
+        String eventKey = event.getPrivateKey();
+
+        Function<FullTicketInfo, String> hashedHMAC = ticket -> DigestUtils.sha256Hex(ticket.hmacTicketInfo(eventKey, caseInsensitiveQRCode));
+        var outputColorConfiguration = getOutputColorConfiguration(event, configurationManager);
+
+        // fetch polls for event, in order to determine if we have to print PIN or not
+        var polls = pollRepository.findAllForEvent(event.getId());
+        boolean hasPolls = !polls.isEmpty();
+        var allowedTags = hasPolls ? polls.stream().flatMap(p -> p.allowedTags().stream()).toList() : List.<String>of();
+
+        Function<FullTicketInfo, String> encryptedBody = ticket -> {
+            Map<String, String> info = new HashMap<>();
+            info.put("firstName", ticket.getFirstName());
+            info.put("lastName", ticket.getLastName());
+            info.put("fullName", ticket.getFullName());
+            info.put("email", ticket.getEmail());
+            info.put("status", ticket.getStatus().toString());
+            info.put("uuid", ticket.getUuid());
+            if(hasPolls && (allowedTags.isEmpty() || CollectionUtils.containsAny(allowedTags, ticket.getTags()))) {
+                info.put("pin", PinGenerator.uuidToPin(ticket.getUuid()));
+            }
+            info.put("category", ticket.getTicketCategory().getName());
+            if(outputColorConfiguration != null) {
+                info.put("boxColor", detectBoxColor(outputColorConfiguration, ticket.getCategoryId()));
+            }
 
-                if (!additionalFields.isEmpty()) {
-                    Map<String, String> fields = new HashMap<>();
-                    fields.put("company", trimToEmpty(ticket.getBillingDetails().getCompanyName()));
-                    fields.put("category", ticket.getTicketCategory().getName());
-                    fields.putAll(purchaseContextFieldRepository.findValueForTicketId(ticket.getId(), additionalFields).stream()
-                        .map(vd -> {
-                            try {
-                                if(StringUtils.isNotBlank(vd.getDescription())) {
-                                    Map<String, Object> description = Json.GSON.fromJson(vd.getDescription(), new TypeToken<Map<String, Object>>(){}.getType());
-                                    Object rv = description.get("restrictedValues");
-                                    if(rv instanceof Map) {
-                                        @SuppressWarnings("unchecked")
-                                        Map<String, String> restrictedValues = (Map<String, String>) rv;
-                                        return Pair.of(vd.getName(), restrictedValues.getOrDefault(vd.getValue(), vd.getValue()));
-                                    }
+            if (!additionalFields.isEmpty()) {
+                Map<String, String> fields = new HashMap<>();
+                fields.put("company", trimToEmpty(ticket.getBillingDetails().getCompanyName()));
+                fields.put("category", ticket.getTicketCategory().getName());
+                fields.putAll(purchaseContextFieldRepository.findValueForTicketId(ticket.getId(), additionalFields).stream()
+                    .map(vd -> {
+                        try {
+                            if(StringUtils.isNotBlank(vd.getDescription())) {
+                                Map<String, Object> description = Json.GSON.fromJson(vd.getDescription(), new TypeToken<Map<String, Object>>(){}.getType());
+                                Object rv = description.get("restrictedValues");
+                                if(rv instanceof Map) {
+                                    @SuppressWarnings("unchecked")
+                                    Map<String, String> restrictedValues = (Map<String, String>) rv;
+                                    return Pair.of(vd.getName(), restrictedValues.getOrDefault(vd.getValue(), vd.getValue()));
                                 }
-                            } catch (Exception e) {
-                                log.error("cannot deserialize restricted values", e);
                             }
-                            return Pair.of(vd.getName(), vd.getValue());
-                        })
-                        .collect(toMap(Pair::getLeft, Pair::getRight)));
-                    info.put("additionalInfoJson", Json.toJson(fields));
-                }
-
-                //
-                TicketCategory tc = categories.get(ticket.getCategoryId());
-                if (tc.getValidCheckInFrom() != null) {
-                    info.put("validCheckInFrom", Long.toString(tc.getValidCheckInFrom(event.getZoneId()).toEpochSecond()));
-                }
-                if (tc.getValidCheckInTo() != null) {
-                    info.put("validCheckInTo", Long.toString(tc.getValidCheckInTo(event.getZoneId()).toEpochSecond()));
-                }
-                if (tc.getTicketValidityStart() != null) {
-                    info.put("ticketValidityStart", Long.toString(tc.getTicketValidityStart(event.getZoneId()).toEpochSecond()));
-                }
-                if (tc.getTicketValidityEnd() != null) {
-                    info.put("ticketValidityEnd", Long.toString(tc.getTicketValidityEnd(event.getZoneId()).toEpochSecond()));
-                }
-                info.put("categoryCheckInStrategy", tc.getTicketCheckInStrategy().name());
-                //
+                        } catch (Exception e) {
+                            log.error("cannot deserialize restricted values", e);
+                        }
+                        return Pair.of(vd.getName(), vd.getValue());
+                    })
+                    .collect(toMap(Pair::getLeft, Pair::getRight)));
+                info.put("additionalInfoJson", Json.toJson(fields));
+            }
 
-                var additionalServicesInfo = getAdditionalServicesForTicket(ticket, event);
-                if(!additionalServicesInfo.isEmpty()) {
-                    info.put("additionalServicesInfoJson", Json.toJson(additionalServicesInfo));
-                }
-                String key = ticket.ticketCode(eventKey, caseInsensitiveQRCode);
-                return encrypt(key, Json.toJson(info));
-            };
-            return ticketRepository.findAllFullTicketInfoAssignedByEventId(event.getId(), ids)
-                .stream()
-                .collect(toMap(hashedHMAC, encryptedBody));
+            //
+            TicketCategory tc = categories.get(ticket.getCategoryId());
+            if (tc.getValidCheckInFrom() != null) {
+                info.put("validCheckInFrom", Long.toString(tc.getValidCheckInFrom(event.getZoneId()).toEpochSecond()));
+            }
+            if (tc.getValidCheckInTo() != null) {
+                info.put("validCheckInTo", Long.toString(tc.getValidCheckInTo(event.getZoneId()).toEpochSecond()));
+            }
+            if (tc.getTicketValidityStart() != null) {
+                info.put("ticketValidityStart", Long.toString(tc.getTicketValidityStart(event.getZoneId()).toEpochSecond()));
+            }
+            if (tc.getTicketValidityEnd() != null) {
+                info.put("ticketValidityEnd", Long.toString(tc.getTicketValidityEnd(event.getZoneId()).toEpochSecond()));
+            }
+            info.put("categoryCheckInStrategy", tc.getTicketCheckInStrategy().name());
+            //
 
-        }).orElseGet(Collections::emptyMap);
+            var additionalServicesInfo = getAdditionalServicesForTicket(ticket, event);
+            if(!additionalServicesInfo.isEmpty()) {
+                info.put("additionalServicesInfoJson", Json.toJson(additionalServicesInfo));
+            }
+            String key = ticket.ticketCode(eventKey, caseInsensitiveQRCode);
+            return encrypt(key, Json.toJson(info));
+        };
+        return ticketRepository.findAllFullTicketInfoAssignedByEventId(event.getId(), ids)
+            .stream()
+            .map(ticket -> new EncryptedAttendee(ticket.getId(), hashedHMAC.apply(ticket), encryptedBody.apply(ticket)))
+            .toList();
     }
 
     static CheckInOutputColorConfiguration getOutputColorConfiguration(EventAndOrganizationId event, ConfigurationManager configurationManager) {
@@ -564,13 +595,17 @@ public class CheckInManager {
     }
 
     public CheckInStatistics getStatistics(String eventName, List<Integer> categories, String username) {
-        return eventRepository.findOptionalByShortName(eventName)
-            .filter(this::areStatsEnabled)
-            .filter(EventManager.checkOwnership(username, organizationRepository))
+        return findEventWithStatisticsEnabled(eventName, username)
             .map(event -> eventRepository.retrieveCheckInStatisticsForEvent(event.getId(), categories))
             .orElse(null);
     }
 
+    public Optional<Event> findEventWithStatisticsEnabled(String eventName, String username) {
+        return eventRepository.findOptionalByShortName(eventName)
+            .filter(this::areStatsEnabled)
+            .filter(EventManager.checkOwnership(username, organizationRepository));
+    }
+
     public List<CheckInLogEntry> retrieveLogEntries(String eventName, String username) {
         return eventRepository.findOptionalEventAndOrganizationIdByShortName(eventName)
             .filter(EventManager.checkOwnership(username, organizationRepository))
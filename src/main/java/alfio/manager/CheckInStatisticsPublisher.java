@@ -0,0 +1,136 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.config.support.ThreadFactories;
+import alfio.manager.support.CheckInStatistics;
+import alfio.repository.EventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Pushes check-in statistics to the subscribed clients. Statistics are read once per interval
+ * for each (event, categories) combination having at least one subscriber, and published only if changed,
+ * so that the number of queries does not depend on the number of connected devices.
+ */
+@Component
+public class CheckInStatisticsPublisher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckInStatisticsPublisher.class);
+
+    private final EventRepository eventRepository;
+    private final Map<TopicKey, Topic> topics = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public CheckInStatisticsPublisher(EventRepository eventRepository, Environment environment) {
+        this.eventRepository = eventRepository;
+        long interval = environment.getProperty("alfio.check-in.statistics-push-interval-ms", Long.class, 2000L);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(ThreadFactories.create(environment, "check-in-statistics-", true));
+        this.scheduler.scheduleWithFixedDelay(this::publish, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribes to the statistics of the given event. The current value is sent immediately to the listener.
+     *
+     * @param eventId the event
+     * @param categories the categories to include, all if empty or null
+     * @param listener the listener. If it throws an exception, it will be unsubscribed
+     * @return a {@link Runnable} which removes the subscription
+     */
+    public Runnable subscribe(int eventId, List<Integer> categories, Consumer<CheckInStatistics> listener) {
+        var key = new TopicKey(eventId, categories == null ? List.of() : categories.stream().sorted().distinct().toList());
+        var topic = topics.compute(key, (k, existing) -> {
+            var t = existing != null ? existing : new Topic();
+            t.listeners.add(listener);
+            return t;
+        });
+        var current = topic.lastValue;
+        if (current == null) {
+            current = load(key);
+            topic.lastValue = current;
+        }
+        notify(key, listener, current);
+        return () -> unsubscribe(key, listener);
+    }
+
+    void publish() {
+        topics.forEach((key, topic) -> {
+            try {
+                var statistics = load(key);
+                var previous = topic.lastValue;
+                if (previous != null && previous.getTotalAttendees() == statistics.getTotalAttendees()
+                    && previous.getCheckedIn() == statistics.getCheckedIn()) {
+                    return;
+                }
+                topic.lastValue = statistics;
+                topic.listeners.forEach(listener -> notify(key, listener, statistics));
+            } catch (Exception e) {
+                log.warn("error while publishing check-in statistics for event {}", key.eventId, e);
+            }
+        });
+    }
+
+    private void notify(TopicKey key, Consumer<CheckInStatistics> listener, CheckInStatistics statistics) {
+        try {
+            listener.accept(statistics);
+        } catch (RuntimeException e) {
+            log.trace("cannot send statistics, removing listener", e);
+            unsubscribe(key, listener);
+        }
+    }
+
+    private void unsubscribe(TopicKey key, Consumer<CheckInStatistics> listener) {
+        topics.computeIfPresent(key, (k, topic) -> {
+            topic.listeners.remove(listener);
+            return topic.listeners.isEmpty() ? null : topic;
+        });
+    }
+
+    private CheckInStatistics load(TopicKey key) {
+        return Objects.requireNonNull(eventRepository.retrieveCheckInStatisticsForEvent(key.eventId, key.categories));
+    }
+
+    int countSubscriptions() {
+        return topics.values().stream().mapToInt(t -> t.listeners.size()).sum();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private record TopicKey(int eventId, List<Integer> categories) {
+    }
+
+    private static final class Topic {
+        private final List<Consumer<CheckInStatistics>> listeners = new CopyOnWriteArrayList<>();
+        private volatile CheckInStatistics lastValue;
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.manager.support.ExportData;
+import alfio.manager.support.ReadReplica;
+import alfio.manager.system.ConfigurationManager;
+import alfio.manager.user.UserManager;
+import alfio.model.*;
+import alfio.model.TicketReservationInvoicingAdditionalInfo.ItalianEInvoicing;
+import alfio.model.transaction.Transaction;
+import alfio.model.user.Role;
+import alfio.model.user.User;
+import alfio.repository.PurchaseContextFieldRepository;
+import alfio.repository.SponsorScanRepository;
+import alfio.repository.TicketRepository;
+import alfio.util.MonetaryUtil;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds the rows of the event exports (attendees, sponsor scans).
+ * Rows are loaded lazily, page by page, so that the export can be written without keeping all the tickets in memory.
+ */
+@Component
+public class EventExportManager {
+
+    public static final String CUSTOM_FIELDS_PREFIX = "custom:";
+    public static final String PAYMENT_METHOD = "Payment Method";
+    public static final String EXTERNAL_REFERENCE = "External Reference";
+    public static final List<String> FIXED_FIELDS = Arrays.asList("ID", "Category", "Event", "Status", "OriginalPrice", "PaidPrice", "Discount", "VAT", "ReservationID", "Full Name", "First Name", "Last Name", "E-Mail", "Locked", "Language", "Confirmation", "Billing Address", "Country Code", "Promo Code","Payment ID", PAYMENT_METHOD, EXTERNAL_REFERENCE);
+    public static final String FISCAL_CODE = "Fiscal Code";
+    public static final String REFERENCE_TYPE = "Reference Type";
+    public static final List<String> ITALIAN_E_INVOICING_FIELDS = List.of(FISCAL_CODE, REFERENCE_TYPE, "Addressee Code", "PEC");
+    private static final int PAGE_SIZE = 500;
+
+    private final EventManager eventManager;
+    private final ConfigurationManager configurationManager;
+    private final TicketRepository ticketRepository;
+    private final PurchaseContextFieldRepository purchaseContextFieldRepository;
+    private final SponsorScanRepository sponsorScanRepository;
+    private final UserManager userManager;
+
+    public EventExportManager(EventManager eventManager,
+                              ConfigurationManager configurationManager,
+                              TicketRepository ticketRepository,
+                              PurchaseContextFieldRepository purchaseContextFieldRepository,
+                              SponsorScanRepository sponsorScanRepository,
+                              UserManager userManager) {
+        this.eventManager = eventManager;
+        this.configurationManager = configurationManager;
+        this.ticketRepository = ticketRepository;
+        this.purchaseContextFieldRepository = purchaseContextFieldRepository;
+        this.sponsorScanRepository = sponsorScanRepository;
+        this.userManager = userManager;
+    }
+
+    /**
+     * Loads the attendees export within a short read-only transaction, so that it can be written afterwards
+     * without keeping a connection open
+     */
+    @ReadReplica
+    public ExportData loadAttendees(String eventName, List<String> fields, String username) {
+        return attendees(eventName, fields, username).loaded();
+    }
+
+    /**
+     * Loads the sponsor scans export within a short read-only transaction, so that it can be written afterwards
+     * without keeping a connection open
+     */
+    @ReadReplica
+    public ExportData loadSponsorScans(String eventName, String username) {
+        return sponsorScans(eventName, username).loaded();
+    }
+
+    public ExportData attendees(String eventName, List<String> fields, String username) {
+        var event = eventManager.getSingleEvent(eventName, username);
+        Map<Integer, TicketCategory> categoriesMap = eventManager.loadTicketCategories(event).stream().collect(Collectors.toMap(TicketCategory::getId, Function.identity()));
+        var eInvoicingEnabled = configurationManager.isItalianEInvoicingEnabled(event);
+        var ids = ticketRepository.findAllConfirmedIdsForCSV(event.getId());
+        var header = fields.stream().map(f -> {
+            if(f.startsWith(CUSTOM_FIELDS_PREFIX)) {
+                return f.substring(CUSTOM_FIELDS_PREFIX.length());
+            }
+            return f;
+        }).toArray(String[]::new);
+        var rows = ListUtils.partition(ids, PAGE_SIZE).stream()
+            .flatMap(page -> ticketRepository.findConfirmedForCSVByIds(event.getId(), page).stream())
+            .map(trs -> attendeeLine(trs, event.getShortName(), event.getZoneId(), fields, categoriesMap, eInvoicingEnabled));
+        return new ExportData(event.getShortName() + "-export", event.getShortName() + " export", header, ids.size(), rows);
+    }
+
+    private String[] attendeeLine(TicketWithReservationAndTransaction trs,
+                                  String eventName,
+                                  ZoneId eventZoneId,
+                                  List<String> fields,
+                                  Map<Integer, TicketCategory> categoriesMap,
+                                  boolean eInvoicingEnabled) {
+        Ticket t = trs.getTicket();
+        var currencyCode = t.getCurrencyCode();
+        TicketReservation reservation = trs.getTicketReservation();
+        List<String> line = new ArrayList<>();
+        if(fields.contains("ID")) {line.add(t.getUuid());}
+        if(fields.contains("Category")) {line.add(categoriesMap.get(t.getCategoryId()).getName());}
+        if(fields.contains("Event")) {line.add(eventName);}
+        if(fields.contains("Status")) {line.add(t.getStatus().toString());}
+        if(fields.contains("OriginalPrice")) {line.add(MonetaryUtil.centsToUnit(t.getSrcPriceCts(), currencyCode).toString());}
+        if(fields.contains("PaidPrice")) {line.add(MonetaryUtil.centsToUnit(t.getFinalPriceCts(), currencyCode).toString());}
+        if(fields.contains("Discount")) {line.add(MonetaryUtil.centsToUnit(t.getDiscountCts(), currencyCode).toString());}
+        if(fields.contains("VAT")) {line.add(MonetaryUtil.centsToUnit(t.getVatCts(), currencyCode).toString());}
+        if(fields.contains("ReservationID")) {line.add(t.getTicketsReservationId());}
+        if(fields.contains("Full Name")) {line.add(t.getFullName());}
+        if(fields.contains("First Name")) {line.add(t.getFirstName());}
+        if(fields.contains("Last Name")) {line.add(t.getLastName());}
+        if(fields.contains("E-Mail")) {line.add(t.getEmail());}
+        if(fields.contains("Locked")) {line.add(String.valueOf(t.getLockedAssignment()));}
+        if(fields.contains("Language")) {line.add(String.valueOf(t.getUserLanguage()));}
+        if(fields.contains("Confirmation")) {line.add(reservation.getConfirmationTimestamp().withZoneSameInstant(eventZoneId).toString());}
+        if(fields.contains("Billing Address")) {line.add(reservation.getBillingAddress());}
+        if(fields.contains("Country Code")) {line.add(reservation.getVatCountryCode());}
+        if(fields.contains("Promo Code")) {line.add(trs.getPromoCode());}
+        boolean paymentIdRequested = fields.contains("Payment ID");
+        boolean paymentGatewayRequested = fields.contains(PAYMENT_METHOD);
+        if((paymentIdRequested || paymentGatewayRequested)) {
+            Optional<Transaction> transaction = trs.getTransaction();
+            if(paymentIdRequested) { line.add(Objects.toString(transaction.map(Transaction::getPaymentId).orElse(null), transaction.map(Transaction::getTransactionId).orElse(""))); }
+            if(paymentGatewayRequested) { line.add(transaction.map(tr -> tr.getPaymentProxy().name()).orElse("")); }
+        }
+        if(fields.contains(EXTERNAL_REFERENCE)) {line.add(t.getExtReference());}
+
+        if(eInvoicingEnabled) {
+            var billingDetails = trs.getBillingDetails();
+            var optionalInvoicingData = Optional.ofNullable(billingDetails.getInvoicingAdditionalInfo()).map(TicketReservationInvoicingAdditionalInfo::getItalianEInvoicing);
+            if(fields.contains(FISCAL_CODE)) {line.add(optionalInvoicingData.map(ItalianEInvoicing::getFiscalCode).orElse(""));}
+            if(fields.contains(REFERENCE_TYPE)) {line.add(optionalInvoicingData.map(ItalianEInvoicing::getReferenceTypeAsString).orElse(""));}
+            if(fields.contains("Addressee Code")) {line.add(optionalInvoicingData.map(ItalianEInvoicing::getAddresseeCode).orElse(""));}
+            if(fields.contains("PEC")) {line.add(optionalInvoicingData.map(ItalianEInvoicing::getPec).orElse(""));}
+        }
+
+        //obviously not optimized
+        Map<String, List<String>> additionalValues = purchaseContextFieldRepository.findAllValuesForTicketId(t.getId());
+
+        Predicate<String> contains = FIXED_FIELDS::contains;
+
+        fields.stream().filter(contains.negate()).filter(f -> f.startsWith(CUSTOM_FIELDS_PREFIX)).forEachOrdered(field -> {
+            String customFieldName = field.substring(CUSTOM_FIELDS_PREFIX.length());
+            line.add(String.join("; ", additionalValues.getOrDefault(customFieldName, List.of())).replace("\"", ""));
+        });
+
+        return line.toArray(new String[0]);
+    }
+
+    public ExportData sponsorScans(String eventName, String username) {
+        var event = eventManager.getSingleEvent(eventName, username);
+        List<PurchaseContextFieldConfiguration> fields = purchaseContextFieldRepository.findAdditionalFieldsForEvent(event.getId());
+
+        List<String> header = new ArrayList<>();
+        header.add("Username/Api Key");
+        header.add("Description");
+        header.add("Timestamp");
+        header.add("Full name");
+        header.add("Email");
+        header.addAll(fields.stream().map(PurchaseContextFieldConfiguration::getName).toList());
+        header.add("Sponsor notes");
+        header.add("Lead Status");
+        header.add("Operator");
+
+        // only the ids are loaded upfront, the scans are loaded page by page while writing
+        var scanIds = userManager.findAllEnabledUsers(username).stream()
+            .filter(u -> userManager.getUserRole(u) == Role.SPONSOR)
+            .map(u -> Pair.of(u, sponsorScanRepository.findScanIdsForExport(event.getId(), u.getId())))
+            .toList();
+        int size = scanIds.stream().mapToInt(p -> p.getRight().size()).sum();
+
+        Stream<String[]> rows = scanIds.stream()
+            .flatMap(p -> ListUtils.partition(p.getRight(), PAGE_SIZE).stream()
+                .flatMap(page -> sponsorScanRepository.loadSponsorDataByIds(page).stream())
+                .map(scan -> sponsorScanLine(p.getLeft(), scan, fields)));
+        return new ExportData(event.getShortName() + "-sponsor-scan", event.getShortName() + " sponsor scan", header.toArray(new String[0]), size, rows);
+    }
+
+    private String[] sponsorScanLine(User user, DetailedScanData scan, List<PurchaseContextFieldConfiguration> fields) {
+        Ticket ticket = scan.getTicket();
+        SponsorScan sponsorScan = scan.getSponsorScan();
+        Map<String, List<String>> descriptions = purchaseContextFieldRepository.findAllValuesForTicketId(ticket.getId());
+        List<String> line = new ArrayList<>();
+        line.add(user.getUsername());
+        line.add(user.getDescription());
+        line.add(sponsorScan.getTimestamp().toString());
+        line.add(ticket.getFullName());
+        line.add(ticket.getEmail());
+        fields.forEach(x -> line.add(String.join("; ", descriptions.getOrDefault(x.getName(), List.of()))));
+        line.add(sponsorScan.getNotes());
+        line.add(sponsorScan.getLeadStatus().name());
+        line.add(sponsorScan.getOperator());
+        return line.toArray(new String[0]);
+    }
+}
@@ -19,6 +19,7 @@ package alfio.manager;
 import alfio.config.Initializer;
 import alfio.controller.form.SearchOptions;
 import alfio.manager.support.CategoryEvaluator;
+import alfio.manager.support.ReadReplica;
 import alfio.manager.support.extension.ExtensionCapability;
 import alfio.manager.system.ConfigurationManager;
 import alfio.manager.user.UserManager;
@@ -352,8 +353,8 @@ public class EventManager {
         if(seatsDifference != 0) {
             Event modified = eventRepository.findById(eventId);
             if(seatsDifference > 0) {
-                final MapSqlParameterSource[] params = generateEmptyTickets(modified, Date.from(ZonedDateTime.now(clockProvider.withZone(modified.getZoneId())).toInstant()), seatsDifference, TicketStatus.RELEASED).toArray(MapSqlParameterSource[]::new);
-                ticketRepository.bulkTicketInitialization(params);
+                var tickets = generateEmptyTickets(modified, Date.from(ZonedDateTime.now(clockProvider.withZone(modified.getZoneId())).toInstant()), seatsDifference, TicketStatus.RELEASED);
+                ticketRepository.bulkTicketInitialization(List.of(tickets));
             } else {
                 List<Integer> ids = ticketRepository.selectNotAllocatedTicketsForUpdate(eventId, Math.abs(seatsDifference), singletonList(TicketStatus.FREE.name()));
                 Validate.isTrue(ids.size() == Math.abs(seatsDifference), "cannot lock enough tickets for deletion.");
@@ -543,35 +544,34 @@ public class EventManager {
         return ticketCategoryRepository.getByIdsAndActive(categoryIds, event.getId());
     }
 
-    MapSqlParameterSource[] prepareTicketsBulkInsertParameters(ZonedDateTime creation,
-                                                               Event event, int requestedTickets, TicketStatus ticketStatus) {
+    List<TicketInitialization> prepareTicketsBulkInsertParameters(ZonedDateTime creation,
+                                                                  Event event, int requestedTickets, TicketStatus ticketStatus) {
 
         //FIXME: the date should be inserted as ZonedDateTime !
         Date creationDate = Date.from(creation.toInstant());
 
         List<TicketCategory> categories = ticketCategoryRepository.findAllTicketCategories(event.getId());
-        Stream<MapSqlParameterSource> boundedTickets = categories.stream()
+        List<TicketInitialization> boundedTickets = categories.stream()
                 .filter(IS_CATEGORY_BOUNDED)
-                .flatMap(tc -> generateTicketsForCategory(tc, event, creationDate, 0));
+                .map(tc -> generateTicketsForCategory(tc, event, creationDate, 0))
+                .collect(Collectors.toCollection(ArrayList::new));
         int generatedTickets = categories.stream()
                 .filter(IS_CATEGORY_BOUNDED)
                 .mapToInt(TicketCategory::getMaxTickets)
                 .sum();
-        if(generatedTickets >= requestedTickets) {
-            return boundedTickets.toArray(MapSqlParameterSource[]::new);
+        if(generatedTickets < requestedTickets) {
+            boundedTickets.add(generateEmptyTickets(event, creationDate, requestedTickets - generatedTickets, ticketStatus));
         }
-
-        return Stream.concat(boundedTickets, generateEmptyTickets(event, creationDate, requestedTickets - generatedTickets, ticketStatus)).toArray(MapSqlParameterSource[]::new);
+        return boundedTickets;
     }
 
-    private Stream<MapSqlParameterSource> generateTicketsForCategory(TicketCategory tc,
-                                                                     Event event,
-                                                                     Date creationDate,
-                                                                     int existing) {
+    private TicketInitialization generateTicketsForCategory(TicketCategory tc,
+                                                            Event event,
+                                                            Date creationDate,
+                                                            int existing) {
         Optional<TicketCategory> filteredTC = Optional.of(tc).filter(TicketCategory::isBounded);
         int missingTickets = filteredTC.map(c -> Math.abs(c.getMaxTickets() - existing)).orElseGet(() -> eventRepository.countExistingTickets(event.getId()) - existing);
-        return generateStreamForTicketCreation(missingTickets)
-                    .map(ps -> buildTicketParams(event.getId(), creationDate, filteredTC, tc.getSrcPriceCts(), ps));
+        return new TicketInitialization(event.getId(), filteredTC.map(TicketCategory::getId).orElse(null), creationDate, TicketStatus.FREE, tc.getSrcPriceCts(), missingTickets);
     }
 
     private void createCategoriesForEvent(EventModification em, Event event, Optional<EventAndOrganizationId> srcEventOptional) {
@@ -823,15 +823,16 @@ public class EventManager {
                 throw new IllegalStateException("Cannot invalidate "+absDifference+" tickets. There are only "+actualDifference+" free tickets");
             }
             ticketRepository.invalidateTickets(ids);
-            final MapSqlParameterSource[] params = generateEmptyTickets(event, Date.from(event.now(clockProvider).toInstant()), absDifference, resetToFree ? TicketStatus.FREE : TicketStatus.RELEASED).toArray(MapSqlParameterSource[]::new);
-            ticketRepository.bulkTicketInitialization(params);
+            var tickets = generateEmptyTickets(event, Date.from(event.now(clockProvider).toInstant()), absDifference, resetToFree ? TicketStatus.FREE : TicketStatus.RELEASED);
+            ticketRepository.bulkTicketInitialization(List.of(tickets));
         }
     }
 
     private void createAllTicketsForEvent(Event event, EventModification em) {
         Objects.requireNonNull(em.getAvailableSeats());
-        final MapSqlParameterSource[] params = prepareTicketsBulkInsertParameters(event.now(clockProvider), event, em.getAvailableSeats(), TicketStatus.FREE);
-        ticketRepository.bulkTicketInitialization(params);
+        var tickets = prepareTicketsBulkInsertParameters(event.now(clockProvider), event, em.getAvailableSeats(), TicketStatus.FREE);
+        int created = ticketRepository.bulkTicketInitialization(tickets);
+        log.info("created {} tickets for event {}", created, event.getShortName());
     }
 
     private int insertEvent(EventModification em) {
@@ -923,6 +924,9 @@ public class EventManager {
 
         promoCodeRepository.addPromoCode(promoCode, eventId, organizationId, start, end, discountAmount, discountType,
             Json.GSON.toJson(categoriesId), maxUsage, description, emailReference, codeType, hiddenCategoryId, currencyCode);
+        if(codeType == PromoCodeDiscount.CodeType.ACCESS && eventId != null) {
+            promoCodeRepository.findPromoCodeInEventOrOrganization(eventId, promoCode).ifPresent(this::fillAccessCodePool);
+        }
     }
 
     public void deletePromoCode(int promoCodeId) {
@@ -935,6 +939,17 @@ public class EventManager {
         String categoriesJson = CollectionUtils.isEmpty(categories) ? null : Json.toJson(categories);
 
         promoCodeRepository.updateEventPromoCode(promoCodeId, start, end, maxUsage, categoriesJson, description, emailReference, hiddenCategoryId);
+        fillAccessCodePool(promoCodeRepository.findById(promoCodeId));
+    }
+
+    /**
+     * Pre-fills the token pool of an access code, so that the first reservations don't have to lock the code.
+     * The code is either new or locked by the current transaction.
+     */
+    private void fillAccessCodePool(PromoCodeDiscount accessCode) {
+        if(accessCode.getCodeType() == PromoCodeDiscount.CodeType.ACCESS && accessCode.getHiddenCategoryId() != null) {
+            specialPriceRepository.topUpAccessCodePool(accessCode.getHiddenCategoryId(), accessCode.getId(), accessCode.getMaxUsage(), SpecialPriceRepository.ACCESS_CODE_POOL_SLICE);
+        }
     }
 
     public List<PromoCodeDiscountWithFormattedTimeAndAmount> findPromoCodesInEvent(int eventId) {
@@ -952,12 +967,14 @@ public class EventManager {
         return StringUtils.removeEnd(baseUrl, "/") + "/event/" + event.getShortName() + "/";
     }
 
+    @ReadReplica
     public List<TicketWithReservationAndTransaction> findAllConfirmedTicketsForCSV(String eventName, String username) {
         EventAndOrganizationId event = getEventAndOrganizationId(eventName, username);
         checkOwnership(event, username, event.getOrganizationId());
         return ticketRepository.findAllConfirmedForCSV(event.getId());
     }
 
+    @ReadReplica
     public List<Event> getPublishedEvents(SearchOptions searchOptions) {
         return eventRepository.findVisibleBySearchOptions(searchOptions.getSubscriptionCodeUUIDOrNull(),
             searchOptions.getOrganizer(),
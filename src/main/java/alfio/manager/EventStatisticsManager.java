@@ -16,6 +16,7 @@
  */
 package alfio.manager;
 
+import alfio.manager.support.ReadReplica;
 import alfio.manager.support.extension.ExtensionCapability;
 import alfio.manager.system.ConfigurationManager;
 import alfio.manager.user.UserManager;
@@ -92,6 +93,7 @@ public class EventStatisticsManager {
     }
 
 
+    @ReadReplica
     public List<EventStatistic> getAllEventsWithStatisticsFilteredBy(String username, Predicate<Event> predicate) {
         List<Event> events = getAllEvents(username).stream().filter(predicate).collect(toList());
         Map<Integer, Event> mappedEvent = events.stream().collect(Collectors.toMap(Event::getId, Function.identity()));
@@ -118,10 +120,12 @@ public class EventStatisticsManager {
     }
 
 
+    @ReadReplica
     public List<EventStatistic> getAllEventsWithStatistics(String username) {
         return getAllEventsWithStatisticsFilteredBy(username, e -> true);
     }
 
+    @ReadReplica
     public List<EventWithAdditionalInfo> getAllEventsWithAdditionalInfo(String username) {
         List<Integer> organizations = userManager.findUserOrganizations(username).stream().map(Organization::getId).toList();
         return eventRepository.findByOrganizationIds(organizations).stream()
@@ -181,6 +185,7 @@ public class EventStatisticsManager {
         return toSearch == null ? null : ("%" + toSearch + "%");
     }
 
+    @ReadReplica
     public List<TicketWithStatistic> loadModifiedTickets(int eventId, int categoryId, int page, String search) {
         Event event = eventRepository.findById(eventId);
         String toSearch = prepareSearchTerm(search);
@@ -191,6 +196,7 @@ public class EventStatisticsManager {
             .collect(Collectors.toList());
     }
 
+    @ReadReplica
     public Integer countModifiedTicket(int eventId, int categoryId, String search) {
         String toSearch = prepareSearchTerm(search);
         return ticketSearchRepository.countAllModifiedTicketsWithReservationAndTransaction(eventId, categoryId, toSearch);
@@ -207,18 +213,22 @@ public class EventStatisticsManager {
         };
     }
 
+    @ReadReplica
     public Optional<ZonedDateTime> getFirstReservationConfirmedTimestamp(int eventId) {
         return ticketReservationRepository.getFirstConfirmationTimestampForEvent(eventId);
     }
 
+    @ReadReplica
     public Optional<ZonedDateTime> getFirstReservationCreatedTimestamp(int eventId) {
         return ticketReservationRepository.getFirstReservationCreatedTimestampForEvent(eventId);
     }
 
+    @ReadReplica
     public List<TicketsByDateStatistic> getTicketSoldStatistics(int eventId, ZonedDateTime from, ZonedDateTime to, String granularity) {
         return ticketReservationRepository.getSoldStatistic(eventId, from, to, granularity);
     }
 
+    @ReadReplica
     public List<TicketsByDateStatistic> getTicketReservedStatistics(int eventId, ZonedDateTime from, ZonedDateTime to, String granularity) {
         return ticketReservationRepository.getReservedStatistic(eventId, from, to, granularity);
     }
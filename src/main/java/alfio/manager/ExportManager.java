@@ -16,22 +16,54 @@
  */
 package alfio.manager;
 
+import alfio.manager.support.ExportData;
 import alfio.manager.user.UserManager;
 import alfio.model.ReservationsByEvent;
+import alfio.model.support.ReservationInfo;
+import alfio.model.support.TicketInfo;
 import alfio.model.user.Organization;
 import alfio.repository.ExportRepository;
 import alfio.util.ClockProvider;
+import alfio.util.MonetaryUtil;
+import org.apache.commons.collections4.ListUtils;
 import org.springframework.stereotype.Component;
 
 import java.security.Principal;
 import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNullElse;
+import static java.util.Objects.requireNonNullElseGet;
 
 @Component
 public class ExportManager {
 
+    private static final int PAGE_SIZE = 200;
+    private static final String[] RESERVATIONS_HEADER = new String[] {
+        "Event Name",
+        "Reservation ID",
+        "Confirmation Date",
+        "Billed to",
+        "Tax ID",
+        "Tax Code",
+        "Invoice #",
+        "Amount",
+        "Tax",
+        "Currency",
+        "Payment Type",
+        "Ticket ID",
+        "Ticket Type",
+        "Ticket Amount",
+        "Ticket Tax",
+        "Attendee",
+        "Status"
+    };
+
     private final ExportRepository exportRepository;
     private final ClockProvider clockProvider;
     private final UserManager userManager;
@@ -45,16 +77,89 @@ public class ExportManager {
     }
 
     public List<ReservationsByEvent> reservationsForInterval(LocalDate from, LocalDate to, Principal principal) {
+        var orgIds = organizationIds(from, to, Objects.requireNonNull(principal).getName());
+        return exportRepository.allReservationsForInterval(startOf(from), endOf(to), orgIds);
+    }
+
+    /**
+     * Builds the reservations export, one sheet per event. Reservations are loaded page by page while writing,
+     * each page with its own query, so that neither the rows nor a connection are held for the whole export.
+     *
+     * @return the export. Contains no sheets if there are no reservations in the given interval
+     */
+    public ExportData reservationsExport(LocalDate from, LocalDate to, String username) {
+        var orgIds = organizationIds(from, to, username);
+        var start = startOf(from);
+        var end = endOf(to);
+        var events = exportRepository.findEventsWithReservationsForInterval(start, end, orgIds);
+        int size = events.isEmpty() ? 0 : exportRepository.countTicketsForInterval(start, end, orgIds);
+        var sheets = events.stream()
+            .map(e -> new ExportData.Sheet(e.getShortName(), RESERVATIONS_HEADER, reservationRows(e.getId(), start, end)))
+            .toList();
+        return new ExportData("all-reservations", size, sheets);
+    }
+
+    private List<Integer> organizationIds(LocalDate from, LocalDate to, String username) {
         if (from.isAfter(to)) {
             throw new IllegalArgumentException("Wrong interval");
         }
-        var orgIds = userManager.findUserOrganizations(Objects.requireNonNull(principal).getName());
+        var orgIds = userManager.findUserOrganizations(username);
         if (orgIds.isEmpty()) {
             throw new IllegalArgumentException("Wrong user");
         }
-        var zoneId = clockProvider.getClock().getZone();
-        var zonedFrom = from.atStartOfDay().atZone(zoneId);
-        var zonedTo = to.plusDays(1).atStartOfDay().minusSeconds(1).atZone(zoneId);
-        return exportRepository.allReservationsForInterval(zonedFrom, zonedTo, orgIds.stream().map(Organization::getId).collect(Collectors.toList()));
+        return orgIds.stream().map(Organization::getId).collect(Collectors.toList());
+    }
+
+    private ZonedDateTime startOf(LocalDate from) {
+        return from.atStartOfDay().atZone(clockProvider.getClock().getZone());
+    }
+
+    private ZonedDateTime endOf(LocalDate to) {
+        return to.plusDays(1).atStartOfDay().minusSeconds(1).atZone(clockProvider.getClock().getZone());
+    }
+
+    private Stream<String[]> reservationRows(int eventId, ZonedDateTime start, ZonedDateTime end) {
+        // the ids are loaded only when the sheet is written
+        return Stream.of(eventId)
+            .flatMap(id -> ListUtils.partition(exportRepository.findReservationIdsForInterval(start, end, id), PAGE_SIZE).stream())
+            .flatMap(page -> exportRepository.findReservationsByIds(page).stream())
+            .flatMap(e -> e.getReservations().stream()
+                .sorted(Comparator.comparing(ReservationInfo::getConfirmationTimestamp))
+                .flatMap(r -> r.getTickets().stream().map(t -> buildTicketRow(e, r, t))));
+    }
+
+    private static String[] buildTicketRow(ReservationsByEvent eventWithReservations,
+                                           ReservationInfo r,
+                                           TicketInfo t) {
+        return new String[]{
+            eventWithReservations.getDisplayName(),
+            r.getId(),
+            r.getConfirmationTimestamp(),
+            billingCompanyOrFullName(r),
+            r.getTaxId(),
+            r.getTaxCode(),
+            r.getInvoiceNumber(),
+            formatAmount(r.getSrcPriceCts(), r.getCurrency()),
+            formatAmount(r.getTaxCts(), r.getCurrency()),
+            r.getCurrency(),
+            r.getPaymentType().name(),
+            t.getId(),
+            t.getType(),
+            formatAmount(t.getSrcPriceCts(), r.getCurrency()),
+            formatAmount(t.getTaxCts(), r.getCurrency()),
+            (requireNonNullElse(t.getFirstName(), "") + " " + requireNonNullElse(t.getLastName(), "")).trim(),
+            t.getStatus()
+        };
+    }
+
+    private static String billingCompanyOrFullName(ReservationInfo r) {
+        return requireNonNullElseGet(r.getCompanyName(), () -> r.getFirstName() + " " + r.getLastName());
+    }
+
+    private static String formatAmount(Integer originalCts, String currency) {
+        if (originalCts == null) {
+            return "";
+        }
+        return MonetaryUtil.formatCents(originalCts, currency);
     }
 }
@@ -16,6 +16,7 @@
  */
 package alfio.manager;
 
+import alfio.model.BlobCacheStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
@@ -28,21 +29,50 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
+/**
+ * On-disk cache for blobs. The total size is bounded by {@code alfio.blob-cache.max-size-mb}:
+ * once the limit is exceeded, the least recently used files are removed until the cache
+ * is back below {@link #LOW_WATERMARK} of its maximum size.
+ */
 @Component
 public class FileBlobCacheManager {
 
     private static final Logger log = LoggerFactory.getLogger(FileBlobCacheManager.class);
+    private static final long DEFAULT_MAX_SIZE_MB = 512;
+    private static final double LOW_WATERMARK = 0.9;
+    private static final String TMP_PREFIX = "tmp";
+    private static final String TMP_SUFFIX = "fileblob";
+
     private final String cacheDir;
+    private final long maxSizeBytes;
+    private final Map<Path, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong accessCounter = new AtomicLong();
+    private final AtomicLong currentSize = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
 
 
     public FileBlobCacheManager(Environment environment) {
         this.cacheDir = environment.getProperty("alfio.cache-dir", System.getProperty("java.io.tmpdir"));
+        this.maxSizeBytes = environment.getProperty("alfio.blob-cache.max-size-mb", Long.class, DEFAULT_MAX_SIZE_MB) * 1024 * 1024;
+        loadExistingEntries();
+    }
+
+    private Path getBlobRoot() {
+        return Paths.get(cacheDir, "alfio-blob");
     }
 
     private Path getBlobDir(String section) {
-        return Paths.get(cacheDir, "alfio-blob").resolve(section);
+        return getBlobRoot().resolve(section);
     }
 
     private void checkPath(Path resourcePath, String section) {
@@ -61,14 +91,18 @@ public class FileBlobCacheManager {
         var resourcePath = getBlobDir(section).resolve(id);
         checkPath(resourcePath, section);
         if (Files.exists(resourcePath)) {
+            hits.incrementAndGet();
+            touch(resourcePath);
             return resourcePath.toFile();
         }
+        misses.incrementAndGet();
         log.debug("Cache not hit for file {}", id);
         var tmpFile = supplier.get();
         var dir = getBlobDir(section);
         try {
             Files.createDirectories(dir);
             Files.move(tmpFile.toPath(), resourcePath, StandardCopyOption.ATOMIC_MOVE);
+            register(resourcePath);
             return resourcePath.toFile();
         } catch (IOException e) {
             throw new IllegalStateException("Was not able to cache file for section " + section + " id " + id);
@@ -79,17 +113,132 @@ public class FileBlobCacheManager {
         var resourcePath = getBlobDir(section).resolve(id);
         checkPath(resourcePath, section);
         if (Files.exists(resourcePath)) {
+            touch(resourcePath);
             return;
         }
         try {
             // ensure directory
             var dir = getBlobDir(section);
             Files.createDirectories(dir);
-            var tmpFile = Files.createTempFile(dir, "tmp", "fileblob");
+            var tmpFile = Files.createTempFile(dir, TMP_PREFIX, TMP_SUFFIX);
             Files.write(tmpFile, supplier.get());
-            Files.move(tmpFile, dir.resolve(id), StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmpFile, resourcePath, StandardCopyOption.ATOMIC_MOVE);
+            register(resourcePath);
         } catch (IOException e) {
             log.warn("was not able to ensure file presence with section {} and id {}", section, id, e);
         }
     }
+
+    /**
+     * Removes the given file from the cache, if present
+     *
+     * @param section the cache section
+     * @param id the file id
+     */
+    public void evict(String section, String id) {
+        var resourcePath = getBlobDir(section).resolve(id);
+        checkPath(resourcePath, section);
+        delete(resourcePath);
+    }
+
+    public BlobCacheStatistics getStatistics() {
+        return new BlobCacheStatistics(hits.get(), misses.get(), evictions.get(), entries.size(), currentSize.get(), maxSizeBytes);
+    }
+
+    private void touch(Path resourcePath) {
+        var entry = entries.get(resourcePath);
+        if (entry != null) {
+            entry.lastAccess = accessCounter.incrementAndGet();
+        } else {
+            // the file has been written by someone else (e.g. a previous instance sharing the same directory)
+            register(resourcePath);
+        }
+    }
+
+    private void register(Path resourcePath) {
+        try {
+            long size = Files.size(resourcePath);
+            var previous = entries.put(resourcePath, new CacheEntry(size, accessCounter.incrementAndGet()));
+            currentSize.addAndGet(size - (previous != null ? previous.size : 0));
+        } catch (IOException e) {
+            log.warn("cannot determine size of file {}", resourcePath, e);
+            return;
+        }
+        if (currentSize.get() > maxSizeBytes) {
+            evictLeastRecentlyUsed(resourcePath);
+        }
+    }
+
+    private void evictLeastRecentlyUsed(Path justAdded) {
+        // only one thread at a time needs to clean up the cache
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long target = (long) (maxSizeBytes * LOW_WATERMARK);
+            var candidates = entries.entrySet().stream()
+                .filter(e -> !e.getKey().equals(justAdded))
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .map(Map.Entry::getKey)
+                .toList();
+            for (var path : candidates) {
+                if (currentSize.get() <= target) {
+                    break;
+                }
+                if (delete(path)) {
+                    evictions.incrementAndGet();
+                }
+            }
+            log.debug("blob cache eviction completed. Current size: {} bytes, {} files", currentSize.get(), entries.size());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean delete(Path resourcePath) {
+        var entry = entries.remove(resourcePath);
+        if (entry != null) {
+            currentSize.addAndGet(-entry.size);
+        }
+        try {
+            return Files.deleteIfExists(resourcePath) || entry != null;
+        } catch (IOException e) {
+            log.warn("cannot delete cached file {}", resourcePath, e);
+            return false;
+        }
+    }
+
+    private void loadExistingEntries() {
+        var root = getBlobRoot();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        // files are registered in order of modification, so that the oldest ones are evicted first
+        try (var files = Files.walk(root, 2)) {
+            files.filter(Files::isRegularFile)
+                .sorted(Comparator.comparingLong(p -> p.toFile().lastModified()))
+                .forEach(path -> {
+                    var fileName = path.getFileName().toString();
+                    if (fileName.startsWith(TMP_PREFIX) && fileName.endsWith(TMP_SUFFIX)) {
+                        // leftover of an interrupted write
+                        delete(path);
+                    } else {
+                        register(path);
+                    }
+                });
+            log.info("blob cache initialized with {} files, {} bytes", entries.size(), currentSize.get());
+        } catch (IOException | RuntimeException e) {
+            log.warn("cannot load existing blob cache entries from {}", root, e);
+        }
+    }
+
+    private static final class CacheEntry {
+        private final long size;
+        private volatile long lastAccess;
+
+        private CacheEntry(long size, long lastAccess) {
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
 }
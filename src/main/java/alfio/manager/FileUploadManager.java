@@ -16,15 +16,21 @@
  */
 package alfio.manager;
 
+import alfio.model.BlobCacheStatistics;
 import alfio.model.FileBlobMetadata;
 import alfio.model.modification.UploadBase64FileModification;
 import alfio.repository.FileUploadRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.imgscalr.Scalr;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
@@ -34,6 +40,7 @@ import org.springframework.util.MimeTypeUtils;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
@@ -54,14 +61,31 @@ public class FileUploadManager {
     private final FileUploadRepository repository;
     private final FileBlobCacheManager fileBlobCacheManager;
 
-    public FileUploadManager(FileUploadRepository repository, FileBlobCacheManager fileBlobCacheManager) {
+    private final Environment environment;
+    private final Cache<String, FileBlobMetadata> metadataCache = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .expireAfterAccess(Duration.ofHours(1L))
+        .build();
+
+    public FileUploadManager(FileUploadRepository repository,
+                             FileBlobCacheManager fileBlobCacheManager,
+                             Environment environment) {
         this.repository = repository;
         this.fileBlobCacheManager = fileBlobCacheManager;
+        this.environment = environment;
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Files are content-addressed, so their metadata never changes and can be kept in memory.
+     */
     public Optional<FileBlobMetadata> findMetadata(String id) {
-        return repository.findById(id);
+        var cached = metadataCache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        var metadata = repository.findById(id);
+        metadata.ifPresent(m -> metadataCache.put(id, m));
+        return metadata;
     }
 
     public boolean hasCached(String digest) {
@@ -116,8 +140,40 @@ public class FileUploadManager {
 
     @Transactional
     public void cleanupUnreferencedBlobFiles(Date date) {
-        int deleted = repository.cleanupUnreferencedBlobFiles(date);
-        log.debug("removed {} unused file_blob", deleted);
+        var deleted = repository.cleanupUnreferencedBlobFiles(date);
+        deleted.forEach(id -> {
+            metadataCache.invalidate(id);
+            fileBlobCacheManager.evict(FILE_SECTION, id);
+        });
+        log.debug("removed {} unused file_blob", deleted.size());
+    }
+
+    /**
+     * Preloads in the local cache the files (logos, images) of the events and subscriptions
+     * which are currently on sale, so that the first requests after a deploy don't hit the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpCache() {
+        if (!environment.getProperty("alfio.blob-cache.warm-up", Boolean.class, true)) {
+            return;
+        }
+        try {
+            var ids = repository.findBlobIdsForActivePurchaseContexts();
+            int loaded = 0;
+            for (var id : ids) {
+                if (!fileBlobCacheManager.fileExists(FILE_SECTION, id)) {
+                    getFile(id);
+                    loaded++;
+                }
+            }
+            log.info("blob cache warm-up: loaded {} of {} active files", loaded, ids.size());
+        } catch (Exception e) {
+            log.warn("error while warming up the blob cache", e);
+        }
+    }
+
+    public BlobCacheStatistics getCacheStatistics() {
+        return fileBlobCacheManager.getStatistics();
     }
 
     /**
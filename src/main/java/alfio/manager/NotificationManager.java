@@ -31,6 +31,7 @@ import alfio.model.metadata.SubscriptionMetadata;
 import alfio.model.metadata.TicketMetadataContainer;
 import alfio.model.subscription.SubscriptionDescriptor;
 import alfio.model.system.ConfigurationKeys;
+import alfio.model.system.ScheduledJobPartition;
 import alfio.model.user.Organization;
 import alfio.repository.*;
 import alfio.repository.user.OrganizationRepository;
@@ -405,8 +406,16 @@ public class NotificationManager {
 
     @Transactional
     public int sendWaitingMessages() {
+        return sendWaitingMessages(ScheduledJobPartition.ALL);
+    }
+
+    /**
+     * Sends the waiting messages belonging to the given partition
+     */
+    @Transactional
+    public int sendWaitingMessages(ScheduledJobPartition partition) {
         emailMessageRepository.setToRetryOldInProcess(ZonedDateTime.now(clockProvider.getClock()).minusHours(1));
-        return emailMessageRepository.loadAllWaitingForProcessing().stream()
+        return emailMessageRepository.loadAllWaitingForProcessing(partition.count(), partition.slots()).stream()
             .collect(Collectors.groupingBy(NotificationManager::purchaseContextCacheKey))
             .entrySet().stream()
             .flatMapToInt(entry -> {
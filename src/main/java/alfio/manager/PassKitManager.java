@@ -36,7 +36,10 @@ import com.ryantenney.passkit4j.model.*;
 import com.ryantenney.passkit4j.sign.PassSigner;
 import com.ryantenney.passkit4j.sign.PassSignerImpl;
 import com.ryantenney.passkit4j.sign.PassSigningException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.AllArgsConstructor;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.imgscalr.Scalr;
@@ -47,6 +50,10 @@ import org.springframework.stereotype.Component;
 
 import javax.imageio.ImageIO;
 import java.io.*;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.*;
@@ -62,6 +69,32 @@ public class PassKitManager {
     private static final Logger log = LoggerFactory.getLogger(PassKitManager.class);
     private static final String APPLE_PASS = "ApplePass";
     private static final String PASSKIT_SECTION = "passkit";
+    private static final long PASS_CACHE_MAX_BYTES = 32L * 1024 * 1024;
+    // signing material is cached by a digest of the configuration values. A change of the passbook configuration
+    // results in a different key, so that stale entries are never used and simply expire.
+    private final Cache<String, SigningMaterial> signingMaterialCache = Caffeine.newBuilder()
+        .expireAfterAccess(Duration.ofHours(1L))
+        .build();
+    // generated .pkpass archives, by digest of everything that ends up in the pass
+    private final Cache<String, byte[]> passCache = Caffeine.newBuilder()
+        .maximumWeight(PASS_CACHE_MAX_BYTES)
+        .weigher((String key, byte[] value) -> value.length)
+        .expireAfterAccess(Duration.ofHours(1L))
+        .build();
+    // used while sending emails, where getPass is invoked once per ticket
+    private final Cache<Integer, Event> eventCache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(1L))
+        .maximumSize(100)
+        .build();
+    private final Cache<Integer, Organization> organizationCache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(1L))
+        .maximumSize(100)
+        .build();
+    // passbook configuration by event id. Changes are picked up within a minute
+    private final Cache<Integer, Map<ConfigurationKeys, String>> passConfigurationCache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(1L))
+        .maximumSize(100)
+        .build();
     private final EventRepository eventRepository;
     private final OrganizationRepository organizationRepository;
     private final ConfigurationManager configurationManager;
@@ -73,10 +106,9 @@ public class PassKitManager {
 
 
     public boolean writePass(Ticket ticket, EventAndOrganizationId event, OutputStream out) throws IOException, PassSigningException {
-        Organization organization = organizationRepository.getById(event.getOrganizationId());
         Map<ConfigurationKeys, String> passConf = getConfigurationKeys(event);
         if(!passConf.isEmpty()) {
-            buildPass(ticket, eventRepository.findById(event.getId()), organization, passConf, out);
+            out.write(buildPass(ticket, getEvent(event.getId()), getOrganization(event.getOrganizationId()), passConf));
             return true;
         } else {
             log.trace("Cannot generate Pass. Missing configuration keys, check if all 5 are presents");
@@ -92,8 +124,8 @@ public class PassKitManager {
             }
             Ticket ticket = Json.fromJson(model.get("ticket"), Ticket.class);
             int eventId = ticket.getEventId();
-            Event event = eventRepository.findById(eventId);
-            Organization organization = organizationRepository.getById(Integer.valueOf(model.get("organizationId"), 10));
+            Event event = getEvent(eventId);
+            Organization organization = getOrganization(Integer.parseInt(model.get("organizationId"), 10));
 
             Map<ConfigurationKeys, String> passConf = getConfigurationKeys(event);
             //check if all are set
@@ -102,10 +134,7 @@ public class PassKitManager {
                 return null;
             }
 
-            try (ByteArrayOutputStream out = new ByteArrayOutputStream()){
-                buildPass(ticket, event, organization, passConf, out);
-                return out.toByteArray();
-            }
+            return buildPass(ticket, event, organization, passConf);
         } catch (Exception ex) {
             log.warn("Got Exception while generating Passbook. Please check configuration.", ex);
             return null;
@@ -113,6 +142,10 @@ public class PassKitManager {
     }
 
     private Map<ConfigurationKeys, String> getConfigurationKeys(EventAndOrganizationId event) {
+        return passConfigurationCache.get(event.getId(), id -> loadConfigurationKeys(event));
+    }
+
+    private Map<ConfigurationKeys, String> loadConfigurationKeys(EventAndOrganizationId event) {
 
         var conf = configurationManager.getFor(Set.of(ENABLE_PASS,
             PASSBOOK_TYPE_IDENTIFIER, PASSBOOK_KEYSTORE, PASSBOOK_KEYSTORE_PASSWORD,
@@ -138,11 +171,18 @@ public class PassKitManager {
             .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().orElseThrow()));
     }
 
-    private void buildPass(Ticket ticket,
-                           Event event,
-                           Organization organization,
-                           Map<ConfigurationKeys, String> config,
-                           OutputStream out) throws IOException, PassSigningException {
+    private Event getEvent(int eventId) {
+        return eventCache.get(eventId, eventRepository::findById);
+    }
+
+    private Organization getOrganization(int organizationId) {
+        return organizationCache.get(organizationId, organizationRepository::getById);
+    }
+
+    private byte[] buildPass(Ticket ticket,
+                             Event event,
+                             Organization organization,
+                             Map<ConfigurationKeys, String> config) throws IOException, PassSigningException {
 
         // from example: https://github.com/ryantenney/passkit4j/blob/master/src/test/java/com/ryantenney/passkit4j/EventTicketExample.java
         // specification: https://developer.apple.com/library/archive/documentation/UserExperience/Conceptual/PassKit_PG/Creating.html#//apple_ref/doc/uid/TP40012195-CH4-SW6
@@ -150,15 +190,27 @@ public class PassKitManager {
         var ticketLocale = LocaleUtil.forLanguageTag(ticket.getUserLanguage());
         String teamIdentifier = config.get(PASSBOOK_TEAM_IDENTIFIER);
         String typeIdentifier = config.get(PASSBOOK_TYPE_IDENTIFIER);
-        byte[] keystoreRaw = Base64.getDecoder().decode(config.get(PASSBOOK_KEYSTORE));
-        String keystorePwd = config.get(PASSBOOK_KEYSTORE_PASSWORD);
-        String privateKeyAlias = config.get(PASSBOOK_PRIVATE_KEY_ALIAS);
-
+        String signingMaterialKey = DigestUtils.sha256Hex(String.join("\n", config.get(PASSBOOK_KEYSTORE),
+            config.get(PASSBOOK_KEYSTORE_PASSWORD), config.get(PASSBOOK_PRIVATE_KEY_ALIAS)));
 
         String eventDescription = MustacheCustomTag.renderToTextCommonmark(
             eventDescriptionRepository.findDescriptionByEventIdTypeAndLocale(event.getId(), EventDescription.EventDescriptionType.DESCRIPTION, ticket.getUserLanguage()).orElse(""));
         TicketCategory category = ticketCategoryRepository.getById(ticket.getCategoryId());
         var ticketValidityStart = Optional.ofNullable(category.getTicketValidityStart(event.getZoneId())).orElse(event.getBegin());
+        var ticketValidityEnd = Optional.ofNullable(category.getTicketValidityEnd(event.getZoneId())).orElse(event.getEnd());
+        String ticketCode = ticket.ticketCode(event.getPrivateKey(), event.supportsQRCodeCaseInsensitive());
+
+        String passKey = DigestUtils.sha256Hex(String.join("\n", signingMaterialKey, teamIdentifier, typeIdentifier,
+            ticket.getUuid(), ticketCode, String.valueOf(ticket.getUserLanguage()),
+            organization.getName(), String.valueOf(organization.getEmail()),
+            event.getDisplayName(), String.valueOf(event.getLocation()), String.valueOf(event.getLatitude()), String.valueOf(event.getLongitude()),
+            String.valueOf(event.getFileBlobId()), category.getName(), ticketValidityStart.toString(), ticketValidityEnd.toString(),
+            eventDescription));
+        byte[] cachedPass = passCache.getIfPresent(passKey);
+        if (cachedPass != null) {
+            log.trace("pass for ticket {} found in cache", ticket.getUuid());
+            return cachedPass;
+        }
         Pass pass = new Pass()
             .teamIdentifier(teamIdentifier)
             .passTypeIdentifier(typeIdentifier)
@@ -169,9 +221,9 @@ public class PassKitManager {
             //.authenticationToken(buildAuthenticationToken(ticket, event, event.getPrivateKey()))
             //.webServiceURL(StringUtils.removeEnd(configurationManager.getRequiredValue(Configuration.getSystemConfiguration(BASE_URL)), "/") + "/api/pass/event/" + event.getShortName() +"/")
             .relevantDate(Date.from(ticketValidityStart.toInstant()))
-            .expirationDate(Date.from(Optional.ofNullable(category.getTicketValidityEnd(event.getZoneId())).orElse(event.getEnd()).toInstant()))
+            .expirationDate(Date.from(ticketValidityEnd.toInstant()))
 
-            .barcode(new Barcode(BarcodeFormat.QR, ticket.ticketCode(event.getPrivateKey(), event.supportsQRCodeCaseInsensitive())))
+            .barcode(new Barcode(BarcodeFormat.QR, ticketCode))
             .labelColor(Color.BLACK)
             .foregroundColor(Color.BLACK)
             .backgroundColor(Color.WHITE)
@@ -223,13 +275,39 @@ public class PassKitManager {
         });
 
         pass.files(passResources.toArray(new PassResource[0]));
+        var out = new ByteArrayOutputStream();
+        PassSerializer.writePkPassArchive(pass, getSigningMaterial(signingMaterialKey, config).newSigner(), out);
+        byte[] result = out.toByteArray();
+        passCache.put(passKey, result);
+        return result;
+    }
+
+    private SigningMaterial getSigningMaterial(String key, Map<ConfigurationKeys, String> config) throws IOException, PassSigningException {
+        var cached = signingMaterialCache.getIfPresent(key);
+        if(cached != null) {
+            return cached;
+        }
+        byte[] keystoreRaw = Base64.getDecoder().decode(config.get(PASSBOOK_KEYSTORE));
+        String keystorePwd = config.get(PASSBOOK_KEYSTORE_PASSWORD);
+        String privateKeyAlias = config.get(PASSBOOK_PRIVATE_KEY_ALIAS);
         try(InputStream appleCert = new ClassPathResource("/alfio/certificates/AppleWWDRCAG4.cer").getInputStream()) {
-            PassSigner signer = PassSignerImpl.builder()
+            // let passkit4j parse the PKCS#12 keystore, then keep the decrypted key and certificates,
+            // since a PassSigner instance cannot be shared between threads
+            var builder = PassSignerImpl.builder()
                 .keystore(new ByteArrayInputStream(keystoreRaw), keystorePwd)
                 .alias(privateKeyAlias)
-                .intermediateCertificate(appleCert)
-                .build();
-            PassSerializer.writePkPassArchive(pass, signer, out);
+                .intermediateCertificate(appleCert);
+            var keyStore = builder.keyStore();
+            var signingMaterial = new SigningMaterial((X509Certificate) keyStore.getCertificate(privateKeyAlias),
+                (PrivateKey) keyStore.getKey(privateKeyAlias, keystorePwd.toCharArray()),
+                builder.intermediateCertificate());
+            if(signingMaterial.signingCertificate() == null || signingMaterial.privateKey() == null) {
+                throw new PassSigningException("Cannot find private key or certificate for alias " + privateKeyAlias);
+            }
+            signingMaterialCache.put(key, signingMaterial);
+            return signingMaterial;
+        } catch (GeneralSecurityException e) {
+            throw new PassSigningException("Cannot load signing material", e);
         }
     }
 
@@ -285,6 +363,14 @@ public class PassKitManager {
         return null;
     }
 
+    private record SigningMaterial(X509Certificate signingCertificate,
+                                   PrivateKey privateKey,
+                                   X509Certificate intermediateCertificate) {
+        PassSigner newSigner() throws PassSigningException {
+            return new PassSignerImpl(signingCertificate, privateKey, intermediateCertificate);
+        }
+    }
+
     private static File scaleLogo(File sourceImage, int factor) {
         try {
             // base image is 160 x 50 points.
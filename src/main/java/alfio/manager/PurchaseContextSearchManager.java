@@ -16,6 +16,7 @@
  */
 package alfio.manager;
 
+import alfio.manager.support.ReadReplica;
 import alfio.model.Event;
 import alfio.model.PurchaseContext;
 import alfio.model.ReservationPaymentDetail;
@@ -27,7 +28,6 @@ import lombok.AllArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Arrays;
 import java.util.EnumSet;
@@ -37,7 +37,7 @@ import java.util.stream.Collectors;
 import static java.util.stream.Collectors.toList;
 
 @Component
-@Transactional(readOnly = true)
+@ReadReplica
 @AllArgsConstructor
 public class PurchaseContextSearchManager {
 
@@ -52,7 +52,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
-import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
@@ -63,6 +62,7 @@ import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.function.Function;
 
+import static alfio.manager.system.AdminJobExecutor.JobName.PROVISION_GOOGLE_WALLET_OBJECTS;
 import static alfio.manager.system.AdminJobExecutor.JobName.RETRY_RESERVATION_CONFIRMATION;
 import static alfio.model.Audit.EventType.SUBSCRIPTION_ACQUIRED;
 import static alfio.model.TicketReservation.TicketReservationStatus.*;
@@ -151,7 +151,7 @@ public class ReservationFinalizer {
 
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     public void finalizeCommandReceived(FinalizeReservation finalizeReservation) {
-        transactionTemplate.executeWithoutResult(ctx -> processFinalizeReservation(finalizeReservation, ctx, true));
+        processFinalizeReservation(finalizeReservation, true);
     }
 
     public void retryFinalizeReservation(RetryFinalizeReservation retryFinalizeReservation) {
@@ -162,42 +162,28 @@ public class ReservationFinalizer {
         var totalPrice = costResult.getLeft();
         var orderSummary = orderSummaryGenerator.orderSummaryForReservation(reservation, purchaseContext);
         var paymentSpecification = new PaymentSpecification(reservation, totalPrice, purchaseContext, null, null, orderSummary, retryFinalizeReservation.isTcAccepted(), retryFinalizeReservation.isPrivacyPolicyAccepted());
-        transactionTemplate.executeWithoutResult(ctx -> processFinalizeReservation(new FinalizeReservation(paymentSpecification, retryFinalizeReservation.getPaymentProxy(), retryFinalizeReservation.isSendReservationConfirmationEmail(), retryFinalizeReservation.isSendTickets(), retryFinalizeReservation.getUsername(), retryFinalizeReservation.getOriginalStatus()), ctx, false));
+        processFinalizeReservation(new FinalizeReservation(paymentSpecification, retryFinalizeReservation.getPaymentProxy(), retryFinalizeReservation.isSendReservationConfirmationEmail(), retryFinalizeReservation.isSendTickets(), retryFinalizeReservation.getUsername(), retryFinalizeReservation.getOriginalStatus()), false);
     }
 
-    private void processFinalizeReservation(FinalizeReservation finalizeReservation, TransactionStatus ctx, boolean scheduleRetryOnError) {
-        Object savepoint = ctx.createSavepoint();
+    /**
+     * Finalizes the reservation in two consecutive transactions. The first one allocates the invoice number and
+     * commits right away, so that the lock on the invoice sequence is not held while the reservation is completed.
+     * Since the number is committed together with the reservation, a failed completion keeps it and the retry reuses it.
+     */
+    private void processFinalizeReservation(FinalizeReservation finalizeReservation, boolean scheduleRetryOnError) {
         var spec = finalizeReservation.getPaymentSpecification();
         try {
-            var reservation = ticketReservationRepository.findReservationById(spec.getReservationId());
-            var totalPrice = reservationCostCalculator.totalReservationCostWithVAT(reservation);
-            var metadata = ticketReservationRepository.getMetadata(reservation.getId());
-            // generate invoice number
-            if (reservation.getStatus() != COMPLETE && StringUtils.isBlank(reservation.getInvoiceNumber()) && !metadata.isReadyForConfirmation()) {
-                boolean traceEnabled = log.isTraceEnabled();
-                if (traceEnabled) {
-                    log.trace("Generating invoice number for reservation {}", reservation.getId());
-                }
-                var invoiceNumberOptional = billingDocumentManager.generateInvoiceNumber(spec, totalPrice.getKey());
-                invoiceNumberOptional.ifPresent(s -> setInvoiceNumber(spec.getReservationId(), s));
-            }
-            // no exceptions here. We can save the progress
-            ticketReservationRepository.setMetadata(reservation.getId(), metadata.withReadyForConfirmation(true));
-            ctx.releaseSavepoint(savepoint);
-            savepoint = ctx.createSavepoint();
-
-            // complete reservation
-            completeReservation(finalizeReservation);
+            transactionTemplate.executeWithoutResult(ctx -> prepareForConfirmation(spec));
+            transactionTemplate.executeWithoutResult(ctx -> completeReservation(finalizeReservation));
         } catch(Exception e) {
-            ctx.rollbackToSavepoint(savepoint);
             if (!scheduleRetryOnError) {
                 throw e;
             }
-            boolean scheduled = AdminJobManager.executionScheduler(
+            boolean scheduled = Boolean.TRUE.equals(transactionTemplate.execute(ctx -> AdminJobManager.executionScheduler(
                 RETRY_RESERVATION_CONFIRMATION,
                 Map.of("payload", json.asJsonString(RetryFinalizeReservation.fromFinalizeReservation(finalizeReservation))),
                 ZonedDateTime.now(clockProvider.getClock()).plusSeconds(2L)
-            ).apply(adminJobQueueRepository);
+            ).apply(adminJobQueueRepository)));
             if(!scheduled) {
                 log.warn("Cannot schedule retry for reservation {}", spec.getReservationId());
                 // throw exception only if we can't schedule the retry
@@ -205,11 +191,28 @@ public class ReservationFinalizer {
             } else {
                 log.warn("Error while confirming reservation "+ spec.getReservationId() + ". Will retry in 2s", e);
             }
-        } finally {
-            ctx.releaseSavepoint(savepoint);
         }
     }
 
+    private void prepareForConfirmation(PaymentSpecification spec) {
+        var reservation = ticketReservationRepository.findReservationById(spec.getReservationId());
+        var metadata = ticketReservationRepository.getMetadata(reservation.getId());
+        if (metadata.isReadyForConfirmation()) {
+            return;
+        }
+        // generate invoice number
+        if (reservation.getStatus() != COMPLETE && StringUtils.isBlank(reservation.getInvoiceNumber())) {
+            var totalPrice = reservationCostCalculator.totalReservationCostWithVAT(reservation);
+            boolean traceEnabled = log.isTraceEnabled();
+            if (traceEnabled) {
+                log.trace("Generating invoice number for reservation {}", reservation.getId());
+            }
+            var invoiceNumberOptional = billingDocumentManager.generateInvoiceNumber(spec, totalPrice.getKey());
+            invoiceNumberOptional.ifPresent(s -> setInvoiceNumber(spec.getReservationId(), s));
+        }
+        ticketReservationRepository.setMetadata(reservation.getId(), metadata.withReadyForConfirmation(true));
+    }
+
 
     private void setInvoiceNumber(String reservationId, String invoiceNumber) {
         if (log.isTraceEnabled()) {
@@ -342,9 +345,26 @@ public class ReservationFinalizer {
                 }
                 extensionManager.handleTicketAssignment(ticket, ticketCategoryRepository.getById(ticket.getCategoryId()), additionalInfo);
             });
+        if(purchaseContext.ofType(PurchaseContext.PurchaseContextType.event) && !assignedTickets.isEmpty()) {
+            scheduleWalletProvisioning(reservationId, purchaseContext);
+        }
         return assignedTickets;
     }
 
+    private void scheduleWalletProvisioning(String reservationId, PurchaseContext purchaseContext) {
+        // wallet objects are created in background, so that the link in the ticket email can be signed without calling the Wallet API
+        if(configurationManager.getFor(ENABLE_WALLET, purchaseContext.getConfigurationLevel()).getValueAsBooleanOrDefault()) {
+            boolean scheduled = AdminJobManager.executionScheduler(
+                PROVISION_GOOGLE_WALLET_OBJECTS,
+                Map.of("reservationId", reservationId),
+                ZonedDateTime.now(clockProvider.getClock())
+            ).apply(adminJobQueueRepository);
+            if(!scheduled) {
+                log.warn("Cannot schedule wallet provisioning for reservation {}", reservationId);
+            }
+        }
+    }
+
     private void acquireSubscription(PaymentProxy paymentProxy, String reservationId, PurchaseContext purchaseContext, CustomerName customerName, String email) {
         if (log.isDebugEnabled()) {
             log.debug("Acquiring subscriptions for reservation {}; payment method: {}", removeTabsAndNewlines(reservationId), paymentProxy);
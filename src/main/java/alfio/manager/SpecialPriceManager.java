@@ -92,6 +92,12 @@ public class SpecialPriceManager {
         return specialPriceRepository.findAllByCategoryId(categoryId).stream().filter(p.negate()).collect(toList());
     }
 
+    public SpecialPriceGenerationStatus getCodeGenerationStatus(String eventName, int categoryId, String username) {
+        final EventAndOrganizationId event = eventManager.getEventAndOrganizationId(eventName, username);
+        checkOwnership(categoryId, event, username);
+        return specialPriceRepository.getGenerationStatus(categoryId);
+    }
+
     public boolean clearRecipientData(String eventName, int categoryId, int codeId, String username) {
         final EventAndOrganizationId event = eventManager.getEventAndOrganizationId(eventName, username);
         checkOwnership(categoryId, event, username);
@@ -19,7 +19,6 @@ package alfio.manager;
 import alfio.manager.system.ConfigurationLevel;
 import alfio.manager.system.ConfigurationManager;
 import alfio.model.EventAndOrganizationId;
-import alfio.model.SpecialPrice;
 import alfio.model.TicketCategory;
 import alfio.model.system.ConfigurationKeys;
 import alfio.repository.EventRepository;
@@ -29,22 +28,35 @@ import org.apache.commons.lang3.time.StopWatch;
 import org.apache.commons.text.RandomStringGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Class SpecialPriceTokenGenerator.
  * This class generates a bunch of tokens which will be used for
  * granting a special price to a specific user category.
+ *
+ * Codes are generated in chunks: candidates are created in memory, checked for collisions with a single query
+ * and then applied with a single update. Each chunk is committed on its own, so that the progress
+ * is visible while a large batch is being generated.
  */
 @Component
-@Transactional
 public class SpecialPriceTokenGenerator {
 
     private static final Logger log = LoggerFactory.getLogger(SpecialPriceTokenGenerator.class);
+    static final int CHUNK_SIZE = 1000;
+    private static final int MAX_ATTEMPTS = 10;
     private static final SecureRandom RANDOM = new SecureRandom();
     private static final char[] ADMITTED_CHARACTERS = new char[]{
             'A', 'B', 'C', 'D', 'E', 'F',
@@ -62,55 +74,94 @@ public class SpecialPriceTokenGenerator {
     private final TicketCategoryRepository ticketCategoryRepository;
     private final EventRepository eventRepository;
     private final ConfigurationManager configurationManager;
+    private final PlatformTransactionManager transactionManager;
 
     public SpecialPriceTokenGenerator(ConfigurationManager configurationManager,
                                       SpecialPriceRepository specialPriceRepository,
                                       TicketCategoryRepository ticketCategoryRepository,
-                                      EventRepository eventRepository) {
+                                      EventRepository eventRepository,
+                                      PlatformTransactionManager transactionManager) {
         this.specialPriceRepository = specialPriceRepository;
         this.configurationManager = configurationManager;
         this.ticketCategoryRepository = ticketCategoryRepository;
         this.eventRepository = eventRepository;
+        this.transactionManager = transactionManager;
     }
 
     public void generatePendingCodes() {
         StopWatch stopWatch = new StopWatch();
         log.trace("start pending codes generation");
         stopWatch.start();
-        specialPriceRepository.findWaitingElements().forEach(this::generateCode);
+        specialPriceRepository.findCategoriesWithWaitingElements().forEach(this::generatePendingCodesForCategory);
         stopWatch.stop();
         log.trace("end. Took {} ms", stopWatch.getDuration().toMillis());
     }
 
+    /**
+     * Generates the pending codes for the given category. If called within an existing transaction, every chunk
+     * will participate in it.
+     *
+     * @param categoryId the category
+     */
     public void generatePendingCodesForCategory(int categoryId) {
-        specialPriceRepository.findWaitingElementsForCategory(categoryId).forEach(this::generateCode);
+        var ticketCategory = ticketCategoryRepository.getByIdAndActive(categoryId);
+        if(ticketCategory.isEmpty()) {
+            log.warn("cannot generate codes for category {}, as it is not active", categoryId);
+            return;
+        }
+        int codeLength = getCodeLength(ticketCategory.get());
+        var template = new TransactionTemplate(transactionManager, new DefaultTransactionDefinition());
+        int processed;
+        do {
+            try {
+                processed = Objects.requireNonNull(template.execute(status -> generateChunk(categoryId, codeLength)));
+            } catch (DuplicateKeyException e) {
+                if(TransactionSynchronizationManager.isActualTransactionActive()) {
+                    throw e;
+                }
+                // a concurrent generation picked one of our codes. The chunk has been rolled back, we'll retry on the next run
+                log.warn("got a duplicate while generating codes for category {}. Will retry later.", categoryId, e);
+                return;
+            }
+        } while (processed == CHUNK_SIZE);
     }
 
-    private void generateCode(SpecialPrice.SpecialPriceTicketCategoryId specialPrice) {
-
-        TicketCategory ticketCategory = ticketCategoryRepository.getByIdAndActive(specialPrice.getTicketCategoryId()).orElseThrow(IllegalStateException::new);
+    private int getCodeLength(TicketCategory ticketCategory) {
         EventAndOrganizationId event = eventRepository.findEventAndOrganizationIdById(ticketCategory.getEventId());
-        int maxLength = configurationManager.getFor(ConfigurationKeys.SPECIAL_PRICE_CODE_LENGTH, ConfigurationLevel.ticketCategory(event, ticketCategory.getId())).getValueAsIntOrDefault(6);
+        return configurationManager.getFor(ConfigurationKeys.SPECIAL_PRICE_CODE_LENGTH, ConfigurationLevel.ticketCategory(event, ticketCategory.getId())).getValueAsIntOrDefault(6);
+    }
 
-        while (true) {
-            try {
-                log.trace("generate code for special price with id {}", specialPrice.getId());
-                specialPriceRepository.updateCode(nextValidCode(maxLength), specialPrice.getId());
-                log.trace("done.");
-                return;
-            } catch (DataAccessException e) {
-                log.warn("got a duplicate. Retrying...", e);
-            }
+    private int generateChunk(int categoryId, int codeLength) {
+        List<Integer> ids = specialPriceRepository.lockWaitingElementsForCategory(categoryId, CHUNK_SIZE);
+        if(ids.isEmpty()) {
+            return 0;
+        }
+        log.trace("generating {} codes for category {}", ids.size(), categoryId);
+        List<String> codes = generateUnusedCodes(ids.size(), codeLength);
+        int updated = specialPriceRepository.bulkUpdateCodes(ids, codes);
+        if(updated != ids.size()) {
+            throw new IllegalStateException("Expected " + ids.size() + " codes to be updated, got " + updated);
         }
+        return ids.size();
     }
 
-    private String nextValidCode(int maxLength) {
-        while (true) {
-            String code = generateRandomCode(maxLength);
-            if (specialPriceRepository.countByCode(code) == 0) {
-                return code;
+    private List<String> generateUnusedCodes(int count, int codeLength) {
+        Set<String> result = new HashSet<>(count);
+        int attempts = 0;
+        while (result.size() < count) {
+            if(++attempts > MAX_ATTEMPTS) {
+                throw new IllegalStateException("Cannot generate " + count + " unique codes of length " + codeLength + ". Please increase the code length.");
+            }
+            Set<String> candidates = new HashSet<>();
+            while (candidates.size() < count - result.size()) {
+                String candidate = generateRandomCode(codeLength);
+                if(!result.contains(candidate)) {
+                    candidates.add(candidate);
+                }
             }
+            result.addAll(specialPriceRepository.filterUnusedCodes(new ArrayList<>(candidates)));
         }
+        return new ArrayList<>(result);
     }
 
     private String generateRandomCode(int maxLength) {
@@ -50,6 +50,7 @@ import alfio.model.result.ErrorCode;
 import alfio.model.result.Result;
 import alfio.model.result.WarningMessage;
 import alfio.model.subscription.*;
+import alfio.model.system.ConfigurationKeys;
 import alfio.model.system.command.CleanupReservations;
 import alfio.model.system.command.FinalizeReservation;
 import alfio.model.system.command.InvalidateAccess;
@@ -74,6 +75,7 @@ import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.MessageSource;
 import org.springframework.jdbc.UncategorizedSQLException;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -81,6 +83,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
@@ -135,6 +138,8 @@ public class TicketReservationManager {
     private static final String STUCK_TICKETS_SUBJECT = "warning: stuck tickets found";
     private static final String ORGANIZATION = "organization";
     private static final String RESERVATION_ID = "reservationId";
+    static final int EXPIRED_RESERVATIONS_CHUNK_SIZE = 500;
+    static final int REMINDER_CHUNK_SIZE = 500;
 
     private final EventRepository eventRepository;
     private final OrganizationRepository organizationRepository;
@@ -151,7 +156,6 @@ public class TicketReservationManager {
     private final MessageSourceManager messageSourceManager;
     private final TemplateManager templateManager;
     private final TransactionTemplate requiresNewTransactionTemplate;
-    private final TransactionTemplate serializedTransactionTemplate;
     private final TransactionTemplate nestedTransactionTemplate;
     private final WaitingQueueManager waitingQueueManager;
     private final PurchaseContextFieldRepository purchaseContextFieldRepository;
@@ -229,9 +233,6 @@ public class TicketReservationManager {
         this.templateManager = templateManager;
         this.waitingQueueManager = waitingQueueManager;
         this.requiresNewTransactionTemplate = new TransactionTemplate(transactionManager, new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
-        DefaultTransactionDefinition serialized = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
-        serialized.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
-        this.serializedTransactionTemplate = new TransactionTemplate(transactionManager, serialized);
         this.nestedTransactionTemplate = new TransactionTemplate(transactionManager, new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_NESTED));
         this.purchaseContextFieldRepository = purchaseContextFieldRepository;
         this.additionalServiceManager = additionalServiceManager;
@@ -329,7 +330,7 @@ public class TicketReservationManager {
 
         discount.ifPresent(d -> {
             if (d.getMaxUsage() != null) {
-                promoCodeDiscountRepository.lockForCount(d.getId());
+                // fail fast without locking. The actual check is performed after having reserved the tickets
                 var discountedCategories = d.getCategories();
                 var appliedDiscountCount = CollectionUtils.isEmpty(discountedCategories) ? list.size() : list.stream().filter(t -> discountedCategories.contains(t.getTicketCategoryId())).count();
                 if (d.getMaxUsage() < promoCodeDiscountRepository.countUsedPromoCode(d.getId()) + appliedDiscountCount) {
@@ -351,6 +352,12 @@ public class TicketReservationManager {
 
         list.forEach(t -> reserveTicketsForCategory(event, reservationId, t, locale, forWaitingQueue, discount.orElse(null), dynamicDiscount.orElse(null)));
 
+        // the usage counter has been updated while reserving the tickets, and its row stays locked until commit.
+        // Concurrent reservations for the same code are therefore serialized from here on.
+        if(discount.filter(d -> d.getMaxUsage() != null && d.getMaxUsage() < promoCodeDiscountRepository.countUsedPromoCode(d.getId())).isPresent()) {
+            throw new TooManyTicketsForDiscountCodeException();
+        }
+
         // add all additional services
         additionalServiceManager.bookAdditionalServicesForReservation(event, reservationId, additionalServices, discount);
 
@@ -546,11 +553,20 @@ public class TicketReservationManager {
 
     List<SpecialPrice> reserveTokensForAccessCode(TicketReservationWithOptionalCodeModification ticketReservation, PromoCodeDiscount accessCode) {
         try {
-            // since we're going to get some tokens for an access code, we lock the access code itself until we're done.
-            // This will allow us to serialize the requests and limit the contention
-            Validate.isTrue(promoCodeDiscountRepository.lockAccessCodeForUpdate(accessCode.getId()).equals(accessCode.getId()));
-            List<SpecialPrice> boundSpecialPrices = specialPriceRepository.bindToAccessCode(ticketReservation.getTicketCategoryId(), accessCode.getId(), ticketReservation.getQuantity());
-            if(boundSpecialPrices.size() != ticketReservation.getQuantity()) {
+            int categoryId = ticketReservation.getTicketCategoryId();
+            int quantity = ticketReservation.getQuantity();
+            // tokens are claimed from the pool of the access code for the requested category, skipping the ones locked by
+            // concurrent reservations. The pool never exceeds the max usage of the code, so no further serialization is needed here.
+            List<SpecialPrice> boundSpecialPrices = new ArrayList<>(specialPriceRepository.claimFromAccessCodePool(categoryId, accessCode.getId(), quantity));
+            if(boundSpecialPrices.size() < quantity) {
+                // not enough tokens in the pool: we lock the access code in order to top it up with the missing tokens
+                // plus a slice for the next reservations, so that they don't need to take the lock again
+                Validate.isTrue(promoCodeDiscountRepository.lockAccessCodeForUpdate(accessCode.getId()).equals(accessCode.getId()));
+                int missing = quantity - boundSpecialPrices.size();
+                specialPriceRepository.topUpAccessCodePool(categoryId, accessCode.getId(), accessCode.getMaxUsage(), missing + SpecialPriceRepository.ACCESS_CODE_POOL_SLICE);
+                boundSpecialPrices.addAll(specialPriceRepository.claimFromAccessCodePool(categoryId, accessCode.getId(), missing));
+            }
+            if(boundSpecialPrices.size() != quantity) {
                 throw new NotEnoughTicketsException();
             }
             return boundSpecialPrices;
@@ -723,10 +739,7 @@ public class TicketReservationManager {
                 return false;
             }
             int currentTickets = ticketReservationRepository.countTicketsInReservationForCategories(reservationId, categoriesOrNull(promoCode));
-            return Boolean.TRUE.equals(serializedTransactionTemplate.execute(status -> {
-                Integer confirmedPromoCode = promoCodeDiscountRepository.countConfirmedPromoCode(promoCode.getId());
-                return promoCode.getMaxUsage() < currentTickets + confirmedPromoCode;
-            }));
+            return promoCode.getMaxUsage() < currentTickets + promoCodeDiscountRepository.countConfirmedPromoCode(promoCode.getId());
         }
         return false;
     }
@@ -1010,11 +1023,41 @@ public class TicketReservationManager {
         return reservationHelper.getTicketEmailGenerator(event, ticketReservation, ticketLanguage, additionalInfo);
     }
 
-    @Transactional
+    /**
+     * Removes the expired reservations, in chunks of {@link #EXPIRED_RESERVATIONS_CHUNK_SIZE}.
+     * Each chunk is committed on its own, so that a large backlog does not result in a single, long-running transaction
+     * and an interrupted cleanup can be safely resumed by the next run.
+     *
+     * @param expirationDate expiration date
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void cleanupExpiredReservations(Date expirationDate) {
-        List<String> expiredReservationIds = ticketReservationRepository.findExpiredReservationForUpdate(expirationDate);
+        long start = System.currentTimeMillis();
+        int removed = 0;
+        int chunks = 0;
+        // reservations that must not be removed are still expired and PENDING: we skip them, otherwise they would be
+        // selected again by every chunk
+        Set<String> ignored = new HashSet<>();
+        ExpiredReservationsChunk chunk;
+        do {
+            chunk = Objects.requireNonNull(requiresNewTransactionTemplate.execute(status -> cleanupExpiredReservationsChunk(expirationDate, ignored)));
+            removed += chunk.removed();
+            ignored.addAll(chunk.ignored());
+            chunks++;
+        } while (chunk.selected() == EXPIRED_RESERVATIONS_CHUNK_SIZE);
+        if(removed > 0) {
+            long elapsed = System.currentTimeMillis() - start;
+            log.info("removed {} expired reservations in {} chunk(s), took {} ms ({} reservations/s). Remaining backlog: {}",
+                removed, chunks, elapsed, elapsed > 0 ? removed * 1000L / elapsed : removed, ticketReservationRepository.countExpiredReservations(expirationDate));
+        }
+    }
+
+    private ExpiredReservationsChunk cleanupExpiredReservationsChunk(Date expirationDate, Set<String> alreadyIgnored) {
+        List<String> expiredReservationIds = alreadyIgnored.isEmpty()
+            ? ticketReservationRepository.findExpiredReservationForUpdate(expirationDate, EXPIRED_RESERVATIONS_CHUNK_SIZE)
+            : ticketReservationRepository.findExpiredReservationForUpdateExcluding(expirationDate, EXPIRED_RESERVATIONS_CHUNK_SIZE, alreadyIgnored);
         if(expiredReservationIds.isEmpty()) {
-            return;
+            return new ExpiredReservationsChunk(0, 0, List.of());
         }
 
         List<String> reservationsToIgnore = new ArrayList<>();
@@ -1056,6 +1099,10 @@ public class TicketReservationManager {
         waitingQueueManager.cleanExpiredReservations(toDelete);
         transactionRepository.deleteForReservations(toDelete);
         ticketReservationRepository.remove(toDelete);
+        return new ExpiredReservationsChunk(expiredReservationIds.size(), toDelete.size(), reservationsToIgnore);
+    }
+
+    private record ExpiredReservationsChunk(int selected, int removed, List<String> ignored) {
     }
 
     public void cleanupExpiredOfflineReservations(Date expirationDate) {
@@ -1211,10 +1258,6 @@ public class TicketReservationManager {
         return ticketReservationRepository.findOptionalReservationById(reservationId);
     }
 
-    private Optional<TicketReservation> findByIdForNotification(String reservationId, Clock clock, int quietPeriod) {
-        return findById(reservationId).filter(notificationNotSent(clock, quietPeriod));
-    }
-
     private static Predicate<TicketReservation> notificationNotSent(Clock clock, int quietPeriod) {
         return r -> r.latestNotificationTimestamp(clock.getZone())
                 .map(t -> t.truncatedTo(ChronoUnit.DAYS).plusDays(quietPeriod).isBefore(ZonedDateTime.now(clock).truncatedTo(ChronoUnit.DAYS)))
@@ -1401,30 +1444,52 @@ public class TicketReservationManager {
         return ticketRepository.getFullInfoForOnlineCheckin(eventName, publicUUID);
     }
 
+    /**
+     * Sends the payment reminder for pending offline payments, in chunks of {@link #REMINDER_CHUNK_SIZE} reservations.
+     * Each chunk is committed on its own, so that the locked reservations are released as soon as the chunk has been processed.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void sendReminderForOfflinePayments() {
         Date expiration = truncate(addHours(new Date(), configurationManager.getForSystem(OFFLINE_REMINDER_HOURS).getValueAsIntOrDefault(24)), Calendar.DATE);
-        ticketReservationRepository.findAllOfflinePaymentReservationForNotificationForUpdate(expiration).stream()
-                .map(reservation -> {
-                    Optional<Ticket> ticket = ticketRepository.findFirstTicketInReservation(reservation.getId());
-                    Optional<Event> event = ticket.map(t -> eventRepository.findById(t.getEventId()));
-                    Optional<Locale> locale = ticket.map(t -> LocaleUtil.forLanguageTag(t.getUserLanguage()));
-                    return Triple.of(reservation, event, locale);
-                })
-                .filter(p -> p.getMiddle().isPresent())
-                .filter(p -> {
-                    Event event = p.getMiddle().get();
-                    return truncate(addHours(new Date(), configurationManager.getFor(OFFLINE_REMINDER_HOURS, ConfigurationLevel.event(event)).getValueAsIntOrDefault(24)), Calendar.DATE).compareTo(p.getLeft().getValidity()) >= 0;
-                })
-                .map(p -> Triple.of(p.getLeft(), p.getMiddle().orElseThrow(), p.getRight().orElseThrow()))
-                .forEach(p -> {
-                    TicketReservation reservation = p.getLeft();
-                    Event event = p.getMiddle();
-                    Map<String, Object> model = reservationHelper.prepareModelForReservationEmail(event, reservation);
-                    Locale locale = p.getRight();
-                    ticketReservationRepository.flagAsOfflinePaymentReminderSent(reservation.getId());
-                    notificationManager.sendSimpleEmail(event, reservation.getId(), reservation.getEmail(), messageSourceManager.getMessageSourceFor(event).getMessage("reservation.reminder.mail.subject",
-                    		new Object[]{configurationManager.getShortReservationID(event, reservation)}, locale), () -> templateManager.renderTemplate(event, TemplateResource.REMINDER_EMAIL, model, locale));
-                });
+        var run = new ReminderRun("offline payment");
+        String lastId = "";
+        ReminderChunk<String> chunk;
+        do {
+            String from = lastId;
+            chunk = Objects.requireNonNull(requiresNewTransactionTemplate.execute(status -> sendOfflinePaymentRemindersChunk(run, expiration, from)));
+            lastId = chunk.lastKey();
+            run.add(chunk);
+        } while (chunk.selected() == REMINDER_CHUNK_SIZE);
+        run.logCompletion();
+    }
+
+    private ReminderChunk<String> sendOfflinePaymentRemindersChunk(ReminderRun run, Date expiration, String lastId) {
+        var reservations = ticketReservationRepository.findOfflinePaymentReservationForNotificationForUpdate(expiration, lastId, REMINDER_CHUNK_SIZE);
+        if(reservations.isEmpty()) {
+            return new ReminderChunk<>(0, 0, lastId);
+        }
+        var eventAndLanguageByReservation = ticketRepository.findEventAndLanguageForReservations(reservations.stream().map(TicketReservation::getId).toList()).stream()
+            .collect(toMap(ReservationEventAndLanguage::reservationId, Function.identity()));
+        run.loadEvents(eventAndLanguageByReservation.values().stream().map(ReservationEventAndLanguage::eventId).collect(toSet()));
+        int sent = 0;
+        for (TicketReservation reservation : reservations) {
+            var eventAndLanguage = eventAndLanguageByReservation.get(reservation.getId());
+            Event event = eventAndLanguage != null ? run.getEvent(eventAndLanguage.eventId()) : null;
+            if(event == null) {
+                continue;
+            }
+            int reminderHours = run.getIntSetting(event, OFFLINE_REMINDER_HOURS, 24);
+            if(truncate(addHours(new Date(), reminderHours), Calendar.DATE).compareTo(reservation.getValidity()) < 0) {
+                continue;
+            }
+            Map<String, Object> model = reservationHelper.prepareModelForReservationEmail(event, reservation);
+            Locale locale = LocaleUtil.forLanguageTag(eventAndLanguage.userLanguage());
+            ticketReservationRepository.flagAsOfflinePaymentReminderSent(reservation.getId());
+            notificationManager.sendSimpleEmail(event, reservation.getId(), reservation.getEmail(), run.getMessageSource(event).getMessage("reservation.reminder.mail.subject",
+                new Object[]{configurationManager.getShortReservationID(event, reservation)}, locale), () -> templateManager.renderTemplate(event, TemplateResource.REMINDER_EMAIL, model, locale));
+            sent++;
+        }
+        return new ReminderChunk<>(reservations.size(), sent, reservations.get(reservations.size() - 1).getId());
     }
 
     //called each hour
@@ -1449,45 +1514,127 @@ public class TicketReservationManager {
         });
     }
 
+    /**
+     * Reminds the buyers of not-yet-assigned tickets to fill in the attendees' details.
+     * Tickets are processed in chunks of {@link #REMINDER_CHUNK_SIZE}, each one committed on its own.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void sendReminderForTicketAssignment() {
-        getNotifiableEventsStream()
-                .map(e -> Pair.of(e, ticketRepository.findAllReservationsConfirmedButNotAssignedForUpdate(e.getId())))
-                .filter(p -> !p.getRight().isEmpty())
-                .forEach(p -> Wrappers.voidTransactionWrapper(this::sendAssignmentReminder, p));
+        var events = getNotifiableEventsStream().collect(toMap(Event::getId, Function.identity()));
+        if(events.isEmpty()) {
+            return;
+        }
+        var run = new ReminderRun("ticket assignment", events);
+        int lastId = 0;
+        ReminderChunk<Integer> chunk;
+        do {
+            int from = lastId;
+            chunk = Objects.requireNonNull(requiresNewTransactionTemplate.execute(status -> sendAssignmentRemindersChunk(run, from)));
+            lastId = chunk.lastKey();
+            run.add(chunk);
+        } while (chunk.selected() == REMINDER_CHUNK_SIZE);
+        run.logCompletion();
+    }
+
+    private ReminderChunk<Integer> sendAssignmentRemindersChunk(ReminderRun run, int lastId) {
+        var tickets = ticketRepository.findConfirmedButNotAssignedForUpdate(run.getEventIds(), lastId, REMINDER_CHUNK_SIZE);
+        if(tickets.isEmpty()) {
+            return new ReminderChunk<>(0, 0, lastId);
+        }
+        var eventIdByReservation = tickets.stream().collect(toMap(Ticket::getTicketsReservationId, Ticket::getEventId, (a, b) -> a));
+        int sent = 0;
+        for (TicketReservation reservation : ticketReservationRepository.findByIds(eventIdByReservation.keySet())) {
+            Event event = run.getEvent(eventIdByReservation.get(reservation.getId()));
+            ZoneId eventZoneId = event.getZoneId();
+            int quietPeriod = run.getIntSetting(event, ASSIGNMENT_REMINDER_INTERVAL, 3);
+            if(notificationNotSent(clockProvider.withZone(eventZoneId), quietPeriod).test(reservation) && sendAssignmentReminder(run, event, reservation)) {
+                sent++;
+            }
+        }
+        return new ReminderChunk<>(tickets.size(), sent, tickets.get(tickets.size() - 1).getId());
     }
 
+    private boolean sendAssignmentReminder(ReminderRun run, Event event, TicketReservation reservation) {
+        try {
+            nestedTransactionTemplate.execute(ts -> {
+                ZoneId eventZoneId = event.getZoneId();
+                Map<String, Object> model = reservationHelper.prepareModelForReservationEmail(event, reservation);
+                ticketReservationRepository.updateLatestReminderTimestamp(reservation.getId(), ZonedDateTime.now(clockProvider.withZone(eventZoneId)));
+                Locale locale = ReservationUtil.getReservationLocale(reservation);
+                notificationManager.sendSimpleEmail(event, reservation.getId(), reservation.getEmail(), run.getMessageSource(event).getMessage("reminder.ticket-not-assigned.subject",
+                    new Object[]{event.getDisplayName()}, locale), () -> templateManager.renderTemplate(event, TemplateResource.REMINDER_TICKETS_ASSIGNMENT_EMAIL, model, locale));
+                return null;
+            });
+            return true;
+        } catch (Exception ex) {
+            log.warn("cannot send reminder message", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Reminds the attendees who did not fill in the optional additional fields.
+     * Tickets are processed in chunks of {@link #REMINDER_CHUNK_SIZE}, each one committed on its own.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void sendReminderForOptionalData() {
-        getNotifiableEventsStream()
+        var events = getNotifiableEventsStream()
                 .filter(e -> configurationManager.getFor(OPTIONAL_DATA_REMINDER_ENABLED, ConfigurationLevel.event(e)).getValueAsBooleanOrDefault())
-                .filter(e -> purchaseContextFieldRepository.countAdditionalFieldsForEvent(e.getId()) > 0)
-                .map(e -> Pair.of(e, ticketRepository.findAllAssignedButNotYetNotifiedForUpdate(e.getId())))
-                .filter(p -> !p.getRight().isEmpty())
-                .forEach(p -> Wrappers.voidTransactionWrapper(this::sendOptionalDataReminder, p));
-    }
-
-    private void sendOptionalDataReminder(Pair<Event, List<Ticket>> eventAndTickets) {
-        nestedTransactionTemplate.execute(ts -> {
-            Event event = eventAndTickets.getLeft();
-            var messageSource = messageSourceManager.getMessageSourceFor(event);
-            int daysBeforeStart = configurationManager.getFor(ASSIGNMENT_REMINDER_START, ConfigurationLevel.event(event)).getValueAsIntOrDefault(10);
-            List<Ticket> tickets = eventAndTickets.getRight().stream().filter(t -> !purchaseContextFieldRepository.hasOptionalData(t.getId())).collect(toList());
-            Set<String> notYetNotifiedReservations = tickets.stream().map(Ticket::getTicketsReservationId).distinct().filter(rid -> findByIdForNotification(rid, clockProvider.withZone(event.getZoneId()), daysBeforeStart).isPresent()).collect(toSet());
-            tickets.stream()
-                    .filter(t -> notYetNotifiedReservations.contains(t.getTicketsReservationId()))
-                    .forEach(t -> {
-                        int result = ticketRepository.flagTicketAsReminderSent(t.getId());
-                        Validate.isTrue(result == 1);
-                        Map<String, Object> model = TemplateResource.prepareModelForReminderTicketAdditionalInfo(organizationRepository.getById(event.getOrganizationId()), event, t, ReservationUtil.ticketUpdateUrl(event, t, configurationManager));
-                        Locale locale = Optional.ofNullable(t.getUserLanguage()).map(LocaleUtil::forLanguageTag).orElseGet(() -> findReservationLanguage(t.getTicketsReservationId()));
-                        notificationManager.sendSimpleEmail(event, t.getTicketsReservationId(), t.getEmail(), messageSource.getMessage("reminder.ticket-additional-info.subject",
-                        		new Object[]{event.getDisplayName()}, locale), () -> templateManager.renderTemplate(event, TemplateResource.REMINDER_TICKET_ADDITIONAL_INFO, model, locale));
-                    });
-            return null;
-        });
+                .collect(toMap(Event::getId, Function.identity()));
+        if(!events.isEmpty()) {
+            events.keySet().retainAll(purchaseContextFieldRepository.findEventIdsWithAdditionalFields(events.keySet()));
+        }
+        if(events.isEmpty()) {
+            return;
+        }
+        var run = new ReminderRun("optional data", events);
+        int lastId = 0;
+        ReminderChunk<Integer> chunk;
+        do {
+            int from = lastId;
+            chunk = Objects.requireNonNull(requiresNewTransactionTemplate.execute(status -> sendOptionalDataRemindersChunk(run, from)));
+            lastId = chunk.lastKey();
+            run.add(chunk);
+        } while (chunk.selected() == REMINDER_CHUNK_SIZE);
+        run.logCompletion();
+    }
+
+    private ReminderChunk<Integer> sendOptionalDataRemindersChunk(ReminderRun run, int lastId) {
+        var tickets = ticketRepository.findAssignedButNotYetNotifiedForUpdate(run.getEventIds(), lastId, REMINDER_CHUNK_SIZE);
+        if(tickets.isEmpty()) {
+            return new ReminderChunk<>(0, 0, lastId);
+        }
+        var withOptionalData = new HashSet<>(purchaseContextFieldRepository.findTicketIdsWithOptionalData(tickets.stream().map(Ticket::getId).toList()));
+        var candidates = tickets.stream().filter(t -> !withOptionalData.contains(t.getId())).toList();
+        var reservationIds = candidates.stream().map(Ticket::getTicketsReservationId).collect(toSet());
+        var reservations = reservationIds.isEmpty() ? Map.<String, TicketReservation>of() : ticketReservationRepository.findByIds(reservationIds).stream()
+            .collect(toMap(TicketReservation::getId, Function.identity()));
+        var toBeNotified = candidates.stream()
+            .filter(t -> {
+                var reservation = reservations.get(t.getTicketsReservationId());
+                Event event = run.getEvent(t.getEventId());
+                int daysBeforeStart = run.getIntSetting(event, ASSIGNMENT_REMINDER_START, 10);
+                return reservation != null && notificationNotSent(clockProvider.withZone(event.getZoneId()), daysBeforeStart).test(reservation);
+            })
+            .toList();
+        var flagged = toBeNotified.isEmpty() ? Set.<Integer>of() : new HashSet<>(ticketRepository.flagTicketsAsReminderSent(toBeNotified.stream().map(Ticket::getId).toList()));
+        int sent = 0;
+        for (Ticket t : toBeNotified) {
+            if(!flagged.contains(t.getId())) {
+                continue;
+            }
+            Event event = run.getEvent(t.getEventId());
+            Map<String, Object> model = TemplateResource.prepareModelForReminderTicketAdditionalInfo(run.getOrganization(event), event, t, ReservationUtil.ticketUpdateUrl(event, t, configurationManager));
+            Locale locale = Optional.ofNullable(t.getUserLanguage()).map(LocaleUtil::forLanguageTag).orElseGet(() -> ReservationUtil.getReservationLocale(reservations.get(t.getTicketsReservationId())));
+            notificationManager.sendSimpleEmail(event, t.getTicketsReservationId(), t.getEmail(), run.getMessageSource(event).getMessage("reminder.ticket-additional-info.subject",
+                new Object[]{event.getDisplayName()}, locale), () -> templateManager.renderTemplate(event, TemplateResource.REMINDER_TICKET_ADDITIONAL_INFO, model, locale));
+            sent++;
+        }
+        return new ReminderChunk<>(tickets.size(), sent, tickets.get(tickets.size() - 1).getId());
     }
 
     Stream<Event> getNotifiableEventsStream() {
-        return eventRepository.findAll().stream()
+        return eventRepository.findAllActives(ZonedDateTime.now(clockProvider.getClock())).stream()
                 .filter(e -> {
                     int daysBeforeStart = configurationManager.getFor(ASSIGNMENT_REMINDER_START, ConfigurationLevel.event(e)).getValueAsIntOrDefault(10);
                     int days = (int) ChronoUnit.DAYS.between(ZonedDateTime.now(clockProvider.withZone(e.getZoneId())).toLocalDate(), e.getBegin().toLocalDate());
@@ -1495,27 +1642,72 @@ public class TicketReservationManager {
                 });
     }
 
-    private void sendAssignmentReminder(Pair<Event, Set<String>> p) {
-        try {
-            nestedTransactionTemplate.execute(ts -> {
-                Event event = p.getLeft();
-                var messageSource = messageSourceManager.getMessageSourceFor(event);
-                ZoneId eventZoneId = event.getZoneId();
-                int quietPeriod = configurationManager.getFor(ASSIGNMENT_REMINDER_INTERVAL, ConfigurationLevel.event(event)).getValueAsIntOrDefault(3);
-                p.getRight().stream()
-                    .map(id -> findByIdForNotification(id, clockProvider.withZone(eventZoneId), quietPeriod))
-                    .flatMap(Optional::stream)
-                    .forEach(reservation -> {
-                        Map<String, Object> model = reservationHelper.prepareModelForReservationEmail(event, reservation);
-                        ticketReservationRepository.updateLatestReminderTimestamp(reservation.getId(), ZonedDateTime.now(clockProvider.withZone(eventZoneId)));
-                        Locale locale = findReservationLanguage(reservation.getId());
-                        notificationManager.sendSimpleEmail(event, reservation.getId(), reservation.getEmail(), messageSource.getMessage("reminder.ticket-not-assigned.subject",
-                        		new Object[]{event.getDisplayName()}, locale), () -> templateManager.renderTemplate(event, TemplateResource.REMINDER_TICKETS_ASSIGNMENT_EMAIL, model, locale));
-                    });
-                return null;
-            });
-        } catch (Exception ex) {
-            log.warn("cannot send reminder message", ex);
+    private record ReminderChunk<K>(int selected, int sent, K lastKey) {
+    }
+
+    /**
+     * Lookups shared by all the chunks of a reminder run, so that events, settings and organizations
+     * are loaded once per run instead of once per reservation.
+     */
+    private final class ReminderRun {
+        private final String name;
+        private final long start = System.currentTimeMillis();
+        private final Map<Integer, Event> events;
+        private final Map<Pair<Integer, ConfigurationKeys>, Integer> settings = new HashMap<>();
+        private final Map<Integer, MessageSource> messageSources = new HashMap<>();
+        private final Map<Integer, Organization> organizations = new HashMap<>();
+        private int selected;
+        private int sent;
+        private int chunks;
+
+        private ReminderRun(String name) {
+            this(name, new HashMap<>());
+        }
+
+        private ReminderRun(String name, Map<Integer, Event> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        private Set<Integer> getEventIds() {
+            return events.keySet();
+        }
+
+        private void loadEvents(Set<Integer> eventIds) {
+            var missing = eventIds.stream().filter(id -> !events.containsKey(id)).toList();
+            if(!missing.isEmpty()) {
+                eventRepository.findByIds(missing).forEach(e -> events.put(e.getId(), e));
+            }
+        }
+
+        private Event getEvent(int eventId) {
+            return events.get(eventId);
+        }
+
+        private int getIntSetting(Event event, ConfigurationKeys key, int defaultValue) {
+            return settings.computeIfAbsent(Pair.of(event.getId(), key),
+                k -> configurationManager.getFor(key, ConfigurationLevel.event(event)).getValueAsIntOrDefault(defaultValue));
+        }
+
+        private MessageSource getMessageSource(Event event) {
+            return messageSources.computeIfAbsent(event.getId(), k -> messageSourceManager.getMessageSourceFor(event));
+        }
+
+        private Organization getOrganization(Event event) {
+            return organizations.computeIfAbsent(event.getOrganizationId(), organizationRepository::getById);
+        }
+
+        private void add(ReminderChunk<?> chunk) {
+            selected += chunk.selected();
+            sent += chunk.sent();
+            chunks++;
+        }
+
+        private void logCompletion() {
+            if(selected > 0) {
+                log.info("{} reminder: examined {} items in {} chunk(s), sent {} reminders, took {} ms",
+                    name, selected, chunks, sent, System.currentTimeMillis() - start);
+            }
         }
     }
 
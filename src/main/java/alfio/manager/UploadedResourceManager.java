@@ -19,6 +19,7 @@ package alfio.manager;
 import alfio.model.UploadedResource;
 import alfio.model.modification.UploadBase64FileModification;
 import alfio.repository.UploadedResourceRepository;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,10 +28,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,10 +43,15 @@ public class UploadedResourceManager {
     public static final String ATTR_IMG_HEIGHT = "height";
     private static final Logger log = LoggerFactory.getLogger(UploadedResourceManager.class);
 
+    private static final String RESOURCE_SECTION = "uploaded-resource";
+
     private final UploadedResourceRepository uploadedResourceRepository;
+    private final FileBlobCacheManager fileBlobCacheManager;
 
-    public UploadedResourceManager(UploadedResourceRepository uploadedResourceRepository) {
+    public UploadedResourceManager(UploadedResourceRepository uploadedResourceRepository,
+                                   FileBlobCacheManager fileBlobCacheManager) {
         this.uploadedResourceRepository = uploadedResourceRepository;
+        this.fileBlobCacheManager = fileBlobCacheManager;
     }
 
     public boolean hasResource(String name) {
@@ -76,19 +80,69 @@ public class UploadedResourceManager {
 
 
     public void outputResource(String name, OutputStream out) {
-        uploadedResourceRepository.fileContent(name, out);
+        copy(getFile(get(name)), out);
     }
 
     public void outputResource(int organizationId, String name, OutputStream out) {
-        uploadedResourceRepository.fileContent(organizationId, name, out);
+        copy(getFile(get(organizationId, name)), out);
     }
 
     public void outputResource(int organizationId, int eventId, String name, OutputStream out) {
-        uploadedResourceRepository.fileContent(organizationId, eventId, name, out);
+        copy(getFile(get(organizationId, eventId, name)), out);
+    }
+
+    /**
+     * Returns the content of the given resource from the local cache, loading it from the database if needed.
+     * The cache key includes the creation time, so a resource which has been replaced is never served from the cache.
+     *
+     * @param metadata the resource metadata
+     * @return the cached file
+     */
+    public File getFile(UploadedResource metadata) {
+        return fileBlobCacheManager.getFile(RESOURCE_SECTION, cacheKey(metadata), () -> {
+            try {
+                var tmp = File.createTempFile("uploaded-resource", ".tmp");
+                try (var out = new FileOutputStream(tmp)) {
+                    loadContent(metadata, out);
+                }
+                return tmp;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private void loadContent(UploadedResource metadata, OutputStream out) {
+        if (metadata.getEventId() != null) {
+            uploadedResourceRepository.fileContent(metadata.getOrganizationId(), metadata.getEventId(), metadata.getName(), out);
+        } else if (metadata.getOrganizationId() != null) {
+            uploadedResourceRepository.fileContent(metadata.getOrganizationId(), metadata.getName(), out);
+        } else {
+            uploadedResourceRepository.fileContent(metadata.getName(), out);
+        }
+    }
+
+    private static String cacheKey(UploadedResource metadata) {
+        return DigestUtils.sha256Hex(metadata.getOrganizationId() + "/" + metadata.getEventId() + "/" + metadata.getName() + "/" + metadata.getCreationTime().getTime());
+    }
+
+    private void evictFromCache(UploadedResource metadata) {
+        if (metadata != null) {
+            fileBlobCacheManager.evict(RESOURCE_SECTION, cacheKey(metadata));
+        }
+    }
+
+    private static void copy(File file, OutputStream out) {
+        try {
+            Files.copy(file.toPath(), out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error while copying data", e);
+        }
     }
 
     public Optional<Integer> saveResource(UploadBase64FileModification file) {
         if (hasResource(file.getName())) {
+            evictFromCache(get(file.getName()));
             uploadedResourceRepository.delete(file.getName());
         }
 
@@ -97,6 +151,7 @@ public class UploadedResourceManager {
 
     public Optional<Integer> saveResource(int organizationId, UploadBase64FileModification file) {
         if (hasResource(organizationId, file.getName())) {
+            evictFromCache(get(organizationId, file.getName()));
             uploadedResourceRepository.delete(organizationId, file.getName());
         }
 
@@ -105,6 +160,7 @@ public class UploadedResourceManager {
 
     public Optional<Integer> saveResource(int organizationId, int eventId, UploadBase64FileModification file) {
         if (hasResource(organizationId, eventId, file.getName())) {
+            evictFromCache(get(organizationId, eventId, file.getName()));
             uploadedResourceRepository.delete(organizationId, eventId, file.getName());
         }
 
@@ -112,14 +168,23 @@ public class UploadedResourceManager {
     }
 
     public void deleteResource(String name) {
+        if (hasResource(name)) {
+            evictFromCache(get(name));
+        }
         uploadedResourceRepository.delete(name);
     }
 
     public void deleteResource(int organizationId, String name) {
+        if (hasResource(organizationId, name)) {
+            evictFromCache(get(organizationId, name));
+        }
         uploadedResourceRepository.delete(organizationId, name);
     }
 
     public void deleteResource(int organizationId, int eventId, String name) {
+        if (hasResource(organizationId, eventId, name)) {
+            evictFromCache(get(organizationId, eventId, name));
+        }
         uploadedResourceRepository.delete(organizationId, eventId, name);
     }
 
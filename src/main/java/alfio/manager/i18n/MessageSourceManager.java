@@ -19,7 +19,12 @@ package alfio.manager.i18n;
 import alfio.model.PurchaseContext;
 import alfio.repository.system.ConfigurationRepository;
 import alfio.util.CustomResourceBundleMessageSource;
+import alfio.util.Json;
 import alfio.util.LocaleUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.context.MessageSource;
 import org.springframework.context.support.AbstractMessageSource;
@@ -48,6 +53,10 @@ public class MessageSourceManager {
     private static final Pattern ARGUMENT_FINDER = Pattern.compile("\\{+(\\d+)}+");
     private final CustomResourceBundleMessageSource messageSource;
     private final ConfigurationRepository configurationRepository;
+    // bundles are keyed by the content of the system override, so that they are rebuilt only if the override changes
+    private final Cache<BundleKey, Bundle> bundleCache = Caffeine.newBuilder()
+        .maximumSize(200)
+        .build();
 
     public MessageSourceManager(CustomResourceBundleMessageSource messageSource,
                                 ConfigurationRepository configurationRepository) {
@@ -113,12 +122,46 @@ public class MessageSourceManager {
                                               boolean withSystemOverride,
                                               String lang,
                                               Predicate<String> keysFilter) {
-        var locale = LocaleUtil.forLanguageTag(lang);
-        var rootMessageSource = getRootMessageSource(withSystemOverride);
-        return getKeys(baseName, locale)
+        return getBundle(baseName, withSystemOverride, lang, keysFilter).messages();
+    }
+
+    /**
+     * Returns the resolved bundle for the given language, together with its JSON representation.
+     * The result is computed only once for each version of the system override.
+     */
+    public Bundle getBundle(String baseName,
+                            boolean withSystemOverride,
+                            String lang,
+                            Predicate<String> keysFilter) {
+        var systemOverride = withSystemOverride ? configurationRepository.findSystemOverrideMessages().orElse("{}") : null;
+        var key = new BundleKey(baseName, lang, keysFilter, systemOverride != null ? DigestUtils.sha256Hex(systemOverride) : null);
+        return bundleCache.get(key, k -> loadBundle(k, systemOverride));
+    }
+
+    private Bundle loadBundle(BundleKey key, String systemOverride) {
+        var locale = LocaleUtil.forLanguageTag(key.lang());
+        MessageSource rootMessageSource = messageSource;
+        if (systemOverride != null) {
+            rootMessageSource = new MessageSourceWithOverride(messageSource, Json.fromJson(systemOverride, new TypeReference<>() {}));
+        }
+        var source = rootMessageSource;
+        var messages = getKeys(key.baseName(), locale)
             .stream()
-            .filter(keysFilter)
-            .collect(Collectors.toMap(Function.identity(), k -> convertPlaceholder(rootMessageSource.getMessage(k, EMPTY_ARRAY, locale))));
+            .filter(key.keysFilter())
+            .collect(Collectors.toUnmodifiableMap(Function.identity(), k -> convertPlaceholder(source.getMessage(k, EMPTY_ARRAY, locale))));
+        var json = Json.toJson(messages);
+        return new Bundle(messages, json, DigestUtils.sha256Hex(json));
+    }
+
+    private record BundleKey(String baseName, String lang, Predicate<String> keysFilter, String systemOverrideVersion) {
+    }
+
+    /**
+     * @param messages the resolved messages
+     * @param json the JSON representation of messages
+     * @param hash content hash of the JSON representation, suitable to be used as ETag
+     */
+    public record Bundle(Map<String, String> messages, String json, String hash) {
     }
 
     private static class MessageSourceWithOverride extends AbstractMessageSource {
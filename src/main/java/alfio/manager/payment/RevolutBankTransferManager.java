@@ -211,7 +211,13 @@ public class RevolutBankTransferManager implements PaymentProvider, OfflineProce
     private Result<List<String>> loadAccounts(String revolutKey, String baseUrl) {
         var key = revolutKey + "@" + baseUrl;
         try {
-            return Result.success(accountsCache.get(key, k -> loadAccountsFromAPI(revolutKey, baseUrl)));
+            // the remote call is done outside the cache's lock, in order not to pin the carrier thread when running on virtual threads
+            var accounts = accountsCache.getIfPresent(key);
+            if(accounts == null) {
+                accounts = loadAccountsFromAPI(revolutKey, baseUrl);
+                accountsCache.put(key, accounts);
+            }
+            return Result.success(accounts);
         } catch (Exception e) {
             return Result.error(ErrorCode.custom(GENERIC_ERROR, e.getMessage()));
         }
@@ -16,6 +16,7 @@
  */
 package alfio.manager.support;
 
+import alfio.config.support.ThreadFactories;
 import alfio.manager.EventManager;
 import alfio.manager.ExtensionManager;
 import alfio.manager.NotificationManager;
@@ -32,8 +33,8 @@ import alfio.repository.TicketCategoryRepository;
 import alfio.repository.TicketRepository;
 import alfio.util.*;
 import alfio.util.checkin.TicketCheckInUtil;
-import lombok.AllArgsConstructor;
 import org.apache.commons.lang3.tuple.Triple;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
@@ -47,7 +48,6 @@ import static alfio.manager.system.Mailer.AttachmentIdentifier.CALENDAR_ICS;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 @Component
-@AllArgsConstructor
 public class CustomMessageManager {
 
     private final TemplateManager templateManager;
@@ -56,12 +56,36 @@ public class CustomMessageManager {
     private final TicketReservationManager ticketReservationManager;
     private final NotificationManager notificationManager;
     private final TicketCategoryRepository ticketCategoryRepository;
-    private final Executor sendMessagesExecutor = Executors.newSingleThreadExecutor();
+    private final Executor sendMessagesExecutor;
     private final ConfigurationManager configurationManager;
     private final MessageSourceManager messageSourceManager;
     private final ExtensionManager extensionManager;
     private final EventRepository eventRepository;
 
+    public CustomMessageManager(TemplateManager templateManager,
+                                EventManager eventManager,
+                                TicketRepository ticketRepository,
+                                TicketReservationManager ticketReservationManager,
+                                NotificationManager notificationManager,
+                                TicketCategoryRepository ticketCategoryRepository,
+                                ConfigurationManager configurationManager,
+                                MessageSourceManager messageSourceManager,
+                                ExtensionManager extensionManager,
+                                EventRepository eventRepository,
+                                Environment environment) {
+        this.templateManager = templateManager;
+        this.eventManager = eventManager;
+        this.ticketRepository = ticketRepository;
+        this.ticketReservationManager = ticketReservationManager;
+        this.notificationManager = notificationManager;
+        this.ticketCategoryRepository = ticketCategoryRepository;
+        this.sendMessagesExecutor = Executors.newSingleThreadExecutor(ThreadFactories.create(environment, "custom-messages-", false));
+        this.configurationManager = configurationManager;
+        this.messageSourceManager = messageSourceManager;
+        this.extensionManager = extensionManager;
+        this.eventRepository = eventRepository;
+    }
+
     public Map<String, Object> generatePreview(String eventName, Optional<Integer> categoryId, List<MessageModification> input, String username) {
         Map<String, Object> result = new HashMap<>();
         Event event = eventManager.getSingleEvent(eventName, username);
@@ -0,0 +1,55 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager.support;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Header and rows of an export, split in sheets.
+ *
+ * @param fileName the file name, without extension
+ * @param size the total number of rows
+ * @param sheets the sheets. CSV exports contain only the first one
+ */
+public record ExportData(String fileName, int size, List<Sheet> sheets) {
+
+    public ExportData(String fileName, String sheetName, String[] header, int size, Stream<String[]> rows) {
+        this(fileName, size, List.of(new Sheet(sheetName, header, rows)));
+    }
+
+    /**
+     * Loads all the rows, so that the export can be written after the current transaction has been closed
+     *
+     * @return a copy of this export, backed by the loaded rows
+     */
+    public ExportData loaded() {
+        return new ExportData(fileName, size, sheets.stream()
+            .map(s -> new Sheet(s.name(), s.header(), s.rows().toList().stream()))
+            .toList());
+    }
+
+    /**
+     * A sheet of the export
+     *
+     * @param name the name of the sheet, for Excel exports
+     * @param header the header
+     * @param rows the rows. Must be consumed only once, within the caller's transaction
+     */
+    public record Sheet(String name, String[] header, Stream<String[]> rows) {
+    }
+}
@@ -32,7 +32,9 @@ public interface AdminJobExecutor {
         REGENERATE_INVOICES(false),
         ASSIGN_TICKETS_TO_SUBSCRIBERS(false),
         EXECUTE_EXTENSION(true),
-        RETRY_RESERVATION_CONFIRMATION(true);
+        RETRY_RESERVATION_CONFIRMATION(true),
+        PROVISION_GOOGLE_WALLET_OBJECTS(true),
+        GENERATE_EXPORT(true);
 
         private final boolean allowsMultiple;
 
@@ -48,23 +48,27 @@ public class AdminJobManager {
 
     private static final Logger log = LoggerFactory.getLogger(AdminJobManager.class);
     static final int MAX_ATTEMPTS = 17; // will retry for approximately 36h
-    private static final Set<JobName> REGULAR = EnumSet.complementOf(EnumSet.of(JobName.EXECUTE_EXTENSION, JobName.RETRY_RESERVATION_CONFIRMATION));
+    private static final Set<JobName> REGULAR = EnumSet.complementOf(EnumSet.of(JobName.EXECUTE_EXTENSION, JobName.RETRY_RESERVATION_CONFIRMATION, JobName.PROVISION_GOOGLE_WALLET_OBJECTS, JobName.GENERATE_EXPORT));
     private static final Set<String> ADMIN_JOBS = REGULAR.stream()
         .map(Enum::name)
         .collect(toSet());
     private static final Set<String> EXTENSIONS_JOB = Set.of(JobName.EXECUTE_EXTENSION.name());
     private static final Set<String> RESERVATIONS_JOB = Set.of(JobName.RETRY_RESERVATION_CONFIRMATION.name());
+    private static final Set<String> WALLET_JOB = Set.of(JobName.PROVISION_GOOGLE_WALLET_OBJECTS.name());
+    private static final Set<String> EXPORT_JOB = Set.of(JobName.GENERATE_EXPORT.name());
     private final Map<JobName, List<AdminJobExecutor>> executorsByJobId;
     private final AdminJobQueueRepository adminJobQueueRepository;
     private final TransactionTemplate nestedTransactionTemplate;
     private final Set<String> executedStatuses;
     private final Set<String> notExecutedStatuses;
     private final ClockProvider clockProvider;
+    private final MetricsRegistry metricsRegistry;
 
     public AdminJobManager(List<AdminJobExecutor> jobExecutors,
                            AdminJobQueueRepository adminJobQueueRepository,
                            PlatformTransactionManager transactionManager,
-                           ClockProvider clockProvider) {
+                           ClockProvider clockProvider,
+                           MetricsRegistry metricsRegistry) {
 
         this.executorsByJobId = jobExecutors.stream()
             .flatMap(je -> je.getJobNames().stream().map(n -> Pair.of(n, je)))
@@ -75,6 +79,7 @@ public class AdminJobManager {
         this.executedStatuses = executed.stream().map(Enum::name).collect(toSet());
         this.notExecutedStatuses = EnumSet.complementOf(executed).stream().map(Enum::name).collect(toSet());
         this.clockProvider = clockProvider;
+        this.metricsRegistry = metricsRegistry;
     }
 
     // internal method invoked by tests
@@ -86,6 +91,14 @@ public class AdminJobManager {
         internalProcessPendingSchedules(adminJobQueueRepository.loadPendingSchedules(RESERVATIONS_JOB, timestamp));
     }
 
+    void processPendingWalletProvisioning(ZonedDateTime timestamp) {
+        internalProcessPendingSchedules(adminJobQueueRepository.loadPendingSchedules(WALLET_JOB, timestamp));
+    }
+
+    void processPendingExports(ZonedDateTime timestamp) {
+        internalProcessPendingSchedules(adminJobQueueRepository.loadPendingSchedules(EXPORT_JOB, timestamp));
+    }
+
     void processPendingRequests() {
         log.trace("Processing pending requests");
         internalProcessPendingSchedules(adminJobQueueRepository.loadPendingSchedules(ADMIN_JOBS, ZonedDateTime.now(clockProvider.getClock())));
@@ -149,10 +162,13 @@ public class AdminJobManager {
         return Pair.of(schedule, executorsByJobId.getOrDefault(schedule.getJobName(), List.of())
             .stream()
             .map(s -> {
+                long start = System.nanoTime();
                 try {
                     return Result.success(nestedTransactionTemplate.execute(status -> s.process(schedule)));
                 } catch (Exception ex) {
                     return Result.<String>error(ErrorCode.custom("exception", ex.getMessage()));
+                } finally {
+                    metricsRegistry.recordJob(schedule.getJobName().name(), System.nanoTime() - start);
                 }
             })
             .collect(Collectors.toList()));
@@ -178,15 +194,12 @@ public class AdminJobManager {
 
     private static void logReschedule(ZonedDateTime nextExecution, Map<String, Object> metadata, JobName jobName) {
         try {
-            String name;
-            boolean isExtension = jobName == JobName.EXECUTE_EXTENSION;
-            if (isExtension) {
-                name = String.valueOf(metadata.get("extensionName"));
-            } else {
-                var payload = Json.fromJson((String) metadata.get("payload"), RetryFinalizeReservation.class);
-                name = payload.getReservationId();
-            }
-            log.debug("scheduling failed {} {} to be executed at {}", isExtension ? "extension" : "reservation", name, nextExecution);
+            String name = switch (jobName) {
+                case EXECUTE_EXTENSION -> "extension " + metadata.get("extensionName");
+                case RETRY_RESERVATION_CONFIRMATION -> "reservation " + Json.fromJson((String) metadata.get("payload"), RetryFinalizeReservation.class).getReservationId();
+                default -> jobName + " for " + metadata.get("reservationId");
+            };
+            log.debug("scheduling failed {} to be executed at {}", name, nextExecution);
         } catch (Exception e) {
             log.warn("Cannot log reschedule", e);
         }
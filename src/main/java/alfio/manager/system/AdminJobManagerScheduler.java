@@ -31,38 +31,68 @@ import java.time.ZonedDateTime;
 public class AdminJobManagerScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(AdminJobManagerScheduler.class);
+    private static final long ONE_DAY = 24L * 60 * 60 * 1000;
     private final AdminJobManager adminJobManager;
     private final ClockProvider clockProvider;
+    private final ScheduledJobCoordinator jobCoordinator;
 
     public AdminJobManagerScheduler(AdminJobManager adminJobManager,
-                                    ClockProvider clockProvider) {
+                                    ClockProvider clockProvider,
+                                    ScheduledJobCoordinator jobCoordinator) {
         this.adminJobManager = adminJobManager;
         this.clockProvider = clockProvider;
+        this.jobCoordinator = jobCoordinator;
     }
 
     @Scheduled(fixedDelay = 1000L)
     void processPendingExtensionRetry() {
-        log.trace("Processing pending extensions retry");
-        adminJobManager.processPendingExtensionRetry(ZonedDateTime.now(clockProvider.getClock()));
-        log.trace("done processing pending extensions retry");
+        jobCoordinator.runExclusively("processPendingExtensionRetry", 1000L, () -> {
+            log.trace("Processing pending extensions retry");
+            adminJobManager.processPendingExtensionRetry(ZonedDateTime.now(clockProvider.getClock()));
+            log.trace("done processing pending extensions retry");
+        });
     }
 
     @Scheduled(fixedDelay = 1000L)
     void processPendingReservationsRetry() {
-        log.trace("Processing pending reservations retry");
-        adminJobManager.processPendingReservationsRetry(ZonedDateTime.now(clockProvider.getClock()));
-        log.trace("done processing pending reservations retry");
+        jobCoordinator.runExclusively("processPendingReservationsRetry", 1000L, () -> {
+            log.trace("Processing pending reservations retry");
+            adminJobManager.processPendingReservationsRetry(ZonedDateTime.now(clockProvider.getClock()));
+            log.trace("done processing pending reservations retry");
+        });
+    }
+
+    @Scheduled(fixedDelay = 5000L)
+    void processPendingWalletProvisioning() {
+        jobCoordinator.runExclusively("processPendingWalletProvisioning", 5000L, () -> {
+            log.trace("Processing pending wallet provisioning");
+            adminJobManager.processPendingWalletProvisioning(ZonedDateTime.now(clockProvider.getClock()));
+            log.trace("done processing pending wallet provisioning");
+        });
+    }
+
+    /**
+     * Not coordinated: exports can take a while, and each node picks a different one thanks to
+     * {@code for update skip locked}, so that they are processed in parallel.
+     */
+    @Scheduled(fixedDelay = 2000L)
+    void processPendingExports() {
+        log.trace("Processing pending exports");
+        adminJobManager.processPendingExports(ZonedDateTime.now(clockProvider.getClock()));
+        log.trace("done processing pending exports");
     }
 
     @Scheduled(fixedDelay = 60 * 1000)
     void processPendingRequests() {
-        log.trace("Processing pending requests");
-        adminJobManager.processPendingRequests();
-        log.trace("done processing pending requests");
+        jobCoordinator.runExclusively("processPendingRequests", 60 * 1000, () -> {
+            log.trace("Processing pending requests");
+            adminJobManager.processPendingRequests();
+            log.trace("done processing pending requests");
+        });
     }
 
     @Scheduled(cron = "#{environment.acceptsProfiles('dev') ? '0 * * * * *' : '0 0 0 * * *'}")
     void cleanupExpiredRequests() {
-        adminJobManager.cleanupExpiredRequests();
+        jobCoordinator.runOncePerTrigger("cleanupExpiredRequests", ONE_DAY, adminJobManager::cleanupExpiredRequests);
     }
 }
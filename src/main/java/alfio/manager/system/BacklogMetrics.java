@@ -0,0 +1,35 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager.system;
+
+import alfio.repository.EmailMessageRepository;
+import alfio.repository.system.AdminJobQueueRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the size of the internal queues, evaluated on each scrape.
+ */
+@Component
+public class BacklogMetrics {
+
+    public BacklogMetrics(MetricsRegistry metricsRegistry,
+                          AdminJobQueueRepository adminJobQueueRepository,
+                          EmailMessageRepository emailMessageRepository) {
+        metricsRegistry.registerGauge("alfio_admin_job_queue_pending", "Scheduled jobs waiting to be executed", "", adminJobQueueRepository::countPendingSchedules);
+        metricsRegistry.registerGauge("alfio_email_queue_pending", "Email messages waiting to be sent", "", emailMessageRepository::countWaitingMessages);
+    }
+}
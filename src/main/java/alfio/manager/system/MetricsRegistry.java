@@ -0,0 +1,216 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager.system;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Minimal, dependency-free metrics registry. Collects latency histograms, counters and gauges and renders them
+ * using the Prometheus text exposition format.
+ * <p>
+ * Metrics are opt-in: unless {@code alfio.metrics.enabled} is set to {@code true}, all the record methods are no-op.
+ */
+@Component
+public class MetricsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+    // upper bounds, in seconds
+    private static final double[] BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    public static final String QUERY_DURATION = "alfio_query_duration_seconds";
+    public static final String JOB_DURATION = "alfio_job_duration_seconds";
+
+    private final boolean enabled;
+    private final long slowQueryThresholdNanos;
+    private final Map<String, Family<LatencyHistogram>> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, Family<LongAdder>> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Family<Supplier<Number>>> gauges = new ConcurrentSkipListMap<>();
+
+    public MetricsRegistry(Environment environment) {
+        this(environment.getProperty("alfio.metrics.enabled", Boolean.class, false),
+            environment.getProperty("alfio.metrics.slow-query-threshold-ms", Long.class, 500L));
+    }
+
+    MetricsRegistry(boolean enabled, long slowQueryThresholdMillis) {
+        this.enabled = enabled;
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void recordQuery(String repository, String method, long elapsedNanos) {
+        if(!enabled) {
+            return;
+        }
+        recordDuration(QUERY_DURATION, "Duration of the repository methods", labels("repository", repository, "method", method), elapsedNanos);
+        if(slowQueryThresholdNanos > 0 && elapsedNanos >= slowQueryThresholdNanos) {
+            log.warn("slow query detected: {}.{} took {} ms", repository, method, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+    }
+
+    public void recordJob(String job, long elapsedNanos) {
+        if(enabled) {
+            recordDuration(JOB_DURATION, "Duration of the scheduled jobs", labels("job", job), elapsedNanos);
+        }
+    }
+
+    public void recordDuration(String name, String help, String labels, long elapsedNanos) {
+        if(enabled) {
+            histograms.computeIfAbsent(name, k -> new Family<>(help, "histogram"))
+                .series.computeIfAbsent(labels, k -> new LatencyHistogram())
+                .record(elapsedNanos);
+        }
+    }
+
+    public void increment(String name, String help, String labels) {
+        if(enabled) {
+            counters.computeIfAbsent(name, k -> new Family<>(help, "counter"))
+                .series.computeIfAbsent(labels, k -> new LongAdder())
+                .increment();
+        }
+    }
+
+    /**
+     * Registers a gauge. The supplier is evaluated on each scrape, and the series is skipped if it returns {@code null}.
+     */
+    public void registerGauge(String name, String help, String labels, Supplier<Number> supplier) {
+        if(enabled) {
+            gauges.computeIfAbsent(name, k -> new Family<>(help, "gauge"))
+                .series.put(labels, supplier);
+        }
+    }
+
+    public static String labels(String... namesAndValues) {
+        var sb = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if(i > 0) {
+                sb.append(',');
+            }
+            sb.append(namesAndValues[i]).append("=\"").append(escape(namesAndValues[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Renders all the metrics using the Prometheus text format, version 0.0.4
+     */
+    public String scrape() {
+        var sb = new StringBuilder(4096);
+        histograms.forEach((name, family) -> {
+            family.writeHeader(sb, name);
+            family.series.forEach((labels, histogram) -> histogram.write(sb, name, labels));
+        });
+        counters.forEach((name, family) -> {
+            family.writeHeader(sb, name);
+            family.series.forEach((labels, counter) -> writeSample(sb, name, labels, counter.sum()));
+        });
+        gauges.forEach((name, family) -> {
+            family.writeHeader(sb, name);
+            family.series.forEach((labels, supplier) -> {
+                try {
+                    var value = supplier.get();
+                    if(value != null) {
+                        writeSample(sb, name, labels, value);
+                    }
+                } catch (Exception e) {
+                    log.debug("cannot evaluate gauge {}", name, e);
+                }
+            });
+        });
+        return sb.toString();
+    }
+
+    private static void writeSample(StringBuilder sb, String name, String labels, Number value) {
+        sb.append(name);
+        if(!labels.isEmpty()) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    private static String formatValue(Number value) {
+        if(value instanceof Double || value instanceof Float) {
+            return Double.toString(value.doubleValue());
+        }
+        return Long.toString(value.longValue());
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Family<T> {
+        private final String help;
+        private final String type;
+        private final Map<String, T> series = new ConcurrentHashMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+
+        private void writeHeader(StringBuilder sb, String name) {
+            sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+    }
+
+    private static final class LatencyHistogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        private LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long elapsedNanos) {
+            double seconds = elapsedNanos / 1_000_000_000D;
+            int i = 0;
+            while (i < BUCKETS.length && seconds > BUCKETS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            sumNanos.add(elapsedNanos);
+        }
+
+        private void write(StringBuilder sb, String name, String labels) {
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                writeSample(sb, name + "_bucket", prefix + "le=\"" + BUCKETS[i] + "\"", cumulative);
+            }
+            cumulative += buckets[BUCKETS.length].sum();
+            writeSample(sb, name + "_bucket", prefix + "le=\"+Inf\"", cumulative);
+            writeSample(sb, name + "_sum", labels, sumNanos.sum() / 1_000_000_000D);
+            writeSample(sb, name + "_count", labels, cumulative);
+        }
+    }
+}
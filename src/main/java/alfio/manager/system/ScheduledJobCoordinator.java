@@ -0,0 +1,315 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager.system;
+
+import alfio.config.support.ThreadFactories;
+import alfio.model.system.ScheduledJobLease;
+import alfio.model.system.ScheduledJobPartition;
+import alfio.repository.system.ScheduledJobLeaseRepository;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Coordinates the execution of the scheduled jobs across the cluster, using leases stored in the database.
+ * <p>
+ * By default, each job runs on one node at a time: the first node which acquires the lease keeps running the job
+ * for as long as it keeps renewing it. If the node stops, another one takes over when the lease expires
+ * (after twice the job period, or {@code alfio.jobs.lease.min-duration-ms}, whichever is greater).
+ * The lease of a job is checked at most three times per lease duration, and it is kept alive while the job
+ * is running (see {@link #runExclusively(String, long, Runnable)}), so that a long run is not taken over
+ * by another node.
+ * <p>
+ * Jobs triggered by a cron expression fire at the same time on every node, so they don't need to stick to one
+ * node: their lease covers only the current run (see {@link #runOncePerTrigger(String, long, Runnable)}).
+ * <p>
+ * Jobs that support it (see {@link #tryAcquirePartition(String, long)}) can be partitioned by setting
+ * {@code alfio.jobs.[jobName].partitions}: each node acquires at most one slot and processes only the items
+ * belonging to it, so that the work is split across up to {@code partitions} nodes. The slots without an active
+ * lease are shared among the nodes that are running the job.
+ * <p>
+ * The coordination can be disabled by setting {@code alfio.jobs.coordination.enabled=false}. In that case
+ * every node runs every job.
+ */
+@Component
+public class ScheduledJobCoordinator implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduledJobCoordinator.class);
+    private static final int NOT_OWNED = -1;
+    private final ScheduledJobLeaseRepository leaseRepository;
+    private final Environment environment;
+    private final boolean enabled;
+    private final long minLeaseDurationMillis;
+    private final String nodeId;
+    private final LongSupplier nanoTime;
+    private final Map<String, LeaseState> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeat;
+
+    public ScheduledJobCoordinator(ScheduledJobLeaseRepository leaseRepository, Environment environment) {
+        this(leaseRepository, environment, System::nanoTime);
+    }
+
+    ScheduledJobCoordinator(ScheduledJobLeaseRepository leaseRepository, Environment environment, LongSupplier nanoTime) {
+        this.leaseRepository = leaseRepository;
+        this.environment = environment;
+        this.nanoTime = nanoTime;
+        this.enabled = environment.getProperty("alfio.jobs.coordination.enabled", Boolean.class, true);
+        this.minLeaseDurationMillis = environment.getProperty("alfio.jobs.lease.min-duration-ms", Long.class, 15_000L);
+        this.nodeId = StringUtils.defaultIfBlank(System.getenv("HOSTNAME"), "alfio") + "-" + UUID.randomUUID().toString().substring(0, 8);
+        if(enabled) {
+            long interval = minLeaseDurationMillis / 3;
+            this.heartbeat = Executors.newSingleThreadScheduledExecutor(ThreadFactories.create(environment, "job-lease-heartbeat-", true));
+            this.heartbeat.scheduleWithFixedDelay(this::renewRunningLeases, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.heartbeat = null;
+        }
+    }
+
+    /**
+     * Runs the given job if the current node holds the lease. The lease is renewed while the job is running.
+     *
+     * @param jobName the job name
+     * @param periodMillis how often the job is triggered
+     * @param job the job
+     * @return {@code true} if the job has been run
+     */
+    public boolean runExclusively(String jobName, long periodMillis, Runnable job) {
+        if(!tryAcquire(jobName, periodMillis)) {
+            return false;
+        }
+        runWithLease(jobName, job);
+        return true;
+    }
+
+    /**
+     * Runs the given partitioned job, if the current node holds one of the slots.
+     * The lease is renewed while the job is running.
+     *
+     * @param jobName the job name
+     * @param periodMillis how often the job is triggered
+     * @param job the job, which must process only the items belonging to the given partition
+     * @return {@code true} if the job has been run
+     * @see #tryAcquirePartition(String, long)
+     */
+    public boolean runPartitioned(String jobName, long periodMillis, Consumer<ScheduledJobPartition> job) {
+        var partition = tryAcquirePartition(jobName, periodMillis);
+        if(partition.isEmpty()) {
+            return false;
+        }
+        runWithLease(jobName, () -> job.accept(partition.get()));
+        return true;
+    }
+
+    /**
+     * Runs a job triggered by a cron expression on one node. Since the trigger fires at the same time on every node,
+     * any node can run the next execution: the lease lasts half of the period (or the minimum lease duration), so
+     * that if the owner crashes no execution is skipped, and it is renewed while the job is running.
+     *
+     * @param jobName the job name
+     * @param periodMillis the interval between two executions
+     * @param job the job
+     * @return {@code true} if the job has been run
+     */
+    public boolean runOncePerTrigger(String jobName, long periodMillis, Runnable job) {
+        if(enabled && !acquireSlot(jobName, Math.max(periodMillis / 2, minLeaseDurationMillis), 1)) {
+            return false;
+        }
+        runWithLease(jobName, job);
+        return true;
+    }
+
+    /**
+     * Acquires (or renews) the lease for the given job.
+     *
+     * @param jobName the job name
+     * @param periodMillis how often the job is triggered
+     * @return {@code true} if the current node must run the job
+     */
+    public boolean tryAcquire(String jobName, long periodMillis) {
+        return !enabled || acquireSlot(jobName, leaseDuration(periodMillis), 1);
+    }
+
+    /**
+     * Acquires (or renews) a slot of a partitioned job. The number of partitions is read from
+     * {@code alfio.jobs.[jobName].partitions} (default: 1, which means that the job is not partitioned).
+     *
+     * @param jobName the job name
+     * @param periodMillis how often the job is triggered
+     * @return the partition that must be processed by the current node, or empty if the job must not run here
+     */
+    public Optional<ScheduledJobPartition> tryAcquirePartition(String jobName, long periodMillis) {
+        if(!enabled) {
+            return Optional.of(ScheduledJobPartition.ALL);
+        }
+        int partitions = Math.max(1, environment.getProperty("alfio.jobs." + jobName + ".partitions", Integer.class, 1));
+        if(!acquireSlot(jobName, leaseDuration(periodMillis), partitions)) {
+            return Optional.empty();
+        }
+        if(partitions == 1) {
+            return Optional.of(ScheduledJobPartition.ALL);
+        }
+        int slot = leases.get(jobName).slot;
+        List<Integer> slots = new ArrayList<>(List.of(slot));
+        try {
+            // if there are fewer nodes than partitions, the free slots are distributed among the active ones
+            var activeSlots = leaseRepository.findActiveSlots(jobName, partitions);
+            int index = activeSlots.indexOf(slot);
+            for (int s = 0; s < partitions; s++) {
+                if(!activeSlots.contains(s) && (index < 0 || s % activeSlots.size() == index)) {
+                    slots.add(s);
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Cannot load the active slots for job {}, processing all of them", jobName, e);
+            slots = IntStream.range(0, partitions).boxed().toList();
+        }
+        return Optional.of(new ScheduledJobPartition(partitions, slots));
+    }
+
+    private long leaseDuration(long periodMillis) {
+        return Math.max(2 * periodMillis, minLeaseDurationMillis);
+    }
+
+    private boolean acquireSlot(String jobName, long leaseDuration, int partitions) {
+        long now = nanoTime.getAsLong();
+        var state = leases.computeIfAbsent(jobName, k -> new LeaseState(now));
+        int previousSlot = state.slot;
+        if(now - state.nextCheck < 0 && previousSlot < partitions) {
+            // checked recently, the lease (if owned) is still valid
+            return previousSlot != NOT_OWNED;
+        }
+        try {
+            // the slot we already own, if any, is renewed first
+            int first = previousSlot != NOT_OWNED && previousSlot < partitions ? previousSlot : 0;
+            for (int i = 0; i < partitions; i++) {
+                int slot = (first + i) % partitions;
+                if(leaseRepository.acquire(jobName, slot, nodeId, leaseDuration) > 0) {
+                    state.acquired(slot, leaseDuration, now);
+                    if(previousSlot != slot) {
+                        log.info("Node {} is now running job {} (slot {} of {})", nodeId, jobName, slot + 1, partitions);
+                    }
+                    return true;
+                }
+            }
+            state.acquired(NOT_OWNED, leaseDuration, now);
+        } catch (DataAccessException e) {
+            log.warn("Cannot acquire lease for job {}", jobName, e);
+            state.slot = NOT_OWNED;
+        }
+        if(previousSlot != NOT_OWNED) {
+            log.info("Node {} is no longer running job {}", nodeId, jobName);
+        }
+        return false;
+    }
+
+    private void runWithLease(String jobName, Runnable job) {
+        var state = leases.get(jobName);
+        if(state == null) {
+            job.run();
+            return;
+        }
+        state.running = true;
+        try {
+            job.run();
+        } finally {
+            state.running = false;
+        }
+    }
+
+    /**
+     * Extends the leases of the jobs which are still running after one third of their lease duration.
+     */
+    void renewRunningLeases() {
+        long now = nanoTime.getAsLong();
+        leases.forEach((jobName, state) -> {
+            int slot = state.slot;
+            if(!state.running || slot == NOT_OWNED || now - state.nextCheck < 0) {
+                return;
+            }
+            try {
+                if(leaseRepository.renew(jobName, slot, nodeId, state.leaseDuration) > 0) {
+                    state.nextCheck = now + TimeUnit.MILLISECONDS.toNanos(state.leaseDuration / 3);
+                } else {
+                    log.warn("Node {} lost the lease of job {} while running it", nodeId, jobName);
+                    state.slot = NOT_OWNED;
+                }
+            } catch (DataAccessException e) {
+                log.warn("Cannot renew lease for job {}", jobName, e);
+            }
+        });
+    }
+
+    public List<ScheduledJobLease> getLeases() {
+        return leaseRepository.findAll();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void destroy() {
+        if(!enabled) {
+            return;
+        }
+        heartbeat.shutdownNow();
+        if(leases.values().stream().allMatch(s -> s.slot == NOT_OWNED)) {
+            return;
+        }
+        try {
+            // let the other nodes take over immediately
+            int released = leaseRepository.releaseAll(nodeId);
+            log.info("Released {} job lease(s) held by {}", released, nodeId);
+        } catch (DataAccessException e) {
+            log.warn("Cannot release job leases", e);
+        }
+    }
+
+    private static final class LeaseState {
+        private volatile int slot = NOT_OWNED;
+        private volatile long leaseDuration;
+        private volatile long nextCheck;
+        private volatile boolean running;
+
+        private LeaseState(long now) {
+            this.nextCheck = now;
+        }
+
+        private void acquired(int slot, long leaseDuration, long now) {
+            this.slot = slot;
+            this.leaseDuration = leaseDuration;
+            this.nextCheck = now + TimeUnit.MILLISECONDS.toNanos(leaseDuration / 3);
+        }
+    }
+}
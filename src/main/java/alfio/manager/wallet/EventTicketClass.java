@@ -29,7 +29,7 @@ import java.util.Map;
 @Getter
 public class EventTicketClass implements WalletEntity {
 
-    public static final String WALLET_URL = "https://walletobjects.googleapis.com/walletobjects/v1/eventTicketClass";
+    public static final String RESOURCE = "eventTicketClass";
 
     private static final DateTimeFormatter EVENT_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSX");
 
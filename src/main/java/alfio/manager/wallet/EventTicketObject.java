@@ -24,7 +24,7 @@ import lombok.Getter;
 @Getter
 public class EventTicketObject implements WalletEntity {
 
-    public static final String WALLET_URL = "https://walletobjects.googleapis.com/walletobjects/v1/eventTicketObject";
+    public static final String RESOURCE = "eventTicketObject";
 
     private String id;
 
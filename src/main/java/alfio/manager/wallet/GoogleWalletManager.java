@@ -28,9 +28,12 @@ import alfio.util.MustacheCustomTag;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.auth.oauth2.ServiceAccountCredentials;
 import lombok.AllArgsConstructor;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,7 +51,9 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.security.interfaces.RSAPrivateKey;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -65,6 +70,19 @@ public class GoogleWalletManager {
     private static final String WALLET_OBJECT_ID = "gWalletObjectId";
     private static final String AUTHORIZATION = "Authorization";
     private static final String BEARER_PLACEHOLDER = "Bearer %s";
+    static final String API_URL_PROPERTY = "alfio.google-wallet.api-url";
+    private static final String DEFAULT_API_URL = "https://walletobjects.googleapis.com/walletobjects/v1";
+    // max number of concurrent requests sent to the Wallet API while provisioning objects in bulk
+    private static final int MAX_CONCURRENT_REQUESTS = 8;
+    // credentials are cached by a digest of the service account key, so that they are automatically
+    // replaced if the configuration changes. GoogleCredentials takes care of refreshing the access token.
+    private final Cache<String, GoogleCredentials> credentialsCache = Caffeine.newBuilder()
+        .expireAfterAccess(Duration.ofHours(1L))
+        .build();
+    private final Cache<String, String> saveUrlCache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofHours(1L))
+        .maximumSize(10_000)
+        .build();
     private final EventRepository eventRepository;
     private final ConfigurationManager configurationManager;
     private final EventDescriptionRepository eventDescriptionRepository;
@@ -93,12 +111,83 @@ public class GoogleWalletManager {
     public String createAddToWalletUrl(Ticket ticket, EventAndOrganizationId event) {
         Map<ConfigurationKeys, String> passConf = getConfigurationKeys(event);
         if (!passConf.isEmpty()) {
-            return buildWalletPassUrl(ticket, eventRepository.findById(event.getId()), passConf);
+            var fullEvent = eventRepository.findById(event.getId());
+            var context = new WalletContext(passConf, retrieveCredentials(passConf.get(WALLET_SERVICE_ACCOUNT_KEY)));
+            String walletTicketId = formatEventTicketObjectId(ticket, fullEvent, context.issuerId(), context.host());
+            if (walletTicketId.equals(getProvisionedObjectId(ticket.getId()).orElse(null))) {
+                // object has been already created in bulk. We just need to sign the link
+                return generateWalletPassUrl(context.credentials(), walletTicketId, context.baseUrl());
+            }
+            return buildWalletPassUrl(ticket, fullEvent, context, walletTicketId);
         } else {
             throw new GoogleWalletException("Google Wallet integration is not enabled.");
         }
     }
 
+    /**
+     * Creates the wallet classes and objects for all the assigned tickets in the given reservation.
+     * Requests for the objects are sent in batches of {@value #MAX_CONCURRENT_REQUESTS}.
+     * Tickets which already have a valid object are skipped, so that this method can be retried safely.
+     *
+     * @param reservationId the reservation ID
+     * @return the number of objects created
+     * @throws GoogleWalletException if at least one object could not be created
+     */
+    public int provisionWalletObjects(String reservationId) {
+        var tickets = ticketRepository.findTicketsInReservation(reservationId).stream()
+            .filter(Ticket::getAssigned)
+            .toList();
+        if (tickets.isEmpty()) {
+            return 0;
+        }
+        var event = eventRepository.findById(tickets.get(0).getEventId());
+        Map<ConfigurationKeys, String> passConf = getConfigurationKeys(event);
+        if (passConf.isEmpty()) {
+            log.trace("Google Wallet is not enabled for event {}. Skipping provisioning", event.getShortName());
+            return 0;
+        }
+        var context = new WalletContext(passConf, retrieveCredentials(passConf.get(WALLET_SERVICE_ACCOUNT_KEY)));
+        var toBeCreated = tickets.stream()
+            .map(t -> Pair.of(t, formatEventTicketObjectId(t, event, context.issuerId(), context.host())))
+            .filter(p -> !p.getRight().equals(getProvisionedObjectId(p.getLeft().getId()).orElse(null)))
+            .toList();
+        if (toBeCreated.isEmpty()) {
+            return 0;
+        }
+
+        var classesByCategory = new HashMap<Integer, EventTicketClass>();
+        var objects = new ArrayList<Pair<Ticket, EventTicketObject>>(toBeCreated.size());
+        for (var ticketAndObjectId : toBeCreated) {
+            var ticket = ticketAndObjectId.getLeft();
+            var eventTicketClass = classesByCategory.computeIfAbsent(ticket.getCategoryId(), id -> {
+                var created = buildEventTicketClass(ticket, event, context);
+                createOnWallet(EventTicketClass.RESOURCE, context, created);
+                return created;
+            });
+            objects.add(Pair.of(ticket, buildEventTicketObject(ticket, event, ticketAndObjectId.getRight(), eventTicketClass)));
+        }
+
+        int failed = 0;
+        for (int i = 0; i < objects.size(); i += MAX_CONCURRENT_REQUESTS) {
+            var batch = objects.subList(i, Math.min(i + MAX_CONCURRENT_REQUESTS, objects.size()));
+            var results = batch.stream()
+                .map(p -> insertObjectAsync(context, p.getRight()))
+                .toList();
+            for (int j = 0; j < batch.size(); j++) {
+                var ticket = batch.get(j).getLeft();
+                if (results.get(j).join()) {
+                    persistPassId(ticket, batch.get(j).getRight().getId());
+                } else {
+                    failed++;
+                }
+            }
+        }
+        if (failed > 0) {
+            throw new GoogleWalletException("Cannot create %d out of %d wallet objects for reservation %s".formatted(failed, objects.size(), reservationId));
+        }
+        return objects.size();
+    }
+
     @EventListener
     public void invalidateAccessForTicket(InvalidateAccess invalidateAccess) {
         try {
@@ -118,10 +207,10 @@ public class GoogleWalletManager {
         try {
             log.trace("Invalidating access to object ID: {}", objectId);
             var credentials = retrieveCredentials(passConf.get(WALLET_SERVICE_ACCOUNT_KEY));
-            URI uriWithId = URI.create("%s/%s".formatted(EventTicketObject.WALLET_URL, objectId));
+            URI uriWithId = URI.create("%s/%s".formatted(walletApiUrl(EventTicketObject.RESOURCE), objectId));
             HttpRequest expireRequest = HttpRequest.newBuilder()
                 .uri(uriWithId)
-                .header(AUTHORIZATION, BEARER_PLACEHOLDER.formatted(credentials.refreshAccessToken().getTokenValue()))
+                .header(AUTHORIZATION, BEARER_PLACEHOLDER.formatted(accessToken(credentials)))
                 .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"state\":\"INACTIVE\"}"))
                 .build();
             var response = httpClient.send(expireRequest, HttpResponse.BodyHandlers.ofString());
@@ -168,12 +257,19 @@ public class GoogleWalletManager {
 
     private String buildWalletPassUrl(Ticket ticket,
                                       Event event,
-                                      Map<ConfigurationKeys, String> config) {
-        String baseUrl = config.get(BASE_URL);
-        String issuerId = config.get(WALLET_ISSUER_IDENTIFIER);
-        String serviceAccountKey = config.get(WALLET_SERVICE_ACCOUNT_KEY);
-        boolean overwritePreviousClassesAndEvents = Boolean.parseBoolean(config.get(WALLET_OVERWRITE_PREVIOUS_CLASSES_AND_EVENTS));
+                                      WalletContext context,
+                                      String walletTicketId) {
+        var eventTicketClass = buildEventTicketClass(ticket, event, context);
+        var eventTicketObject = buildEventTicketObject(ticket, event, walletTicketId, eventTicketClass);
+
+        createOnWallet(EventTicketClass.RESOURCE, context, eventTicketClass);
+        String eventObjectId = createOnWallet(EventTicketObject.RESOURCE, context, eventTicketObject);
+        String walletPassUrl = generateWalletPassUrl(context.credentials(), eventObjectId, context.baseUrl());
+        persistPassId(ticket, eventObjectId);
+        return walletPassUrl;
+    }
 
+    private EventTicketClass buildEventTicketClass(Ticket ticket, Event event, WalletContext context) {
         String eventDescription = MustacheCustomTag.renderToTextCommonmark(
             eventDescriptionRepository.findDescriptionByEventIdTypeAndLocale(event.getId(), EventDescription.EventDescriptionType.DESCRIPTION, ticket.getUserLanguage()).orElse(""));
         TicketCategory category = ticketCategoryRepository.getById(ticket.getCategoryId());
@@ -185,39 +281,35 @@ public class GoogleWalletManager {
             latitudeLongitudePoint = EventTicketClass.LatitudeLongitudePoint.of(Double.parseDouble(event.getLatitude()), Double.parseDouble(event.getLongitude()));
         }
 
-        var host = URI.create(baseUrl).getHost().replace(".", "-");
-        var eventTicketClass = new EventTicketClass(
-            formatEventTicketClassId(event, issuerId, category, host),
+        return new EventTicketClass(
+            formatEventTicketClassId(event, context.issuerId(), category, context.host()),
             event.getDisplayName(),
             Integer.toString(event.getId()),
             eventDescription,
             event.getLocation(),
             latitudeLongitudePoint,
             category.getName(),
-            baseUrl + "/file/" + event.getFileBlobId(),
+            context.baseUrl() + "/file/" + event.getFileBlobId(),
             ticketValidityStart,
             ticketValidityEnd
         );
+    }
 
-        String walletTicketId = formatEventTicketObjectId(ticket, event, issuerId, host);
-        var eventTicketObject = new EventTicketObject(
+    private static EventTicketObject buildEventTicketObject(Ticket ticket, Event event, String walletTicketId, EventTicketClass eventTicketClass) {
+        return new EventTicketObject(
             walletTicketId,
             eventTicketClass.getId(),
             ticket.getFullName(),
             ticket.getUuid(),
             ticket.ticketCode(event.getPrivateKey(), event.supportsQRCodeCaseInsensitive())
         );
+    }
 
-        GoogleCredentials credentials = retrieveCredentials(serviceAccountKey);
-
-        createEventClass(credentials, eventTicketClass, overwritePreviousClassesAndEvents);
-        String eventObjectId = createEventObject(credentials, eventTicketObject, overwritePreviousClassesAndEvents);
-        String walletPassUrl = generateWalletPassUrl(credentials, eventObjectId, baseUrl);
-        persistPassId(ticket, eventObjectId);
-        return walletPassUrl;
+    private GoogleCredentials retrieveCredentials(String serviceAccountKey) {
+        return credentialsCache.get(DigestUtils.sha256Hex(serviceAccountKey), k -> loadCredentials(serviceAccountKey));
     }
 
-    private static GoogleCredentials retrieveCredentials(String serviceAccountKey) {
+    private static GoogleCredentials loadCredentials(String serviceAccountKey) {
         try {
             return GoogleCredentials
                 .fromStream(new ByteArrayInputStream(serviceAccountKey.getBytes(StandardCharsets.UTF_8)))
@@ -227,6 +319,18 @@ public class GoogleWalletManager {
         }
     }
 
+    private static String accessToken(GoogleCredentials credentials) throws IOException {
+        // the token is requested only if it is missing or about to expire
+        credentials.refreshIfExpired();
+        return credentials.getAccessToken().getTokenValue();
+    }
+
+    private Optional<String> getProvisionedObjectId(int ticketId) {
+        return Optional.ofNullable(ticketRepository.getTicketMetadata(ticketId))
+            .flatMap(m -> m.getMetadataForKey(TicketMetadataContainer.GENERAL))
+            .map(m -> m.getAttributes().get(WALLET_OBJECT_ID));
+    }
+
     private void persistPassId(Ticket ticket, String eventObjectId) {
         var metadataContainer = Objects.requireNonNullElseGet(ticketRepository.getTicketMetadata(ticket.getId()), TicketMetadataContainer::empty);
         var existingMetadata = metadataContainer.getMetadataForKey(TicketMetadataContainer.GENERAL);
@@ -253,39 +357,69 @@ public class GoogleWalletManager {
     }
 
     private String generateWalletPassUrl(GoogleCredentials credentials, String eventObjectId, String url) {
-        var objectIdMap = Map.of("id", eventObjectId);
-        var payload = Map.of("genericObjects", List.of(objectIdMap));
-        var claims = Map.of(
-            "iss", ((ServiceAccountCredentials) credentials).getClientEmail(),
-            "aud", "google",
-            "origins", List.of(url),
-            "typ", "savetowallet",
-            "payload", payload
-        );
-
-        Algorithm algorithm = Algorithm.RSA256(
-            null,
-            (RSAPrivateKey) ((ServiceAccountCredentials) credentials).getPrivateKey());
-        String token = JWT.create()
-            .withPayload(claims)
-            .sign(algorithm);
-        return "https://pay.google.com/gp/v/save/%s".formatted(token);
-    }
-
-    private String createEventClass(GoogleCredentials credentials, EventTicketClass eventTicketClass, boolean overwritePreviousClassesAndEvents) {
-        return createOnWallet(EventTicketClass.WALLET_URL, credentials, eventTicketClass, overwritePreviousClassesAndEvents);
+        var serviceAccountCredentials = (ServiceAccountCredentials) credentials;
+        // the signed link only depends on the object ID and on the service account
+        return saveUrlCache.get(serviceAccountCredentials.getClientEmail() + "|" + url + "|" + eventObjectId, k -> {
+            var objectIdMap = Map.of("id", eventObjectId);
+            var payload = Map.of("genericObjects", List.of(objectIdMap));
+            var claims = Map.of(
+                "iss", serviceAccountCredentials.getClientEmail(),
+                "aud", "google",
+                "origins", List.of(url),
+                "typ", "savetowallet",
+                "payload", payload
+            );
+
+            Algorithm algorithm = Algorithm.RSA256(
+                null,
+                (RSAPrivateKey) serviceAccountCredentials.getPrivateKey());
+            String token = JWT.create()
+                .withPayload(claims)
+                .sign(algorithm);
+            return "https://pay.google.com/gp/v/save/%s".formatted(token);
+        });
     }
 
-    private String createEventObject(GoogleCredentials credentials, EventTicketObject eventTicketObject, boolean overwritePreviousClassesAndEvents) {
-        return createOnWallet(EventTicketObject.WALLET_URL, credentials, eventTicketObject, overwritePreviousClassesAndEvents);
+    private CompletableFuture<Boolean> insertObjectAsync(WalletContext context, EventTicketObject eventTicketObject) {
+        try {
+            var request = HttpRequest.newBuilder()
+                .uri(URI.create(walletApiUrl(EventTicketObject.RESOURCE)))
+                .header(AUTHORIZATION, BEARER_PLACEHOLDER.formatted(accessToken(context.credentials())))
+                .POST(HttpRequest.BodyPublishers.ofString(eventTicketObject.build(objectMapper)))
+                .build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() == 200) {
+                        return true;
+                    }
+                    if (response.statusCode() == 409 && !context.overwritePreviousClassesAndEvents()) {
+                        // object was created by a previous attempt
+                        return true;
+                    }
+                    if (response.statusCode() == 409) {
+                        return createOnWallet(EventTicketObject.RESOURCE, context, eventTicketObject) != null;
+                    }
+                    logIfWarnEnabled(() -> log.warn("Received {} status code when creating object {}: {}", response.statusCode(), eventTicketObject.getId(), response.body()));
+                    return false;
+                })
+                .exceptionally(e -> {
+                    log.warn("Error while creating object " + eventTicketObject.getId(), e);
+                    return false;
+                });
+        } catch (IOException e) {
+            log.warn("Cannot retrieve access token", e);
+            return CompletableFuture.completedFuture(false);
+        }
     }
 
-    private String createOnWallet(String uri, GoogleCredentials credentials, WalletEntity entity, boolean overwritePreviousClassesAndEvents) {
+    private String createOnWallet(String resource, WalletContext context, WalletEntity entity) {
         try {
+            var credentials = context.credentials();
+            String uri = walletApiUrl(resource);
             URI uriWithId = URI.create("%s/%s".formatted(uri, entity.getId()));
             HttpRequest getRequest = HttpRequest.newBuilder()
                 .uri(uriWithId)
-                .header(AUTHORIZATION, BEARER_PLACEHOLDER.formatted(credentials.refreshAccessToken().getTokenValue()))
+                .header(AUTHORIZATION, BEARER_PLACEHOLDER.formatted(accessToken(credentials)))
                 .GET()
                 .build();
             log.debug("GET Request: {}", getRequest);
@@ -297,9 +431,9 @@ public class GoogleWalletManager {
                 throw new GoogleWalletException("Cannot create Wallet class. Response status: " + getResponse.statusCode());
             }
 
-            if (getResponse.statusCode() == 404 || overwritePreviousClassesAndEvents) {
+            if (getResponse.statusCode() == 404 || context.overwritePreviousClassesAndEvents()) {
                 HttpRequest.Builder builder = HttpRequest.newBuilder()
-                    .header(AUTHORIZATION, BEARER_PLACEHOLDER.formatted(credentials.refreshAccessToken().getTokenValue()));
+                    .header(AUTHORIZATION, BEARER_PLACEHOLDER.formatted(accessToken(credentials)));
                 if (getResponse.statusCode() == 404) {
                     builder = builder
                         .uri(URI.create(uri))
@@ -327,6 +461,10 @@ public class GoogleWalletManager {
         }
     }
 
+    private String walletApiUrl(String resource) {
+        return "%s/%s".formatted(environment.getProperty(API_URL_PROPERTY, DEFAULT_API_URL), resource);
+    }
+
     private String walletIdPrefix() {
         var profile = Stream.of(PROFILE_DEMO, PROFILE_DEV, PROFILE_LIVE)
             .filter(p -> environment.acceptsProfiles(Profiles.of(p)))
@@ -349,4 +487,18 @@ public class GoogleWalletManager {
         void log();
     }
 
+    private record WalletContext(String baseUrl,
+                                 String issuerId,
+                                 String host,
+                                 boolean overwritePreviousClassesAndEvents,
+                                 GoogleCredentials credentials) {
+        WalletContext(Map<ConfigurationKeys, String> config, GoogleCredentials credentials) {
+            this(config.get(BASE_URL),
+                config.get(WALLET_ISSUER_IDENTIFIER),
+                URI.create(config.get(BASE_URL)).getHost().replace(".", "-"),
+                Boolean.parseBoolean(config.get(WALLET_OVERWRITE_PREVIOUS_CLASSES_AND_EVENTS)),
+                credentials);
+        }
+    }
+
 }
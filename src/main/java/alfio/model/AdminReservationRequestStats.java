@@ -19,6 +19,9 @@ package alfio.model;
 import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
 import lombok.Getter;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
 @Getter
 public class AdminReservationRequestStats {
 
@@ -28,6 +31,8 @@ public class AdminReservationRequestStats {
     private final int countSuccess;
     private final int countPending;
     private final int countError;
+    private final ZonedDateTime firstProcessedTimestamp;
+    private final ZonedDateTime lastProcessedTimestamp;
 
 
     public AdminReservationRequestStats(@Column("request_id") String requestId,
@@ -35,12 +40,28 @@ public class AdminReservationRequestStats {
                                         @Column("event_id") long eventId,
                                         @Column("count_success") int countSuccess,
                                         @Column("count_pending") int countPending,
-                                        @Column("count_error") int countError) {
+                                        @Column("count_error") int countError,
+                                        @Column("first_processed_ts") ZonedDateTime firstProcessedTimestamp,
+                                        @Column("last_processed_ts") ZonedDateTime lastProcessedTimestamp) {
         this.requestId = requestId;
         this.userId = userId;
         this.eventId = eventId;
         this.countSuccess = countSuccess;
         this.countPending = countPending;
         this.countError = countError;
+        this.firstProcessedTimestamp = firstProcessedTimestamp;
+        this.lastProcessedTimestamp = lastProcessedTimestamp;
+    }
+
+    /**
+     * @return the number of requests processed per minute, or {@code null} if it cannot be determined yet
+     */
+    public Double getRequestsPerMinute() {
+        int processed = countSuccess + countError;
+        if(firstProcessedTimestamp == null || lastProcessedTimestamp == null || processed < 2) {
+            return null;
+        }
+        long millis = Duration.between(firstProcessedTimestamp, lastProcessedTimestamp).toMillis();
+        return millis > 0 ? processed * 60_000.0 / millis : null;
     }
 }
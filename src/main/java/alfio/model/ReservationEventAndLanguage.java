@@ -0,0 +1,31 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.model;
+
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+
+/**
+ * Event and language of the first ticket in a reservation.
+ *
+ * @param reservationId the reservation id
+ * @param eventId the event id
+ * @param userLanguage the language of the ticket holder, may be {@code null}
+ */
+public record ReservationEventAndLanguage(@Column("tickets_reservation_id") String reservationId,
+                                          @Column("event_id") int eventId,
+                                          @Column("user_language") String userLanguage) {
+}
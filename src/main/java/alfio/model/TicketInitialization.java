@@ -0,0 +1,37 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.model;
+
+import java.util.Date;
+
+/**
+ * Describes a block of identical tickets to be created.
+ *
+ * @param eventId the event
+ * @param categoryId the category, or {@code null} for tickets not yet bound to a category
+ * @param creation creation timestamp
+ * @param status initial status
+ * @param srcPriceCts price of the ticket
+ * @param count number of tickets to create
+ */
+public record TicketInitialization(int eventId,
+                                   Integer categoryId,
+                                   Date creation,
+                                   Ticket.TicketStatus status,
+                                   int srcPriceCts,
+                                   int count) {
+}
@@ -0,0 +1,29 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.model.checkin;
+
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+
+/**
+ * A ticket whose check-in information has changed.
+ *
+ * @param ticketId the ticket id
+ * @param active {@code true} if the ticket must be available for check-in, {@code false} if it has been revoked
+ */
+public record CheckInChange(@Column("id") int ticketId,
+                            @Column("active") boolean active) {
+}
@@ -0,0 +1,31 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.model.checkin;
+
+import java.util.List;
+
+/**
+ * Changes in the check-in information of an event since a given cursor.
+ *
+ * @param cursor the value to be sent as {@code since} in the next request
+ * @param changed attendees added or modified
+ * @param removed ids of the tickets which must be removed from the device
+ */
+public record CheckInDelta(long cursor,
+                           List<EncryptedAttendee> changed,
+                           List<Integer> removed) {
+}
@@ -0,0 +1,75 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.model.system;
+
+import alfio.model.support.JSONData;
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An export generated in background.
+ *
+ * @param id the export id
+ * @param type the export type
+ * @param eventId the event, if the export is related to a single event
+ * @param format excel or csv
+ * @param username the user who requested the export
+ * @param parameters the export parameters (e.g. the selected fields)
+ * @param status the current status
+ * @param progress number of rows written so far
+ * @param total total number of rows, if known
+ * @param fileName the file name, available once the export is ready
+ * @param contentType the content type, available once the export is ready
+ * @param contentSize the size of the generated file
+ * @param errorMessage the error message, if the export has failed
+ * @param creationTimestamp when the export has been requested
+ * @param completionTimestamp when the export has been completed
+ * @param expirationTimestamp when the export will be deleted
+ */
+public record AdminExport(@Column("id") String id,
+                          @Column("export_type") Type type,
+                          @Column("event_id_fk") Integer eventId,
+                          @Column("format") String format,
+                          @Column("username") String username,
+                          @Column("parameters") @JSONData Map<String, List<String>> parameters,
+                          @Column("status") Status status,
+                          @Column("progress") int progress,
+                          @Column("total") Integer total,
+                          @Column("file_name") String fileName,
+                          @Column("content_type") String contentType,
+                          @Column("content_size") Long contentSize,
+                          @Column("error_message") String errorMessage,
+                          @Column("creation_ts") ZonedDateTime creationTimestamp,
+                          @Column("completion_ts") ZonedDateTime completionTimestamp,
+                          @Column("expiration_ts") ZonedDateTime expirationTimestamp) {
+
+    public enum Type {
+        ATTENDEES,
+        SPONSOR_SCANS,
+        RESERVATIONS
+    }
+
+    public enum Status {
+        PENDING,
+        IN_PROGRESS,
+        READY,
+        FAILED
+    }
+}
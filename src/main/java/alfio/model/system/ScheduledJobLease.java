@@ -0,0 +1,42 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.model.system;
+
+import ch.digitalfondue.npjt.ConstructorAnnotationRowMapper.Column;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Ownership of a scheduled job slot.
+ *
+ * @param jobName the job name
+ * @param slot the slot. Jobs that are not partitioned have only slot 0
+ * @param owner the node currently (or lastly) running the job
+ * @param acquiredTimestamp when the current owner has acquired the lease
+ * @param expirationTimestamp when the lease expires, if not renewed
+ * @param lastRunTimestamp last time the owner has checked the lease before starting the job. The lease is checked
+ *                         at most three times per lease duration, so frequent jobs can run more often than that
+ * @param active whether the lease is still valid
+ */
+public record ScheduledJobLease(@Column("job_name") String jobName,
+                                @Column("slot") int slot,
+                                @Column("owner") String owner,
+                                @Column("acquired_ts") ZonedDateTime acquiredTimestamp,
+                                @Column("expires_ts") ZonedDateTime expirationTimestamp,
+                                @Column("last_run_ts") ZonedDateTime lastRunTimestamp,
+                                @Column("active") boolean active) {
+}
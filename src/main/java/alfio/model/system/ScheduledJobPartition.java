@@ -0,0 +1,30 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.model.system;
+
+import java.util.List;
+
+/**
+ * The share of a partitioned job assigned to the current node: the items whose {@code id % count} is one of {@code slots}.
+ *
+ * @param count the number of partitions
+ * @param slots the slots that must be processed by the current node
+ */
+public record ScheduledJobPartition(int count, List<Integer> slots) {
+
+    public static final ScheduledJobPartition ALL = new ScheduledJobPartition(1, List.of(0));
+}
@@ -37,6 +37,9 @@ public interface EmailMessageRepository {
     @Query("select id from email_message where event_id = :eventId and checksum = :checksum limit 1")
     Optional<Integer> findIdByEventIdAndChecksum(@Bind("eventId") int eventId, @Bind("checksum") String checksum);
 
+    @Query("select count(*) from email_message where status in ('WAITING', 'RETRY')")
+    Integer countWaitingMessages();
+
     @Query("select id from email_message where subscription_descriptor_id_fk = :subscriptionDescriptorId and checksum = :checksum limit 1")
     Optional<Integer> findIdBySubscriptionDescriptorAndChecksum(@Bind("subscriptionDescriptorId") UUID subscriptionDescriptorId, @Bind("checksum") String checksum);
 
@@ -85,9 +88,9 @@ public interface EmailMessageRepository {
                  where (\
                  (event_id is not null and event_id in (select id from event where end_ts > now())) or \
                  (subscription_descriptor_id_fk is not null and subscription_descriptor_id_fk in (select id from subscription_descriptor where validity_to is null or validity_to > now())) \
-                ) and (status = 'WAITING' or status = 'RETRY') limit 100 for update skip locked\
+                ) and (status = 'WAITING' or status = 'RETRY') and id % :partitions in (:slots) limit 100 for update skip locked\
                 """)
-    List<EmailMessage> loadAllWaitingForProcessing();
+    List<EmailMessage> loadAllWaitingForProcessing(@Bind("partitions") int partitions, @Bind("slots") List<Integer> slots);
 
     @Query("update email_message set status = 'SENT', sent_ts = :sentTimestamp, html_message = null where id = :id and checksum = :checksum and status in (:expectedStatuses)")
     int updateStatusToSent(@Bind("id") int id, @Bind("checksum") String checksum, @Bind("sentTimestamp") ZonedDateTime sentTimestamp, @Bind("expectedStatuses") List<String> expectedStatuses);
@@ -32,7 +32,10 @@ import java.util.*;
 @QueryRepository
 public interface EventRepository {
 
-    String STATISTICS_QUERY = "select count(*) as total_attendees, COALESCE(SUM(CASE WHEN status = 'CHECKED_IN' THEN 1 ELSE 0 END), 0) as checked_in, CURRENT_TIMESTAMP as last_update from ticket where event_id = :eventId and status in("+TicketRepository.CONFIRMED+")";
+    /**
+     * reads the counters maintained by the check_in_counter triggers on the ticket table
+     */
+    String STATISTICS_QUERY = "select COALESCE(SUM(confirmed), 0)::integer as total_attendees, COALESCE(SUM(checked_in), 0)::integer as checked_in, CURRENT_TIMESTAMP as last_update from check_in_counter where event_id = :eventId";
 
     @Query("select * from event where id = :eventId")
     Event findById(@Bind("eventId") int eventId);
@@ -72,6 +75,10 @@ public interface EventRepository {
     @Query("select * from event where short_name = :eventName")
     Optional<Event> findOptionalByShortName(@Bind("eventName") String eventName);
 
+    @Query("select e.id, coalesce(v.version, 0) + coalesce((select version from public_data_system_version), 0) as version from event e" +
+        " left join event_public_data_version v on v.event_id_fk = e.id where e.short_name = :eventName")
+    Optional<EventDataVersion> findDataVersionByShortName(@Bind("eventName") String eventName);
+
     @Query("select private_key from event where id = :eventId")
     String getPrivateKey(@Bind("eventId") int eventId);
 
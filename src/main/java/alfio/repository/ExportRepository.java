@@ -16,6 +16,7 @@
  */
 package alfio.repository;
 
+import alfio.model.EventIdShortName;
 import alfio.model.ReservationsByEvent;
 import ch.digitalfondue.npjt.Bind;
 import ch.digitalfondue.npjt.Query;
@@ -24,11 +25,30 @@ import ch.digitalfondue.npjt.QueryType;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @QueryRepository
 public interface ExportRepository {
-    @Query(type = QueryType.SELECT, value = """
-        with tickets as (\
+
+    String RESERVATIONS_IN_INTERVAL = """
+         status in ('OFFLINE_PAYMENT', 'DEFERRED_OFFLINE_PAYMENT', 'COMPLETE', 'CANCELLED')\
+         and confirmation_ts between :startTs and :endTs\
+         and event_id_fk is not null\
+        """;
+
+    String SELECT_RESERVATIONS = """
+        with reservations as (\
+                 select distinct event_id_fk, id, invoice_number, first_name,\
+                                 billing_address_company, vat_nr, vat_country,\
+                                 last_name, email_address, payment_method, currency_code, invoicing_additional_information#>>'{italianEInvoicing,fiscalCode}' as tax_code,\
+                                 confirmation_ts, final_price_cts, src_price_cts, vat_cts, vat_status from tickets_reservation\
+                 where \
+        """;
+
+    // tickets are aggregated only for the selected reservations
+    String AGGREGATE_BY_EVENT = """
+             ),\
+             tickets as (\
             select tr_id, jsonb_agg(jsonb_build_object(\
                     'id', t_uuid,\
                     'firstName', t_first_name,\
@@ -41,16 +61,8 @@ public interface ExportRepository {
                     'finalPriceCts', t_final_price_cts\
                 )) items\
             from checkin_ticket_event_and_category_info\
+            where tr_id in (select id from reservations)\
             group by 1),\
-             reservations as (\
-                 select distinct event_id_fk, id, invoice_number, first_name,\
-                                 billing_address_company, vat_nr, vat_country,\
-                                 last_name, email_address, payment_method, currency_code, invoicing_additional_information#>>'{italianEInvoicing,fiscalCode}' as tax_code,\
-                                 confirmation_ts, final_price_cts, src_price_cts, vat_cts, vat_status from tickets_reservation\
-                 where status in ('OFFLINE_PAYMENT', 'DEFERRED_OFFLINE_PAYMENT', 'COMPLETE', 'CANCELLED')\
-                 and confirmation_ts between :startTs and :endTs\
-                 and event_id_fk is not null\
-             ),\
              reservations_event as (\
                  select tr.event_id_fk e_id, jsonb_agg(jsonb_build_object(\
                          'id', tr.id,\
@@ -78,10 +90,39 @@ public interface ExportRepository {
          select e.id as event_id, e.short_name as event_short_name, e.display_name as event_display_name, tr.reservations\
          from event e\
            join reservations_event tr on e.id = tr.e_id\
-         where e.org_id in (:orgIds)\
-         order by 1\
-        """)
+        """;
+
+    String WITH_TICKETS = " and exists(select 1 from checkin_ticket_event_and_category_info where tr_id = tickets_reservation.id)";
+
+    String ORGANIZATION_EVENTS = " and event_id_fk in (select id from event where org_id in (:orgIds))";
+
+    @Query(type = QueryType.SELECT, value = SELECT_RESERVATIONS + RESERVATIONS_IN_INTERVAL + ORGANIZATION_EVENTS + AGGREGATE_BY_EVENT + " order by 1")
     List<ReservationsByEvent> allReservationsForInterval(@Bind("startTs") ZonedDateTime from,
                                                          @Bind("endTs") ZonedDateTime to,
                                                          @Bind("orgIds") List<Integer> orgIds);
+
+    @Query("select id, short_name from event where org_id in (:orgIds)" +
+        " and id in (select event_id_fk from tickets_reservation where " + RESERVATIONS_IN_INTERVAL + WITH_TICKETS + ")" +
+        " order by short_name")
+    List<EventIdShortName> findEventsWithReservationsForInterval(@Bind("startTs") ZonedDateTime from,
+                                                                 @Bind("endTs") ZonedDateTime to,
+                                                                 @Bind("orgIds") List<Integer> orgIds);
+
+    @Query("select count(*) from checkin_ticket_event_and_category_info where tr_id in" +
+        " (select id from tickets_reservation where " + RESERVATIONS_IN_INTERVAL + ORGANIZATION_EVENTS + ")")
+    int countTicketsForInterval(@Bind("startTs") ZonedDateTime from,
+                                @Bind("endTs") ZonedDateTime to,
+                                @Bind("orgIds") List<Integer> orgIds);
+
+    @Query("select id from tickets_reservation where " + RESERVATIONS_IN_INTERVAL + WITH_TICKETS +
+        " and event_id_fk = :eventId order by confirmation_ts, id")
+    List<String> findReservationIdsForInterval(@Bind("startTs") ZonedDateTime from,
+                                               @Bind("endTs") ZonedDateTime to,
+                                               @Bind("eventId") int eventId);
+
+    /**
+     * Loads the given reservations, which must belong to the same event
+     */
+    @Query(type = QueryType.SELECT, value = SELECT_RESERVATIONS + "id in (:ids)" + AGGREGATE_BY_EVENT)
+    Optional<ReservationsByEvent> findReservationsByIds(@Bind("ids") List<String> ids);
 }
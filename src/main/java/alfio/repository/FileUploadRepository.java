@@ -22,6 +22,7 @@ import alfio.util.Json;
 import ch.digitalfondue.npjt.Bind;
 import ch.digitalfondue.npjt.Query;
 import ch.digitalfondue.npjt.QueryRepository;
+import ch.digitalfondue.npjt.QueryType;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
@@ -34,6 +35,7 @@ import java.io.*;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -46,14 +48,21 @@ public interface FileUploadRepository {
     @Query("select id, name, content_size, content_type, attributes from file_blob where id = :id")
     Optional<FileBlobMetadata> findById(@Bind("id") String id);
 
-    @Query("""
+    @Query(type = QueryType.MODIFYING_WITH_RETURN, value = """
         delete from file_blob where creation_time <= :date and id not in (\
         select file_blob_id from event where file_blob_id is not null\
          union \
         select file_blob_id_fk as file_blob_id from subscription_descriptor where file_blob_id_fk is not null\
-        )\
+        ) returning id\
+        """)
+    List<String> cleanupUnreferencedBlobFiles(@Bind("date") Date date);
+
+    @Query("""
+        select file_blob_id from event where file_blob_id is not null and status = 'PUBLIC' and end_ts > now()\
+         union \
+        select file_blob_id_fk from subscription_descriptor where status = 'ACTIVE'\
         """)
-    int cleanupUnreferencedBlobFiles(@Bind("date") Date date);
+    List<String> findBlobIdsForActivePurchaseContexts();
 
     default void upload(UploadBase64FileModification file, String digest, Map<String, String> attributes) {
         LobHandler lobHandler = new DefaultLobHandler();
@@ -21,26 +21,44 @@ import alfio.model.support.EnumTypeAsString;
 import ch.digitalfondue.npjt.Bind;
 import ch.digitalfondue.npjt.Query;
 import ch.digitalfondue.npjt.QueryRepository;
+import ch.digitalfondue.npjt.QueryType;
+
+import java.util.Optional;
 
 @QueryRepository
 public interface InvoiceSequencesRepository {
 
-    @Query("select invoice_sequence from invoice_sequences where organization_id_fk = :orgId and document_type = :documentType::BILLING_DOCUMENT_TYPE for update")
-    int lockSequenceForUpdate(@Bind("orgId") int orgId, @Bind("documentType") @EnumTypeAsString BillingDocument.Type billingDocumentType);
-
-    default int lockSequenceForUpdate(@Bind("orgId") int orgId) {
-        return lockSequenceForUpdate(orgId, BillingDocument.Type.INVOICE);
-    }
-
-    @Query("update invoice_sequences set invoice_sequence = invoice_sequence + 1 where organization_id_fk = :orgId and document_type = :documentType::BILLING_DOCUMENT_TYPE")
-    int incrementSequenceFor(@Bind("orgId") int orgId, @Bind("documentType") @EnumTypeAsString BillingDocument.Type billingDocumentType);
-
-
-    default int incrementSequenceFor(@Bind("orgId") int orgId) {
-        return incrementSequenceFor(orgId, BillingDocument.Type.INVOICE);
-    }
+    /**
+     * Increments the sequence and returns the value before the increment, using a single statement.
+     * The row lock is held until the end of the current transaction.
+     */
+    @Query(type = QueryType.MODIFYING_WITH_RETURN, value = "update invoice_sequences set invoice_sequence = invoice_sequence + 1" +
+        " where organization_id_fk = :orgId and document_type = :documentType::BILLING_DOCUMENT_TYPE returning invoice_sequence - 1")
+    int getAndIncrementSequenceFor(@Bind("orgId") int orgId, @Bind("documentType") @EnumTypeAsString BillingDocument.Type billingDocumentType);
 
+    @Query("select document_number from billing_document_number where organization_id_fk = :orgId" +
+        " and document_type = :documentType::BILLING_DOCUMENT_TYPE and reservation_id = :reservationId")
+    Optional<Integer> findAllocatedNumber(@Bind("orgId") int orgId,
+                                          @Bind("documentType") @EnumTypeAsString BillingDocument.Type billingDocumentType,
+                                          @Bind("reservationId") String reservationId);
 
+    /**
+     * Increments the sequence and binds the previous value to the given reservation.
+     * Fails with a duplicate key error if a number has already been allocated for the same reservation.
+     */
+    @Query(type = QueryType.MODIFYING_WITH_RETURN, value = """
+        with allocated as (\
+            update invoice_sequences set invoice_sequence = invoice_sequence + 1\
+             where organization_id_fk = :orgId and document_type = :documentType::BILLING_DOCUMENT_TYPE\
+             returning organization_id_fk, document_type, invoice_sequence - 1 as document_number\
+        )\
+         insert into billing_document_number(organization_id_fk, document_type, reservation_id, document_number)\
+         select organization_id_fk, document_type, :reservationId, document_number from allocated\
+         returning document_number\
+        """)
+    int allocateNumber(@Bind("orgId") int orgId,
+                       @Bind("documentType") @EnumTypeAsString BillingDocument.Type billingDocumentType,
+                       @Bind("reservationId") String reservationId);
 
     @Query("""
         insert into invoice_sequences(organization_id_fk, invoice_sequence, document_type) values\
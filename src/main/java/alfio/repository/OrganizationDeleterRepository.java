@@ -38,6 +38,10 @@ public interface OrganizationDeleterRepository {
         " and organization_id_fk not in (" + SELECT_EMPTY_ORGANIZATIONS + ")")
     int deleteInvoiceSequencesForEmptyOrganizations(@Bind("organizationIds") List<Integer> organizationIds);
 
+    @Query("delete from billing_document_number where organization_id_fk in(:organizationIds)" +
+        " and organization_id_fk not in (" + SELECT_EMPTY_ORGANIZATIONS + ")")
+    int deleteBillingDocumentNumbersForEmptyOrganizations(@Bind("organizationIds") List<Integer> organizationIds);
+
     @Query("delete from a_group where organization_id_fk in(:organizationIds)" +
         " and organization_id_fk not in (" + SELECT_EMPTY_ORGANIZATIONS + ")")
     int deleteGroupsForEmptyOrganizations(@Bind("organizationIds") List<Integer> organizationIds);
@@ -99,6 +103,8 @@ public interface OrganizationDeleterRepository {
         // delete invoice sequences
         int deletedSequences = deleteInvoiceSequencesForEmptyOrganizations(organizationIds);
         LOGGER.info("deleted {} invoice sequences", deletedSequences);
+        int deletedNumbers = deleteBillingDocumentNumbersForEmptyOrganizations(organizationIds);
+        LOGGER.info("deleted {} allocated billing document numbers", deletedNumbers);
         // delete auditing
         int deletedAuditing = deleteAuditingForEmptyOrganizations(organizationIds);
         LOGGER.info("deleted {} auditing rows", deletedAuditing);
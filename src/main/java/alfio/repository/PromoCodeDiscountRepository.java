@@ -103,10 +103,10 @@ public interface PromoCodeDiscountRepository {
     Integer countByEventAndOrganizationId(@Bind("eventId") int eventId, @Bind("organizationId") int organizationId);
 
 
-    @Query("select promo_code_use from promocode_count where promo_code_id = :id")
+    @Query("select coalesce((select confirmed from promo_code_usage where promo_code_id_fk = :id), 0)")
     Integer countConfirmedPromoCode(@Bind("id") int id);
 
-    @Query("select promo_code_use from promocode_count_all where promo_code_id = :id")
+    @Query("select coalesce((select reserved from promo_code_usage where promo_code_id_fk = :id), 0)")
     Integer countUsedPromoCode(@Bind("id") int id);
 
     @Query("update promo_code set valid_to = :end where id = :id")
@@ -131,7 +131,4 @@ public interface PromoCodeDiscountRepository {
         """)
     List<PromoCodeUsageResult> findDetailedUsage(@Bind("promoCode") String promoCode,
                                                  @Bind("eventId") Integer eventId);
-
-    @Query("select id from promo_code where id = :id for update")
-    Integer lockForCount(@Bind("id") int id);
 }
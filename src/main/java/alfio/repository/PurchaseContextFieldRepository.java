@@ -47,9 +47,6 @@ public interface PurchaseContextFieldRepository extends FieldRepository {
     String PURCHASE_CONTEXT_MATCHER = "(:eventId is null or event_id_fk = :eventId) and (:subscriptionId::uuid is null or subscription_descriptor_id_fk = :subscriptionId::uuid)";
     String TICKET_ID_OR_SUBSCRIPTION_ID = "((:ticketId::integer is not null or :subscriptionId::uuid is not null) and (:ticketId::integer is null or ticket_id_fk = :ticketId) and (:subscriptionId::uuid is null or subscription_id_fk = :subscriptionId::uuid))";
 
-    @Query("select count(*) from field_value_w_additional where ticket_id_fk = :ticketId and field_value is not null and field_value <> ''")
-    Integer countFilledOptionalData(@Bind("ticketId") int id);
-
     @Query(FIND_ALL_BY_TICKET_ID)
     List<PurchaseContextFieldValue> findAllByTicketId(@Bind("ticketId") int id);
 
@@ -216,9 +213,8 @@ public interface PurchaseContextFieldRepository extends FieldRepository {
             .collect(Collectors.toMap(PurchaseContextFieldValue::getName, Function.identity()));
     }
 
-    default boolean hasOptionalData(int ticketId) {
-        return countFilledOptionalData(ticketId) > 0;
-    }
+    @Query("select distinct ticket_id_fk from field_value_w_additional where ticket_id_fk in (:ticketIds) and field_value is not null and field_value <> ''")
+    List<Integer> findTicketIdsWithOptionalData(@Bind("ticketIds") Collection<Integer> ticketIds);
 
 
     @Query("select * from purchase_context_field_configuration where event_id_fk = :eventId order by field_order asc")
@@ -255,8 +251,8 @@ public interface PurchaseContextFieldRepository extends FieldRepository {
     @Query("update purchase_context_field_configuration set field_order = :order where id = :id")
     int updateFieldOrder(@Bind("id") long id, @Bind("order") int order);
 
-    @Query("select count(*) from purchase_context_field_configuration where event_id_fk = :eventId")
-    Integer countAdditionalFieldsForEvent(@Bind("eventId") int eventId);
+    @Query("select distinct event_id_fk from purchase_context_field_configuration where event_id_fk in (:eventIds)")
+    List<Integer> findEventIdsWithAdditionalFields(@Bind("eventIds") Collection<Integer> eventIds);
 
     @Query("select max(field_order) from purchase_context_field_configuration where " + PURCHASE_CONTEXT_MATCHER)
     Integer findMaxOrderValue(@Bind("eventId") Integer eventId, @Bind("subscriptionId") UUID subscriptionId);
@@ -17,7 +17,9 @@
 package alfio.repository;
 
 import alfio.model.SpecialPrice;
+import alfio.model.SpecialPriceGenerationStatus;
 import alfio.model.TicketCategory;
+import alfio.model.support.Array;
 import ch.digitalfondue.npjt.Bind;
 import ch.digitalfondue.npjt.Query;
 import ch.digitalfondue.npjt.QueryRepository;
@@ -33,7 +35,13 @@ import java.util.stream.Stream;
 @QueryRepository
 public interface SpecialPriceRepository {
 
-    String IS_FREE = " status = 'FREE' and recipient_name is null and recipient_email is null and access_code_id_fk is null";
+    /**
+     * Number of idle tokens kept in the pool of an access code, so that most reservations can claim their tokens
+     * without locking the code
+     */
+    int ACCESS_CODE_POOL_SLICE = 10;
+    String IS_NOT_ASSIGNED = " status = 'FREE' and recipient_name is null and recipient_email is null and access_code_id_fk is null";
+    String IS_FREE = IS_NOT_ASSIGNED + " and access_code_pool_fk is null";
     String SELECT_FREE = "select * from special_price where ticket_category_id = :ticketCategoryId and " + IS_FREE;
 
     @Query("select * from special_price where ticket_category_id = :ticketCategoryId")
@@ -48,13 +56,69 @@ public interface SpecialPriceRepository {
     @Query(SELECT_FREE + " limit :limitTo for update skip locked")
     List<SpecialPrice> findActiveNotAssignedByCategoryId(@Bind("ticketCategoryId") int ticketCategoryId, @Bind("limitTo") int limitTo);
 
-    @Query("select count(*) from special_price where ticket_category_id = :ticketCategoryId and " + IS_FREE)
+    /**
+     * Counts the tokens which are not assigned yet, including the idle ones pooled for an access code
+     */
+    @Query("select count(*) from special_price where ticket_category_id = :ticketCategoryId and " + IS_NOT_ASSIGNED)
     Integer countFreeTokens(@Bind("ticketCategoryId") int ticketCategoryId);
 
-    @Query(type= QueryType.MODIFYING_WITH_RETURN, value = "update special_price set access_code_id_fk = :accessCodeId where id in (" +
-        "select id from special_price where ticket_category_id = :ticketCategoryId and " +IS_FREE+ " and access_code_id_fk is null limit :limitTo" +
-        ") returning *")
-    List<SpecialPrice> bindToAccessCode(@Bind("ticketCategoryId") int ticketCategoryId, @Bind("accessCodeId") int accessCodeId, @Bind("limitTo") int limitTo);
+    @Query(type = QueryType.MODIFYING_WITH_RETURN, value = """
+        update special_price set access_code_id_fk = :accessCodeId where id in (\
+        select id from special_price where ticket_category_id = :ticketCategoryId and access_code_pool_fk = :accessCodeId \
+         and status = 'FREE' and access_code_id_fk is null limit :limitTo for update skip locked\
+        ) returning *\
+        """)
+    List<SpecialPrice> claimFromAccessCodePool(@Bind("ticketCategoryId") int ticketCategoryId, @Bind("accessCodeId") int accessCodeId, @Bind("limitTo") int limitTo);
+
+    @Query("select count(*) from special_price where access_code_pool_fk = :accessCodeId")
+    int countAccessCodePool(@Bind("accessCodeId") int accessCodeId);
+
+    @Query("select count(*) from special_price where ticket_category_id = :ticketCategoryId and access_code_pool_fk = :accessCodeId and status = 'FREE' and access_code_id_fk is null")
+    int countIdleInAccessCodePool(@Bind("ticketCategoryId") int ticketCategoryId, @Bind("accessCodeId") int accessCodeId);
+
+    @Query("""
+        update special_price set access_code_pool_fk = :accessCodeId where id in (\
+        select id from special_price where ticket_category_id = :ticketCategoryId and\
+        """ + IS_FREE + " limit :limitTo for update skip locked)")
+    int addToAccessCodePool(@Bind("ticketCategoryId") int ticketCategoryId, @Bind("accessCodeId") int accessCodeId, @Bind("limitTo") int limitTo);
+
+    @Query("""
+        update special_price set access_code_pool_fk = null where access_code_pool_fk = :accessCodeId \
+         and ticket_category_id <> :ticketCategoryId and status = 'FREE' and access_code_id_fk is null\
+        """)
+    int releaseIdleFromAccessCodePool(@Bind("accessCodeId") int accessCodeId, @Bind("ticketCategoryId") int excludedCategoryId);
+
+    @Query("""
+        update special_price set access_code_pool_fk = null where id in (\
+        select id from special_price where ticket_category_id = :ticketCategoryId and access_code_pool_fk <> :accessCodeId \
+         and status = 'FREE' and access_code_id_fk is null limit :limitTo for update skip locked)\
+        """)
+    int releaseIdleFromOtherAccessCodePools(@Bind("ticketCategoryId") int ticketCategoryId, @Bind("accessCodeId") int accessCodeId, @Bind("limitTo") int limitTo);
+
+    /**
+     * Tops up the pool of the given access code, so that it holds at least {@code target} idle tokens for the given
+     * category, without exceeding the max usage of the code. If the free tokens are not enough, the idle tokens
+     * pooled for the other codes of the same category are taken back.
+     * The caller must hold a lock on the access code.
+     *
+     * @return the number of tokens added to the pool
+     */
+    default int topUpAccessCodePool(int ticketCategoryId, int accessCodeId, Integer maxUsage, int target) {
+        int toAdd = target - countIdleInAccessCodePool(ticketCategoryId, accessCodeId);
+        if(maxUsage != null) {
+            // idle tokens pooled for the other categories must not count against the max usage
+            releaseIdleFromAccessCodePool(accessCodeId, ticketCategoryId);
+            toAdd = Math.min(toAdd, maxUsage - countAccessCodePool(accessCodeId));
+        }
+        if(toAdd <= 0) {
+            return 0;
+        }
+        int added = addToAccessCodePool(ticketCategoryId, accessCodeId, toAdd);
+        if(added < toAdd && releaseIdleFromOtherAccessCodePools(ticketCategoryId, accessCodeId, toAdd - added) > 0) {
+            added += addToAccessCodePool(ticketCategoryId, accessCodeId, toAdd - added);
+        }
+        return added;
+    }
 
     @Query("update special_price set sent_ts = :timestamp, recipient_name = :recipientName, recipient_email = :recipientAddress where code = :code")
     int markAsSent(@Bind("timestamp") ZonedDateTime timestamp, @Bind("recipientName") String recipientName, @Bind("recipientAddress") String recipientAddress, @Bind("code") String code);
@@ -68,9 +132,6 @@ public interface SpecialPriceRepository {
     @Query("select * from special_price where code = :code for update skip locked")
     Optional<SpecialPrice> getForUpdateByCode(@Bind("code") String code);
 
-    @Query("select count(*) from special_price where code = :code")
-    Integer countByCode(@Bind("code") String code);
-
     @Query("update special_price set status = :status, session_id = null, access_code_id_fk = :accessCodeId where id in (:ids)")
     int batchUpdateStatus(@Bind("ids") List<Integer> ids, @Bind("status") SpecialPrice.Status status, @Bind("accessCodeId") Integer accessCodeId);
 
@@ -93,8 +154,15 @@ public interface SpecialPriceRepository {
         """)
     int resetToFreeAndCleanupForTickets(@Bind("ticketIds") List<Integer> ticketIds);
 
-    @Query("update special_price set code = :code, status = 'FREE', sent_ts = null where id = :id")
-    int updateCode(@Bind("code") String code, @Bind("id") int id);
+    @Query("""
+        update special_price set code = v.code, status = 'FREE', sent_ts = null \
+        from unnest(:ids::integer[], :codes::text[]) as v(id, code) \
+        where special_price.id = v.id\
+        """)
+    int bulkUpdateCodes(@Bind("ids") @Array(type = "INTEGER") List<Integer> ids, @Bind("codes") @Array List<String> codes);
+
+    @Query("select c from unnest(:codes::text[]) c where not exists (select 1 from special_price where code = c)")
+    List<String> filterUnusedCodes(@Bind("codes") @Array List<String> codes);
 
     NamedParameterJdbcTemplate getNamedParameterJdbcTemplate();
 
@@ -126,11 +194,14 @@ public interface SpecialPriceRepository {
     @Query("update special_price set status = 'CANCELLED' where id in (:ids)")
     int cancelTokens(@Bind("ids") List<Integer> ids);
 
-    @Query("select id, ticket_category_id from special_price where status = 'WAITING' and ticket_category_id in (select id from ticket_category where tc_status = 'ACTIVE') for update skip locked")
-    List<SpecialPrice.SpecialPriceTicketCategoryId> findWaitingElements();
+    @Query("select distinct ticket_category_id from special_price where status = 'WAITING' and ticket_category_id in (select id from ticket_category where tc_status = 'ACTIVE')")
+    List<Integer> findCategoriesWithWaitingElements();
+
+    @Query("select id from special_price where status = 'WAITING' and ticket_category_id = :categoryId limit :limit for update skip locked")
+    List<Integer> lockWaitingElementsForCategory(@Bind("categoryId") int categoryId, @Bind("limit") int limit);
 
-    @Query("select id, ticket_category_id from special_price where status = 'WAITING' and ticket_category_id = :categoryId for update skip locked")
-    List<SpecialPrice.SpecialPriceTicketCategoryId> findWaitingElementsForCategory(@Bind("categoryId") int categoryId);
+    @Query("select count(*) as total, count(*) filter (where status = 'WAITING') as pending from special_price where ticket_category_id = :categoryId and status <> 'CANCELLED'")
+    SpecialPriceGenerationStatus getGenerationStatus(@Bind("categoryId") int categoryId);
 
 
     default Map<Integer,List<SpecialPrice>> findAllByCategoriesIdsMapped(Collection<Integer> ticketCategoriesIds) {
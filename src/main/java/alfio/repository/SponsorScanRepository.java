@@ -53,17 +53,29 @@ public interface SponsorScanRepository {
                                  @Bind("leadStatus") SponsorScan.LeadStatus leadStatus,
                                  @Bind("operator") String operator);
 
-    @Query("""
+    String PRIORITY = "(case when s.lead_status = 'HOT' then 2 when s.lead_status = 'WARM' then 1 else 0 end)";
+
+    String SELECT_SCAN_DATA = """
         select t.id t_id, t.uuid t_uuid, t.public_uuid t_public_uuid, t.creation t_creation, t.category_id t_category_id, t.status t_status, t.event_id t_event_id,\
          t.src_price_cts t_src_price_cts, t.final_price_cts t_final_price_cts, t.vat_cts t_vat_cts, t.discount_cts t_discount_cts, t.tickets_reservation_id t_tickets_reservation_id,\
          t.full_name t_full_name, t.first_name t_first_name, t.last_name t_last_name, t.email_address t_email_address, t.locked_assignment t_locked_assignment,\
          t.user_language t_user_language, t.ext_reference t_ext_reference, t.currency_code t_currency_code, t.tags t_tags, t.subscription_id_fk t_subscription_id, t.vat_status t_vat_status,\
          s.user_id s_user_id, s.creation s_creation, s.event_id s_event_id, s.ticket_id s_ticket_id, s.notes s_notes, s.lead_status s_lead_status, s.operator s_operator, \
-         (case when s.lead_status = 'HOT' then 2 when s.lead_status = 'WARM' then 1 else 0 end) as priority\
-         from sponsor_scan s, ticket t where s.event_id = :eventId and s.user_id = :userId and s.creation > :start and s.ticket_id = t.id order by priority desc, s.creation\
-        """)
+        """ + PRIORITY + " as priority from sponsor_scan s, ticket t where s.ticket_id = t.id";
+
+    @Query(SELECT_SCAN_DATA + " and s.event_id = :eventId and s.user_id = :userId and s.creation > :start order by priority desc, s.creation")
     List<DetailedScanData> loadSponsorData(@Bind("eventId") int eventId,
                                            @Bind("userId") int userId,
                                            @Bind("start") ZonedDateTime start);
 
+    /**
+     * Returns the ids of the scans of the given sponsor, in the same order as {@link #loadSponsorData(int, int, ZonedDateTime)}
+     */
+    @Query("select s.id from sponsor_scan s, ticket t where s.ticket_id = t.id and s.event_id = :eventId and s.user_id = :userId" +
+        " order by " + PRIORITY + " desc, s.creation, s.id")
+    List<Integer> findScanIdsForExport(@Bind("eventId") int eventId, @Bind("userId") int userId);
+
+    @Query(SELECT_SCAN_DATA + " and s.id in (:ids) order by priority desc, s.creation, s.id")
+    List<DetailedScanData> loadSponsorDataByIds(@Bind("ids") List<Integer> ids);
+
 }
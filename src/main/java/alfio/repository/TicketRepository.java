@@ -18,6 +18,7 @@ package alfio.repository;
 
 import alfio.model.*;
 import alfio.model.checkin.AttendeeSearchResultsCount;
+import alfio.model.checkin.CheckInChange;
 import alfio.model.checkin.CheckInFullInfo;
 import alfio.model.metadata.TicketMetadata;
 import alfio.model.metadata.TicketMetadataContainer;
@@ -31,6 +32,7 @@ import ch.digitalfondue.npjt.Bind;
 import ch.digitalfondue.npjt.Query;
 import ch.digitalfondue.npjt.QueryRepository;
 import ch.digitalfondue.npjt.QueryType;
+import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
@@ -43,6 +45,7 @@ import java.util.function.IntFunction;
 public interface TicketRepository {
 
     String CONFIRMED = "'ACQUIRED', 'CHECKED_IN', 'TO_BE_PAID'";
+    String CHECK_IN_ACTIVE = "tc.ticket_access_type <> 'ONLINE' and t.full_name is not null and t.email_address is not null and t.status in (" + CONFIRMED + ")";
     String FREE = "FREE";
     String RELEASED = "RELEASED";
     String REVERT_TO_FREE = "update ticket set status = 'FREE' where status = 'RELEASED' and event_id = :eventId";
@@ -55,12 +58,48 @@ public interface TicketRepository {
     String UPDATE_TICKET_PRICE = "update ticket set src_price_cts = :srcPriceCts, final_price_cts = :finalPriceCts, vat_cts = :vatCts, discount_cts = :discountCts, currency_code = :currencyCode, vat_status = :vatStatus::VAT_STATUS where event_id = :eventId and category_id = :categoryId";
 
 
-    //TODO: refactor, try to move the MapSqlParameterSource inside the default method!
-    default void bulkTicketInitialization(MapSqlParameterSource[] args) {
-        getNamedParameterJdbcTemplate().batchUpdate("""
-            insert into ticket (uuid, public_uuid, creation, category_id, event_id, status, original_price_cts, paid_price_cts, src_price_cts)
-            values(:uuid, :publicUuid, :creation, :categoryId, :eventId, :status, 0, 0, :srcPriceCts)
-            """, args);
+    int TICKET_INITIALIZATION_CHUNK_SIZE = 5000;
+
+    @Query("""
+        insert into ticket (uuid, public_uuid, creation, category_id, event_id, status, original_price_cts, paid_price_cts, src_price_cts) \
+        select u.uuid, u.public_uuid::uuid, :creation::timestamp with time zone, :categoryId::integer, :eventId, :status::text, 0, 0, :srcPriceCts \
+        from unnest(:uuids::text[], :publicUuids::text[]) as u(uuid, public_uuid)\
+        """)
+    int insertTickets(@Bind("eventId") int eventId,
+                      @Bind("categoryId") Integer categoryId,
+                      @Bind("creation") Date creation,
+                      @Bind("status") String status,
+                      @Bind("srcPriceCts") int srcPriceCts,
+                      @Bind("uuids") @Array List<String> uuids,
+                      @Bind("publicUuids") @Array List<String> publicUuids);
+
+    /**
+     * Creates the requested tickets, using one statement for each chunk of {@link #TICKET_INITIALIZATION_CHUNK_SIZE} tickets.
+     *
+     * @param initializations the tickets to create
+     * @return the number of created tickets
+     */
+    default int bulkTicketInitialization(List<TicketInitialization> initializations) {
+        var log = LoggerFactory.getLogger(TicketRepository.class);
+        int total = initializations.stream().mapToInt(TicketInitialization::count).sum();
+        int created = 0;
+        for (var initialization : initializations) {
+            int remaining = initialization.count();
+            while (remaining > 0) {
+                int size = Math.min(remaining, TICKET_INITIALIZATION_CHUNK_SIZE);
+                var uuids = new ArrayList<String>(size);
+                var publicUuids = new ArrayList<String>(size);
+                for (int i = 0; i < size; i++) {
+                    uuids.add(UUID.randomUUID().toString());
+                    publicUuids.add(UUID.randomUUID().toString());
+                }
+                created += insertTickets(initialization.eventId(), initialization.categoryId(), initialization.creation(),
+                    initialization.status().name(), initialization.srcPriceCts(), uuids, publicUuids);
+                remaining -= size;
+                log.debug("created {} of {} tickets for event {}", created, total, initialization.eventId());
+            }
+        }
+        return created;
     }
 
     default void bulkTicketUpdate(List<Integer> ids, TicketCategory ticketCategory) {
@@ -362,9 +401,34 @@ public interface TicketRepository {
             """)
     List<Integer> findAllAssignedByEventIdForCheckIn(@Bind("eventId") int eventId, @Bind("changedSince") Date changedSince);
 
+    /**
+     * @return the oldest transaction still in progress. All the changes made by transactions with a lower id are visible.
+     */
+    @Query("select txid_snapshot_xmin(txid_current_snapshot())")
+    long getCheckInChangeWatermark();
+
+    /**
+     * Returns the tickets changed by transactions with id in [since, until).
+     * If since is 0, all the tickets available for check-in are returned.
+     */
+    @Query("select t.id, coalesce(" + CHECK_IN_ACTIVE + ", false) as active from ticket t" +
+        " left join ticket_category tc on t.category_id = tc.id" +
+        " where t.event_id = :eventId and ((:since = 0 and " + CHECK_IN_ACTIVE + ")" +
+        " or (:since > 0 and t.check_in_change_txid >= :since and t.check_in_change_txid < :until)) order by t.id asc")
+    List<CheckInChange> findCheckInChanges(@Bind("eventId") int eventId, @Bind("since") long since, @Bind("until") long until);
+
     @Query("select * from reservation_and_ticket_and_tx where t_id is not null and t_status in (" + CONFIRMED + ") and t_event_id = :eventId order by tr_confirmation_ts, t_id")
     List<TicketWithReservationAndTransaction> findAllConfirmedForCSV(@Bind("eventId") int eventId);
 
+    @Query("select t_id from reservation_and_ticket_and_tx where t_id is not null and t_status in (" + CONFIRMED + ") and t_event_id = :eventId group by t_id, tr_confirmation_ts order by tr_confirmation_ts, t_id")
+    List<Integer> findAllConfirmedIdsForCSV(@Bind("eventId") int eventId);
+
+    /**
+     * Same as {@link #findAllConfirmedForCSV(int)}, for the given ticket ids only. Used to export the tickets page by page.
+     */
+    @Query("select * from reservation_and_ticket_and_tx where t_id in (:ids) and t_status in (" + CONFIRMED + ") and t_event_id = :eventId order by tr_confirmation_ts, t_id")
+    List<TicketWithReservationAndTransaction> findConfirmedForCSVByIds(@Bind("eventId") int eventId, @Bind("ids") List<Integer> ids);
+
     @Query("select a.*, b.confirmation_ts from ticket a, tickets_reservation b where a.event_id = :eventId and a.status in(" + CONFIRMED + ") and a.tickets_reservation_id = b.id order by b.confirmation_ts")
     List<Ticket> findAllConfirmed(@Bind("eventId") int eventId);
 
@@ -383,11 +447,26 @@ public interface TicketRepository {
     }
     //
 
-    @Query("select * from ticket where event_id = :eventId  and status in('ACQUIRED', 'TO_BE_PAID') and full_name is not null and email_address is not null and reminder_sent = false for update skip locked")
-    List<Ticket> findAllAssignedButNotYetNotifiedForUpdate(@Bind("eventId") int eventId);
+    @Query("""
+        select * from ticket where event_id in (:eventIds) and status in('ACQUIRED', 'TO_BE_PAID') and (full_name is null or email_address is null) \
+         and id > :lastId order by id limit :limit for update skip locked\
+        """)
+    List<Ticket> findConfirmedButNotAssignedForUpdate(@Bind("eventIds") Collection<Integer> eventIds, @Bind("lastId") int lastId, @Bind("limit") int limit);
+
+    @Query("""
+        select * from ticket where event_id in (:eventIds) and status in('ACQUIRED', 'TO_BE_PAID') and full_name is not null and email_address is not null \
+         and reminder_sent = false and id > :lastId order by id limit :limit for update skip locked\
+        """)
+    List<Ticket> findAssignedButNotYetNotifiedForUpdate(@Bind("eventIds") Collection<Integer> eventIds, @Bind("lastId") int lastId, @Bind("limit") int limit);
 
-    @Query("update ticket set reminder_sent = true where id = :id and reminder_sent = false")
-    int flagTicketAsReminderSent(@Bind("id") int ticketId);
+    @Query(type = QueryType.MODIFYING_WITH_RETURN, value = "update ticket set reminder_sent = true where id in (:ids) and reminder_sent = false returning id")
+    List<Integer> flagTicketsAsReminderSent(@Bind("ids") Collection<Integer> ticketIds);
+
+    @Query("""
+        select distinct on (tickets_reservation_id) tickets_reservation_id, event_id, user_language from ticket \
+         where tickets_reservation_id in (:reservationIds) order by tickets_reservation_id, category_id asc, uuid asc\
+        """)
+    List<ReservationEventAndLanguage> findEventAndLanguageForReservations(@Bind("reservationIds") Collection<String> reservationIds);
 
     @Query(RELEASE_TICKET_QUERY)
     int releaseTicket(@Bind("reservationId") String reservationId, @Bind("newUuid") String newUuid, @Bind("newPublicUuid") UUID newPublicUuid, @Bind("eventId") int eventId, @Bind("ticketId") int ticketId);
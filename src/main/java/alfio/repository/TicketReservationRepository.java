@@ -113,8 +113,13 @@ public interface TicketReservationRepository {
     @Query("select count(id) from tickets_reservation where status in('OFFLINE_PAYMENT', 'CUSTOM_OFFLINE_PAYMENT', 'DEFERRED_OFFLINE_PAYMENT') and event_id_fk = :eventId")
     Integer findAllReservationsWaitingForPaymentCountInEventId(@Bind("eventId") int eventId);
 
-    @Query("select * from tickets_reservation where status = 'OFFLINE_PAYMENT' and date_trunc('day', validity) <= :expiration and offline_payment_reminder_sent = false for update skip locked")
-    List<TicketReservation> findAllOfflinePaymentReservationForNotificationForUpdate(@Bind("expiration") Date expiration);
+    @Query("""
+        select * from tickets_reservation where status = 'OFFLINE_PAYMENT' and date_trunc('day', validity) <= :expiration \
+         and offline_payment_reminder_sent = false and id > :lastId order by id limit :limit for update skip locked\
+        """)
+    List<TicketReservation> findOfflinePaymentReservationForNotificationForUpdate(@Bind("expiration") Date expiration,
+                                                                                  @Bind("lastId") String lastId,
+                                                                                  @Bind("limit") int limit);
 
     @Query("select id, full_name, first_name, last_name, email_address, final_price_cts, currency_code, event_id_fk, validity from tickets_reservation where status = 'OFFLINE_PAYMENT' and date_trunc('day', validity) <= :expiration and event_id_fk = :eventId for update skip locked")
     List<TicketReservationInfo> findAllOfflinePaymentReservationWithExpirationBeforeForUpdate(@Bind("expiration") ZonedDateTime expiration, @Bind("eventId") int eventId);
@@ -152,8 +157,18 @@ public interface TicketReservationRepository {
     @Query("select status, validated_for_overview from tickets_reservation where id = :id")
     Optional<TicketReservationStatusAndValidation> findOptionalStatusAndValidationById(@Bind("id") String id);
 
-    @Query("select id from tickets_reservation where validity < :date and status = 'PENDING' for update skip locked")
-    List<String> findExpiredReservationForUpdate(@Bind("date") Date date);
+    @Query("select id from tickets_reservation where validity < :date and status = 'PENDING' order by event_id_fk nulls last, validity limit :limit for update skip locked")
+    List<String> findExpiredReservationForUpdate(@Bind("date") Date date, @Bind("limit") int limit);
+
+    /**
+     * Same as {@link #findExpiredReservationForUpdate(Date, int)}, skipping the reservations that must not be removed
+     * (e.g. because they have been paid in the meantime). {@code excluded} must not be empty.
+     */
+    @Query("select id from tickets_reservation where validity < :date and status = 'PENDING' and id not in (:excluded) order by event_id_fk nulls last, validity limit :limit for update skip locked")
+    List<String> findExpiredReservationForUpdateExcluding(@Bind("date") Date date, @Bind("limit") int limit, @Bind("excluded") Collection<String> excluded);
+
+    @Query("select count(*) from tickets_reservation where validity < :date and status = 'PENDING'")
+    int countExpiredReservations(@Bind("date") Date date);
 
     @Query("select distinct tr.* from tickets_reservation tr join b_transaction tx on tx.reservation_id = tr.id where tr.id in (:reservationIds) and tr.status = 'PENDING'")
     List<TicketReservation> findReservationsWithPendingTransaction(@Bind("reservationIds") Collection<String> reservationIds);
@@ -0,0 +1,125 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.repository.system;
+
+import alfio.model.support.JSONData;
+import alfio.model.system.AdminExport;
+import ch.digitalfondue.npjt.Bind;
+import ch.digitalfondue.npjt.Query;
+import ch.digitalfondue.npjt.QueryRepository;
+import ch.digitalfondue.npjt.QueryType;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@QueryRepository
+public interface AdminExportRepository {
+
+    /**
+     * Registers a new export. Does nothing if an equivalent export is already being generated.
+     *
+     * @return 1 if the export has been registered, 0 otherwise
+     */
+    @Query("""
+        insert into admin_export(id, export_type, event_id_fk, format, username, request_hash, parameters, status, creation_ts, expiration_ts)\
+         values(:id, :type, :eventId, :format, :username, :requestHash, :parameters::jsonb, 'PENDING', :creation, :expiration)\
+         on conflict do nothing\
+        """)
+    int insert(@Bind("id") String id,
+               @Bind("type") AdminExport.Type type,
+               @Bind("eventId") Integer eventId,
+               @Bind("format") String format,
+               @Bind("username") String username,
+               @Bind("requestHash") String requestHash,
+               @Bind("parameters") @JSONData Map<String, List<String>> parameters,
+               @Bind("creation") ZonedDateTime creation,
+               @Bind("expiration") ZonedDateTime expiration);
+
+    @Query("select * from admin_export where id = :id")
+    Optional<AdminExport> findOptionalById(@Bind("id") String id);
+
+    /**
+     * Finds an export that can be returned instead of generating a new one: either one still in progress,
+     * or one completed after the given timestamp.
+     */
+    @Query("""
+        select * from admin_export where request_hash = :requestHash\
+         and (status in ('PENDING', 'IN_PROGRESS') or (status = 'READY' and completion_ts >= :readyAfter and expiration_ts > :readyAfter))\
+         order by creation_ts desc limit 1\
+        """)
+    Optional<AdminExport> findReusable(@Bind("requestHash") String requestHash, @Bind("readyAfter") ZonedDateTime readyAfter);
+
+    @Query("update admin_export set status = 'IN_PROGRESS', progress = 0, total = :total where id = :id and status in ('PENDING', 'IN_PROGRESS')")
+    int markInProgress(@Bind("id") String id, @Bind("total") int total);
+
+    @Query("update admin_export set progress = :progress where id = :id")
+    int updateProgress(@Bind("id") String id, @Bind("progress") int progress);
+
+    @Query("""
+        update admin_export set status = 'READY', progress = total, file_name = :fileName, content_type = :contentType,\
+         content_size = :contentSize, completion_ts = :completion where id = :id\
+        """)
+    int markReady(@Bind("id") String id,
+                  @Bind("fileName") String fileName,
+                  @Bind("contentType") String contentType,
+                  @Bind("contentSize") long contentSize,
+                  @Bind("completion") ZonedDateTime completion);
+
+    @Query("update admin_export set status = 'FAILED', error_message = :errorMessage, completion_ts = :completion where id = :id")
+    int markFailed(@Bind("id") String id, @Bind("errorMessage") String errorMessage, @Bind("completion") ZonedDateTime completion);
+
+    @Query("insert into admin_export_chunk(export_id_fk, chunk_index, content) values(:id, :index, :content)")
+    int insertChunk(@Bind("id") String id, @Bind("index") int index, @Bind("content") byte[] content);
+
+    @Query("select count(*) from admin_export_chunk where export_id_fk = :id")
+    int countChunks(@Bind("id") String id);
+
+    /**
+     * Deletes the expired exports. Chunks are removed by the foreign key.
+     *
+     * @return the ids of the deleted exports
+     */
+    @Query(type = QueryType.MODIFYING_WITH_RETURN, value = "delete from admin_export where expiration_ts < :now returning id")
+    List<String> deleteExpired(@Bind("now") ZonedDateTime now);
+
+    NamedParameterJdbcTemplate getNamedParameterJdbcTemplate();
+
+    /**
+     * Writes the content of the given export to the output stream, one chunk at a time
+     */
+    default void writeContent(String id, OutputStream out) {
+        int chunks = countChunks(id);
+        var jdbc = getNamedParameterJdbcTemplate();
+        for (int i = 0; i < chunks; i++) {
+            var params = new MapSqlParameterSource("id", id).addValue("index", i);
+            jdbc.query("select content from admin_export_chunk where export_id_fk = :id and chunk_index = :index", params, rs -> {
+                try (var is = rs.getBinaryStream("content")) {
+                    is.transferTo(out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
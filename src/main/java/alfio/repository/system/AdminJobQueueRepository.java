@@ -38,6 +38,9 @@ public interface AdminJobQueueRepository {
     @Query("select * from admin_job_queue")
     List<AdminJobSchedule> loadAll();
 
+    @Query("select count(*) from admin_job_queue where status = 'SCHEDULED' and request_ts < now()")
+    Integer countPendingSchedules();
+
     @Query("update admin_job_queue set status = :status, execution_ts = :executionDate, metadata = to_json(:metadata::json) where id = :id")
     int updateSchedule(@Bind("id") long id,
                        @Bind("status") AdminJobSchedule.Status status,
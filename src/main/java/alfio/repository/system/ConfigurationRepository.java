@@ -229,6 +229,9 @@ public interface ConfigurationRepository {
     Optional<Integer> findOrganizationIdByKeyAndValue(@Bind("key") String key, @Bind("value") String value);
 
 
+    @Query("select c_value from configuration where c_key = 'TRANSLATION_OVERRIDE'")
+    Optional<String> findSystemOverrideMessages();
+
     @Query("select c_value::jsonb from configuration where c_key = 'TRANSLATION_OVERRIDE' union all select '{}'::jsonb limit 1")
     @JSONData Map<String, Map<String, String>> getSystemOverrideMessages();
 
@@ -0,0 +1,71 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.repository.system;
+
+import alfio.model.system.ScheduledJobLease;
+import ch.digitalfondue.npjt.Bind;
+import ch.digitalfondue.npjt.Query;
+import ch.digitalfondue.npjt.QueryRepository;
+
+import java.util.List;
+
+@QueryRepository
+public interface ScheduledJobLeaseRepository {
+
+    /**
+     * Acquires or renews the lease for the given slot. The lease is granted if the slot is free, expired, or already
+     * owned by the caller. Timestamps are generated by the database, so that the nodes' clocks don't matter.
+     *
+     * @return 1 if the lease has been granted, 0 otherwise
+     */
+    @Query("""
+        insert into scheduled_job_lease(job_name, slot, owner, acquired_ts, expires_ts, last_run_ts)\
+         values(:jobName, :slot, :owner, now(), now() + :durationMillis * interval '1 millisecond', now())\
+         on conflict(job_name, slot) do update set owner = excluded.owner,\
+         acquired_ts = case when scheduled_job_lease.owner = excluded.owner then scheduled_job_lease.acquired_ts else excluded.acquired_ts end,\
+         expires_ts = excluded.expires_ts,\
+         last_run_ts = excluded.last_run_ts\
+         where scheduled_job_lease.owner = excluded.owner or scheduled_job_lease.expires_ts < now()\
+        """)
+    int acquire(@Bind("jobName") String jobName,
+                @Bind("slot") int slot,
+                @Bind("owner") String owner,
+                @Bind("durationMillis") long durationMillis);
+
+    /**
+     * Extends the lease of a job which is still running. The lease is extended only if it is still owned by the caller.
+     *
+     * @return 1 if the lease has been extended, 0 if it is now owned by another node
+     */
+    @Query("""
+        update scheduled_job_lease set expires_ts = now() + :durationMillis * interval '1 millisecond'\
+         where job_name = :jobName and slot = :slot and owner = :owner\
+        """)
+    int renew(@Bind("jobName") String jobName,
+              @Bind("slot") int slot,
+              @Bind("owner") String owner,
+              @Bind("durationMillis") long durationMillis);
+
+    @Query("select slot from scheduled_job_lease where job_name = :jobName and slot < :partitions and expires_ts > now() order by slot")
+    List<Integer> findActiveSlots(@Bind("jobName") String jobName, @Bind("partitions") int partitions);
+
+    @Query("update scheduled_job_lease set expires_ts = now() where owner = :owner and expires_ts > now()")
+    int releaseAll(@Bind("owner") String owner);
+
+    @Query("select *, expires_ts > now() as active from scheduled_job_lease order by job_name, slot")
+    List<ScheduledJobLease> findAll();
+}
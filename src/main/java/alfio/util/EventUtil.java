@@ -38,7 +38,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.flywaydb.core.api.MigrationVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.util.Assert;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -121,37 +120,8 @@ public final class EventUtil {
         return findFirstCategory(categories).map(c -> now.isBefore(c.getZonedInception())).orElse(false);
     }
 
-    public static Stream<MapSqlParameterSource> generateEmptyTickets(EventAndOrganizationId event, Date creationDate, int limit, Ticket.TicketStatus ticketStatus) {
-        return generateStreamForTicketCreation(limit)
-            .map(ps -> buildTicketParams(event.getId(), creationDate, Optional.empty(), 0, ps, ticketStatus));
-    }
-
-    public static Stream<MapSqlParameterSource> generateStreamForTicketCreation(int limit) {
-        return Stream.generate(MapSqlParameterSource::new)
-                .limit(limit);
-    }
-
-    public static MapSqlParameterSource buildTicketParams(int eventId,
-                                              Date creation,
-                                              Optional<TicketCategory> tc,
-                                              int srcPriceCts,
-                                              MapSqlParameterSource ps) {
-        return buildTicketParams(eventId, creation, tc, srcPriceCts, ps, Ticket.TicketStatus.FREE);
-    }
-
-    private static MapSqlParameterSource buildTicketParams(int eventId,
-                                                           Date creation,
-                                                           Optional<TicketCategory> tc,
-                                                           int srcPriceCts,
-                                                           MapSqlParameterSource ps,
-                                                           Ticket.TicketStatus ticketStatus) {
-        return ps.addValue("uuid", UUID.randomUUID().toString())
-            .addValue("publicUuid", UUID.randomUUID())
-            .addValue("creation", creation)
-            .addValue("categoryId", tc.map(TicketCategory::getId).orElse(null))
-            .addValue("eventId", eventId)
-            .addValue("status", ticketStatus.name())
-            .addValue("srcPriceCts", srcPriceCts);
+    public static TicketInitialization generateEmptyTickets(EventAndOrganizationId event, Date creationDate, int limit, Ticket.TicketStatus ticketStatus) {
+        return new TicketInitialization(event.getId(), null, creationDate, ticketStatus, 0, limit);
     }
 
     public static int evaluatePrice(BigDecimal price, boolean freeOfCharge, String currencyCode) {
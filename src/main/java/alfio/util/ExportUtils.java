@@ -16,6 +16,7 @@
  */
 package alfio.util;
 
+import alfio.manager.support.ExportData;
 import ch.digitalfondue.basicxlsx.Cell;
 import ch.digitalfondue.basicxlsx.StreamingWorkbook;
 import ch.digitalfondue.basicxlsx.Style;
@@ -26,6 +27,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -42,6 +44,10 @@ public class ExportUtils {
         exportExcel(fileName, response, workbook -> addSheetToWorkbook(sheetName, header, data, workbook, workbook.defineStyle().font().bold(true).build()));
     }
 
+    public static void exportExcel(ExportData data, HttpServletResponse response) throws IOException {
+        exportExcel(data.fileName() + ".xlsx", response, workbook -> addSheetsToWorkbook(data, workbook));
+    }
+
     public static void exportExcel(String fileName,
                                    HttpServletResponse response,
                                    Consumer<StreamingWorkbook> workbookConsumer) throws IOException {
@@ -49,11 +55,26 @@ public class ExportUtils {
         response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
         markAsNoIndex(response);
 
-        try (ServletOutputStream out = response.getOutputStream(); StreamingWorkbook workbook = new StreamingWorkbook(out)) {
+        try (ServletOutputStream out = response.getOutputStream()) {
+            writeExcel(out, workbookConsumer);
+        }
+    }
+
+    /**
+     * Writes the workbook to the given stream. Rows are written as they are produced, so the memory usage
+     * does not depend on the size of the export.
+     */
+    public static void writeExcel(OutputStream out, Consumer<StreamingWorkbook> workbookConsumer) throws IOException {
+        try (StreamingWorkbook workbook = new StreamingWorkbook(out)) {
             workbookConsumer.accept(workbook);
         }
     }
 
+    public static void addSheetsToWorkbook(ExportData data, StreamingWorkbook workbook) {
+        var headerStyle = workbook.defineStyle().font().bold(true).build();
+        data.sheets().forEach(sheet -> addSheetToWorkbook(sheet.name(), sheet.header(), sheet.rows(), workbook, headerStyle));
+    }
+
     public static void addSheetToWorkbook(String sheetName,
                                           String[] header,
                                           Stream<String[]> data,
@@ -86,34 +107,46 @@ public class ExportUtils {
         return res;
     }
 
+    public static void exportCsv(ExportData data, HttpServletResponse response) throws IOException {
+        var sheet = data.sheets().get(0);
+        exportCsv(data.fileName() + ".csv", sheet.header(), sheet.rows(), response);
+    }
+
     public static void exportCsv(String fileName, String[] header, Stream<String[]> data, HttpServletResponse response) throws IOException {
         response.setContentType("text/csv;charset=UTF-8");
         response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
         markAsNoIndex(response);
 
+        try (ServletOutputStream out = response.getOutputStream()) {
+            writeCsv(header, data, out);
+        }
+    }
+
+    /**
+     * Writes the CSV to the given stream. The stream is flushed, but not closed.
+     */
+    public static void writeCsv(String[] header, Stream<String[]> data, OutputStream out) throws IOException {
         var headerBuilder = CsvSchema.builder().setUseHeader(true).setQuoteChar('"');
         Arrays.stream(header).forEach(headerBuilder::addColumn);
 
-        try (ServletOutputStream out = response.getOutputStream()) {
-            for (int marker : ExportUtils.BOM_MARKERS) {
-                out.write(marker);
-            }
-            var writer = new CsvMapper().writer().with(headerBuilder.build()).writeValues(out);
-            data.forEachOrdered(d -> {
-                var copy = Arrays.copyOf(d, d.length);
-                for (var i = 0; i < copy.length; i++) {
-                    var res = copy[i];
-                    copy[i] = escapeFormulaChar(res);
-                }
-                try {
-                    writer.write(copy);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            });
-            writer.flush();
-            out.flush();
+        for (int marker : ExportUtils.BOM_MARKERS) {
+            out.write(marker);
         }
+        var writer = new CsvMapper().writer().with(headerBuilder.build()).writeValues(out);
+        data.forEachOrdered(d -> {
+            var copy = Arrays.copyOf(d, d.length);
+            for (var i = 0; i < copy.length; i++) {
+                var res = copy[i];
+                copy[i] = escapeFormulaChar(res);
+            }
+            try {
+                writer.write(copy);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.flush();
+        out.flush();
     }
 
     public static void markAsNoIndex(HttpServletResponse response) {
@@ -17,6 +17,8 @@
 package alfio.util;
 
 import alfio.manager.FileUploadManager;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.MultiFormatWriter;
@@ -32,8 +34,13 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import static org.apache.commons.lang3.StringUtils.center;
 import static org.apache.commons.lang3.StringUtils.truncate;
@@ -46,6 +53,16 @@ public final class ImageUtil {
     private static final String DEJA_VU_SANS = "/alfio/font/DejaVuSans.ttf";
     private static final String DEJA_VU_SERIF = "/alfio/font/DejaVuSerif.ttf";
     private static final String FONT_SECTION = "font";
+    private static final int QR_CODE_SIZE = 200;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // a 200x200 QR code is ~1KB, so this would keep a few thousand tickets
+    private static final long QR_CODE_CACHE_MAX_BYTES = 8L * 1024 * 1024;
+    private static final Cache<QRCodeKey, byte[]> QR_CODE_CACHE = Caffeine.newBuilder()
+        .maximumWeight(QR_CODE_CACHE_MAX_BYTES)
+        .weigher((QRCodeKey key, byte[] value) -> value.length)
+        .expireAfterAccess(Duration.ofHours(1L))
+        .build();
+    private static volatile Font descriptionFont;
 
     private static File loadDejaVuFont(String name) {
         try {
@@ -76,13 +93,19 @@ public final class ImageUtil {
     private ImageUtil() {
     }
 
+    /**
+     * Returns a PNG image of the QR code for the given text. Images are cached, since the same ticket is
+     * usually rendered several times (e-mail, PDF, wallet pass, re-sends).
+     * The returned array is a copy, so callers cannot alter the cached image.
+     */
     public static byte[] createQRCode(String text) {
+        return QR_CODE_CACHE.get(new QRCodeKey(text, null), k -> renderQRCode(text)).clone();
+    }
+
+    static byte[] renderQRCode(String text) {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            BitMatrix matrix = drawQRCode(text);
-            MatrixToImageWriter.writeToStream(matrix, "png", baos);
-            return baos.toByteArray();
-        } catch (WriterException | IOException e) {
+            return encodeMonochromePNG(drawQRCode(text));
+        } catch (WriterException e) {
             throw new IllegalStateException(e);
         }
     }
@@ -90,30 +113,117 @@ public final class ImageUtil {
     private static BitMatrix drawQRCode(String text) throws WriterException {
         Map<EncodeHintType, Object> hintMap = new EnumMap<>(EncodeHintType.class);
         hintMap.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
-        return new MultiFormatWriter().encode(text, BarcodeFormat.QR_CODE, 200, 200, hintMap);
+        return new MultiFormatWriter().encode(text, BarcodeFormat.QR_CODE, QR_CODE_SIZE, QR_CODE_SIZE, hintMap);
     }
 
     public static byte[] createQRCodeWithDescription(String text, String description, FileUploadManager fileUploadManager) {
+        return QR_CODE_CACHE.get(new QRCodeKey(text, description), k -> renderQRCodeWithDescription(text, description, fileUploadManager)).clone();
+    }
+
+    private static byte[] renderQRCodeWithDescription(String text, String description, FileUploadManager fileUploadManager) {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
             BitMatrix matrix = drawQRCode(text);
             BufferedImage bufferedImage = MatrixToImageWriter.toBufferedImage(matrix);
-            BufferedImage scaled = new BufferedImage(200, 230, BufferedImage.TYPE_INT_ARGB);
+            // grayscale is enough for black text on white background, and much cheaper to encode than ARGB
+            BufferedImage scaled = new BufferedImage(QR_CODE_SIZE, QR_CODE_SIZE + 30, BufferedImage.TYPE_BYTE_GRAY);
             Graphics2D graphics = (Graphics2D)scaled.getGraphics();
             graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
             graphics.drawImage(bufferedImage, 0,0, null);
             graphics.setColor(Color.WHITE);
-            graphics.fillRect(0, 200, 200, 30);
+            graphics.fillRect(0, QR_CODE_SIZE, QR_CODE_SIZE, 30);
             graphics.setColor(Color.BLACK);
-            File fontFile = getDejaVuSansMonoFont(fileUploadManager);
-            if (fontFile != null) {
-                graphics.setFont(Font.createFont(Font.TRUETYPE_FONT, fontFile).deriveFont(14f));
+            Font font = getDescriptionFont(fileUploadManager);
+            if (font != null) {
+                graphics.setFont(font);
                 graphics.drawString(center(truncate(description, 23), 25), 0, 215);
             }
+            graphics.dispose();
             ImageIO.write(scaled, "png", baos);
             return baos.toByteArray();
-        } catch (WriterException | IOException | FontFormatException e) {
+        } catch (WriterException | IOException e) {
             throw new IllegalStateException(e);
         }
     }
 
+    private static Font getDescriptionFont(FileUploadManager fileUploadManager) {
+        var font = descriptionFont;
+        if (font == null) {
+            File fontFile = getDejaVuSansMonoFont(fileUploadManager);
+            if (fontFile == null) {
+                return null;
+            }
+            try {
+                font = Font.createFont(Font.TRUETYPE_FONT, fontFile).deriveFont(14f);
+                descriptionFont = font;
+            } catch (FontFormatException | IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return font;
+    }
+
+    /**
+     * Encodes the matrix as a 1-bit grayscale PNG, without going through {@link BufferedImage} and {@link ImageIO}.
+     * Each row is a filter byte (0 = none) followed by the pixels packed 8 per byte (0 = black, 1 = white).
+     */
+    static byte[] encodeMonochromePNG(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int rowLength = (width + 7) / 8 + 1;
+        byte[] raw = new byte[rowLength * height];
+        for (int y = 0; y < height; y++) {
+            int offset = y * rowLength + 1;
+            for (int x = 0; x < width; x++) {
+                if (!matrix.get(x, y)) {
+                    raw[offset + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                }
+            }
+            // padding bits of the last byte are ignored by decoders
+        }
+        var deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            // QR codes are made of long runs of identical bytes, that's what the filtered strategy is meant for
+            deflater.setStrategy(Deflater.FILTERED);
+            deflater.setInput(raw);
+            deflater.finish();
+            var compressed = new ByteArrayOutputStream(raw.length / 4);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                compressed.write(buffer, 0, count);
+            }
+            var out = new ByteArrayOutputStream(compressed.size() + 64);
+            out.writeBytes(PNG_SIGNATURE);
+            var header = ByteBuffer.allocate(13)
+                .putInt(width)
+                .putInt(height)
+                .put((byte) 1) // bit depth
+                .put((byte) 0) // color type: grayscale
+                .put((byte) 0) // compression: deflate
+                .put((byte) 0) // filter method
+                .put((byte) 0) // no interlace
+                .array();
+            writeChunk(out, "IHDR", header);
+            writeChunk(out, "IDAT", compressed.toByteArray());
+            writeChunk(out, "IEND", new byte[0]);
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) {
+        var typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        var crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeBytes(ByteBuffer.allocate(4).putInt(data.length).array());
+        out.writeBytes(typeBytes);
+        out.writeBytes(data);
+        out.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    private record QRCodeKey(String text, String description) {
+    }
+
 }
@@ -0,0 +1,34 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- numbers allocated from invoice_sequences, bound to the reservation they have been issued for.
+-- The allocation is committed in a short, separate transaction, so that the invoice_sequences row lock
+-- is not held until the end of the (long) confirmation transaction.
+create table billing_document_number (
+    organization_id_fk integer not null references organization(id),
+    document_type BILLING_DOCUMENT_TYPE not null,
+    reservation_id varchar(255) not null,
+    document_number integer not null,
+    allocation_ts timestamp with time zone not null default now(),
+    primary key (organization_id_fk, document_type, reservation_id)
+);
+
+alter table billing_document_number enable row level security;
+alter table billing_document_number force row level security;
+create policy billing_document_number_access_policy on billing_document_number to public
+    using (alfio_check_row_access(organization_id_fk))
+    with check (alfio_check_row_access(organization_id_fk));
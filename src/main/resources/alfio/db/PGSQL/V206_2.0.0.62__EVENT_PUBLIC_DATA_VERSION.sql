@@ -0,0 +1,98 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- version stamp of the data exposed by the public event API. It is bumped by the triggers below every time something
+-- that contributes to the public event snapshot is modified, so that every node can detect stale cached snapshots
+-- with a single, cheap lookup.
+create table event_public_data_version (
+    event_id_fk integer primary key not null references event(id) on delete cascade,
+    version bigint not null default 0
+);
+
+create or replace function bump_event_public_data_version(integer)
+returns void
+as
+$$
+    insert into event_public_data_version(event_id_fk, version) values ($1, 1)
+    on conflict (event_id_fk) do update set version = event_public_data_version.version + 1
+$$ language sql;
+
+create or replace function bump_organization_public_data_version(integer)
+returns void
+as
+$$
+    insert into event_public_data_version(event_id_fk, version) select id, 1 from event where org_id = $1
+    on conflict (event_id_fk) do update set version = event_public_data_version.version + 1
+$$ language sql;
+
+create or replace function event_public_data_version_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    modified record;
+BEGIN
+    IF (TG_OP = 'DELETE') THEN
+        modified := OLD;
+    ELSE
+        modified := NEW;
+    END IF;
+    CASE TG_TABLE_NAME
+        WHEN 'event' THEN
+            PERFORM bump_event_public_data_version(modified.id);
+        WHEN 'ticket_category' THEN
+            PERFORM bump_event_public_data_version(modified.event_id);
+        WHEN 'event_description_text', 'subscription_event' THEN
+            PERFORM bump_event_public_data_version(modified.event_id_fk);
+        WHEN 'configuration_purchase_context', 'promo_code' THEN
+            IF (modified.event_id_fk is not null) THEN
+                PERFORM bump_event_public_data_version(modified.event_id_fk);
+            ELSIF (modified.organization_id_fk is not null) THEN
+                PERFORM bump_organization_public_data_version(modified.organization_id_fk);
+            END IF;
+        WHEN 'configuration_organization' THEN
+            PERFORM bump_organization_public_data_version(modified.organization_id_fk);
+        WHEN 'organization' THEN
+            PERFORM bump_organization_public_data_version(modified.id);
+        ELSE
+            -- system-wide configuration
+            insert into event_public_data_version(event_id_fk, version) select id, 1 from event
+            on conflict (event_id_fk) do update set version = event_public_data_version.version + 1;
+    END CASE;
+    RETURN NULL;
+END
+$body$
+    LANGUAGE plpgsql;
+
+create trigger event_public_data_version_event after update on event
+    for each row execute procedure event_public_data_version_trigger();
+create trigger event_public_data_version_ticket_category after insert or update or delete on ticket_category
+    for each row execute procedure event_public_data_version_trigger();
+create trigger event_public_data_version_description after insert or update or delete on event_description_text
+    for each row execute procedure event_public_data_version_trigger();
+create trigger event_public_data_version_subscription after insert or delete on subscription_event
+    for each row execute procedure event_public_data_version_trigger();
+-- only insert and delete: the public snapshot depends on the number of promo codes, not on their content
+create trigger event_public_data_version_promo_code after insert or delete on promo_code
+    for each row execute procedure event_public_data_version_trigger();
+create trigger event_public_data_version_configuration_pc after insert or update or delete on configuration_purchase_context
+    for each row execute procedure event_public_data_version_trigger();
+create trigger event_public_data_version_configuration_org after insert or update or delete on configuration_organization
+    for each row execute procedure event_public_data_version_trigger();
+create trigger event_public_data_version_organization after update on organization
+    for each row execute procedure event_public_data_version_trigger();
+create trigger event_public_data_version_configuration after insert or update or delete on configuration
+    for each statement execute procedure event_public_data_version_trigger();
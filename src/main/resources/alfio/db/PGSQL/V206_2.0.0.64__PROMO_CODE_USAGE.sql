@@ -0,0 +1,159 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- usage counters for promo codes, maintained by the triggers below.
+-- "reserved" counts the discounted tickets in every non-cancelled reservation,
+-- "confirmed" only those in confirmed reservations.
+create table promo_code_usage (
+    promo_code_id_fk integer primary key not null references promo_code(id) on delete cascade,
+    reserved integer not null default 0 check (reserved >= 0),
+    confirmed integer not null default 0 check (confirmed >= 0)
+);
+
+create or replace function promo_code_applies_to_category(categories text, category_id integer)
+returns boolean
+as
+$$
+    select categories is null
+        or json_array_length(categories::json) = 0
+        or coalesce((categories::jsonb) @> ((category_id::text)::jsonb), false)
+$$ language sql immutable;
+
+create or replace function is_confirmed_reservation_status(status varchar)
+returns boolean
+as
+$$
+    select status in ('OFFLINE_PAYMENT', 'DEFERRED_OFFLINE_PAYMENT', 'COMPLETE', 'STUCK')
+$$ language sql immutable;
+
+create or replace function update_promo_code_usage(promo_code_id integer, status varchar, tickets integer)
+returns void
+as
+$$
+    insert into promo_code_usage(promo_code_id_fk, reserved, confirmed)
+    values(promo_code_id,
+           case when status <> 'CANCELLED' then greatest(tickets, 0) else 0 end,
+           case when is_confirmed_reservation_status(status) then greatest(tickets, 0) else 0 end)
+    on conflict (promo_code_id_fk) do update
+        set reserved = promo_code_usage.reserved + case when status <> 'CANCELLED' then tickets else 0 end,
+            confirmed = promo_code_usage.confirmed + case when is_confirmed_reservation_status(status) then tickets else 0 end
+$$ language sql;
+
+create or replace function refresh_promo_code_usage(promo_code_id integer)
+returns void
+as
+$$
+    insert into promo_code_usage(promo_code_id_fk, reserved, confirmed)
+    select pc.id,
+           count(t.id) filter (where tr.status <> 'CANCELLED'),
+           count(t.id) filter (where is_confirmed_reservation_status(tr.status))
+    from promo_code pc
+        left join tickets_reservation tr on tr.promo_code_id_fk = pc.id
+        left join ticket t on t.tickets_reservation_id = tr.id and promo_code_applies_to_category(pc.categories, t.category_id)
+    where pc.id = promo_code_id
+    group by pc.id
+    on conflict (promo_code_id_fk) do update set reserved = excluded.reserved, confirmed = excluded.confirmed
+$$ language sql;
+
+-- ticket added to / removed from a reservation, or moved to another category
+create or replace function promo_code_usage_ticket_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    reservation record;
+BEGIN
+    IF (TG_OP <> 'INSERT' AND OLD.tickets_reservation_id is not null) THEN
+        select tr.status, pc.id, pc.categories into reservation
+            from tickets_reservation tr join promo_code pc on pc.id = tr.promo_code_id_fk
+            where tr.id = OLD.tickets_reservation_id;
+        IF (FOUND AND promo_code_applies_to_category(reservation.categories, OLD.category_id)) THEN
+            PERFORM update_promo_code_usage(reservation.id, reservation.status, -1);
+        END IF;
+    END IF;
+    IF (TG_OP <> 'DELETE' AND NEW.tickets_reservation_id is not null) THEN
+        select tr.status, pc.id, pc.categories into reservation
+            from tickets_reservation tr join promo_code pc on pc.id = tr.promo_code_id_fk
+            where tr.id = NEW.tickets_reservation_id;
+        IF (FOUND AND promo_code_applies_to_category(reservation.categories, NEW.category_id)) THEN
+            PERFORM update_promo_code_usage(reservation.id, reservation.status, 1);
+        END IF;
+    END IF;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+-- reservation status or promo code changed: move all its tickets
+create or replace function promo_code_usage_reservation_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    tickets integer;
+BEGIN
+    IF (OLD.promo_code_id_fk is not null) THEN
+        select count(*) into tickets from ticket t join promo_code pc on pc.id = OLD.promo_code_id_fk
+            where t.tickets_reservation_id = OLD.id and promo_code_applies_to_category(pc.categories, t.category_id);
+        IF (tickets > 0) THEN
+            PERFORM update_promo_code_usage(OLD.promo_code_id_fk, OLD.status, -tickets);
+        END IF;
+    END IF;
+    IF (NEW.promo_code_id_fk is not null) THEN
+        select count(*) into tickets from ticket t join promo_code pc on pc.id = NEW.promo_code_id_fk
+            where t.tickets_reservation_id = NEW.id and promo_code_applies_to_category(pc.categories, t.category_id);
+        IF (tickets > 0) THEN
+            PERFORM update_promo_code_usage(NEW.promo_code_id_fk, NEW.status, tickets);
+        END IF;
+    END IF;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create or replace function promo_code_usage_categories_trigger()
+    RETURNS TRIGGER AS
+$body$
+BEGIN
+    PERFORM refresh_promo_code_usage(NEW.id);
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create trigger promo_code_usage_ticket_trg
+    after insert or delete on ticket
+    for each row
+    execute procedure promo_code_usage_ticket_trigger();
+
+create trigger promo_code_usage_ticket_update_trg
+    after update of tickets_reservation_id, category_id on ticket
+    for each row
+    when (OLD.tickets_reservation_id is distinct from NEW.tickets_reservation_id or OLD.category_id is distinct from NEW.category_id)
+    execute procedure promo_code_usage_ticket_trigger();
+
+create trigger promo_code_usage_reservation_trg
+    after update of status, promo_code_id_fk on tickets_reservation
+    for each row
+    when (OLD.status is distinct from NEW.status or OLD.promo_code_id_fk is distinct from NEW.promo_code_id_fk)
+    execute procedure promo_code_usage_reservation_trigger();
+
+create trigger promo_code_usage_categories_trg
+    after update of categories on promo_code
+    for each row
+    when (OLD.categories is distinct from NEW.categories)
+    execute procedure promo_code_usage_categories_trigger();
+
+select refresh_promo_code_usage(id) from promo_code;
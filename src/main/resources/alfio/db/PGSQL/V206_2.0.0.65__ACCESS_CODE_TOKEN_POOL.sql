@@ -0,0 +1,72 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- tokens reserved for an access code. The pool never contains more tokens than the max usage of the code,
+-- therefore tokens can be claimed from it concurrently (for update skip locked) without further checks.
+alter table special_price add column access_code_pool_fk integer references promo_code(id) on delete set null;
+create index "special_price_access_code_pool_idx" on special_price(access_code_pool_fk) where access_code_pool_fk is not null;
+
+-- the allocation check, which serializes on the whole category, is now needed only for tokens bound outside the pool
+CREATE OR REPLACE FUNCTION trf_check_access_code_allocation()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    r_count numeric;
+BEGIN
+    IF (NEW.access_code_id_fk is not null AND NEW.access_code_id_fk is distinct from NEW.access_code_pool_fk) THEN
+        -- serialize by locking all tokens for the current category
+        PERFORM * from special_price where ticket_category_id = NEW.ticket_category_id for update;
+        r_count = (select count(*) from special_price where access_code_id_fk = NEW.access_code_id_fk);
+        PERFORM max_usage from promo_code where id = NEW.access_code_id_fk and max_usage is not null and
+               max_usage < r_count;
+        IF FOUND THEN
+            raise EXCEPTION USING MESSAGE = ('Max usage exceeded. Tokens requested: ' || r_count);
+        END IF;
+    END IF;
+    RETURN NULL;
+END
+$body$
+    LANGUAGE plpgsql;
+
+drop trigger if exists tr_check_access_code_allocation on special_price;
+CREATE TRIGGER tr_check_access_code_allocation
+    AFTER UPDATE OF access_code_id_fk ON special_price
+    FOR EACH ROW
+    WHEN (NEW.access_code_id_fk is not null AND OLD.access_code_id_fk is distinct from NEW.access_code_id_fk)
+    EXECUTE PROCEDURE trf_check_access_code_allocation();
+
+-- if the max usage is lowered, give back the unused tokens which exceed the new limit
+CREATE OR REPLACE FUNCTION trf_trim_access_code_pool()
+    RETURNS TRIGGER AS
+$body$
+BEGIN
+    update special_price set access_code_pool_fk = null where id in (
+        select id from special_price
+        where access_code_pool_fk = NEW.id and access_code_id_fk is null
+        order by id desc
+        limit greatest((select count(*) from special_price where access_code_pool_fk = NEW.id) - NEW.max_usage, 0)
+    );
+    RETURN NULL;
+END
+$body$
+    LANGUAGE plpgsql;
+
+CREATE TRIGGER tr_trim_access_code_pool
+    AFTER UPDATE OF max_usage ON promo_code
+    FOR EACH ROW
+    WHEN (NEW.code_type = 'ACCESS' AND NEW.max_usage is not null AND OLD.max_usage is distinct from NEW.max_usage)
+    EXECUTE PROCEDURE trf_trim_access_code_pool();
@@ -0,0 +1,88 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- confirmed / checked-in tickets per event and category, maintained by the triggers below.
+-- Counters are split in slots (ticket id % 8) in order to reduce the contention on the same row
+-- when many check-ins for the same category are happening at the same time.
+-- Tickets without a category are counted under category_id = 0.
+create table check_in_counter (
+    event_id integer not null references event(id) on delete cascade,
+    category_id integer not null,
+    slot smallint not null,
+    confirmed integer not null default 0 check (confirmed >= 0),
+    checked_in integer not null default 0 check (checked_in >= 0),
+    primary key (event_id, category_id, slot)
+);
+
+create or replace function is_confirmed_ticket_status(status varchar)
+returns boolean
+as
+$$
+    select status in ('ACQUIRED', 'CHECKED_IN', 'TO_BE_PAID')
+$$ language sql immutable;
+
+create or replace function update_check_in_counter(ticket_event_id integer, ticket_category_id integer, ticket_id integer, ticket_status varchar, delta integer)
+returns void
+as
+$$
+    insert into check_in_counter(event_id, category_id, slot, confirmed, checked_in)
+    values(ticket_event_id, coalesce(ticket_category_id, 0), ticket_id % 8, greatest(delta, 0),
+           case when ticket_status = 'CHECKED_IN' then greatest(delta, 0) else 0 end)
+    on conflict (event_id, category_id, slot) do update
+        set confirmed = check_in_counter.confirmed + delta,
+            checked_in = check_in_counter.checked_in + case when ticket_status = 'CHECKED_IN' then delta else 0 end
+$$ language sql;
+
+create or replace function check_in_counter_ticket_trigger()
+    RETURNS TRIGGER AS
+$body$
+BEGIN
+    IF (TG_OP <> 'INSERT' AND is_confirmed_ticket_status(OLD.status)) THEN
+        PERFORM update_check_in_counter(OLD.event_id, OLD.category_id, OLD.id, OLD.status, -1);
+    END IF;
+    IF (TG_OP <> 'DELETE' AND is_confirmed_ticket_status(NEW.status)) THEN
+        PERFORM update_check_in_counter(NEW.event_id, NEW.category_id, NEW.id, NEW.status, 1);
+    END IF;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create trigger check_in_counter_ticket_insert_trg
+    after insert on ticket
+    for each row
+    when (is_confirmed_ticket_status(NEW.status))
+    execute procedure check_in_counter_ticket_trigger();
+
+create trigger check_in_counter_ticket_delete_trg
+    after delete on ticket
+    for each row
+    when (is_confirmed_ticket_status(OLD.status))
+    execute procedure check_in_counter_ticket_trigger();
+
+create trigger check_in_counter_ticket_update_trg
+    after update of status, category_id, event_id on ticket
+    for each row
+    when ((is_confirmed_ticket_status(OLD.status) or is_confirmed_ticket_status(NEW.status))
+        and (OLD.status is distinct from NEW.status or OLD.category_id is distinct from NEW.category_id or OLD.event_id is distinct from NEW.event_id))
+    execute procedure check_in_counter_ticket_trigger();
+
+insert into check_in_counter(event_id, category_id, slot, confirmed, checked_in)
+select event_id, coalesce(category_id, 0), id % 8, count(*), count(*) filter (where status = 'CHECKED_IN')
+from ticket
+where is_confirmed_ticket_status(status)
+group by event_id, coalesce(category_id, 0), id % 8;
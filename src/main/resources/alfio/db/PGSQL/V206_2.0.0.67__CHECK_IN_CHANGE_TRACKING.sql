@@ -0,0 +1,94 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- id of the last transaction which changed the check-in information of a ticket.
+-- Offline check-in devices use it as a sync cursor: since every transaction with id lower than
+-- txid_snapshot_xmin(txid_current_snapshot()) has already completed, that value can be used
+-- as the next cursor without the risk of missing changes committed later.
+-- The column is nullable in order to avoid rewriting the ticket table.
+alter table ticket add column check_in_change_txid bigint;
+create index ticket_check_in_change_txid_idx on ticket(event_id, check_in_change_txid) where check_in_change_txid is not null;
+
+create or replace function check_in_change_ticket_trigger()
+    RETURNS TRIGGER AS
+$body$
+BEGIN
+    NEW.check_in_change_txid = txid_current();
+    RETURN NEW;
+END
+$body$
+LANGUAGE plpgsql;
+
+create trigger check_in_change_ticket_trg
+    before update on ticket
+    for each row
+    when (OLD.status is distinct from NEW.status
+        or OLD.uuid is distinct from NEW.uuid
+        or OLD.category_id is distinct from NEW.category_id
+        or OLD.event_id is distinct from NEW.event_id
+        or OLD.full_name is distinct from NEW.full_name
+        or OLD.first_name is distinct from NEW.first_name
+        or OLD.last_name is distinct from NEW.last_name
+        or OLD.email_address is distinct from NEW.email_address
+        or OLD.tags is distinct from NEW.tags
+        or OLD.tickets_reservation_id is distinct from NEW.tickets_reservation_id
+        or OLD.check_in_change_txid is distinct from NEW.check_in_change_txid)
+    execute procedure check_in_change_ticket_trigger();
+
+-- additional fields are part of the check-in information
+create or replace function check_in_change_field_value_trigger()
+    RETURNS TRIGGER AS
+$body$
+BEGIN
+    IF (TG_OP <> 'INSERT' AND OLD.ticket_id_fk is not null) THEN
+        update ticket set check_in_change_txid = txid_current() where id = OLD.ticket_id_fk;
+    END IF;
+    IF (TG_OP <> 'DELETE' AND NEW.ticket_id_fk is not null) THEN
+        update ticket set check_in_change_txid = txid_current() where id = NEW.ticket_id_fk;
+    END IF;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create trigger check_in_change_field_value_trg
+    after insert or update or delete on purchase_context_field_value
+    for each row
+    execute procedure check_in_change_field_value_trigger();
+
+-- category settings are part of the check-in information as well
+create or replace function check_in_change_category_trigger()
+    RETURNS TRIGGER AS
+$body$
+BEGIN
+    update ticket set check_in_change_txid = txid_current() where category_id = NEW.id and full_name is not null;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create trigger check_in_change_category_trg
+    after update on ticket_category
+    for each row
+    when (OLD.name is distinct from NEW.name
+        or OLD.ticket_access_type is distinct from NEW.ticket_access_type
+        or OLD.valid_checkin_from is distinct from NEW.valid_checkin_from
+        or OLD.valid_checkin_to is distinct from NEW.valid_checkin_to
+        or OLD.ticket_validity_start is distinct from NEW.ticket_validity_start
+        or OLD.ticket_validity_end is distinct from NEW.ticket_validity_end
+        or OLD.ticket_checkin_strategy is distinct from NEW.ticket_checkin_strategy)
+    execute procedure check_in_change_category_trigger();
@@ -0,0 +1,29 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- leases for the scheduled jobs. Each slot of a job is owned by at most one node at a time;
+-- the owner renews the lease every time it runs the job. If the owner stops, another node takes over
+-- as soon as the lease expires.
+create table scheduled_job_lease (
+    job_name varchar(255) not null,
+    slot integer not null,
+    owner varchar(255) not null,
+    acquired_ts timestamp with time zone not null,
+    expires_ts timestamp with time zone not null,
+    last_run_ts timestamp with time zone not null,
+    primary key (job_name, slot)
+);
@@ -0,0 +1,48 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+-- exports generated in background. The content is stored in chunks, so that it can be written and read
+-- without loading the whole file in memory.
+create table admin_export (
+    id varchar(36) not null primary key,
+    export_type varchar(64) not null,
+    event_id_fk integer references event(id) on delete cascade,
+    format varchar(16) not null,
+    username varchar(255) not null,
+    request_hash varchar(64) not null,
+    parameters jsonb not null default '{}'::jsonb,
+    status varchar(16) not null,
+    progress integer not null default 0,
+    total integer,
+    file_name varchar(255),
+    content_type varchar(255),
+    content_size bigint,
+    error_message text,
+    creation_ts timestamp with time zone not null,
+    completion_ts timestamp with time zone,
+    expiration_ts timestamp with time zone not null
+);
+
+-- at most one active generation for the same request
+create unique index admin_export_active_request_idx on admin_export(request_hash) where status in ('PENDING', 'IN_PROGRESS');
+create index admin_export_expiration_idx on admin_export(expiration_ts);
+
+create table admin_export_chunk (
+    export_id_fk varchar(36) not null references admin_export(id) on delete cascade,
+    chunk_index integer not null,
+    content bytea not null,
+    primary key (export_id_fk, chunk_index)
+);
@@ -0,0 +1,73 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+-- the system configuration is shared by all the events: instead of bumping the version of every event, we keep a
+-- single system-wide version, which is added to the event version when reading it.
+-- The statement-level trigger has its own function, since NEW and OLD are not assigned in statement-level triggers.
+create table public_data_system_version (
+    id boolean primary key not null default true check (id),
+    version bigint not null default 0
+);
+
+insert into public_data_system_version(id, version) values (true, 0);
+
+create or replace function public_data_system_version_trigger()
+    RETURNS TRIGGER AS
+$body$
+BEGIN
+    update public_data_system_version set version = version + 1;
+    RETURN NULL;
+END
+$body$
+    LANGUAGE plpgsql;
+
+drop trigger event_public_data_version_configuration on configuration;
+create trigger public_data_system_version_configuration after insert or update or delete on configuration
+    for each statement execute procedure public_data_system_version_trigger();
+
+create or replace function event_public_data_version_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    modified record;
+BEGIN
+    IF (TG_OP = 'DELETE') THEN
+        modified := OLD;
+    ELSE
+        modified := NEW;
+    END IF;
+    CASE TG_TABLE_NAME
+        WHEN 'event' THEN
+            PERFORM bump_event_public_data_version(modified.id);
+        WHEN 'ticket_category' THEN
+            PERFORM bump_event_public_data_version(modified.event_id);
+        WHEN 'event_description_text', 'subscription_event' THEN
+            PERFORM bump_event_public_data_version(modified.event_id_fk);
+        WHEN 'configuration_purchase_context', 'promo_code' THEN
+            IF (modified.event_id_fk is not null) THEN
+                PERFORM bump_event_public_data_version(modified.event_id_fk);
+            ELSIF (modified.organization_id_fk is not null) THEN
+                PERFORM bump_organization_public_data_version(modified.organization_id_fk);
+            END IF;
+        WHEN 'configuration_organization' THEN
+            PERFORM bump_organization_public_data_version(modified.organization_id_fk);
+        WHEN 'organization' THEN
+            PERFORM bump_organization_public_data_version(modified.id);
+    END CASE;
+    RETURN NULL;
+END
+$body$
+    LANGUAGE plpgsql;
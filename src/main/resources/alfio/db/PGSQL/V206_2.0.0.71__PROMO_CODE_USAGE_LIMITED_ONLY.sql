@@ -0,0 +1,98 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+-- usage counters are read only for promo codes having max_usage. Maintaining them for the other codes would
+-- serialize, on the counter row, all the reservations using the same (unlimited) code.
+
+create or replace function refresh_promo_code_usage(promo_code_id integer)
+returns void
+as
+$$
+    delete from promo_code_usage where promo_code_id_fk = promo_code_id
+        and not exists(select 1 from promo_code where id = promo_code_id and max_usage is not null);
+    insert into promo_code_usage(promo_code_id_fk, reserved, confirmed)
+    select pc.id,
+           count(t.id) filter (where tr.status <> 'CANCELLED'),
+           count(t.id) filter (where is_confirmed_reservation_status(tr.status))
+    from promo_code pc
+        left join tickets_reservation tr on tr.promo_code_id_fk = pc.id
+        left join ticket t on t.tickets_reservation_id = tr.id and promo_code_applies_to_category(pc.categories, t.category_id)
+    where pc.id = promo_code_id and pc.max_usage is not null
+    group by pc.id
+    on conflict (promo_code_id_fk) do update set reserved = excluded.reserved, confirmed = excluded.confirmed;
+$$ language sql;
+
+create or replace function promo_code_usage_ticket_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    reservation record;
+BEGIN
+    IF (TG_OP <> 'INSERT' AND OLD.tickets_reservation_id is not null) THEN
+        select tr.status, pc.id, pc.categories into reservation
+            from tickets_reservation tr join promo_code pc on pc.id = tr.promo_code_id_fk
+            where tr.id = OLD.tickets_reservation_id and pc.max_usage is not null;
+        IF (FOUND AND promo_code_applies_to_category(reservation.categories, OLD.category_id)) THEN
+            PERFORM update_promo_code_usage(reservation.id, reservation.status, -1);
+        END IF;
+    END IF;
+    IF (TG_OP <> 'DELETE' AND NEW.tickets_reservation_id is not null) THEN
+        select tr.status, pc.id, pc.categories into reservation
+            from tickets_reservation tr join promo_code pc on pc.id = tr.promo_code_id_fk
+            where tr.id = NEW.tickets_reservation_id and pc.max_usage is not null;
+        IF (FOUND AND promo_code_applies_to_category(reservation.categories, NEW.category_id)) THEN
+            PERFORM update_promo_code_usage(reservation.id, reservation.status, 1);
+        END IF;
+    END IF;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create or replace function promo_code_usage_reservation_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    tickets integer;
+BEGIN
+    IF (OLD.promo_code_id_fk is not null) THEN
+        select count(*) into tickets from ticket t join promo_code pc on pc.id = OLD.promo_code_id_fk
+            where pc.max_usage is not null and t.tickets_reservation_id = OLD.id and promo_code_applies_to_category(pc.categories, t.category_id);
+        IF (tickets > 0) THEN
+            PERFORM update_promo_code_usage(OLD.promo_code_id_fk, OLD.status, -tickets);
+        END IF;
+    END IF;
+    IF (NEW.promo_code_id_fk is not null) THEN
+        select count(*) into tickets from ticket t join promo_code pc on pc.id = NEW.promo_code_id_fk
+            where pc.max_usage is not null and t.tickets_reservation_id = NEW.id and promo_code_applies_to_category(pc.categories, t.category_id);
+        IF (tickets > 0) THEN
+            PERFORM update_promo_code_usage(NEW.promo_code_id_fk, NEW.status, tickets);
+        END IF;
+    END IF;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+-- the counters must be rebuilt when the categories change, or when a limit is set / removed
+drop trigger promo_code_usage_categories_trg on promo_code;
+create trigger promo_code_usage_definition_trg
+    after update of categories, max_usage on promo_code
+    for each row
+    when (OLD.categories is distinct from NEW.categories or (OLD.max_usage is null) <> (NEW.max_usage is null))
+    execute procedure promo_code_usage_categories_trigger();
+
+delete from promo_code_usage u using promo_code pc where pc.id = u.promo_code_id_fk and pc.max_usage is null;
@@ -0,0 +1,118 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+-- the row-level triggers updated the check_in_counter slots in the order in which tickets were modified,
+-- therefore two transactions confirming tickets of the same category could deadlock.
+-- The triggers below aggregate the changes of the whole statement per slot and apply them in key order.
+
+drop trigger check_in_counter_ticket_insert_trg on ticket;
+drop trigger check_in_counter_ticket_delete_trg on ticket;
+drop trigger check_in_counter_ticket_update_trg on ticket;
+drop function check_in_counter_ticket_trigger();
+drop function update_check_in_counter(integer, integer, integer, varchar, integer);
+
+create or replace function apply_check_in_counter_delta(counter_event_id integer, counter_category_id integer, counter_slot integer, confirmed_delta integer, checked_in_delta integer)
+returns void
+as
+$$
+    insert into check_in_counter(event_id, category_id, slot, confirmed, checked_in)
+    values(counter_event_id, counter_category_id, counter_slot, greatest(confirmed_delta, 0), greatest(checked_in_delta, 0))
+    on conflict (event_id, category_id, slot) do update
+        set confirmed = check_in_counter.confirmed + confirmed_delta,
+            checked_in = check_in_counter.checked_in + checked_in_delta
+$$ language sql;
+
+create or replace function check_in_counter_insert_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    d record;
+BEGIN
+    FOR d IN select event_id, coalesce(category_id, 0) as category_id, id % 8 as slot,
+                    count(*)::integer as confirmed, (count(*) filter (where status = 'CHECKED_IN'))::integer as checked_in
+             from new_rows where is_confirmed_ticket_status(status)
+             group by 1, 2, 3 order by 1, 2, 3
+    LOOP
+        PERFORM apply_check_in_counter_delta(d.event_id, d.category_id, d.slot, d.confirmed, d.checked_in);
+    END LOOP;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create or replace function check_in_counter_delete_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    d record;
+BEGIN
+    FOR d IN select event_id, coalesce(category_id, 0) as category_id, id % 8 as slot,
+                    -count(*)::integer as confirmed, -(count(*) filter (where status = 'CHECKED_IN'))::integer as checked_in
+             from old_rows where is_confirmed_ticket_status(status)
+             group by 1, 2, 3 order by 1, 2, 3
+    LOOP
+        PERFORM apply_check_in_counter_delta(d.event_id, d.category_id, d.slot, d.confirmed, d.checked_in);
+    END LOOP;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create or replace function check_in_counter_update_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    d record;
+BEGIN
+    FOR d IN select event_id, category_id, slot, sum(confirmed)::integer as confirmed, sum(checked_in)::integer as checked_in
+             from (
+                 select event_id, coalesce(category_id, 0) as category_id, id % 8 as slot,
+                        -1 as confirmed, case when status = 'CHECKED_IN' then -1 else 0 end as checked_in
+                 from old_rows where is_confirmed_ticket_status(status)
+                 union all
+                 select event_id, coalesce(category_id, 0), id % 8,
+                        1, case when status = 'CHECKED_IN' then 1 else 0 end
+                 from new_rows where is_confirmed_ticket_status(status)
+             ) changes
+             group by 1, 2, 3
+             having sum(confirmed) <> 0 or sum(checked_in) <> 0
+             order by 1, 2, 3
+    LOOP
+        PERFORM apply_check_in_counter_delta(d.event_id, d.category_id, d.slot, d.confirmed, d.checked_in);
+    END LOOP;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+-- transition tables cannot be combined with multiple events or column lists, hence one trigger per operation
+create trigger check_in_counter_insert_trg
+    after insert on ticket
+    referencing new table as new_rows
+    for each statement
+    execute procedure check_in_counter_insert_trigger();
+
+create trigger check_in_counter_delete_trg
+    after delete on ticket
+    referencing old table as old_rows
+    for each statement
+    execute procedure check_in_counter_delete_trigger();
+
+create trigger check_in_counter_update_trg
+    after update on ticket
+    referencing old table as old_rows new table as new_rows
+    for each statement
+    execute procedure check_in_counter_update_trigger();
@@ -0,0 +1,22 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- tokens bound to an access code before the introduction of the pools must count against its max usage
+update special_price set access_code_pool_fk = access_code_id_fk
+    where access_code_id_fk is not null
+      and access_code_pool_fk is null
+      and access_code_id_fk in (select id from promo_code where code_type = 'ACCESS');
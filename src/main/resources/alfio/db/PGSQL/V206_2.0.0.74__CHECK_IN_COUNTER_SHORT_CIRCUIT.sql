@@ -0,0 +1,101 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- the statement-level triggers on ticket fire for every statement, including those that don't touch
+-- confirmed tickets (e.g. reservations, releases, assignment of attendee data).
+-- The update trigger now returns immediately unless at least one confirmed ticket has changed status,
+-- category or event, so that the aggregation runs only when the counters must actually be updated.
+--
+-- Remaining cost: PostgreSQL still captures the transition tables for every insert, update and delete on ticket,
+-- including the bulk insert of tickets at event creation, and the update trigger scans them once to decide
+-- whether there is anything to do. This is linear in the number of modified rows and does not take any lock.
+create or replace function check_in_counter_update_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    d record;
+BEGIN
+    IF NOT EXISTS (select 1 from old_rows o join new_rows n on n.id = o.id
+                   where (is_confirmed_ticket_status(o.status) or is_confirmed_ticket_status(n.status))
+                     and (o.status is distinct from n.status
+                          or o.category_id is distinct from n.category_id
+                          or o.event_id is distinct from n.event_id)) THEN
+        RETURN NULL;
+    END IF;
+    FOR d IN select event_id, category_id, slot, sum(confirmed)::integer as confirmed, sum(checked_in)::integer as checked_in
+             from (
+                 select event_id, coalesce(category_id, 0) as category_id, id % 8 as slot,
+                        -1 as confirmed, case when status = 'CHECKED_IN' then -1 else 0 end as checked_in
+                 from old_rows where is_confirmed_ticket_status(status)
+                 union all
+                 select event_id, coalesce(category_id, 0), id % 8,
+                        1, case when status = 'CHECKED_IN' then 1 else 0 end
+                 from new_rows where is_confirmed_ticket_status(status)
+             ) changes
+             group by 1, 2, 3
+             having sum(confirmed) <> 0 or sum(checked_in) <> 0
+             order by 1, 2, 3
+    LOOP
+        PERFORM apply_check_in_counter_delta(d.event_id, d.category_id, d.slot, d.confirmed, d.checked_in);
+    END LOOP;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+-- inserts and deletes of confirmed tickets are rare: skip the aggregation if there is none in the statement
+create or replace function check_in_counter_insert_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    d record;
+BEGIN
+    IF NOT EXISTS (select 1 from new_rows where is_confirmed_ticket_status(status)) THEN
+        RETURN NULL;
+    END IF;
+    FOR d IN select event_id, coalesce(category_id, 0) as category_id, id % 8 as slot,
+                    count(*)::integer as confirmed, (count(*) filter (where status = 'CHECKED_IN'))::integer as checked_in
+             from new_rows where is_confirmed_ticket_status(status)
+             group by 1, 2, 3 order by 1, 2, 3
+    LOOP
+        PERFORM apply_check_in_counter_delta(d.event_id, d.category_id, d.slot, d.confirmed, d.checked_in);
+    END LOOP;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create or replace function check_in_counter_delete_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    d record;
+BEGIN
+    IF NOT EXISTS (select 1 from old_rows where is_confirmed_ticket_status(status)) THEN
+        RETURN NULL;
+    END IF;
+    FOR d IN select event_id, coalesce(category_id, 0) as category_id, id % 8 as slot,
+                    -count(*)::integer as confirmed, -(count(*) filter (where status = 'CHECKED_IN'))::integer as checked_in
+             from old_rows where is_confirmed_ticket_status(status)
+             group by 1, 2, 3 order by 1, 2, 3
+    LOOP
+        PERFORM apply_check_in_counter_delta(d.event_id, d.category_id, d.slot, d.confirmed, d.checked_in);
+    END LOOP;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
@@ -0,0 +1,66 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- the row-level update trigger looked up the reservation and the promo code, and updated the counter, once per
+-- ticket moved to / from a reservation. Reserving or releasing N tickets meant N lookups and N updates of the same
+-- counter row. The statement-level trigger below aggregates the changes per promo code and updates each counter once.
+-- The transition tables of ticket updates are already captured for the check_in_counter triggers.
+
+drop trigger promo_code_usage_ticket_update_trg on ticket;
+
+create or replace function promo_code_usage_ticket_update_trigger()
+    RETURNS TRIGGER AS
+$body$
+DECLARE
+    d record;
+BEGIN
+    FOR d IN with changed as (
+                 select o.tickets_reservation_id as old_reservation_id, o.category_id as old_category_id,
+                        n.tickets_reservation_id as new_reservation_id, n.category_id as new_category_id
+                 from old_rows o join new_rows n on n.id = o.id
+                 where (o.tickets_reservation_id is not null or n.tickets_reservation_id is not null)
+                   and (o.tickets_reservation_id is distinct from n.tickets_reservation_id
+                        or o.category_id is distinct from n.category_id)
+             ), changes as (
+                 select old_reservation_id as reservation_id, old_category_id as category_id, -1 as delta
+                 from changed where old_reservation_id is not null
+                 union all
+                 select new_reservation_id, new_category_id, 1
+                 from changed where new_reservation_id is not null
+             )
+             select pc.id as promo_code_id, tr.status, sum(c.delta)::integer as tickets
+             from changes c
+                 join tickets_reservation tr on tr.id = c.reservation_id
+                 join promo_code pc on pc.id = tr.promo_code_id_fk
+             where pc.max_usage is not null and promo_code_applies_to_category(pc.categories, c.category_id)
+             group by pc.id, tr.status
+             having sum(c.delta) <> 0
+             order by pc.id, tr.status
+    LOOP
+        PERFORM update_promo_code_usage(d.promo_code_id, d.status, d.tickets);
+    END LOOP;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+-- transition tables cannot be combined with column lists: the changed rows are filtered by the function
+create trigger promo_code_usage_ticket_update_trg
+    after update on ticket
+    referencing old table as old_rows new table as new_rows
+    for each statement
+    execute procedure promo_code_usage_ticket_update_trigger();
@@ -0,0 +1,48 @@
+--
+-- This file is part of alf.io.
+--
+-- alf.io is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- alf.io is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU General Public License for more details.
+--
+-- You should have received a copy of the GNU General Public License
+-- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+--
+
+-- saving the N additional fields of a ticket rewrote the ticket row N times in the same transaction, with the same
+-- check_in_change_txid, firing all the ticket triggers every time. The ticket is now updated only if it hasn't been
+-- marked by the current transaction yet. The same applies to the tickets of a category.
+
+create or replace function check_in_change_field_value_trigger()
+    RETURNS TRIGGER AS
+$body$
+BEGIN
+    IF (TG_OP <> 'INSERT' AND OLD.ticket_id_fk is not null) THEN
+        update ticket set check_in_change_txid = txid_current()
+            where id = OLD.ticket_id_fk and check_in_change_txid is distinct from txid_current();
+    END IF;
+    IF (TG_OP <> 'DELETE' AND NEW.ticket_id_fk is not null) THEN
+        update ticket set check_in_change_txid = txid_current()
+            where id = NEW.ticket_id_fk and check_in_change_txid is distinct from txid_current();
+    END IF;
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
+
+create or replace function check_in_change_category_trigger()
+    RETURNS TRIGGER AS
+$body$
+BEGIN
+    update ticket set check_in_change_txid = txid_current()
+        where category_id = NEW.id and full_name is not null and check_in_change_txid is distinct from txid_current();
+    RETURN NULL;
+END
+$body$
+LANGUAGE plpgsql;
@@ -22,7 +22,9 @@ create view admin_reservation_request_stats as (
        event_id,
        sum(case (status = 'PENDING') when true then 1 else 0 end) as count_pending,
        sum(case (status = 'SUCCESS') when true then 1 else 0 end) as count_success,
-       sum(case (status = 'ERROR') when true then 1 else 0 end) as count_error
+       sum(case (status = 'ERROR') when true then 1 else 0 end) as count_error,
+       min(processed_ts) as first_processed_ts,
+       max(processed_ts) as last_processed_ts
    from admin_reservation_request
    group by request_id, event_id, user_id
 );
\ No newline at end of file
@@ -15,50 +15,6 @@
 -- along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
 --
 
+-- replaced by the promo_code_usage counters
 drop view if exists promocode_count;
-
-create view promocode_count as (
-select id as promo_code_id, promo_code, coalesce(promo_code_use,0) as promo_code_use
-from (
-    select id, promo_code from promo_code pc
-) as pc_data
-left join (
-    select pc.id promo_code_id, count(*) as promo_code_use from tickets_reservation tr
-    inner join promo_code pc on tr.promo_code_id_fk = pc.id
-    left join ticket on ticket.tickets_reservation_id = tr.id
-    where tr.status in ('OFFLINE_PAYMENT', 'DEFERRED_OFFLINE_PAYMENT', 'COMPLETE', 'STUCK')
-    and (
-        -- is not assigned to category?
-        pc.categories is null or json_array_length(pc.categories::json) = 0 or
-        -- v category_id is inside pc.categories?
-        ((pc.categories::jsonb) @> ((ticket.category_id::text)::jsonb))
-    ) group by pc.id
-) as count_data on pc_data.id = count_data.promo_code_id
-);
-
-
-
 drop view if exists promocode_count_all;
-
-create view promocode_count_all as (
-select id as promo_code_id, promo_code, coalesce(promo_code_use,0) as promo_code_use
-from (
-    select id, promo_code from promo_code pc
-) as pc_data
-left join (
-    select pc.id promo_code_id, count(*) as promo_code_use
-    from tickets_reservation tr
-    inner join promo_code pc on tr.promo_code_id_fk = pc.id
-    left join ticket on ticket.tickets_reservation_id = tr.id
-    where tr.status <> 'CANCELLED'
-    and (
-        -- is not assigned to category?
-        pc.categories is null or json_array_length(pc.categories::json) = 0 or
-        -- v category_id is inside pc.categories?
-        ((pc.categories::jsonb) @> ((ticket.category_id::text)::jsonb))
-    )
-    group by pc.id
-) as count_data on pc_data.id = count_data.promo_code_id
-);
-
-
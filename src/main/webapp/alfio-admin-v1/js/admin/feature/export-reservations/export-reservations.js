@@ -9,7 +9,7 @@ angular.module('adminApplication').component('exportReservationsButton', {
 });
 
 
-function exportReservationsButton(EventService, $uibModal) {
+function exportReservationsButton(EventService, ExportService, $uibModal) {
     var ctrl = this;
 
     ctrl.isOwner = window.USER_IS_OWNER;
@@ -40,6 +40,14 @@ function exportReservationsButton(EventService, $uibModal) {
                     $scope.$dismiss();
                 }
 
+                modalCtrl.download = function() {
+                    ExportService.requestExport('/admin/api/export/reservations/async', {
+                        from: modalCtrl.formattedSearchFrom,
+                        to: modalCtrl.formattedSearchTo
+                    });
+                    $scope.$close();
+                }
+
                 $scope.$watch('$ctrl.searchFrom', function(newValue) {
                     if(newValue) {
                         modalCtrl.ready = moment(modalCtrl.searchTo).isAfter(moment(newValue));
@@ -57,6 +65,6 @@ function exportReservationsButton(EventService, $uibModal) {
     }
 }
 
-exportReservationsButton.$inject = ['EventService', '$uibModal'];
+exportReservationsButton.$inject = ['EventService', 'ExportService', '$uibModal'];
 
 })();
\ No newline at end of file
@@ -1045,7 +1045,8 @@
                                                         TicketCategoryEditorService,
                                                         GroupService,
                                                         ConfigurationService,
-                                                        SubscriptionService) {
+                                                        SubscriptionService,
+                                                        ExportService) {
         var loadData = function() {
             $scope.loading = true;
 
@@ -1444,11 +1445,7 @@
         };
 
         $scope.downloadSponsorsScan = function() {
-            var pathName = $window.location.pathname;
-            if(!pathName.endsWith("/")) {
-                pathName = pathName + "/";
-            }
-            $window.open(pathName+"api/events/"+parentScope.event.shortName+"/sponsor-scan/export");
+            ExportService.requestExport('/admin/api/events/'+parentScope.event.shortName+'/sponsor-scan/export/async', {format: 'excel'});
         };
 
         $scope.activateEvent = function(id) {
@@ -56,7 +56,7 @@
         };
     });
 
-    baseServices.service('EventService', function($http, HttpErrorHandler, $uibModal, $window, $rootScope, $q, LocationService, $timeout) {
+    baseServices.service('EventService', function($http, HttpErrorHandler, $uibModal, $window, $rootScope, $q, LocationService, $timeout, ExportService) {
 
         function copyGeoLocation(event) {
             event.latitude = event.geolocation.latitude;
@@ -348,17 +348,14 @@
                         };
 
                         $scope.download = function() {
-                            var queryString = "format="+$scope.format+"&";
+                            var fields = [];
                             angular.forEach($scope.selected, function(v,k) {
                                 if(v) {
-                                    queryString+="fields="+ encodeURIComponent(k) +"&";
+                                    fields.push(k);
                                 }
                             });
-                            var pathName = $window.location.pathname;
-                            if(!pathName.endsWith("/")) {
-                                pathName = pathName + "/";
-                            }
-                            $window.open(pathName+"api/events/"+event.shortName+"/export?"+queryString);
+                            ExportService.requestExport('/admin/api/events/'+event.shortName+'/export/async', {format: $scope.format, fields: fields});
+                            $scope.$close();
                         };
                     }
                 });
@@ -706,6 +703,36 @@
 
     }]);
 
+    baseServices.service("ExportService", ['$http', '$timeout', '$window', 'NotificationHandler', 'HttpErrorHandler', function($http, $timeout, $window, NotificationHandler, HttpErrorHandler) {
+        var POLL_INTERVAL = 2000;
+        var handleError = function(res) {
+            HttpErrorHandler.handle(res.data, res.status);
+        };
+        var waitForExport = function(exportId) {
+            return $http.get('/admin/api/export/'+exportId+'/status').then(function(res) {
+                var status = res.data.status;
+                if(status === 'READY') {
+                    $window.location.href = '/admin/api/export/'+exportId+'/download';
+                } else if(status === 'FAILED') {
+                    NotificationHandler.showError(res.data.errorMessage || 'Error while generating the export');
+                } else {
+                    return $timeout(function() {
+                        return waitForExport(exportId);
+                    }, POLL_INTERVAL);
+                }
+            }, handleError);
+        };
+        return {
+            // exports are generated in background: the download starts as soon as the file is ready
+            requestExport: function(url, params) {
+                NotificationHandler.showInfo('The export is being generated. The download will start automatically.');
+                return $http.post(url, null, {params: params}).then(function(res) {
+                    return waitForExport(res.data.id);
+                }, handleError);
+            }
+        };
+    }]);
+
     baseServices.service("PriceCalculator", function() {
         var instance = {
             calculateTotalPrice: function(event, viewMode) {
@@ -920,18 +947,14 @@
         };
     }]);
 
-    baseServices.service('MenuButtonService', ['EventService', '$window', '$uibModal', 'NotificationHandler', function(EventService, $window, $uibModal, NotificationHandler) {
+    baseServices.service('MenuButtonService', ['EventService', 'ExportService', '$window', '$uibModal', 'NotificationHandler', function(EventService, ExportService, $window, $uibModal, NotificationHandler) {
         return {
             configureMenu: function(ctrl) {
                 ctrl.openFieldSelectionModal = function() {
                     EventService.exportAttendees(ctrl.event);
                 };
                 ctrl.downloadSponsorsScan = function() {
-                    var pathName = $window.location.pathname;
-                    if(!pathName.endsWith("/")) {
-                        pathName = pathName + "/";
-                    }
-                    $window.open(pathName+"api/events/"+ctrl.event.shortName+"/sponsor-scan/export");
+                    ExportService.requestExport('/admin/api/events/'+ctrl.event.shortName+'/sponsor-scan/export/async', {format: 'excel'});
                 };
                 ctrl.openWaitingQueueModal = function() {
                     var outCtrl = ctrl;
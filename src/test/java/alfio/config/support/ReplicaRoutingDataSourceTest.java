@@ -0,0 +1,119 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.config.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+    private Connection primaryConnection;
+    private Connection replicaConnection;
+    private ResultSet lagResult;
+    private AtomicLong clock;
+    private ReplicaRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = mock(DataSource.class);
+        replica = mock(DataSource.class);
+        primaryConnection = mock(Connection.class);
+        replicaConnection = mock(Connection.class);
+        var statement = mock(Statement.class);
+        lagResult = mock(ResultSet.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(replicaConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(lagResult);
+        when(lagResult.next()).thenReturn(true);
+        when(lagResult.getDouble(1)).thenReturn(0d);
+        clock = new AtomicLong(1_000_000L);
+        dataSource = new ReplicaRoutingDataSource(primary, replica, 1000, 5000, 30_000, clock::get);
+    }
+
+    @Test
+    void primaryIsUsedByDefault() throws SQLException {
+        assertSame(primaryConnection, dataSource.getConnection());
+        verifyNoInteractions(replica);
+    }
+
+    @Test
+    void replicaIsUsedIfRequested() throws SQLException {
+        assertSame(replicaConnection, connectionWithReplica());
+        assertSame(replicaConnection, connectionWithReplica());
+        // lag is checked only once per interval
+        verify(replicaConnection, times(1)).createStatement();
+        assertSame(primaryConnection, dataSource.getConnection());
+    }
+
+    @Test
+    void fallbackToPrimaryIfReplicaIsUnavailable() throws SQLException {
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+        assertSame(primaryConnection, connectionWithReplica());
+        assertSame(primaryConnection, connectionWithReplica());
+        verify(replica, times(1)).getConnection();
+        clock.addAndGet(30_000L);
+        assertSame(primaryConnection, connectionWithReplica());
+        verify(replica, times(2)).getConnection();
+    }
+
+    @Test
+    void fallbackToPrimaryIfReplicaIsLagging() throws SQLException {
+        when(lagResult.getDouble(1)).thenReturn(5000d);
+        assertSame(primaryConnection, connectionWithReplica());
+        verify(replicaConnection).close();
+        // lag is not checked again until the interval has elapsed
+        assertSame(primaryConnection, connectionWithReplica());
+        verify(replica, times(1)).getConnection();
+        when(lagResult.getDouble(1)).thenReturn(10d);
+        clock.addAndGet(5000L);
+        assertSame(replicaConnection, connectionWithReplica());
+    }
+
+    @Test
+    void connectionWithCredentialsIsRequestedToThePrimary() throws SQLException {
+        when(primary.getConnection("user", "password")).thenReturn(primaryConnection);
+        assertSame(primaryConnection, dataSource.getConnection("user", "password"));
+        verifyNoInteractions(replica);
+    }
+
+    private Connection connectionWithReplica() {
+        var result = new AtomicReference<Connection>();
+        ReplicaRoutingDataSource.withReplica(true, () -> {
+            try {
+                result.set(dataSource.getConnection());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return result.get();
+    }
+}
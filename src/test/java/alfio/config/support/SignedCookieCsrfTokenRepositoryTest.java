@@ -0,0 +1,113 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.config.support;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignedCookieCsrfTokenRepositoryTest {
+
+    private SignedCookieCsrfTokenRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new SignedCookieCsrfTokenRepository(new HttpSessionCsrfTokenRepository(), "X-CSRF-TOKEN", "_csrf",
+            "secret".getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    @Test
+    void anonymousTokenIsStoredInSignedCookie() {
+        var request = new MockHttpServletRequest();
+        var response = new MockHttpServletResponse();
+        var token = repository.generateToken(request);
+        repository.saveToken(token, request, response);
+        assertNull(request.getSession(false), "session must not be created");
+        var cookie = response.getCookie(SignedCookieCsrfTokenRepository.COOKIE_NAME);
+        assertNotNull(cookie);
+        assertTrue(cookie.isHttpOnly());
+
+        var nextRequest = new MockHttpServletRequest();
+        nextRequest.setCookies(cookie);
+        var loaded = repository.loadToken(nextRequest);
+        assertNotNull(loaded);
+        assertEquals(token.getToken(), loaded.getToken());
+        assertEquals("X-CSRF-TOKEN", loaded.getHeaderName());
+        assertNull(nextRequest.getSession(false));
+    }
+
+    @Test
+    void forgedCookieIsRejected() {
+        var request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(SignedCookieCsrfTokenRepository.COOKIE_NAME, "my-token.bad-signature"));
+        assertNull(repository.loadToken(request));
+        request.setCookies(new Cookie(SignedCookieCsrfTokenRepository.COOKIE_NAME, "my-token"));
+        assertNull(repository.loadToken(request));
+    }
+
+    @Test
+    void sessionTakesPrecedence() {
+        var request = new MockHttpServletRequest();
+        var response = new MockHttpServletResponse();
+        var anonymousToken = repository.generateToken(request);
+        repository.saveToken(anonymousToken, request, response);
+        var cookie = response.getCookie(SignedCookieCsrfTokenRepository.COOKIE_NAME);
+
+        // login: a session is created and a new token is generated
+        var authenticatedRequest = new MockHttpServletRequest();
+        authenticatedRequest.setCookies(cookie);
+        authenticatedRequest.getSession(true);
+        var authenticatedResponse = new MockHttpServletResponse();
+        var sessionToken = repository.generateToken(authenticatedRequest);
+        repository.saveToken(sessionToken, authenticatedRequest, authenticatedResponse);
+        var expiredCookie = authenticatedResponse.getCookie(SignedCookieCsrfTokenRepository.COOKIE_NAME);
+        assertNotNull(expiredCookie);
+        assertEquals(0, expiredCookie.getMaxAge());
+        assertEquals(sessionToken.getToken(), repository.loadToken(authenticatedRequest).getToken());
+    }
+
+    @Test
+    void secureCookieCannotBeSetBySubdomains() {
+        var secureRepository = new SignedCookieCsrfTokenRepository(new HttpSessionCsrfTokenRepository(), "X-CSRF-TOKEN", "_csrf",
+            "secret".getBytes(StandardCharsets.UTF_8), true);
+        var request = new MockHttpServletRequest();
+        var response = new MockHttpServletResponse();
+        var token = secureRepository.generateToken(request);
+        secureRepository.saveToken(token, request, response);
+        assertNull(response.getCookie(SignedCookieCsrfTokenRepository.COOKIE_NAME));
+        // the __Host- prefix requires a secure cookie, with path "/" and without domain
+        var cookie = response.getCookie(SignedCookieCsrfTokenRepository.SECURE_COOKIE_NAME);
+        assertNotNull(cookie);
+        assertTrue(cookie.getSecure());
+        assertEquals("/", cookie.getPath());
+        assertNull(cookie.getDomain());
+
+        // a cookie without prefix is ignored, even if correctly signed
+        var nextRequest = new MockHttpServletRequest();
+        nextRequest.setCookies(new Cookie(SignedCookieCsrfTokenRepository.COOKIE_NAME, cookie.getValue()));
+        assertNull(secureRepository.loadToken(nextRequest));
+        nextRequest.setCookies(cookie);
+        assertEquals(token.getToken(), secureRepository.loadToken(nextRequest).getToken());
+    }
+}
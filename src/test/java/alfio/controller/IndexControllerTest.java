@@ -23,7 +23,10 @@ import alfio.controller.support.DataPreloaderManager;
 import alfio.manager.i18n.MessageSourceManager;
 import alfio.model.Event;
 import alfio.util.Json;
+import alfio.controller.support.IndexPageTemplate;
+import ch.digitalfondue.jfiveparse.Document;
 import ch.digitalfondue.jfiveparse.Element;
+import ch.digitalfondue.jfiveparse.JFiveParse;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -46,9 +49,7 @@ import static org.mockito.Mockito.*;
 class IndexControllerTest {
 
     private EventLoader eventLoader;
-    private Element head;
-    private Element index;
-    private Element html;
+    private IndexPageTemplate.Head head;
     private EventWithAdditionalInfo eventInfo;
     private Event event;
     private HttpSession session;
@@ -61,19 +62,16 @@ class IndexControllerTest {
     void setUp() {
         eventLoader = mock(EventLoader.class);
         request = mock(ServletWebRequest.class);
-        head = new Element("head");
-        index = mock(Element.class);
-        html = mock(Element.class);
+        head = new IndexPageTemplate.Head();
         eventInfo = mock(EventWithAdditionalInfo.class);
         event = mock(Event.class);
         session = mock(HttpSession.class);
         json = mock(Json.class);
         messageSourceManager = mock(MessageSourceManager.class);
-        when(messageSourceManager.getBundleAsMap(anyString(), anyBoolean(), anyString(), same(MessageSourceManager.PUBLIC_FRONTEND))).thenReturn(Map.of());
+        when(messageSourceManager.getBundle(anyString(), anyBoolean(), anyString(), same(MessageSourceManager.PUBLIC_FRONTEND))).thenReturn(new MessageSourceManager.Bundle(Map.of(), "{}", ""));
         when(eventLoader.loadEventInfo(anyString(), eq(session))).thenReturn(Optional.of(eventInfo));
         when(eventInfo.purchaseContext()).thenReturn(event);
         when(event.getEnd()).thenReturn(ZonedDateTime.now(FIXED_TIME_CLOCK.getClock()).plusSeconds(1));
-        when(index.getElementsByTagName("html")).thenReturn(List.of(html));
         when(json.asJsonString(any())).thenReturn("{}");
         when(request.getNativeRequest(HttpServletRequest.class)).thenReturn(new MockHttpServletRequest());
     }
@@ -84,70 +82,74 @@ class IndexControllerTest {
         @Test
         void singleLanguage() {
             when(eventInfo.getContentLanguages()).thenReturn(List.of(new Language("it", "")));
-            DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, index, json, null);
-            verify(messageSourceManager).getBundleAsMap(anyString(), eq(true), eq("it"), same(MessageSourceManager.PUBLIC_FRONTEND));
-            verify(html).setAttribute("lang", "it");
-            verify(messageSourceManager).getBundleAsMap(anyString(), eq(true), eq("en"), same(MessageSourceManager.PUBLIC_FRONTEND)); //for non en language we preload also the fallback
+            var lang = DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, json, null);
+            verify(messageSourceManager).getBundle(anyString(), eq(true), eq("it"), same(MessageSourceManager.PUBLIC_FRONTEND));
+            assertEquals("it", lang);
+            verify(messageSourceManager).getBundle(anyString(), eq(true), eq("en"), same(MessageSourceManager.PUBLIC_FRONTEND)); //for non en language we preload also the fallback
         }
 
         @Test
         void singleLanguageWithWrongParam() {
             when(eventInfo.getContentLanguages()).thenReturn(List.of(new Language("it", "")));
-            DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, index, json, "de");
-            verify(messageSourceManager).getBundleAsMap(anyString(), eq(true), eq("it"), same(MessageSourceManager.PUBLIC_FRONTEND));
-            verify(html).setAttribute("lang", "it");
+            var lang = DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, json, "de");
+            verify(messageSourceManager).getBundle(anyString(), eq(true), eq("it"), same(MessageSourceManager.PUBLIC_FRONTEND));
+            assertEquals("it", lang);
         }
 
         @Test
         void singleLanguageWithParam() {
             when(eventInfo.getContentLanguages()).thenReturn(List.of(new Language("de", "")));
-            DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, index, json, "de");
-            verify(messageSourceManager).getBundleAsMap(anyString(), eq(true), eq("de"), same(MessageSourceManager.PUBLIC_FRONTEND));
-            verify(html).setAttribute("lang", "de");
+            var lang = DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, json, "de");
+            verify(messageSourceManager).getBundle(anyString(), eq(true), eq("de"), same(MessageSourceManager.PUBLIC_FRONTEND));
+            assertEquals("de", lang);
         }
 
         @Test
         void multipleLanguages() {
             when(eventInfo.getContentLanguages()).thenReturn(List.of(new Language("de", ""), new Language("it", "")));
-            DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, index, json, null);
-            verify(messageSourceManager).getBundleAsMap(anyString(), eq(true), eq("de"), same(MessageSourceManager.PUBLIC_FRONTEND));
-            verify(html).setAttribute("lang", "de");
+            var lang = DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, json, null);
+            verify(messageSourceManager).getBundle(anyString(), eq(true), eq("de"), same(MessageSourceManager.PUBLIC_FRONTEND));
+            assertEquals("de", lang);
         }
 
         @ParameterizedTest
         @ValueSource(strings = {"it", "de"})
         void multipleLanguagesWithParam(String param) {
             when(eventInfo.getContentLanguages()).thenReturn(List.of(new Language("de", ""), new Language("it", "")));
-            DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, index, json, param);
-            verify(messageSourceManager).getBundleAsMap(anyString(), eq(true), eq(param), same(MessageSourceManager.PUBLIC_FRONTEND));
-            verify(html).setAttribute("lang", param);
+            var lang = DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, json, param);
+            verify(messageSourceManager).getBundle(anyString(), eq(true), eq(param), same(MessageSourceManager.PUBLIC_FRONTEND));
+            assertEquals(param, lang);
         }
 
         @AfterEach
         void tearDown() {
-            head.getElementsByTagName("meta")
-                .forEach(n -> assertNotEquals("robots", n.getAttribute("name")));
+            metaTags().forEach(n -> assertNotEquals("robots", n.getAttribute("name")));
         }
     }
 
     @Test
     void preloadTranslationsEventNotPresent() {
-        DataPreloaderManager.preloadEventData(null, request, session, eventLoader, head, messageSourceManager, index, json, null);
-        verify(messageSourceManager).getBundleAsMap(anyString(), eq(true), eq("en"), same(MessageSourceManager.PUBLIC_FRONTEND));
-        verify(html).setAttribute("lang", "en");
+        var lang = DataPreloaderManager.preloadEventData(null, request, session, eventLoader, head, messageSourceManager, json, null);
+        verify(messageSourceManager).getBundle(anyString(), eq(true), eq("en"), same(MessageSourceManager.PUBLIC_FRONTEND));
+        assertEquals("en", lang);
 
-        DataPreloaderManager.preloadEventData(null, request, session, eventLoader, head, messageSourceManager, index, json, "it");
-        verify(messageSourceManager).getBundleAsMap(anyString(), eq(true), eq("it"), same(MessageSourceManager.PUBLIC_FRONTEND));
-        verify(html).setAttribute("lang", "it");
+        lang = DataPreloaderManager.preloadEventData(null, request, session, eventLoader, head, messageSourceManager, json, "it");
+        verify(messageSourceManager).getBundle(anyString(), eq(true), eq("it"), same(MessageSourceManager.PUBLIC_FRONTEND));
+        assertEquals("it", lang);
     }
 
     @Test
     void checkMetaNoIndexWhenEventExpired() {
         when(eventInfo.getContentLanguages()).thenReturn(List.of(new Language("it", "")));
         when(event.getEnd()).thenReturn(ZonedDateTime.now(FIXED_TIME_CLOCK.getClock()).minusSeconds(1));
-        DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, index, json, null);
-        var robotsNodes = head.getElementsByTagName("meta").stream().filter(n -> "robots".equals(n.getAttribute("name"))).collect(Collectors.toList());
+        DataPreloaderManager.preloadEventData("shortName", request, session, eventLoader, head, messageSourceManager, json, null);
+        var robotsNodes = metaTags().stream().filter(n -> "robots".equals(n.getAttribute("name"))).collect(Collectors.toList());
         assertEquals(1, robotsNodes.size());
         assertEquals("noindex", robotsNodes.get(0).getAttribute("content"));
     }
-}
\ No newline at end of file
+
+    private List<Element> metaTags() {
+        Document document = JFiveParse.parse("<html><head>" + head + "</head><body></body></html>");
+        return document.getElementsByTagName("meta");
+    }
+}
@@ -63,7 +63,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import static alfio.controller.api.admin.EventApiController.FIXED_FIELDS;
+import static alfio.manager.EventExportManager.FIXED_FIELDS;
 import static alfio.test.toolkit.PromoCodeDiscountIntegrationTestingToolkit.TEST_PROMO_CODE;
 import static alfio.test.util.IntegrationTestUtil.AVAILABLE_SEATS;
 import static alfio.test.util.IntegrationTestUtil.DESCRIPTION;
@@ -79,11 +79,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
-import org.springframework.mock.web.MockHttpSession;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.web.context.request.ServletWebRequest;
@@ -299,14 +299,14 @@ public abstract class BaseReservationFlowTest extends BaseIntegrationTest {
 
         //
         assertEquals(ContentLanguage.ALL_LANGUAGES.size(), translationsApiController.getSupportedLanguages().size());
-        assertEquals("or", translationsApiController.getPublicTranslations("en", true).get("common.or"));
-        assertEquals("o", translationsApiController.getPublicTranslations("it", true).get("common.or"));
-        assertEquals("oder", translationsApiController.getPublicTranslations("de", true).get("common.or"));
+        assertEquals("or", bundle(translationsApiController.getPublicTranslations("en", true)).get("common.or"));
+        assertEquals("o", bundle(translationsApiController.getPublicTranslations("it", true)).get("common.or"));
+        assertEquals("oder", bundle(translationsApiController.getPublicTranslations("de", true)).get("common.or"));
 
         // check all public translations
-        ContentLanguage.ALL_LANGUAGES.forEach(cl -> assertFalse(translationsApiController.getPublicTranslations(cl.getLanguage(), true).isEmpty()));
+        ContentLanguage.ALL_LANGUAGES.forEach(cl -> assertFalse(bundle(translationsApiController.getPublicTranslations(cl.getLanguage(), true)).isEmpty()));
 
-        var alfioInfo = infoApiController.getInfo(new MockHttpSession());
+        var alfioInfo = infoApiController.getInfo(new MockHttpServletRequest());
         assertFalse(alfioInfo.demoModeEnabled());
         assertTrue(alfioInfo.devModeEnabled());
         assertFalse(alfioInfo.prodModeEnabled());
@@ -316,17 +316,17 @@ public abstract class BaseReservationFlowTest extends BaseIntegrationTest {
 
         //
 
-        assertEquals("Switzerland", translationsApiController.getCountries("en").stream().filter( c-> "CH".equals(c.isoCode())).findFirst().orElseThrow().name());
+        assertEquals("Switzerland", countries(translationsApiController.getCountries("en")).stream().filter( c-> "CH".equals(c.isoCode())).findFirst().orElseThrow().name());
 
-        assertEquals("Greece", translationsApiController.getCountries("en").stream().filter(c->"GR".equals(c.isoCode())).findFirst().orElseThrow().name());
+        assertEquals("Greece", countries(translationsApiController.getCountries("en")).stream().filter(c->"GR".equals(c.isoCode())).findFirst().orElseThrow().name());
 
-        assertEquals("Suisse", translationsApiController.getCountries("fr").stream().filter( c-> "CH".equals(c.isoCode())).findFirst().orElseThrow().name());
-        assertEquals("Svizzera", translationsApiController.getCountries("it").stream().filter( c-> "CH".equals(c.isoCode())).findFirst().orElseThrow().name());
-        assertEquals("Schweiz", translationsApiController.getCountries("de").stream().filter( c-> "CH".equals(c.isoCode())).findFirst().orElseThrow().name());
+        assertEquals("Suisse", countries(translationsApiController.getCountries("fr")).stream().filter( c-> "CH".equals(c.isoCode())).findFirst().orElseThrow().name());
+        assertEquals("Svizzera", countries(translationsApiController.getCountries("it")).stream().filter( c-> "CH".equals(c.isoCode())).findFirst().orElseThrow().name());
+        assertEquals("Schweiz", countries(translationsApiController.getCountries("de")).stream().filter( c-> "CH".equals(c.isoCode())).findFirst().orElseThrow().name());
 
         //EL -> greece for vat
-        assertEquals("Greece", translationsApiController.getCountriesForVat("en").stream().filter(c->"EL".equals(c.isoCode())).findFirst().orElseThrow().name());
-        assertEquals(27, translationsApiController.getEuCountriesForVat("en").size()); //
+        assertEquals("Greece", countries(translationsApiController.getCountriesForVat("en")).stream().filter(c->"EL".equals(c.isoCode())).findFirst().orElseThrow().name());
+        assertEquals(27, countries(translationsApiController.getEuCountriesForVat("en")).size()); //
         //
 
 
@@ -360,10 +360,10 @@ public abstract class BaseReservationFlowTest extends BaseIntegrationTest {
         assertEquals(context.event.getShortName(), events.get(0).getShortName());
 
         //
-        assertEquals(HttpStatus.NOT_FOUND, eventApiV2Controller.getEvent("NOT_EXISTS", new MockHttpSession()).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, eventApiV2Controller.getEvent("NOT_EXISTS", new MockHttpServletRequest()).getStatusCode());
         //
 
-        var eventRes = eventApiV2Controller.getEvent(context.event.getShortName(), new MockHttpSession());
+        var eventRes = eventApiV2Controller.getEvent(context.event.getShortName(), new MockHttpServletRequest());
         assertEquals(HttpStatus.OK, eventRes.getStatusCode());
         var selectedEvent = eventRes.getBody();
         assertNotNull(selectedEvent);
@@ -378,7 +378,7 @@ public abstract class BaseReservationFlowTest extends BaseIntegrationTest {
 
         configurationRepository.insert(TRANSLATION_OVERRIDE.name(), Json.toJson(Map.of("en", Map.of("show-context.event.tickets.left", "{0} left!"))), "");
         configurationRepository.insertEventLevel(context.event.getOrganizationId(), context.event.getId(),"TRANSLATION_OVERRIDE", Json.toJson(Map.of("en", Map.of("common.vat", "context.event.vat"))), "");
-        eventRes = eventApiV2Controller.getEvent(context.event.getShortName(), new MockHttpSession());
+        eventRes = eventApiV2Controller.getEvent(context.event.getShortName(), new MockHttpServletRequest());
         selectedEvent = eventRes.getBody();
         assertNotNull(selectedEvent);
         assertFalse(selectedEvent.getI18nOverride().isEmpty());
@@ -412,13 +412,13 @@ public abstract class BaseReservationFlowTest extends BaseIntegrationTest {
         // check open graph & co
         {
             var res = new MockHttpServletResponse();
-            indexController.replyToIndex(context.event.getShortName(), null, "not a social share", "en", new ServletWebRequest(new MockHttpServletRequest()),res, new MockHttpSession(), null);
+            indexController.replyToIndex(context.event.getShortName(), null, "not a social share", "en", new ServletWebRequest(new MockHttpServletRequest()),res, null);
             var htmlParser = new Parser();
             var docWithoutOpenGraph = htmlParser.parse(new String(res.getContentAsByteArray(), StandardCharsets.UTF_8));
             assertTrue(docWithoutOpenGraph.getAllNodesMatching(Selector.select().element("meta").attrValEq("name", "twitter:card").toMatcher()).isEmpty());
 
             res = new MockHttpServletResponse();
-            indexController.replyToIndex(context.event.getShortName(), null,"Twitterbot/42", "en", new ServletWebRequest(new MockHttpServletRequest()), res, new MockHttpSession(), null);
+            indexController.replyToIndex(context.event.getShortName(), null,"Twitterbot/42", "en", new ServletWebRequest(new MockHttpServletRequest()), res, null);
             var docWithOpenGraph = htmlParser.parse(new String(res.getContentAsByteArray(), StandardCharsets.UTF_8));
             assertFalse(docWithOpenGraph.getAllNodesMatching(Selector.select().element("meta").attrValEq("name", "twitter:card").toMatcher()).isEmpty());
 
@@ -1498,9 +1498,19 @@ public abstract class BaseReservationFlowTest extends BaseIntegrationTest {
         assertEquals(1, reservationsByEvent.get(0).getReservations().size());
         assertEquals(1, reservationsByEvent.get(0).getReservations().get(0).getTickets().size());
 
+        // the export loads the same data, one sheet per event
+        var export = exportManager.reservationsExport(now.minusDays(1), now, context.userId);
+        assertEquals(1, export.size());
+        assertEquals(1, export.sheets().size());
+        assertEquals(reservationsByEvent.get(0).getEventShortName(), export.sheets().get(0).name());
+        var rows = export.sheets().get(0).rows().toList();
+        assertEquals(1, rows.size());
+        assertEquals(reservationsByEvent.get(0).getReservations().get(0).getId(), rows.get(0)[1]);
+
         // ensure that the filtering works as expected
         reservationsByEvent = exportManager.reservationsForInterval(now.plusDays(1), now.plusDays(2), principal);
         assertEquals(0, reservationsByEvent.size());
+        assertTrue(exportManager.reservationsExport(now.plusDays(1), now.plusDays(2), context.userId).sheets().isEmpty());
 
         // ensure that we get error if the interval is wrong
         var wrongFrom = now.plusDays(1);
@@ -1820,4 +1830,11 @@ public abstract class BaseReservationFlowTest extends BaseIntegrationTest {
         return count != null && count > 0;
     }
 
+    private static Map<String, String> bundle(ResponseEntity<String> response) {
+        return Json.fromJson(requireNonNull(response.getBody()), new TypeReference<>() {});
+    }
+
+    private static List<LocalizedCountry> countries(ResponseEntity<String> response) {
+        return Json.fromJson(requireNonNull(response.getBody()), new TypeReference<>() {});
+    }
 }
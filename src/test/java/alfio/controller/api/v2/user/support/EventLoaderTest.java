@@ -0,0 +1,136 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.controller.api.v2.user.support;
+
+import alfio.manager.i18n.MessageSourceManager;
+import alfio.manager.system.ConfigurationManager;
+import alfio.model.ContentLanguage;
+import alfio.model.Event;
+import alfio.model.EventDataVersion;
+import alfio.model.system.ConfigurationKeys;
+import alfio.model.user.Organization;
+import alfio.repository.*;
+import alfio.repository.user.OrganizationRepository;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticMessageSource;
+
+import jakarta.servlet.http.HttpSession;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+import static alfio.manager.testSupport.MaybeConfigurationBuilder.existing;
+import static alfio.manager.testSupport.MaybeConfigurationBuilder.missing;
+import static alfio.model.system.ConfigurationKeys.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EventLoaderTest {
+
+    private static final String EVENT_NAME = "event";
+    private static final int EVENT_ID = 1;
+
+    private EventRepository eventRepository;
+    private ConfigurationManager configurationManager;
+    private TicketRepository ticketRepository;
+    private EventDescriptionRepository eventDescriptionRepository;
+    private HttpSession session;
+    private EventLoader eventLoader;
+
+    @BeforeEach
+    void setUp() {
+        eventRepository = mock(EventRepository.class);
+        configurationManager = mock(ConfigurationManager.class);
+        ticketRepository = mock(TicketRepository.class);
+        eventDescriptionRepository = mock(EventDescriptionRepository.class);
+        var messageSourceManager = mock(MessageSourceManager.class);
+        var organizationRepository = mock(OrganizationRepository.class);
+        var event = mock(Event.class);
+        when(event.getId()).thenReturn(EVENT_ID);
+        when(event.getOrganizationId()).thenReturn(2);
+        when(event.getShortName()).thenReturn(EVENT_NAME);
+        when(event.getStatus()).thenReturn(Event.Status.PUBLIC);
+        when(event.getFormat()).thenReturn(Event.EventFormat.ONLINE);
+        when(event.getTimeZone()).thenReturn("UTC");
+        when(event.getBegin()).thenReturn(ZonedDateTime.now(ZoneId.of("UTC")).plusDays(1));
+        when(event.getEnd()).thenReturn(ZonedDateTime.now(ZoneId.of("UTC")).plusDays(2));
+        when(event.getContentLanguages()).thenReturn(List.of(ContentLanguage.ENGLISH));
+        when(eventRepository.findOptionalByShortName(EVENT_NAME)).thenReturn(Optional.of(event));
+        var messageSource = new StaticMessageSource();
+        messageSource.addMessage("common.event.date-format", Locale.ENGLISH, "dd.MM.yyyy");
+        messageSource.addMessage("common.event.time-format", Locale.ENGLISH, "HH:mm");
+        when(messageSourceManager.getMessageSourceForPurchaseContextAndOverride(event)).thenReturn(Pair.of(messageSource, Map.of()));
+        when(organizationRepository.getContactById(2)).thenReturn(new Organization.OrganizationContact("org", "org@example.org"));
+        when(eventDescriptionRepository.findDescriptionByEventIdAsMap(EVENT_ID)).thenReturn(Map.of());
+        var configuration = new EnumMap<ConfigurationKeys, ConfigurationManager.MaybeConfiguration>(ConfigurationKeys.class);
+        Arrays.stream(ConfigurationKeys.values()).forEach(k -> configuration.put(k, missing(k)));
+        configuration.put(DISPLAY_TICKETS_LEFT_INDICATOR, existing(DISPLAY_TICKETS_LEFT_INDICATOR, "true"));
+        configuration.put(GOOGLE_ANALYTICS_KEY, existing(GOOGLE_ANALYTICS_KEY, "ga-key"));
+        configuration.put(GOOGLE_ANALYTICS_ANONYMOUS_MODE, existing(GOOGLE_ANALYTICS_ANONYMOUS_MODE, "true"));
+        when(configurationManager.getFor(anyCollection(), any())).thenReturn(configuration);
+        session = mock(HttpSession.class);
+        when(session.getId()).thenReturn("session-1");
+        eventLoader = new EventLoader(eventRepository, messageSourceManager, eventDescriptionRepository,
+            organizationRepository, configurationManager, mock(TicketCategoryRepository.class), ticketRepository,
+            mock(PromoCodeDiscountRepository.class), mock(SubscriptionRepository.class));
+    }
+
+    @Test
+    void snapshotIsReusedUntilVersionChanges() {
+        when(eventRepository.findDataVersionByShortName(EVENT_NAME)).thenReturn(Optional.of(new EventDataVersion(EVENT_ID, 0)));
+        when(ticketRepository.countFreeTicketsForPublicStatistics(EVENT_ID)).thenReturn(10, 9);
+
+        var first = eventLoader.loadEventInfo(EVENT_NAME, session).orElseThrow();
+        var second = eventLoader.loadEventInfo(EVENT_NAME, session).orElseThrow();
+        verify(eventRepository, times(1)).findOptionalByShortName(EVENT_NAME);
+        verify(eventDescriptionRepository, times(1)).findDescriptionByEventIdAsMap(EVENT_ID);
+        // request-specific data must always be up-to-date
+        assertEquals(10, first.getAvailableTicketsCount());
+        assertEquals(9, second.getAvailableTicketsCount());
+
+        when(eventRepository.findDataVersionByShortName(EVENT_NAME)).thenReturn(Optional.of(new EventDataVersion(EVENT_ID, 1)));
+        assertTrue(eventLoader.loadEventInfo(EVENT_NAME, session).isPresent());
+        verify(eventRepository, times(2)).findOptionalByShortName(EVENT_NAME);
+        verify(eventDescriptionRepository, times(2)).findDescriptionByEventIdAsMap(EVENT_ID);
+    }
+
+    @Test
+    void analyticsClientIdIsBoundToSession() {
+        when(eventRepository.findDataVersionByShortName(EVENT_NAME)).thenReturn(Optional.of(new EventDataVersion(EVENT_ID, 0)));
+        var otherSession = mock(HttpSession.class);
+        when(otherSession.getId()).thenReturn("session-2");
+
+        var first = eventLoader.loadEventInfo(EVENT_NAME, session).orElseThrow().getAnalyticsConfiguration();
+        var second = eventLoader.loadEventInfo(EVENT_NAME, otherSession).orElseThrow().getAnalyticsConfiguration();
+        assertEquals("ga-key", first.getGoogleAnalyticsKey());
+        assertNotNull(first.getClientId());
+        assertNotNull(second.getClientId());
+        assertNotEquals(first.getClientId(), second.getClientId());
+    }
+
+    @Test
+    void disabledEventIsNotReturned() {
+        when(eventRepository.findDataVersionByShortName(EVENT_NAME)).thenReturn(Optional.of(new EventDataVersion(EVENT_ID, 0)));
+        var event = eventRepository.findOptionalByShortName(EVENT_NAME).orElseThrow();
+        when(event.getStatus()).thenReturn(Event.Status.DISABLED);
+        assertTrue(eventLoader.loadEventInfo(EVENT_NAME, session).isEmpty());
+        assertTrue(eventLoader.loadEventInfo("not-existing", session).isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.controller.support;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.eclipse.jetty.ee10.servlet.FilterHolder;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.servlet.ServletHolder;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.web.header.HeaderWriterFilter;
+import org.springframework.security.web.header.writers.XContentTypeOptionsHeaderWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Serves a file through a real Jetty, with the response wrapped by Spring Security
+ */
+class FileResponseWriterJettyTest {
+
+    private static final String CONTENT = "0123456789".repeat(1000);
+
+    @TempDir
+    Path tempDir;
+    private File file;
+    private Server server;
+    private URI uri;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.writeString(tempDir.resolve("file"), CONTENT).toFile();
+        server = new Server(0);
+        var context = new ServletContextHandler();
+        context.addFilter(new FilterHolder(new HeaderWriterFilter(List.of(new XContentTypeOptionsHeaderWriter()))), "/*", EnumSet.of(DispatcherType.REQUEST));
+        context.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                // the content must go straight to the container output stream, bypassing the wrappers
+                FileResponseWriter.write(file, "text/plain", req, new HttpServletResponseWrapper(resp) {
+                    @Override
+                    public ServletOutputStream getOutputStream() {
+                        throw new IllegalStateException("wrapped output stream used");
+                    }
+                });
+            }
+        }), "/file");
+        server.setHandler(context);
+        server.start();
+        uri = URI.create("http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/file");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    void writeWholeFile() throws Exception {
+        var response = httpClient.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals(CONTENT, response.body());
+        assertEquals(String.valueOf(CONTENT.length()), response.headers().firstValue("Content-Length").orElseThrow());
+        // headers added by the security filter on commit are still there
+        assertEquals("nosniff", response.headers().firstValue("X-Content-Type-Options").orElseThrow());
+    }
+
+    @Test
+    void writeRange() throws Exception {
+        var response = httpClient.send(HttpRequest.newBuilder(uri).header("Range", "bytes=10-19").build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(206, response.statusCode());
+        assertEquals("0123456789", response.body());
+        assertEquals("bytes 10-19/" + CONTENT.length(), response.headers().firstValue("Content-Range").orElseThrow());
+        assertEquals("nosniff", response.headers().firstValue("X-Content-Type-Options").orElseThrow());
+    }
+
+    @Test
+    void headRequest() throws Exception {
+        var response = httpClient.send(HttpRequest.newBuilder(uri).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals("", response.body());
+        assertEquals(String.valueOf(CONTENT.length()), response.headers().firstValue("Content-Length").orElseThrow());
+    }
+
+    @Test
+    void repeatedRequests() throws Exception {
+        // each request maps its own region and releases it once written
+        for (int i = 0; i < 50; i++) {
+            assertEquals(CONTENT, httpClient.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString()).body());
+        }
+    }
+}
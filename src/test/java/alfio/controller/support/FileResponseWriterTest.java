@@ -0,0 +1,114 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.controller.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FileResponseWriterTest {
+
+    private static final String CONTENT = "0123456789";
+
+    @TempDir
+    Path tempDir;
+    private File file;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.writeString(tempDir.resolve("file"), CONTENT).toFile();
+        request = new MockHttpServletRequest("GET", "/file/abcd");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void writeWholeFile() throws IOException {
+        FileResponseWriter.write(file, "text/plain", request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void writeRange() throws IOException {
+        request.addHeader("Range", "bytes=2-5");
+        FileResponseWriter.write(file, "text/plain", request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+        assertEquals(4, response.getContentLengthLong());
+        assertArrayEquals("2345".getBytes(StandardCharsets.UTF_8), response.getContentAsByteArray());
+    }
+
+    @Test
+    void writeOpenRange() throws IOException {
+        request.addHeader("Range", "bytes=7-");
+        FileResponseWriter.write(file, "text/plain", request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 7-9/10", response.getHeader("Content-Range"));
+        assertEquals("789", response.getContentAsString());
+    }
+
+    @Test
+    void writeSuffixRange() throws IOException {
+        request.addHeader("Range", "bytes=-3");
+        FileResponseWriter.write(file, "text/plain", request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 7-9/10", response.getHeader("Content-Range"));
+        assertEquals("789", response.getContentAsString());
+    }
+
+    @Test
+    void rangeNotSatisfiable() throws IOException {
+        request.addHeader("Range", "bytes=20-30");
+        FileResponseWriter.write(file, "text/plain", request, response);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void multipleRangesServeWholeFile() throws IOException {
+        request.addHeader("Range", "bytes=0-1,4-5");
+        FileResponseWriter.write(file, "text/plain", request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void headRequest() throws IOException {
+        request.setMethod("HEAD");
+        FileResponseWriter.write(file, "text/plain", request, response);
+        assertEquals(200, response.getStatus());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals("text/plain", response.getContentType());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+}
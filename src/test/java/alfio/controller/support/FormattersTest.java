@@ -17,11 +17,16 @@
 package alfio.controller.support;
 
 import alfio.model.ContentLanguage;
+import alfio.util.MustacheCustomTag;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSources;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.MessageSource;
 import org.springframework.context.support.ResourceBundleMessageSource;
 
 import java.time.ZoneId;
@@ -29,6 +34,10 @@ import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -38,6 +47,8 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class FormattersTest {
 
+    private static final Logger log = LoggerFactory.getLogger(FormattersTest.class);
+
     private static final List<String> FORMATTER_CODES = List.of(
         "common.event.date-format",
         "datetime.pattern",
@@ -75,6 +86,21 @@ class FormattersTest {
         assertEquals("<p><a href=\"https://alf.io\" target=\"_blank\" rel=\"nofollow noopener noreferrer\" aria-label=\"link "+message+"\">link</a></p>", rendered.get("en").trim());
     }
 
+    @Test
+    void cachedRenderingDependsOnLanguage() {
+        var messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("alfio.i18n.public");
+        var english = messageSource.getMessage(Formatters.LINK_NEW_TAB_KEY, null, Locale.ENGLISH);
+        var italian = messageSource.getMessage(Formatters.LINK_NEW_TAB_KEY, null, Locale.ITALIAN);
+        assertNotEquals(english, italian);
+        var description = "[same](https://alf.io)";
+        for (int i = 0; i < 2; i++) {
+            var rendered = Formatters.applyCommonMark(Map.of("en", description, "it", description), messageSource);
+            assertTrue(rendered.get("en").contains("aria-label=\"same " + english + "\""));
+            assertTrue(rendered.get("it").contains("aria-label=\"same " + italian + "\""));
+        }
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"http://localhost:8080", "https://alf.io", "tel:+41991234567", "mailto:hello@example.org"})
     void supportDifferentProtocols(String link) {
@@ -101,4 +127,69 @@ class FormattersTest {
         assertEquals(1, rendered.size());
         assertEquals("<p><a>link</a></p>", rendered.get("en").trim());
     }
-}
\ No newline at end of file
+
+    /**
+     * Replays the Markdown rendering done by the public event endpoints for each request: the event description
+     * ({@code GET /api/v2/public/event/{slug}}) and the descriptions of categories and additional services
+     * ({@code GET /api/v2/public/event/{slug}/ticket-categories}), in four languages.
+     * Run with ALFIO_RUN_BENCHMARKS=true
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "ALFIO_RUN_BENCHMARKS", matches = "true")
+    void publicEventEndpointsBenchmark() {
+        var messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("alfio.i18n.public");
+        var languages = List.of("en", "it", "de", "fr");
+        var eventDescription = localized(languages, lang -> """
+            # Conference (%s)
+
+            Join us for **two days** of talks and workshops. See the [schedule](https://alf.io/schedule) and the
+            [venue](https://alf.io/venue) for details.
+
+            ## Tracks
+            - Backend, with _hands-on_ labs
+            - Frontend
+            - Operations
+
+            > Doors open at 8:30, [contact us](mailto:info@example.org) for any question.
+            """.formatted(lang).repeat(4));
+        var descriptions = IntStream.range(0, 11)
+            .mapToObj(i -> localized(languages, lang -> "Category %d (%s): includes [lunch](https://alf.io/lunch/%d) and **workshop** access".formatted(i, lang, i)))
+            .toList();
+        int requests = 2_000;
+
+        BiFunction<Map<String, String>, MessageSource, Map<String, String>> uncachedRender = (in, ms) -> in.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> MustacheCustomTag.renderToHtmlCommonmarkEscaped(e.getValue(),
+                ms.getMessage(Formatters.LINK_NEW_TAB_KEY, null, Locale.forLanguageTag(e.getKey())))));
+        BiFunction<Map<String, String>, MessageSource, Map<String, String>> cachedRender = Formatters::applyCommonMark;
+
+        // warm-up
+        simulateRequests(100, eventDescription, descriptions, messageSource, uncachedRender);
+        simulateRequests(100, eventDescription, descriptions, messageSource, cachedRender);
+
+        long uncached = simulateRequests(requests, eventDescription, descriptions, messageSource, uncachedRender);
+        long cached = simulateRequests(requests, eventDescription, descriptions, messageSource, cachedRender);
+        log.info("{} requests to the public event endpoints: {} ms without cache, {} ms with cache",
+            requests, uncached / 1_000_000, cached / 1_000_000);
+        assertTrue(cached < uncached, "cached rendering should be faster");
+    }
+
+    private static Map<String, String> localized(List<String> languages, Function<String, String> text) {
+        return languages.stream().collect(Collectors.toMap(l -> l, text));
+    }
+
+    private static long simulateRequests(int requests,
+                                         Map<String, String> eventDescription,
+                                         List<Map<String, String>> descriptions,
+                                         MessageSource messageSource,
+                                         BiFunction<Map<String, String>, MessageSource, Map<String, String>> render) {
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            assertEquals(eventDescription.size(), render.apply(eventDescription, messageSource).size());
+            for (var description : descriptions) {
+                assertEquals(description.size(), render.apply(description, messageSource).size());
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.controller.support;
+
+import ch.digitalfondue.jfiveparse.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.UriUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static alfio.controller.Constants.NONCE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndexPageTemplateTest {
+
+    private static final String INDEX = "<!doctype html><html lang=\"en\" class=\"app\"><head><meta charset=\"utf-8\"><title>alf.io</title>"
+        + "<script src=\"runtime.js\" type=\"module\"></script><link rel=\"stylesheet\" href=\"styles.css\"></head>"
+        + "<body><app-root></app-root><script src=\"main.js\" type=\"module\"></script></body></html>";
+
+    @Test
+    void outputIsEquivalentToDomSerialization() throws Exception {
+        var source = JFiveParse.parse(INDEX);
+        var template = IndexPageTemplate.compile(source);
+        var json = "{\"key\":\"value & <other>\"}";
+        var css = "body { color: red; }";
+
+        var head = new IndexPageTemplate.Head()
+            .script(json, "application/json", "preload-info", null)
+            .meta("XSRF_TOKEN", "token\"&")
+            .style(css)
+            .script(json, "application/json", "preload-bundle", "it");
+        var out = new ByteArrayOutputStream();
+        template.write(out, "the-nonce", "it", true, head);
+
+        // build the same page by manipulating the DOM, like it was done before
+        var document = (Document) source.cloneNode(true);
+        document.getElementsByTagName("script").forEach(e -> e.setAttribute(NONCE, "the-nonce"));
+        var html = document.getElementsByTagName("html").get(0);
+        html.removeAttribute("lang");
+        html.setAttribute("lang", "it");
+        html.setAttribute("data-signed-up", "true");
+        var domHead = document.getElementsByTagName("head").get(0);
+        domHead.appendChild(script(json, "preload-info", null));
+        var meta = new Element("meta");
+        meta.setAttribute("name", "XSRF_TOKEN");
+        meta.setAttribute("content", "token\"&");
+        domHead.appendChild(meta);
+        var style = new Element("style");
+        style.setAttribute("type", "text/css");
+        style.appendChild(new Text(css));
+        domHead.appendChild(style);
+        domHead.appendChild(script(json, "preload-bundle", "it"));
+
+        assertEquals(JFiveParse.serialize(document), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void templateIsReusable() throws Exception {
+        var template = IndexPageTemplate.compile(JFiveParse.parse(INDEX));
+        var first = new ByteArrayOutputStream();
+        template.write(first, "nonce-1", "en", false, new IndexPageTemplate.Head().meta("GID", "1"));
+        var second = new ByteArrayOutputStream();
+        template.write(second, "nonce-2", "de", false, new IndexPageTemplate.Head().meta("GID", "2"));
+        var parsed = JFiveParse.parse(second.toString(StandardCharsets.UTF_8));
+        assertEquals("de", parsed.getElementsByTagName("html").get(0).getAttribute("lang"));
+        parsed.getElementsByTagName("script").forEach(e -> assertEquals("nonce-2", e.getAttribute(NONCE)));
+        assertEquals(first.size(), second.size());
+    }
+
+    private static Element script(String content, String id, String param) {
+        var e = new Element("script");
+        e.appendChild(new Text(UriUtils.encodeFragment(content, StandardCharsets.UTF_8)));
+        e.setAttribute("type", "application/json");
+        e.setAttribute("id", id);
+        if (param != null) {
+            e.setAttribute("data-param", param);
+        }
+        return e;
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.TestConfiguration;
+import alfio.config.DataSourceConfiguration;
+import alfio.config.Initializer;
+import alfio.manager.user.UserManager;
+import alfio.model.Event;
+import alfio.model.PromoCodeDiscount;
+import alfio.model.SpecialPrice;
+import alfio.model.TicketCategory;
+import alfio.model.metadata.AlfioMetadata;
+import alfio.model.modification.DateTimeModification;
+import alfio.model.modification.TicketCategoryModification;
+import alfio.model.modification.TicketReservationModification;
+import alfio.model.modification.TicketReservationWithOptionalCodeModification;
+import alfio.repository.EventRepository;
+import alfio.repository.PromoCodeDiscountRepository;
+import alfio.repository.SpecialPriceRepository;
+import alfio.repository.TicketCategoryRepository;
+import alfio.repository.user.OrganizationRepository;
+import alfio.test.util.AlfioIntegrationTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static alfio.manager.TicketReservationManagerIntegrationTest.DESCRIPTION;
+import static alfio.test.util.IntegrationTestUtil.AVAILABLE_SEATS;
+import static alfio.test.util.IntegrationTestUtil.initEvent;
+import static alfio.test.util.TestUtil.clockProvider;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures the throughput of parallel reservations sharing the same access code.
+ * Run with ALFIO_RUN_BENCHMARKS=true.
+ */
+@AlfioIntegrationTest
+@ContextConfiguration(classes = {DataSourceConfiguration.class, TestConfiguration.class})
+@ActiveProfiles({Initializer.PROFILE_DEV, Initializer.PROFILE_DISABLE_JOBS, Initializer.PROFILE_INTEGRATION_TEST})
+@EnabledIfEnvironmentVariable(named = "ALFIO_RUN_BENCHMARKS", matches = "true")
+class AccessCodeContentionBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessCodeContentionBenchmarkTest.class);
+    private static final String ACCESS_CODE = "MY_BENCHMARK_ACCESS_CODE";
+    private static final int RESERVATIONS_PER_ROUND = 500;
+    private static final int TOKENS = RESERVATIONS_PER_ROUND * 2;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+    @Autowired
+    private UserManager userManager;
+    @Autowired
+    private TicketCategoryRepository ticketCategoryRepository;
+    @Autowired
+    private TicketReservationManager ticketReservationManager;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private PromoCodeDiscountRepository promoCodeDiscountRepository;
+    @Autowired
+    private EventManager eventManager;
+    @Autowired
+    private SpecialPriceTokenGenerator specialPriceTokenGenerator;
+    @Autowired
+    private PlatformTransactionManager platformTransactionManager;
+    @Autowired
+    private SpecialPriceRepository specialPriceRepository;
+
+    private Event event;
+    private String username;
+    private int categoryId;
+    private PromoCodeDiscount accessCode;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(platformTransactionManager, new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        transactionTemplate.executeWithoutResult(tx -> {
+            var category = new TicketCategoryModification(null, "restricted", TicketCategory.TicketAccessType.INHERIT, AVAILABLE_SEATS,
+                new DateTimeModification(LocalDate.now(clockProvider().getClock()), LocalTime.now(clockProvider().getClock())),
+                new DateTimeModification(LocalDate.now(clockProvider().getClock()), LocalTime.now(clockProvider().getClock())),
+                DESCRIPTION, BigDecimal.TEN, true, "", true, null,
+                null, null, null, null, null, TicketCategory.TicketCheckInStrategy.ONCE_PER_EVENT, null, AlfioMetadata.empty());
+            var eventAndUser = initEvent(List.of(category), organizationRepository, userManager, eventManager, eventRepository);
+            event = eventAndUser.getLeft();
+            username = eventAndUser.getRight();
+            var ticketCategory = ticketCategoryRepository.findAllTicketCategories(event.getId()).get(0);
+            categoryId = ticketCategory.getId();
+            // only tokens are claimed here, so we don't need as many tickets
+            specialPriceRepository.bulkInsert(ticketCategory, TOKENS - AVAILABLE_SEATS);
+            specialPriceTokenGenerator.generatePendingCodesForCategory(categoryId);
+            var now = ZonedDateTime.now(clockProvider().getClock());
+            eventManager.addPromoCode(ACCESS_CODE, event.getId(), null, now, now.plusDays(1), 0, null, null, TOKENS, "description", "email@reference.ch", PromoCodeDiscount.CodeType.ACCESS, categoryId, null);
+            accessCode = promoCodeDiscountRepository.findPromoCodeInEventOrOrganization(event.getId(), ACCESS_CODE).orElseThrow();
+        });
+    }
+
+    @Test
+    void parallelReservationsScaleWithCores() throws Exception {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        var codes = new HashSet<String>();
+        long sequential = reserve(1, codes);
+        long parallel = reserve(threads, codes);
+        assertEquals(RESERVATIONS_PER_ROUND * 2, codes.size());
+        log.info("{} access code reservations: {} ms with 1 thread ({} res/s), {} ms with {} threads ({} res/s)",
+            RESERVATIONS_PER_ROUND, sequential, throughput(sequential), parallel, threads, throughput(parallel));
+    }
+
+    private long reserve(int threads, Set<String> codes) throws InterruptedException, ExecutionException {
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var tasks = new ArrayList<Callable<List<SpecialPrice>>>();
+            for (int i = 0; i < RESERVATIONS_PER_ROUND; i++) {
+                tasks.add(() -> transactionTemplate.execute(tx -> {
+                    var tr = new TicketReservationModification();
+                    tr.setAmount(1);
+                    tr.setTicketCategoryId(categoryId);
+                    return ticketReservationManager.reserveTokensForAccessCode(new TicketReservationWithOptionalCodeModification(tr, Optional.empty()), accessCode);
+                }));
+            }
+            long start = System.nanoTime();
+            var results = executor.invokeAll(tasks);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            for (Future<List<SpecialPrice>> result : results) {
+                result.get().forEach(sp -> codes.add(sp.getCode()));
+            }
+            return elapsed;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long throughput(long elapsedMillis) {
+        return RESERVATIONS_PER_ROUND * 1000L / Math.max(elapsedMillis, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(tx -> eventManager.deleteEvent(event.getId(), username));
+    }
+}
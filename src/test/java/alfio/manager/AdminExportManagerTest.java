@@ -0,0 +1,182 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.manager.support.ExportData;
+import alfio.manager.system.AdminJobExecutor.JobName;
+import alfio.model.Event;
+import alfio.model.system.AdminExport;
+import alfio.repository.EventRepository;
+import alfio.repository.system.AdminExportRepository;
+import alfio.repository.system.AdminJobQueueRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static alfio.test.util.TestUtil.clockProvider;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AdminExportManagerTest {
+
+    private static final String USERNAME = "admin";
+    private static final String EXPORT_ID = "export-id";
+    private AdminExportRepository adminExportRepository;
+    private AdminJobQueueRepository adminJobQueueRepository;
+    private EventExportManager eventExportManager;
+    private ExportManager exportManager;
+    private AdminExportManager adminExportManager;
+
+    @BeforeEach
+    void setUp() {
+        adminExportRepository = mock(AdminExportRepository.class);
+        adminJobQueueRepository = mock(AdminJobQueueRepository.class);
+        eventExportManager = mock(EventExportManager.class);
+        exportManager = mock(ExportManager.class);
+        var eventRepository = mock(EventRepository.class);
+        var event = mock(Event.class);
+        when(event.getShortName()).thenReturn("event");
+        when(eventRepository.findById(1)).thenReturn(event);
+        adminExportManager = new AdminExportManager(adminExportRepository,
+            adminJobQueueRepository,
+            eventExportManager,
+            exportManager,
+            eventRepository,
+            clockProvider(),
+            mock(PlatformTransactionManager.class),
+            new MockEnvironment());
+    }
+
+    @Test
+    void returnExistingExport() {
+        var existing = export(AdminExport.Status.IN_PROGRESS, "csv");
+        when(adminExportRepository.findReusable(anyString(), any())).thenReturn(Optional.of(existing));
+        var result = adminExportManager.requestExport(AdminExport.Type.ATTENDEES, 1, "csv", Map.of("fields", List.of("ID")), USERNAME);
+        assertSame(existing, result);
+        verify(adminExportRepository, never()).insert(any(), any(), any(), any(), any(), any(), any(), any(), any());
+        verifyNoInteractions(adminJobQueueRepository);
+    }
+
+    @Test
+    void scheduleGenerationForNewExport() {
+        when(adminExportRepository.findReusable(anyString(), any())).thenReturn(Optional.empty());
+        when(adminExportRepository.insert(anyString(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn(1);
+        when(adminExportRepository.findOptionalById(anyString())).thenReturn(Optional.of(export(AdminExport.Status.PENDING, "excel")));
+        adminExportManager.requestExport(AdminExport.Type.SPONSOR_SCANS, 1, "excel", Map.of(), USERNAME);
+        var idCaptor = ArgumentCaptor.forClass(String.class);
+        verify(adminExportRepository).insert(idCaptor.capture(), eq(AdminExport.Type.SPONSOR_SCANS), eq(1), eq("excel"), eq(USERNAME), anyString(), eq(Map.of()), any(), any());
+        verify(adminJobQueueRepository).schedule(eq(JobName.GENERATE_EXPORT), any(), eq(Map.of(AdminExportManager.EXPORT_ID, idCaptor.getValue())), isNull());
+    }
+
+    @Test
+    void reservationsExportIsAlwaysExcel() {
+        when(adminExportRepository.findReusable(anyString(), any())).thenReturn(Optional.empty());
+        when(adminExportRepository.insert(anyString(), any(), any(), any(), any(), any(), any(), any(), any())).thenReturn(1);
+        when(adminExportRepository.findOptionalById(anyString())).thenReturn(Optional.of(export(AdminExport.Status.PENDING, "excel")));
+        var parameters = Map.of("from", List.of("2024-01-01"), "to", List.of("2024-01-31"));
+        adminExportManager.requestExport(AdminExport.Type.RESERVATIONS, null, "csv", parameters, USERNAME);
+        verify(adminExportRepository).insert(anyString(), eq(AdminExport.Type.RESERVATIONS), isNull(), eq("excel"), eq(USERNAME), anyString(), eq(parameters), any(), any());
+    }
+
+    @Test
+    void requestHashDoesNotDependOnParametersOrder() {
+        var first = AdminExportManager.requestHash(AdminExport.Type.ATTENDEES, 1, "csv", Map.of("a", List.of("1"), "b", List.of("2")), USERNAME);
+        var second = AdminExportManager.requestHash(AdminExport.Type.ATTENDEES, 1, "csv", Map.of("b", List.of("2"), "a", List.of("1")), USERNAME);
+        assertEquals(first, second);
+        assertNotEquals(first, AdminExportManager.requestHash(AdminExport.Type.ATTENDEES, 1, "csv", Map.of("a", List.of("1"), "b", List.of("2")), "other"));
+    }
+
+    @Test
+    void generateCsvExport() {
+        when(adminExportRepository.findOptionalById(EXPORT_ID)).thenReturn(Optional.of(export(AdminExport.Status.PENDING, "csv")));
+        var rows = Stream.of(new String[] {"1", "=cmd"}, new String[] {"2", "b"});
+        when(eventExportManager.attendees("event", List.of("ID", "Name"), USERNAME))
+            .thenReturn(new ExportData("event-export", "event export", new String[] {"ID", "Name"}, 2, rows));
+        adminExportManager.generate(EXPORT_ID);
+        verify(adminExportRepository).markInProgress(EXPORT_ID, 2);
+        var contentCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(adminExportRepository).insertChunk(eq(EXPORT_ID), eq(0), contentCaptor.capture());
+        var content = new String(contentCaptor.getValue(), StandardCharsets.UTF_8);
+        assertEquals("\uFEFFID,Name\n1,\"\t=cmd\"\n2,b\n", content);
+        verify(adminExportRepository).markReady(eq(EXPORT_ID), eq("event-export.csv"), eq("text/csv;charset=UTF-8"), eq((long) contentCaptor.getValue().length), any());
+        verify(adminExportRepository, never()).markFailed(any(), any(), any());
+    }
+
+    @Test
+    void generateReservationsExport() {
+        when(adminExportRepository.findOptionalById(EXPORT_ID)).thenReturn(Optional.of(reservationsExport()));
+        var header = new String[] {"Event Name", "Reservation ID"};
+        when(exportManager.reservationsExport(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), USERNAME))
+            .thenReturn(new ExportData("all-reservations", 3, List.of(
+                new ExportData.Sheet("first", header, Stream.of(new String[] {"First", "1"}, new String[] {"First", "2"})),
+                new ExportData.Sheet("second", header, Stream.<String[]>of(new String[] {"Second", "3"})))));
+        adminExportManager.generate(EXPORT_ID);
+        verify(adminExportRepository).markInProgress(EXPORT_ID, 3);
+        verify(adminExportRepository).insertChunk(eq(EXPORT_ID), eq(0), any());
+        verify(adminExportRepository).markReady(eq(EXPORT_ID), eq("all-reservations.xlsx"), eq("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"), anyLong(), any());
+        verifyNoInteractions(eventExportManager);
+    }
+
+    @Test
+    void failEmptyReservationsExport() {
+        when(adminExportRepository.findOptionalById(EXPORT_ID)).thenReturn(Optional.of(reservationsExport()));
+        when(exportManager.reservationsExport(any(), any(), any())).thenReturn(new ExportData("all-reservations", 0, List.of()));
+        adminExportManager.generate(EXPORT_ID);
+        verify(adminExportRepository).markFailed(eq(EXPORT_ID), eq("No reservations found for the selected period"), any());
+        verify(adminExportRepository, never()).markInProgress(any(), anyInt());
+    }
+
+    @Test
+    void markExportAsFailed() {
+        when(adminExportRepository.findOptionalById(EXPORT_ID)).thenReturn(Optional.of(export(AdminExport.Status.PENDING, "csv")));
+        when(eventExportManager.attendees(any(), any(), any())).thenThrow(new IllegalStateException("not allowed"));
+        adminExportManager.generate(EXPORT_ID);
+        verify(adminExportRepository).markFailed(eq(EXPORT_ID), eq("not allowed"), any());
+        verify(adminExportRepository, never()).markReady(any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void skipCompletedExport() {
+        when(adminExportRepository.findOptionalById(EXPORT_ID)).thenReturn(Optional.of(export(AdminExport.Status.READY, "csv")));
+        adminExportManager.generate(EXPORT_ID);
+        verifyNoInteractions(eventExportManager);
+        verify(adminExportRepository, never()).markInProgress(any(), anyInt());
+    }
+
+    private static AdminExport export(AdminExport.Status status, String format) {
+        var now = ZonedDateTime.now(clockProvider().getClock());
+        return new AdminExport(EXPORT_ID, AdminExport.Type.ATTENDEES, 1, format, USERNAME,
+            Map.of("fields", List.of("ID", "Name")), status, 0, null, null, null, null, null, now, null, now.plusDays(1));
+    }
+
+    private static AdminExport reservationsExport() {
+        var now = ZonedDateTime.now(clockProvider().getClock());
+        return new AdminExport(EXPORT_ID, AdminExport.Type.RESERVATIONS, null, "excel", USERNAME,
+            Map.of("from", List.of("2024-01-01"), "to", List.of("2024-01-31")), AdminExport.Status.PENDING, 0, null, null, null, null, null, now, null, now.plusDays(1));
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.model.AdminReservationRequest;
+import alfio.model.Event;
+import alfio.model.PurchaseContext;
+import alfio.model.TicketReservation;
+import alfio.model.modification.AdminReservationModification;
+import alfio.model.result.ErrorCode;
+import alfio.model.result.Result;
+import alfio.model.user.User;
+import alfio.repository.AdminReservationRequestRepository;
+import alfio.repository.EventRepository;
+import alfio.repository.user.UserRepository;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static alfio.test.util.TestUtil.clockProvider;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+class AdminReservationRequestManagerTest {
+
+    private static final long EVENT_ID = 1L;
+    private static final long OTHER_EVENT_ID = 2L;
+    private AdminReservationRequestRepository adminReservationRequestRepository;
+    private AdminReservationManager adminReservationManager;
+    private AdminReservationRequestManager manager;
+    private final List<List<MapSqlParameterSource>> statusUpdates = new ArrayList<>();
+
+    @BeforeEach
+    void init() {
+        adminReservationRequestRepository = mock(AdminReservationRequestRepository.class);
+        adminReservationManager = mock(AdminReservationManager.class);
+        var eventRepository = mock(EventRepository.class);
+        var userRepository = mock(UserRepository.class);
+        var transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> mock(TransactionStatus.class));
+        var event = mock(Event.class);
+        when(event.getShortName()).thenReturn("event");
+        when(eventRepository.findOptionalById(anyInt())).thenReturn(Optional.of(event));
+        var user = mock(User.class);
+        when(user.getUsername()).thenReturn("user");
+        when(userRepository.findOptionalById(anyInt())).thenReturn(Optional.of(user));
+        doAnswer(invocation -> statusUpdates.add(new ArrayList<>(invocation.getArgument(0))))
+            .when(adminReservationRequestRepository).updateStatus(anyList());
+        manager = new AdminReservationRequestManager(adminReservationManager, mock(EventManager.class), userRepository,
+            adminReservationRequestRepository, eventRepository, transactionManager, clockProvider(), new MockEnvironment());
+    }
+
+    @Test
+    void processRequestsPartitionedByEvent() {
+        var firstBatch = requests(EVENT_ID, AdminReservationRequestManager.BATCH_SIZE);
+        var secondBatch = requests(EVENT_ID, 1);
+        var otherEvent = requests(OTHER_EVENT_ID, 2);
+        when(adminReservationRequestRepository.findEventsWithPendingRequests()).thenReturn(List.of(EVENT_ID, OTHER_EVENT_ID));
+        when(adminReservationRequestRepository.findPendingForUpdate(EVENT_ID, AdminReservationRequestManager.BATCH_SIZE)).thenReturn(firstBatch, secondBatch);
+        when(adminReservationRequestRepository.findPendingForUpdate(OTHER_EVENT_ID, AdminReservationRequestManager.BATCH_SIZE)).thenReturn(otherEvent);
+        var reservation = mock(TicketReservation.class);
+        when(reservation.getId()).thenReturn("reservation-id");
+        when(adminReservationManager.createReservation(any(), anyString(), anyString()))
+            .thenReturn(Result.success(Pair.of(reservation, List.of())));
+        when(adminReservationManager.confirmReservation(any(), anyString(), anyString(), anyString(), any(), any(), any()))
+            .thenReturn(Result.success(Triple.of(reservation, List.of(), (PurchaseContext) mock(Event.class))));
+
+        var result = manager.processPendingReservations();
+
+        assertEquals(Pair.of(AdminReservationRequestManager.BATCH_SIZE + 3, 0), result);
+        verify(adminReservationRequestRepository, times(2)).findPendingForUpdate(EVENT_ID, AdminReservationRequestManager.BATCH_SIZE);
+        verify(adminReservationRequestRepository).findPendingForUpdate(OTHER_EVENT_ID, AdminReservationRequestManager.BATCH_SIZE);
+        // one status update for each batch
+        assertEquals(3, statusUpdates.size());
+    }
+
+    @Test
+    void reportFailures() {
+        var requests = requests(EVENT_ID, 2);
+        when(adminReservationRequestRepository.findEventsWithPendingRequests()).thenReturn(List.of(EVENT_ID));
+        when(adminReservationRequestRepository.findPendingForUpdate(EVENT_ID, AdminReservationRequestManager.BATCH_SIZE)).thenReturn(requests);
+        when(adminReservationManager.createReservation(any(), anyString(), anyString()))
+            .thenReturn(Result.error(ErrorCode.custom("error", "error")));
+
+        var result = manager.processPendingReservations();
+
+        assertEquals(Pair.of(0, 2), result);
+        assertEquals(1, statusUpdates.size());
+        assertEquals(AdminReservationRequest.Status.ERROR.name(), statusUpdates.get(0).get(0).getValue("status"));
+    }
+
+    @Test
+    void doNothingIfThereAreNoPendingRequests() {
+        when(adminReservationRequestRepository.findEventsWithPendingRequests()).thenReturn(List.of());
+        assertEquals(Pair.of(0, 0), manager.processPendingReservations());
+        verify(adminReservationRequestRepository, never()).findPendingForUpdate(anyLong(), anyInt());
+    }
+
+    private static List<AdminReservationRequest> requests(long eventId, int count) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            var request = mock(AdminReservationRequest.class);
+            when(request.getId()).thenReturn(eventId * 1000 + i);
+            when(request.getEventId()).thenReturn(eventId);
+            when(request.getUserId()).thenReturn(1L);
+            when(request.getBody()).thenReturn(mock(AdminReservationModification.class));
+            return request;
+        }).toList();
+    }
+}
@@ -53,7 +53,7 @@ class BillingDocumentManagerTest {
     private static final String ORIGINAL_INVOICE_NUMBER = "ORIGINAL";
     private ExtensionManager extensionManager;
     private AuditingRepository auditingRepository;
-    private InvoiceSequencesRepository invoiceSequencesRepository;
+    private BillingDocumentNumberAllocator billingDocumentNumberAllocator;
     private ConfigurationManager configurationManager;
     private PaymentSpecification spec;
     private TotalPrice totalPrice;
@@ -69,7 +69,7 @@ class BillingDocumentManagerTest {
         var ticketReservationRepository = mock(TicketReservationRepository.class);
         extensionManager = mock(ExtensionManager.class);
         auditingRepository = mock(AuditingRepository.class);
-        invoiceSequencesRepository = mock(InvoiceSequencesRepository.class);
+        billingDocumentNumberAllocator = mock(BillingDocumentNumberAllocator.class);
         configurationManager = mock(ConfigurationManager.class);
         spec = mock(PaymentSpecification.class);
         totalPrice = mock(TotalPrice.class);
@@ -98,7 +98,7 @@ class BillingDocumentManagerTest {
             ticketReservationRepository,
             TestUtil.FIXED_TIME_CLOCK,
             extensionManager,
-            invoiceSequencesRepository
+            billingDocumentNumberAllocator
         );
     }
 
@@ -118,8 +118,7 @@ class BillingDocumentManagerTest {
         when(spec.isInvoiceRequested()).thenReturn("1".equals(invoiceRequested));
         assertTrue(billingDocumentManager.generateInvoiceNumber(spec, totalPrice).isEmpty());
         verify(configurationManager, never()).getFor(ConfigurationKeys.INVOICE_NUMBER_PATTERN, configurationLevel);
-        verify(invoiceSequencesRepository, never()).lockSequenceForUpdate(ORG_ID);
-        verify(invoiceSequencesRepository, never()).incrementSequenceFor(ORG_ID);
+        verify(billingDocumentNumberAllocator, never()).allocateInvoiceNumber(anyInt(), anyString());
     }
 
     @Test
@@ -129,13 +128,13 @@ class BillingDocumentManagerTest {
         when(spec.isInvoiceRequested()).thenReturn(true);
         when(extensionManager.handleInvoiceGeneration(eq(spec), eq(totalPrice), eq(billingDetails), any()))
             .thenReturn(Optional.empty());
-        when(invoiceSequencesRepository.lockSequenceForUpdate(ORG_ID)).thenReturn(123);
+        when(billingDocumentNumberAllocator.allocateInvoiceNumber(ORG_ID, RESERVATION_ID)).thenReturn(123);
         when(configurationManager.getFor(ConfigurationKeys.INVOICE_NUMBER_PATTERN, configurationLevel))
             .thenReturn(MaybeConfigurationBuilder.missing(ConfigurationKeys.INVOICE_NUMBER_PATTERN));
         var invoiceNumberOptional = billingDocumentManager.generateInvoiceNumber(spec, totalPrice);
         assertTrue(invoiceNumberOptional.isPresent());
         assertEquals("123", invoiceNumberOptional.get());
-        verify(invoiceSequencesRepository).incrementSequenceFor(ORG_ID);
+        verify(billingDocumentNumberAllocator).allocateInvoiceNumber(ORG_ID, RESERVATION_ID);
         verify(auditingRepository, never()).insert(eq(RESERVATION_ID), any(), eq(purchaseContext), eq(EXTERNAL_INVOICE_NUMBER), any(), eq(RESERVATION), eq(RESERVATION_ID), any());
     }
 
@@ -150,13 +149,13 @@ class BillingDocumentManagerTest {
         when(spec.isInvoiceRequested()).thenReturn(true);
         when(extensionManager.handleInvoiceGeneration(eq(spec), eq(totalPrice), eq(billingDetails), any()))
             .thenReturn(Optional.empty());
-        when(invoiceSequencesRepository.lockSequenceForUpdate(ORG_ID)).thenReturn(123);
+        when(billingDocumentNumberAllocator.allocateInvoiceNumber(ORG_ID, RESERVATION_ID)).thenReturn(123);
         when(configurationManager.getFor(ConfigurationKeys.INVOICE_NUMBER_PATTERN, configurationLevel))
             .thenReturn(MaybeConfigurationBuilder.existing(ConfigurationKeys.INVOICE_NUMBER_PATTERN, pattern));
         var invoiceNumberOptional = billingDocumentManager.generateInvoiceNumber(spec, totalPrice);
         assertTrue(invoiceNumberOptional.isPresent());
         assertEquals(expected, invoiceNumberOptional.get());
-        verify(invoiceSequencesRepository).incrementSequenceFor(ORG_ID);
+        verify(billingDocumentNumberAllocator).allocateInvoiceNumber(ORG_ID, RESERVATION_ID);
         verify(auditingRepository, never()).insert(eq(RESERVATION_ID), any(), eq(purchaseContext), eq(EXTERNAL_INVOICE_NUMBER), any(), eq(RESERVATION), eq(RESERVATION_ID), any());
     }
 
@@ -173,8 +172,7 @@ class BillingDocumentManagerTest {
         assertTrue(invoiceNumberOptional.isPresent());
         assertEquals("external", invoiceNumberOptional.get());
         verify(configurationManager, never()).getFor(ConfigurationKeys.INVOICE_NUMBER_PATTERN, configurationLevel);
-        verify(invoiceSequencesRepository, never()).lockSequenceForUpdate(ORG_ID);
-        verify(invoiceSequencesRepository, never()).incrementSequenceFor(ORG_ID);
+        verify(billingDocumentNumberAllocator, never()).allocateInvoiceNumber(anyInt(), anyString());
         verify(auditingRepository).insert(eq(RESERVATION_ID), any(), eq(purchaseContext), eq(EXTERNAL_INVOICE_NUMBER), any(), eq(RESERVATION), eq(RESERVATION_ID), eq(List.of(Map.of("invoiceNumber", "external"))));
     }
 
@@ -188,7 +186,7 @@ class BillingDocumentManagerTest {
         var creditNoteNumber = billingDocumentManager.generateCreditNoteNumber(purchaseContext, ticketReservation);
         assertNotNull(creditNoteNumber);
         assertEquals(ORIGINAL_INVOICE_NUMBER, creditNoteNumber);
-        verify(invoiceSequencesRepository, never()).incrementSequenceFor(ORG_ID, BillingDocument.Type.CREDIT_NOTE);
+        verify(billingDocumentNumberAllocator, never()).nextCreditNoteNumber(ORG_ID);
         verify(auditingRepository, never()).insert(eq(RESERVATION_ID), any(), eq(purchaseContext), eq(EXTERNAL_INVOICE_NUMBER), any(), eq(RESERVATION), eq(RESERVATION_ID), any());
     }
 
@@ -203,7 +201,7 @@ class BillingDocumentManagerTest {
         assertNotNull(creditNoteNumber);
         assertEquals("external", creditNoteNumber);
         verify(configurationManager, never()).getFor(ConfigurationKeys.REUSE_INVOICE_NUMBER_FOR_CREDIT_NOTE, configurationLevel);
-        verify(invoiceSequencesRepository, never()).incrementSequenceFor(ORG_ID, BillingDocument.Type.CREDIT_NOTE);
+        verify(billingDocumentNumberAllocator, never()).nextCreditNoteNumber(ORG_ID);
         verify(auditingRepository).insert(eq(RESERVATION_ID), any(), eq(purchaseContext), eq(EXTERNAL_CREDIT_NOTE_NUMBER), any(), eq(RESERVATION), eq(RESERVATION_ID), eq(List.of(Map.of(CREDIT_NOTE_NUMBER, creditNoteNumber))));
     }
 
@@ -214,13 +212,13 @@ class BillingDocumentManagerTest {
         when(ticketReservation.getInvoiceNumber()).thenReturn(ORIGINAL_INVOICE_NUMBER);
         when(extensionManager.handleCreditNoteGeneration(purchaseContext, RESERVATION_ID, ORIGINAL_INVOICE_NUMBER, organization))
             .thenReturn(Optional.empty());
-        when(invoiceSequencesRepository.lockSequenceForUpdate(ORG_ID, BillingDocument.Type.CREDIT_NOTE)).thenReturn(123);
+        when(billingDocumentNumberAllocator.nextCreditNoteNumber(ORG_ID)).thenReturn(123);
         when(configurationManager.getFor(ConfigurationKeys.INVOICE_NUMBER_PATTERN, configurationLevel))
             .thenReturn(MaybeConfigurationBuilder.missing(ConfigurationKeys.INVOICE_NUMBER_PATTERN));
         var creditNoteNumber = billingDocumentManager.generateCreditNoteNumber(purchaseContext, ticketReservation);
         assertNotNull(creditNoteNumber);
         assertEquals("123", creditNoteNumber);
-        verify(invoiceSequencesRepository).incrementSequenceFor(ORG_ID, BillingDocument.Type.CREDIT_NOTE);
+        verify(billingDocumentNumberAllocator).nextCreditNoteNumber(ORG_ID);
         verify(auditingRepository, never()).insert(eq(RESERVATION_ID), any(), eq(purchaseContext), eq(EXTERNAL_INVOICE_NUMBER), any(), eq(RESERVATION), eq(RESERVATION_ID), any());
     }
 
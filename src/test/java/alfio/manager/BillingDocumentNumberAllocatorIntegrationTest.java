@@ -0,0 +1,150 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.TestConfiguration;
+import alfio.config.DataSourceConfiguration;
+import alfio.config.Initializer;
+import alfio.manager.user.UserManager;
+import alfio.model.modification.OrganizationModification;
+import alfio.repository.user.OrganizationRepository;
+import alfio.test.util.AlfioIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@AlfioIntegrationTest
+@ContextConfiguration(classes = {DataSourceConfiguration.class, TestConfiguration.class})
+@ActiveProfiles({Initializer.PROFILE_DEV, Initializer.PROFILE_DISABLE_JOBS, Initializer.PROFILE_INTEGRATION_TEST})
+class BillingDocumentNumberAllocatorIntegrationTest {
+
+    private static final int PARALLEL_CONFIRMATIONS = 8;
+
+    @Autowired
+    private BillingDocumentNumberAllocator billingDocumentNumberAllocator;
+    @Autowired
+    private UserManager userManager;
+    @Autowired
+    private OrganizationRepository organizationRepository;
+    @Autowired
+    private PlatformTransactionManager platformTransactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private int organizationId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(platformTransactionManager, new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        var organizationName = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(tx -> userManager.createOrganization(new OrganizationModification(null, organizationName, "email@example.com", "org", null, null), null));
+        organizationId = organizationRepository.findByName(organizationName).orElseThrow().getId();
+    }
+
+    @Test
+    void parallelConfirmationsDoNotBlockEachOther() throws Exception {
+        var pool = Executors.newFixedThreadPool(PARALLEL_CONFIRMATIONS);
+        try {
+            // same sequence as ReservationFinalizer: the number is committed in a short transaction, then the
+            // reservation is completed in a second one, which stays open until all the others have obtained their number.
+            // If the sequence lock were held until the completion, only one of them could proceed and the latch would time out
+            var allAllocated = new CountDownLatch(PARALLEL_CONFIRMATIONS);
+            var tasks = new ArrayList<Callable<Integer>>();
+            for (int i = 0; i < PARALLEL_CONFIRMATIONS; i++) {
+                var reservationId = UUID.randomUUID().toString();
+                boolean failCompletion = i % 2 == 0;
+                tasks.add(() -> {
+                    int number = Objects.requireNonNull(transactionTemplate.execute(tx -> billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, reservationId)));
+                    try {
+                        transactionTemplate.executeWithoutResult(tx -> {
+                            allAllocated.countDown();
+                            try {
+                                assertTrue(allAllocated.await(10, TimeUnit.SECONDS), "confirmations have been serialized");
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new IllegalStateException(e);
+                            }
+                            if (failCompletion) {
+                                throw new IllegalStateException("completion failed");
+                            }
+                        });
+                    } catch (IllegalStateException e) {
+                        // the retry gets back the number allocated by the first attempt
+                        assertEquals(number, (int) transactionTemplate.execute(tx -> billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, reservationId)));
+                    }
+                    return number;
+                });
+            }
+            List<Integer> numbers = new ArrayList<>();
+            for (Future<Integer> future : pool.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+                numbers.add(future.get());
+            }
+            Set<Integer> expected = IntStream.rangeClosed(1, PARALLEL_CONFIRMATIONS).boxed().collect(Collectors.toSet());
+            assertEquals(expected, Set.copyOf(numbers));
+            assertEquals(PARALLEL_CONFIRMATIONS + 1, billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, UUID.randomUUID().toString()));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void numberIsGivenBackIfAllocationIsRolledBack() {
+        var reservationId = UUID.randomUUID().toString();
+        var firstAttempt = new int[1];
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(tx -> {
+            firstAttempt[0] = billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, reservationId);
+            throw new IllegalStateException("confirmation failed");
+        }));
+        assertEquals(1, firstAttempt[0]);
+        // no gaps: the next confirmation gets the same number
+        assertEquals(1, (int) transactionTemplate.execute(tx -> billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, UUID.randomUUID().toString())));
+        assertEquals(2, (int) transactionTemplate.execute(tx -> billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, reservationId)));
+    }
+
+    @Test
+    void numberIsRetainedOnceCommitted() {
+        var reservationId = UUID.randomUUID().toString();
+        assertEquals(1, (int) transactionTemplate.execute(tx -> billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, reservationId)));
+        // retry of the same confirmation gets back the same number
+        assertEquals(1, (int) transactionTemplate.execute(tx -> billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, reservationId)));
+        assertEquals(2, (int) transactionTemplate.execute(tx -> billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, UUID.randomUUID().toString())));
+    }
+
+    @Test
+    void creditNoteNumbersAreIndependentFromInvoiceNumbers() {
+        assertEquals(1, billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, UUID.randomUUID().toString()));
+        assertEquals(1, (int) transactionTemplate.execute(tx -> billingDocumentNumberAllocator.nextCreditNoteNumber(organizationId)));
+        assertEquals(2, (int) transactionTemplate.execute(tx -> billingDocumentNumberAllocator.nextCreditNoteNumber(organizationId)));
+        assertEquals(2, billingDocumentNumberAllocator.allocateInvoiceNumber(organizationId, UUID.randomUUID().toString()));
+    }
+}
@@ -20,26 +20,32 @@ import alfio.manager.support.CheckInStatistics;
 import alfio.manager.system.ConfigurationLevel;
 import alfio.manager.system.ConfigurationManager;
 import alfio.model.Event;
+import alfio.model.checkin.CheckInChange;
 import alfio.model.system.ConfigurationKeyValuePathLevel;
+import alfio.model.system.ConfigurationKeys;
 import alfio.model.user.Organization;
 import alfio.repository.EventRepository;
+import alfio.repository.TicketRepository;
 import alfio.repository.user.OrganizationRepository;
 import alfio.test.util.TestUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static alfio.model.system.ConfigurationKeys.CHECK_IN_STATS;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class CheckInManagerTest {
 
     private EventRepository eventRepository;
+    private TicketRepository ticketRepository;
     private ConfigurationManager configurationManager;
+    private Event event;
     private CheckInManager checkInManager;
 
     private static final String EVENT_NAME = "eventName";
@@ -53,7 +59,8 @@ class CheckInManagerTest {
         eventRepository = mock(EventRepository.class);
         configurationManager = mock(ConfigurationManager.class);
         OrganizationRepository organizationRepository = mock(OrganizationRepository.class);
-        Event event = mock(Event.class);
+        ticketRepository = mock(TicketRepository.class);
+        event = mock(Event.class);
         Organization organization = mock(Organization.class);
         ConfigurationLevel cl = ConfigurationLevel.event(event);
         when(event.getConfigurationLevel()).thenReturn(cl);
@@ -63,7 +70,7 @@ class CheckInManagerTest {
         when(organizationRepository.findOrganizationForUser(USERNAME, ORG_ID)).thenReturn(Optional.of(organization));
         when(organization.getId()).thenReturn(ORG_ID);
         when(eventRepository.retrieveCheckInStatisticsForEvent(eq(EVENT_ID), isNull())).thenReturn(new CheckInStatistics(0, 0, new Date()));
-        checkInManager = new CheckInManager(null, eventRepository, null, null, null, null,
+        checkInManager = new CheckInManager(ticketRepository, eventRepository, null, null, null, null,
             null, configurationManager, organizationRepository, null, null, null, null, null, TestUtil.clockProvider(), null);
     }
 
@@ -85,5 +92,25 @@ class CheckInManagerTest {
         verify(eventRepository, never()).retrieveCheckInStatisticsForEvent(eq(EVENT_ID), isNull());
     }
 
+    @Test
+    void getDeltaWithRevokedTickets() {
+        when(configurationManager.areBooleanSettingsEnabledForEvent(any(ConfigurationKeys[].class))).thenReturn(e -> true);
+        when(ticketRepository.getCheckInChangeWatermark()).thenReturn(1234L);
+        when(ticketRepository.findCheckInChanges(EVENT_ID, 1000L, 1234L)).thenReturn(List.of(new CheckInChange(1, false), new CheckInChange(2, false)));
+        var delta = checkInManager.getEncryptedAttendeesDelta(event, Set.of(), 1000L);
+        assertTrue(delta.isPresent());
+        assertEquals(1234L, delta.get().cursor());
+        assertEquals(List.of(1, 2), delta.get().removed());
+        assertTrue(delta.get().changed().isEmpty());
+        verify(ticketRepository, never()).findAllFullTicketInfoAssignedByEventId(anyInt(), anyList());
+    }
+
+    @Test
+    void getDeltaOfflineCheckInDisabled() {
+        when(configurationManager.areBooleanSettingsEnabledForEvent(any(ConfigurationKeys[].class))).thenReturn(e -> false);
+        assertTrue(checkInManager.getEncryptedAttendeesDelta(event, Set.of(), 0L).isEmpty());
+        verify(ticketRepository, never()).getCheckInChangeWatermark();
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.manager.support.CheckInStatistics;
+import alfio.repository.EventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CheckInStatisticsPublisherTest {
+
+    private static final int EVENT_ID = 42;
+
+    private EventRepository eventRepository;
+    private CheckInStatisticsPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        eventRepository = mock(EventRepository.class);
+        // the scheduled task must not interfere with the test
+        publisher = new CheckInStatisticsPublisher(eventRepository, new MockEnvironment().withProperty("alfio.check-in.statistics-push-interval-ms", "3600000"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.destroy();
+    }
+
+    @Test
+    void publishOnlyWhenChanged() {
+        when(eventRepository.retrieveCheckInStatisticsForEvent(eq(EVENT_ID), eq(List.of())))
+            .thenReturn(stats(10, 0), stats(10, 0), stats(10, 1));
+        var received = new ArrayList<CheckInStatistics>();
+        var other = new ArrayList<CheckInStatistics>();
+        publisher.subscribe(EVENT_ID, null, received::add);
+        publisher.subscribe(EVENT_ID, List.of(), other::add);
+        // one query for both subscribers
+        verify(eventRepository, times(1)).retrieveCheckInStatisticsForEvent(eq(EVENT_ID), eq(List.of()));
+        assertEquals(1, received.size());
+        assertEquals(1, other.size());
+        publisher.publish();
+        assertEquals(1, received.size());
+        publisher.publish();
+        assertEquals(2, received.size());
+        assertEquals(2, other.size());
+        assertEquals(1, received.get(1).getCheckedIn());
+    }
+
+    @Test
+    void unsubscribe() {
+        when(eventRepository.retrieveCheckInStatisticsForEvent(eq(EVENT_ID), eq(List.of(1, 2))))
+            .thenReturn(stats(10, 0));
+        var unsubscribe = publisher.subscribe(EVENT_ID, List.of(2, 1), s -> {});
+        assertEquals(1, publisher.countSubscriptions());
+        unsubscribe.run();
+        assertEquals(0, publisher.countSubscriptions());
+        publisher.publish();
+        verify(eventRepository, times(1)).retrieveCheckInStatisticsForEvent(eq(EVENT_ID), eq(List.of(1, 2)));
+    }
+
+    @Test
+    void removeFailingListeners() {
+        when(eventRepository.retrieveCheckInStatisticsForEvent(eq(EVENT_ID), eq(List.of())))
+            .thenReturn(stats(10, 0), stats(10, 1));
+        var calls = new ArrayList<CheckInStatistics>();
+        publisher.subscribe(EVENT_ID, null, s -> {
+            calls.add(s);
+            if (calls.size() > 1) {
+                throw new IllegalStateException("connection closed");
+            }
+        });
+        publisher.publish();
+        assertEquals(2, calls.size());
+        assertEquals(0, publisher.countSubscriptions());
+    }
+
+    private static CheckInStatistics stats(int total, int checkedIn) {
+        return new CheckInStatistics(total, checkedIn, new Date());
+    }
+}
@@ -19,6 +19,7 @@ package alfio.manager;
 import alfio.model.Event;
 import alfio.model.Ticket;
 import alfio.model.TicketCategory;
+import alfio.model.TicketInitialization;
 import alfio.repository.EventRepository;
 import alfio.repository.SubscriptionRepository;
 import alfio.repository.TicketCategoryDescriptionRepository;
@@ -26,11 +27,9 @@ import alfio.repository.TicketCategoryRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -69,10 +68,10 @@ public class EventManagerCategoriesTest {
     void createTicketsForUnboundedCategory() {
         List<TicketCategory> categories = generateCategoryStream().limit(3).collect(Collectors.toList());
         when(ticketCategoryRepository.findAllTicketCategories(eq(eventId))).thenReturn(categories);
-        MapSqlParameterSource[] parameterSources = eventManager.prepareTicketsBulkInsertParameters(ZonedDateTime.now(clockProvider().getClock()), event, availableSeats, Ticket.TicketStatus.FREE);
-        assertNotNull(parameterSources);
-        assertEquals(availableSeats, parameterSources.length);
-        assertTrue(Arrays.stream(parameterSources).allMatch(ps -> Ticket.TicketStatus.FREE.name().equals(ps.getValue("status"))));
+        List<TicketInitialization> tickets = eventManager.prepareTicketsBulkInsertParameters(ZonedDateTime.now(clockProvider().getClock()), event, availableSeats, Ticket.TicketStatus.FREE);
+        assertNotNull(tickets);
+        assertEquals(availableSeats, tickets.stream().mapToInt(TicketInitialization::count).sum());
+        assertTrue(tickets.stream().allMatch(t -> t.status() == Ticket.TicketStatus.FREE));
     }
 
     @Test
@@ -80,10 +79,10 @@ public class EventManagerCategoriesTest {
     void createTicketsForUnboundedCategories() {
         List<TicketCategory> categories = generateCategoryStream().limit(6).collect(Collectors.toList());
         when(ticketCategoryRepository.findAllTicketCategories(eq(eventId))).thenReturn(categories);
-        MapSqlParameterSource[] parameterSources = eventManager.prepareTicketsBulkInsertParameters(ZonedDateTime.now(clockProvider().getClock()), event, availableSeats, Ticket.TicketStatus.FREE);
-        assertNotNull(parameterSources);
-        assertEquals(availableSeats, parameterSources.length);
-        assertTrue(Arrays.stream(parameterSources).allMatch(ps -> Ticket.TicketStatus.FREE.name().equals(ps.getValue("status"))));
+        List<TicketInitialization> tickets = eventManager.prepareTicketsBulkInsertParameters(ZonedDateTime.now(clockProvider().getClock()), event, availableSeats, Ticket.TicketStatus.FREE);
+        assertNotNull(tickets);
+        assertEquals(availableSeats, tickets.stream().mapToInt(TicketInitialization::count).sum());
+        assertTrue(tickets.stream().allMatch(t -> t.status() == Ticket.TicketStatus.FREE));
     }
 
     @Test
@@ -91,11 +90,11 @@ public class EventManagerCategoriesTest {
     void createTicketsOnlyForBounded() {
         List<TicketCategory> categories = generateCategoryStream().limit(2).collect(Collectors.toList());
         when(ticketCategoryRepository.findAllTicketCategories(eq(eventId))).thenReturn(categories);
-        MapSqlParameterSource[] parameterSources = eventManager.prepareTicketsBulkInsertParameters(ZonedDateTime.now(clockProvider().getClock()), event, availableSeats, Ticket.TicketStatus.FREE);
-        assertNotNull(parameterSources);
-        assertEquals(availableSeats, parameterSources.length);
-        assertEquals(4L, Arrays.stream(parameterSources).filter(p -> p.getValue("categoryId") != null).count());
-        assertTrue(Arrays.stream(parameterSources).allMatch(ps -> Ticket.TicketStatus.FREE.name().equals(ps.getValue("status"))));
+        List<TicketInitialization> tickets = eventManager.prepareTicketsBulkInsertParameters(ZonedDateTime.now(clockProvider().getClock()), event, availableSeats, Ticket.TicketStatus.FREE);
+        assertNotNull(tickets);
+        assertEquals(availableSeats, tickets.stream().mapToInt(TicketInitialization::count).sum());
+        assertEquals(4, tickets.stream().filter(t -> t.categoryId() != null).mapToInt(TicketInitialization::count).sum());
+        assertTrue(tickets.stream().allMatch(t -> t.status() == Ticket.TicketStatus.FREE));
     }
 
 }
@@ -39,7 +39,6 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
@@ -1113,32 +1112,11 @@ class EventManagerIntegrationTest extends BaseIntegrationTest {
         Event event = initEvent(categories, organizationRepository, userManager, eventManager, eventRepository).getKey();
         var uuid = UUID.randomUUID().toString();
         var publicUuid = UUID.randomUUID();
-        ticketRepository.bulkTicketInitialization(new MapSqlParameterSource[] {new MapSqlParameterSource()
-            .addValue("uuid", uuid)
-            .addValue("publicUuid", publicUuid)
-            .addValue("creation", new Date())
-            .addValue("categoryId", null)
-            .addValue("eventId", event.getId())
-            .addValue("status", Ticket.TicketStatus.FREE.name())
-            .addValue("srcPriceCts", 100)});
-
-        assertThrows(DataIntegrityViolationException.class, () -> ticketRepository.bulkTicketInitialization(new MapSqlParameterSource[] {new MapSqlParameterSource()
-            .addValue("uuid", uuid)
-            .addValue("publicUuid", UUID.randomUUID())
-            .addValue("creation", new Date())
-            .addValue("categoryId", null)
-            .addValue("eventId", event.getId())
-            .addValue("status", Ticket.TicketStatus.FREE.name())
-            .addValue("srcPriceCts", 100)}));
-
-        assertThrows(DataIntegrityViolationException.class, () -> ticketRepository.bulkTicketInitialization(new MapSqlParameterSource[] {new MapSqlParameterSource()
-            .addValue("uuid", UUID.randomUUID().toString())
-            .addValue("publicUuid", publicUuid)
-            .addValue("creation", new Date())
-            .addValue("categoryId", null)
-            .addValue("eventId", event.getId())
-            .addValue("status", Ticket.TicketStatus.FREE.name())
-            .addValue("srcPriceCts", 100)}));
+        ticketRepository.insertTickets(event.getId(), null, new Date(), Ticket.TicketStatus.FREE.name(), 100, List.of(uuid), List.of(publicUuid.toString()));
+
+        assertThrows(DataIntegrityViolationException.class, () -> ticketRepository.insertTickets(event.getId(), null, new Date(), Ticket.TicketStatus.FREE.name(), 100, List.of(uuid), List.of(UUID.randomUUID().toString())));
+
+        assertThrows(DataIntegrityViolationException.class, () -> ticketRepository.insertTickets(event.getId(), null, new Date(), Ticket.TicketStatus.FREE.name(), 100, List.of(UUID.randomUUID().toString()), List.of(publicUuid.toString())));
     }
 
     private EventModification createEventModification(int availableSeats, Event event) {
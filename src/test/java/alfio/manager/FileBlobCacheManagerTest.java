@@ -0,0 +1,126 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileBlobCacheManagerTest {
+
+    private static final String SECTION = "test";
+    private static final int ONE_KB = 1024;
+
+    @TempDir
+    Path cacheDir;
+    private MockEnvironment environment;
+
+    @BeforeEach
+    void setUp() {
+        environment = new MockEnvironment()
+            .withProperty("alfio.cache-dir", cacheDir.toString())
+            .withProperty("alfio.blob-cache.max-size-mb", "0");
+    }
+
+    @Test
+    void trackHitsAndMisses() {
+        var manager = new FileBlobCacheManager(new MockEnvironment().withProperty("alfio.cache-dir", cacheDir.toString()));
+        manager.getFile(SECTION, "a", () -> tmpFile(ONE_KB));
+        manager.getFile(SECTION, "a", () -> fail("should be cached"));
+        manager.getFile(SECTION, "a", () -> fail("should be cached"));
+        var statistics = manager.getStatistics();
+        assertEquals(2, statistics.hits());
+        assertEquals(1, statistics.misses());
+        assertEquals(1, statistics.files());
+        assertEquals(ONE_KB, statistics.sizeBytes());
+        assertEquals(2.0 / 3, statistics.getHitRatio(), 0.001);
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        var manager = new FileBlobCacheManager(new MockEnvironment().withProperty("alfio.cache-dir", cacheDir.toString()));
+        manager.ensureFileExists(SECTION, "a", () -> new byte[ONE_KB]);
+        assertTrue(manager.fileExists(SECTION, "a"));
+        // max size 0: every new entry evicts all the others
+        var bounded = new FileBlobCacheManager(environment);
+        assertEquals(1, bounded.getStatistics().files());
+        bounded.ensureFileExists(SECTION, "b", () -> new byte[ONE_KB]);
+        assertFalse(bounded.fileExists(SECTION, "a"));
+        assertTrue(bounded.fileExists(SECTION, "b"));
+        assertEquals(1, bounded.getStatistics().evictions());
+        assertEquals(ONE_KB, bounded.getStatistics().sizeBytes());
+    }
+
+    @Test
+    void evictOldestFirst() {
+        var manager = new FileBlobCacheManager(environment.withProperty("alfio.blob-cache.max-size-mb", "1"));
+        int size = 300 * ONE_KB;
+        manager.ensureFileExists(SECTION, "a", () -> new byte[size]);
+        manager.ensureFileExists(SECTION, "b", () -> new byte[size]);
+        manager.ensureFileExists(SECTION, "c", () -> new byte[size]);
+        // "a" is accessed, so "b" becomes the least recently used
+        manager.getFile(SECTION, "a", () -> fail("should be cached"));
+        manager.ensureFileExists(SECTION, "d", () -> new byte[size]);
+        assertFalse(manager.fileExists(SECTION, "b"));
+        assertTrue(manager.fileExists(SECTION, "a"));
+        assertTrue(manager.fileExists(SECTION, "c"));
+        assertTrue(manager.fileExists(SECTION, "d"));
+        assertEquals(3 * size, manager.getStatistics().sizeBytes());
+        assertEquals(1, manager.getStatistics().evictions());
+    }
+
+    @Test
+    void evictFile() {
+        var manager = new FileBlobCacheManager(new MockEnvironment().withProperty("alfio.cache-dir", cacheDir.toString()));
+        manager.ensureFileExists(SECTION, "a", () -> new byte[ONE_KB]);
+        manager.ensureFileExists(SECTION, "b", () -> new byte[ONE_KB]);
+        manager.evict(SECTION, "b");
+        assertFalse(manager.fileExists(SECTION, "b"));
+        assertEquals(1, manager.getStatistics().files());
+        assertEquals(ONE_KB, manager.getStatistics().sizeBytes());
+    }
+
+    @Test
+    void removeLeftoversAtStartup() throws IOException {
+        var dir = Files.createDirectories(cacheDir.resolve("alfio-blob").resolve(SECTION));
+        var leftover = Files.createTempFile(dir, "tmp", "fileblob");
+        Files.write(dir.resolve("a"), new byte[ONE_KB]);
+        var manager = new FileBlobCacheManager(new MockEnvironment().withProperty("alfio.cache-dir", cacheDir.toString()));
+        assertFalse(Files.exists(leftover));
+        assertEquals(1, manager.getStatistics().files());
+        assertEquals(ONE_KB, manager.getStatistics().sizeBytes());
+    }
+
+    private static File tmpFile(int size) {
+        try {
+            var file = Files.createTempFile("blob-cache-test", ".tmp");
+            Files.write(file, new byte[size]);
+            return file.toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.manager.system.ConfigurationLevel;
+import alfio.manager.system.ConfigurationManager;
+import alfio.manager.system.Mailer;
+import alfio.manager.testSupport.MaybeConfigurationBuilder;
+import alfio.model.Event;
+import alfio.model.Ticket;
+import alfio.model.TicketCategory;
+import alfio.model.system.ConfigurationKeys;
+import alfio.model.user.Organization;
+import alfio.repository.EventDescriptionRepository;
+import alfio.repository.EventRepository;
+import alfio.repository.TicketCategoryRepository;
+import alfio.repository.user.OrganizationRepository;
+import alfio.util.Json;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+import static alfio.model.system.ConfigurationKeys.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PassKitManagerTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PassKitManagerTest.class);
+    private static final String ALIAS = "pass";
+    private static final String PASSWORD = "password";
+    private static final int EVENT_ID = 1;
+    private static final int ORGANIZATION_ID = 2;
+    private static final int CATEGORY_ID = 3;
+
+    private PassKitManager passKitManager;
+    private EventRepository eventRepository;
+    private OrganizationRepository organizationRepository;
+    private ConfigurationManager configurationManager;
+    private EventDescriptionRepository eventDescriptionRepository;
+    private TicketCategoryRepository ticketCategoryRepository;
+    private Event event;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        eventRepository = mock(EventRepository.class);
+        organizationRepository = mock(OrganizationRepository.class);
+        configurationManager = mock(ConfigurationManager.class);
+        eventDescriptionRepository = mock(EventDescriptionRepository.class);
+        ticketCategoryRepository = mock(TicketCategoryRepository.class);
+        event = mock(Event.class);
+        var zoneId = ZoneId.of("Europe/Zurich");
+        var begin = ZonedDateTime.now(zoneId).plusDays(10);
+        when(event.getId()).thenReturn(EVENT_ID);
+        when(event.getOrganizationId()).thenReturn(ORGANIZATION_ID);
+        when(event.getZoneId()).thenReturn(zoneId);
+        when(event.getBegin()).thenReturn(begin);
+        when(event.getEnd()).thenReturn(begin.plusHours(8));
+        when(event.getDisplayName()).thenReturn("Event");
+        when(event.getLocation()).thenReturn("Location");
+        when(event.getPrivateKey()).thenReturn("private-key");
+        var configurationLevel = ConfigurationLevel.event(event);
+        when(event.getConfigurationLevel()).thenReturn(configurationLevel);
+        when(eventRepository.findById(EVENT_ID)).thenReturn(event);
+        var organization = mock(Organization.class);
+        when(organization.getName()).thenReturn("Organization");
+        when(organization.getEmail()).thenReturn("organization@example.org");
+        when(organizationRepository.getById(ORGANIZATION_ID)).thenReturn(organization);
+        var category = mock(TicketCategory.class);
+        when(category.getName()).thenReturn("Category");
+        when(ticketCategoryRepository.getById(CATEGORY_ID)).thenReturn(category);
+        when(eventDescriptionRepository.findDescriptionByEventIdTypeAndLocale(eq(EVENT_ID), any(), anyString())).thenReturn(Optional.of("description"));
+
+        Map<ConfigurationKeys, ConfigurationManager.MaybeConfiguration> conf = new EnumMap<>(ConfigurationKeys.class);
+        conf.put(ENABLE_PASS, MaybeConfigurationBuilder.existing(ENABLE_PASS, "true"));
+        conf.put(PASSBOOK_TYPE_IDENTIFIER, MaybeConfigurationBuilder.existing(PASSBOOK_TYPE_IDENTIFIER, "pass.io.alf.test"));
+        conf.put(PASSBOOK_KEYSTORE, MaybeConfigurationBuilder.existing(PASSBOOK_KEYSTORE, generateKeystore()));
+        conf.put(PASSBOOK_KEYSTORE_PASSWORD, MaybeConfigurationBuilder.existing(PASSBOOK_KEYSTORE_PASSWORD, PASSWORD));
+        conf.put(PASSBOOK_TEAM_IDENTIFIER, MaybeConfigurationBuilder.existing(PASSBOOK_TEAM_IDENTIFIER, "TEAM"));
+        conf.put(PASSBOOK_PRIVATE_KEY_ALIAS, MaybeConfigurationBuilder.existing(PASSBOOK_PRIVATE_KEY_ALIAS, ALIAS));
+        when(configurationManager.getFor(anySet(), any())).thenReturn(conf);
+
+        passKitManager = newPassKitManager();
+    }
+
+    private PassKitManager newPassKitManager() {
+        return new PassKitManager(eventRepository, organizationRepository, configurationManager,
+            mock(FileUploadManager.class), eventDescriptionRepository, ticketCategoryRepository, null, null);
+    }
+
+    @Test
+    void passIsGeneratedOnceAndServedFromCache() throws Exception {
+        var ticket = ticket("uuid-1");
+        var first = new ByteArrayOutputStream();
+        assertTrue(passKitManager.writePass(ticket, event, first));
+        var second = new ByteArrayOutputStream();
+        assertTrue(passKitManager.writePass(ticket, event, second));
+        assertTrue(first.size() > 0);
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+
+        var fromModel = passKitManager.getPass(Map.of("ticket", Json.toJson(ticket), "organizationId", String.valueOf(ORGANIZATION_ID)));
+        assertArrayEquals(first.toByteArray(), fromModel);
+        verify(eventRepository, times(1)).findById(EVENT_ID);
+        verify(organizationRepository, times(1)).getById(ORGANIZATION_ID);
+        verify(configurationManager, times(1)).getFor(anySet(), any());
+    }
+
+    @Test
+    void differentTicketsProduceDifferentPasses() throws Exception {
+        var first = passKitManager.getPass(Map.of("ticket", Json.toJson(ticket("uuid-1")), "organizationId", String.valueOf(ORGANIZATION_ID)));
+        var second = passKitManager.getPass(Map.of("ticket", Json.toJson(ticket("uuid-2")), "organizationId", String.valueOf(ORGANIZATION_ID)));
+        assertNotNull(first);
+        assertNotNull(second);
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    void skipPassbook() {
+        assertNull(passKitManager.getPass(Map.of(Mailer.SKIP_PASSBOOK, "true")));
+    }
+
+    /**
+     * Compares the generation of passes with and without the cached signing material, and the retrieval from the pass cache.
+     * Run with ALFIO_RUN_BENCHMARKS=true
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "ALFIO_RUN_BENCHMARKS", matches = "true")
+    void signingThroughput() {
+        int count = 50;
+        // a new manager for every pass: keystore is decoded and decrypted each time
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            assertNotNull(newPassKitManager().getPass(passModel("uncached-" + i)));
+        }
+        long uncached = System.nanoTime() - start;
+        // same manager: signing material is reused, every pass is signed
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            assertNotNull(passKitManager.getPass(passModel("signed-" + i)));
+        }
+        long signed = System.nanoTime() - start;
+        // same passes again: served from the pass cache
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            assertNotNull(passKitManager.getPass(passModel("signed-" + i)));
+        }
+        long cached = System.nanoTime() - start;
+        log.info("{} passes: {} ms without cached signing material, {} ms with cached signing material, {} ms from pass cache",
+            count, uncached / 1_000_000, signed / 1_000_000, cached / 1_000_000);
+        assertTrue(signed < uncached, "cached signing material should be faster");
+    }
+
+    private static Map<String, String> passModel(String uuid) {
+        return Map.of("ticket", Json.toJson(ticket(uuid)), "organizationId", String.valueOf(ORGANIZATION_ID));
+    }
+
+    private static Ticket ticket(String uuid) {
+        return new Ticket(1, uuid, UUID.randomUUID(), ZonedDateTime.now(), CATEGORY_ID, Ticket.TicketStatus.ACQUIRED.name(), EVENT_ID,
+            "reservation-id", "Full Name", "First", "Last", "email@example.org", false, "en",
+            0, 0, 0, 0, null, "CHF", List.of(), null, null);
+    }
+
+    private static String generateKeystore() throws Exception {
+        var keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        var keyPair = keyPairGenerator.generateKeyPair();
+        var name = new X500Name("CN=alf.io test");
+        var now = new Date();
+        var certificate = new JcaX509CertificateConverter().getCertificate(new JcaX509v3CertificateBuilder(name, BigInteger.ONE,
+            now, new Date(now.getTime() + 86_400_000L), name, keyPair.getPublic())
+            .build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+        var keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry(ALIAS, keyPair.getPrivate(), PASSWORD.toCharArray(), new Certificate[]{certificate});
+        var out = new ByteArrayOutputStream();
+        keyStore.store(out, PASSWORD.toCharArray());
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+}
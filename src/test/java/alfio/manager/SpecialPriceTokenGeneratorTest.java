@@ -0,0 +1,109 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager;
+
+import alfio.manager.system.ConfigurationManager;
+import alfio.model.EventAndOrganizationId;
+import alfio.model.TicketCategory;
+import alfio.repository.EventRepository;
+import alfio.repository.SpecialPriceRepository;
+import alfio.repository.TicketCategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static alfio.manager.testSupport.MaybeConfigurationBuilder.existing;
+import static alfio.model.system.ConfigurationKeys.SPECIAL_PRICE_CODE_LENGTH;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+class SpecialPriceTokenGeneratorTest {
+
+    private static final int CATEGORY_ID = 1;
+    private SpecialPriceRepository specialPriceRepository;
+    private TicketCategoryRepository ticketCategoryRepository;
+    private SpecialPriceTokenGenerator generator;
+
+    @BeforeEach
+    void init() {
+        specialPriceRepository = mock(SpecialPriceRepository.class);
+        ticketCategoryRepository = mock(TicketCategoryRepository.class);
+        var eventRepository = mock(EventRepository.class);
+        var configurationManager = mock(ConfigurationManager.class);
+        var category = mock(TicketCategory.class);
+        when(category.getId()).thenReturn(CATEGORY_ID);
+        when(category.getEventId()).thenReturn(2);
+        when(ticketCategoryRepository.getByIdAndActive(CATEGORY_ID)).thenReturn(Optional.of(category));
+        when(eventRepository.findEventAndOrganizationIdById(2)).thenReturn(mock(EventAndOrganizationId.class));
+        when(configurationManager.getFor(eq(SPECIAL_PRICE_CODE_LENGTH), any())).thenReturn(existing(SPECIAL_PRICE_CODE_LENGTH, "8"));
+        when(specialPriceRepository.filterUnusedCodes(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(specialPriceRepository.bulkUpdateCodes(anyList(), anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        generator = new SpecialPriceTokenGenerator(configurationManager, specialPriceRepository, ticketCategoryRepository, eventRepository, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void generateCodesInChunks() {
+        var firstChunk = IntStream.range(0, SpecialPriceTokenGenerator.CHUNK_SIZE).boxed().toList();
+        var secondChunk = List.of(5000, 5001);
+        when(specialPriceRepository.lockWaitingElementsForCategory(CATEGORY_ID, SpecialPriceTokenGenerator.CHUNK_SIZE))
+            .thenReturn(firstChunk, secondChunk);
+
+        generator.generatePendingCodesForCategory(CATEGORY_ID);
+
+        ArgumentCaptor<List<Integer>> ids = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<String>> codes = ArgumentCaptor.forClass(List.class);
+        verify(specialPriceRepository, times(2)).bulkUpdateCodes(ids.capture(), codes.capture());
+        assertEquals(List.of(firstChunk, secondChunk), ids.getAllValues());
+        var firstCodes = codes.getAllValues().get(0);
+        assertEquals(SpecialPriceTokenGenerator.CHUNK_SIZE, new HashSet<>(firstCodes).size());
+        assertTrue(firstCodes.stream().allMatch(c -> c.length() == 8));
+        verify(specialPriceRepository, times(2)).lockWaitingElementsForCategory(CATEGORY_ID, SpecialPriceTokenGenerator.CHUNK_SIZE);
+    }
+
+    @Test
+    void regenerateCollidingCodes() {
+        when(specialPriceRepository.lockWaitingElementsForCategory(CATEGORY_ID, SpecialPriceTokenGenerator.CHUNK_SIZE))
+            .thenReturn(List.of(1, 2, 3));
+        // the first lookup reports one of the candidates as already in use
+        when(specialPriceRepository.filterUnusedCodes(anyList()))
+            .thenAnswer(invocation -> ((List<String>) invocation.getArgument(0)).subList(1, 3))
+            .thenAnswer(invocation -> invocation.getArgument(0));
+
+        generator.generatePendingCodesForCategory(CATEGORY_ID);
+
+        ArgumentCaptor<List<String>> codes = ArgumentCaptor.forClass(List.class);
+        verify(specialPriceRepository, times(2)).filterUnusedCodes(anyList());
+        verify(specialPriceRepository).bulkUpdateCodes(eq(List.of(1, 2, 3)), codes.capture());
+        assertEquals(3, new HashSet<>(codes.getValue()).size());
+    }
+
+    @Test
+    void skipInactiveCategory() {
+        when(ticketCategoryRepository.getByIdAndActive(CATEGORY_ID)).thenReturn(Optional.empty());
+        generator.generatePendingCodesForCategory(CATEGORY_ID);
+        verify(specialPriceRepository, never()).lockWaitingElementsForCategory(anyInt(), anyInt());
+        verify(specialPriceRepository, never()).bulkUpdateCodes(anyList(), anyList());
+    }
+}
@@ -110,6 +110,11 @@ class TicketReservationManagerIntegrationTest extends BaseIntegrationTest {
     @Autowired
     private CustomOfflineConfigurationManager customOfflineConfigurationManager;
 
+    @Autowired
+    private SpecialPriceRepository specialPriceRepository;
+    @Autowired
+    private PromoCodeDiscountRepository promoCodeDiscountRepository;
+
     @Autowired
     private NamedParameterJdbcTemplate jdbcTemplate;
 
@@ -498,6 +503,58 @@ class TicketReservationManagerIntegrationTest extends BaseIntegrationTest {
 
     }
 
+    @Test
+    void testAccessCodesSharingCategory() {
+        var event = initEvent(List.of(restrictedCategory("restricted", AVAILABLE_SEATS)), organizationRepository, userManager, eventManager, eventRepository).getKey();
+        var category = ticketCategoryRepository.findAllTicketCategories(event.getId()).stream().filter(TicketCategory::isAccessRestricted).findFirst().orElseThrow();
+        specialPriceTokenGenerator.generatePendingCodesForCategory(category.getId());
+
+        // a code without max usage must not take all the tokens of the category
+        eventManager.addPromoCode(ACCESS_CODE, event.getId(), null, event.getBegin(), event.getEnd(), 0, null, null, null, "description", "email@reference.ch", PromoCodeDiscount.CodeType.ACCESS, category.getId(), null);
+        eventManager.addPromoCode("MYOTHERACCESSCODE", event.getId(), null, event.getBegin(), event.getEnd(), 0, null, null, 3, "description", "email@reference.ch", PromoCodeDiscount.CodeType.ACCESS, category.getId(), null);
+
+        assertNotNull(reserveWithCode(event, category.getId(), 2, ACCESS_CODE));
+        assertNotNull(reserveWithCode(event, category.getId(), 3, "MYOTHERACCESSCODE"));
+        assertNotNull(reserveWithCode(event, category.getId(), AVAILABLE_SEATS - 5, ACCESS_CODE));
+        assertEquals(0, specialPriceRepository.countFreeTokens(category.getId()));
+    }
+
+    @Test
+    void testAccessCodeMovedToAnotherCategory() {
+        var event = initEvent(List.of(restrictedCategory("first", AVAILABLE_SEATS / 2), restrictedCategory("second", AVAILABLE_SEATS / 2)),
+            organizationRepository, userManager, eventManager, eventRepository).getKey();
+        var categories = ticketCategoryRepository.findAllTicketCategories(event.getId()).stream().filter(TicketCategory::isAccessRestricted).toList();
+        var first = categories.get(0);
+        var second = categories.get(1);
+        categories.forEach(c -> specialPriceTokenGenerator.generatePendingCodesForCategory(c.getId()));
+
+        eventManager.addPromoCode(ACCESS_CODE, event.getId(), null, event.getBegin(), event.getEnd(), 0, null, null, 3, "description", "email@reference.ch", PromoCodeDiscount.CodeType.ACCESS, first.getId(), null);
+        var firstReservation = reserveWithCode(event, first.getId(), 2, ACCESS_CODE);
+        ticketReservationManager.cancelPendingReservation(firstReservation, false, null);
+
+        // the idle tokens pooled for the first category must not count against the limit in the second one
+        var accessCode = promoCodeDiscountRepository.findPromoCodeInEventOrOrganization(event.getId(), ACCESS_CODE).orElseThrow();
+        eventManager.updatePromoCode(accessCode.getId(), accessCode.getUtcStart(), accessCode.getUtcEnd(), 3, null, "description", "email@reference.ch", second.getId());
+        assertNotNull(reserveWithCode(event, second.getId(), 3, ACCESS_CODE));
+        assertEquals(first.getMaxTickets(), specialPriceRepository.countFreeTokens(first.getId()));
+        assertThrows(TooManyTicketsForDiscountCodeException.class, () -> reserveWithCode(event, second.getId(), 1, ACCESS_CODE));
+    }
+
+    private String reserveWithCode(Event event, int categoryId, int amount, String code) {
+        TicketReservationModification tr = new TicketReservationModification();
+        tr.setAmount(amount);
+        tr.setTicketCategoryId(categoryId);
+        var mod = new TicketReservationWithOptionalCodeModification(tr, Optional.empty());
+        return ticketReservationManager.createTicketReservation(event, List.of(mod), Collections.emptyList(), DateUtils.addDays(new Date(), 1), Optional.of(code), Locale.ENGLISH, false, null);
+    }
+
+    private static TicketCategoryModification restrictedCategory(String name, int seats) {
+        return new TicketCategoryModification(null, name, TicketCategory.TicketAccessType.INHERIT, seats,
+            new DateTimeModification(LocalDate.now(ClockProvider.clock()), LocalTime.now(ClockProvider.clock())),
+            new DateTimeModification(LocalDate.now(ClockProvider.clock()), LocalTime.now(ClockProvider.clock())),
+            DESCRIPTION, BigDecimal.TEN, true, "", true, null, null, null, null, null, 0, null, null, AlfioMetadata.empty());
+    }
+
     @Test
     void testWithAdditionalServices() {
         List<TicketCategoryModification> categories = Collections.singletonList(
@@ -23,6 +23,7 @@ import alfio.manager.i18n.MessageSourceManager;
 import alfio.manager.payment.*;
 import alfio.manager.payment.custom.offline.CustomOfflineConfigurationManager;
 import alfio.manager.support.*;
+import alfio.manager.support.reservation.NotEnoughTicketsException;
 import alfio.manager.support.reservation.OrderSummaryGenerator;
 import alfio.manager.support.reservation.ReservationCostCalculator;
 import alfio.manager.support.reservation.ReservationEmailContentHelper;
@@ -71,6 +72,7 @@ import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static alfio.manager.TicketReservationManager.buildCompleteBillingAddress;
@@ -283,7 +285,7 @@ class TicketReservationManagerTest {
         when(specialPrice.getCode()).thenReturn(SPECIAL_PRICE_CODE);
         when(specialPrice.getId()).thenReturn(SPECIAL_PRICE_ID);
         when(eventRepository.findByReservationId(eq(RESERVATION_ID))).thenReturn(event);
-        when(eventRepository.findAll()).thenReturn(Collections.singletonList(event));
+        when(eventRepository.findAllActives(any())).thenReturn(Collections.singletonList(event));
         var baseUrlConf = new MaybeConfiguration(ConfigurationKeys.BASE_URL, new ConfigurationKeyValuePathLevel(null, BASE_URL, null));
         when(configurationManager.baseUrl(any())).thenReturn(Strings.CS.removeEnd(BASE_URL, "/"));
         when(configurationManager.getForSystem(ConfigurationKeys.BASE_URL)).thenReturn(baseUrlConf);
@@ -426,6 +428,16 @@ class TicketReservationManagerTest {
         verify(notificationManager, times(1)).sendSimpleEmail(eq(event), eq(RESERVATION_ID), eq(originalEmail), anyString(), any(TemplateGenerator.class));
     }
 
+    private void initAssignmentReminder(TicketReservation reservation) {
+        var unassigned = mock(Ticket.class);
+        when(unassigned.getId()).thenReturn(TICKET_ID);
+        when(unassigned.getEventId()).thenReturn(EVENT_ID);
+        when(unassigned.getTicketsReservationId()).thenReturn("abcd");
+        when(event.getId()).thenReturn(EVENT_ID);
+        when(ticketRepository.findConfirmedButNotAssignedForUpdate(any(), anyInt(), anyInt())).thenReturn(List.of(unassigned));
+        when(ticketReservationRepository.findByIds(any())).thenReturn(List.of(reservation));
+    }
+
     @Test
     void sendAssignmentReminderBeforeEventEnd() {
         TicketReservation reservation = mock(TicketReservation.class);
@@ -443,8 +455,8 @@ class TicketReservationManagerTest {
 
         when(eventRepository.findByReservationId("abcd")).thenReturn(event);
 
-        when(eventRepository.findAll()).thenReturn(singletonList(event));
-        when(ticketRepository.findAllReservationsConfirmedButNotAssignedForUpdate(anyInt())).thenReturn(singleton("abcd"));
+        when(eventRepository.findAllActives(any())).thenReturn(singletonList(event));
+        initAssignmentReminder(reservation);
         trm.sendReminderForTicketAssignment();
         verify(notificationManager, times(1)).sendSimpleEmail(eq(event), eq("abcd"), eq("ciccio"), anyString(), any(TemplateGenerator.class));
     }
@@ -461,8 +473,8 @@ class TicketReservationManagerTest {
         when(eventRepository.findByReservationId("abcd")).thenReturn(event);
         when(event.getZoneId()).thenReturn(ClockProvider.clock().getZone());
         when(event.getBegin()).thenReturn(ZonedDateTime.now(ClockProvider.clock()).minusDays(1));
-        when(eventRepository.findAll()).thenReturn(singletonList(event));
-        when(ticketRepository.findAllReservationsConfirmedButNotAssignedForUpdate(anyInt())).thenReturn(singleton("abcd"));
+        when(eventRepository.findAllActives(any())).thenReturn(singletonList(event));
+        initAssignmentReminder(reservation);
         trm.sendReminderForTicketAssignment();
         verify(notificationManager, never()).sendSimpleEmail(eq(event), anyString(), anyString(), anyString(), any(TemplateGenerator.class));
     }
@@ -485,8 +497,8 @@ class TicketReservationManagerTest {
         var zoneClock = Clock.offset(ClockProvider.clock(), Duration.ofHours(4).negated());
         when(event.getZoneId()).thenReturn(zoneClock.getZone());
         when(event.getBegin()).thenReturn(ZonedDateTime.now(zoneClock.getZone()).plusDays(1));
-        when(eventRepository.findAll()).thenReturn(singletonList(event));
-        when(ticketRepository.findAllReservationsConfirmedButNotAssignedForUpdate(anyInt())).thenReturn(singleton("abcd"));
+        when(eventRepository.findAllActives(any())).thenReturn(singletonList(event));
+        initAssignmentReminder(reservation);
         when(reservation.getEmail()).thenReturn("ciccio");
         trm.sendReminderForTicketAssignment();
         verify(notificationManager, times(1)).sendSimpleEmail(eq(event), eq("abcd"), anyString(), anyString(), any(TemplateGenerator.class));
@@ -504,8 +516,8 @@ class TicketReservationManagerTest {
         when(eventRepository.findByReservationId("abcd")).thenReturn(event);
         when(event.getZoneId()).thenReturn(ZoneId.of("UTC-8"));
         when(event.getBegin()).thenReturn(ZonedDateTime.now(ZoneId.of("UTC-8")));//same day
-        when(eventRepository.findAll()).thenReturn(singletonList(event));
-        when(ticketRepository.findAllReservationsConfirmedButNotAssignedForUpdate(anyInt())).thenReturn(singleton("abcd"));
+        when(eventRepository.findAllActives(any())).thenReturn(singletonList(event));
+        initAssignmentReminder(reservation);
         trm.sendReminderForTicketAssignment();
         verify(notificationManager, never()).sendSimpleEmail(eq(event), anyString(), anyString(), anyString(), any(TemplateGenerator.class));
     }
@@ -522,8 +534,8 @@ class TicketReservationManagerTest {
         when(eventRepository.findByReservationId("abcd")).thenReturn(event);
         when(event.getZoneId()).thenReturn(ZoneId.of("UTC-8"));
         when(event.getBegin()).thenReturn(ZonedDateTime.now(ZoneId.of("UTC-8")).plusMonths(3).plusDays(1));
-        when(eventRepository.findAll()).thenReturn(singletonList(event));
-        when(ticketRepository.findAllReservationsConfirmedButNotAssignedForUpdate(anyInt())).thenReturn(singleton("abcd"));
+        when(eventRepository.findAllActives(any())).thenReturn(singletonList(event));
+        initAssignmentReminder(reservation);
         List<Event> events = trm.getNotifiableEventsStream().collect(Collectors.toList());
         Assertions.assertEquals(0, events.size());
         verify(notificationManager, never()).sendSimpleEmail(eq(event), anyString(), anyString(), anyString(), any(TemplateGenerator.class));
@@ -622,8 +634,7 @@ class TicketReservationManagerTest {
         when(ticketCategoryRepository.isAccessRestricted(eq(TICKET_CATEGORY_ID))).thenReturn(true);
         when(ticketReservation.getSrcPriceCts()).thenReturn(1000);
         when(ticket.getSrcPriceCts()).thenReturn(1000);
-        when(promoCodeDiscountRepository.lockAccessCodeForUpdate(eq(accessCodeId))).thenReturn(accessCodeId);
-        when(specialPriceRepository.bindToAccessCode(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(2))).thenReturn(List.of(
+        when(specialPriceRepository.claimFromAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(2))).thenReturn(List.of(
             new SpecialPrice(1, "AAAA", 0, TICKET_CATEGORY_ID, SpecialPrice.Status.FREE.name(), null, null, null, accessCodeId),
             new SpecialPrice(2, "BBBB", 0, TICKET_CATEGORY_ID, SpecialPrice.Status.FREE.name(), null, null, null, accessCodeId)
         ));
@@ -634,6 +645,91 @@ class TicketReservationManagerTest {
         trm.reserveTicketsForCategory(event, RESERVATION_ID, reservationModification, Locale.ENGLISH, false, discount, null);
         verify(jdbcTemplate).batchUpdate(eq(query), any(SqlParameterSource[].class));
         verify(specialPriceRepository).batchUpdateStatus(eq(List.of(1,2)), eq(SpecialPrice.Status.PENDING), eq(accessCodeId));
+        verify(promoCodeDiscountRepository, never()).lockAccessCodeForUpdate(anyInt());
+    }
+
+    @Test
+    void reserveTokensForAccessCodeFillsPool() {
+        PromoCodeDiscount discount = mock(PromoCodeDiscount.class);
+        int accessCodeId = 666;
+        when(discount.getId()).thenReturn(accessCodeId);
+        when(discount.getMaxUsage()).thenReturn(10);
+        when(reservationModification.getTicketCategoryId()).thenReturn(TICKET_CATEGORY_ID);
+        when(reservationModification.getQuantity()).thenReturn(2);
+        var first = new SpecialPrice(1, "AAAA", 0, TICKET_CATEGORY_ID, SpecialPrice.Status.FREE.name(), null, null, null, accessCodeId);
+        var second = new SpecialPrice(2, "BBBB", 0, TICKET_CATEGORY_ID, SpecialPrice.Status.FREE.name(), null, null, null, accessCodeId);
+        when(specialPriceRepository.claimFromAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(2))).thenReturn(List.of(first));
+        when(specialPriceRepository.claimFromAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(1))).thenReturn(List.of(second));
+        when(promoCodeDiscountRepository.lockAccessCodeForUpdate(eq(accessCodeId))).thenReturn(accessCodeId);
+        when(specialPriceRepository.topUpAccessCodePool(anyInt(), anyInt(), any(), anyInt())).thenCallRealMethod();
+        when(specialPriceRepository.countAccessCodePool(eq(accessCodeId))).thenReturn(4);
+        when(specialPriceRepository.addToAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(6))).thenReturn(6);
+        var result = trm.reserveTokensForAccessCode(reservationModification, discount);
+        Assertions.assertEquals(List.of(first, second), result);
+        verify(specialPriceRepository).topUpAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(10), eq(1 + SpecialPriceRepository.ACCESS_CODE_POOL_SLICE));
+        verify(specialPriceRepository).releaseIdleFromAccessCodePool(eq(accessCodeId), eq(TICKET_CATEGORY_ID));
+        // the pool is filled up to the max usage
+        verify(specialPriceRepository).addToAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(6));
+        verify(specialPriceRepository, never()).releaseIdleFromOtherAccessCodePools(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void reserveTokensForAccessCodeNotEnoughTokens() {
+        PromoCodeDiscount discount = mock(PromoCodeDiscount.class);
+        int accessCodeId = 666;
+        when(discount.getId()).thenReturn(accessCodeId);
+        when(discount.getMaxUsage()).thenReturn(2);
+        when(reservationModification.getTicketCategoryId()).thenReturn(TICKET_CATEGORY_ID);
+        when(reservationModification.getQuantity()).thenReturn(1);
+        when(specialPriceRepository.claimFromAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(1))).thenReturn(List.of());
+        when(promoCodeDiscountRepository.lockAccessCodeForUpdate(eq(accessCodeId))).thenReturn(accessCodeId);
+        when(specialPriceRepository.topUpAccessCodePool(anyInt(), anyInt(), any(), anyInt())).thenCallRealMethod();
+        when(specialPriceRepository.countAccessCodePool(eq(accessCodeId))).thenReturn(2);
+        assertThrows(NotEnoughTicketsException.class, () -> trm.reserveTokensForAccessCode(reservationModification, discount));
+        verify(specialPriceRepository, never()).addToAccessCodePool(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void reserveTokensForUnlimitedAccessCodeAddsSlice() {
+        PromoCodeDiscount discount = mock(PromoCodeDiscount.class);
+        int accessCodeId = 666;
+        when(discount.getId()).thenReturn(accessCodeId);
+        when(discount.getMaxUsage()).thenReturn(null);
+        when(reservationModification.getTicketCategoryId()).thenReturn(TICKET_CATEGORY_ID);
+        when(reservationModification.getQuantity()).thenReturn(1);
+        var token = new SpecialPrice(1, "AAAA", 0, TICKET_CATEGORY_ID, SpecialPrice.Status.FREE.name(), null, null, null, accessCodeId);
+        when(specialPriceRepository.claimFromAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(1))).thenReturn(List.of()).thenReturn(List.of(token));
+        when(promoCodeDiscountRepository.lockAccessCodeForUpdate(eq(accessCodeId))).thenReturn(accessCodeId);
+        when(specialPriceRepository.topUpAccessCodePool(anyInt(), anyInt(), any(), anyInt())).thenCallRealMethod();
+        when(specialPriceRepository.countIdleInAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId))).thenReturn(2);
+        int toAdd = 1 + SpecialPriceRepository.ACCESS_CODE_POOL_SLICE - 2;
+        when(specialPriceRepository.addToAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(toAdd))).thenReturn(toAdd);
+        Assertions.assertEquals(List.of(token), trm.reserveTokensForAccessCode(reservationModification, discount));
+        verify(specialPriceRepository).addToAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(toAdd));
+        verify(specialPriceRepository, never()).releaseIdleFromAccessCodePool(anyInt(), anyInt());
+        verify(specialPriceRepository, never()).releaseIdleFromOtherAccessCodePools(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void reserveTokensForAccessCodeTakesBackIdleTokensFromOtherCodes() {
+        PromoCodeDiscount discount = mock(PromoCodeDiscount.class);
+        int accessCodeId = 666;
+        when(discount.getId()).thenReturn(accessCodeId);
+        when(discount.getMaxUsage()).thenReturn(null);
+        when(reservationModification.getTicketCategoryId()).thenReturn(TICKET_CATEGORY_ID);
+        when(reservationModification.getQuantity()).thenReturn(1);
+        var token = new SpecialPrice(1, "AAAA", 0, TICKET_CATEGORY_ID, SpecialPrice.Status.FREE.name(), null, null, null, accessCodeId);
+        when(specialPriceRepository.claimFromAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(1))).thenReturn(List.of()).thenReturn(List.of(token));
+        when(promoCodeDiscountRepository.lockAccessCodeForUpdate(eq(accessCodeId))).thenReturn(accessCodeId);
+        when(specialPriceRepository.topUpAccessCodePool(anyInt(), anyInt(), any(), anyInt())).thenCallRealMethod();
+        int toAdd = 1 + SpecialPriceRepository.ACCESS_CODE_POOL_SLICE;
+        // the free stock contains only 2 tokens
+        when(specialPriceRepository.addToAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(toAdd))).thenReturn(2);
+        when(specialPriceRepository.releaseIdleFromOtherAccessCodePools(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(toAdd - 2))).thenReturn(3);
+        when(specialPriceRepository.addToAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(toAdd - 2))).thenReturn(3);
+        Assertions.assertEquals(List.of(token), trm.reserveTokensForAccessCode(reservationModification, discount));
+        verify(specialPriceRepository).releaseIdleFromOtherAccessCodePools(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(toAdd - 2));
+        verify(specialPriceRepository).addToAccessCodePool(eq(TICKET_CATEGORY_ID), eq(accessCodeId), eq(toAdd - 2));
     }
 
     //reserve tickets for category
@@ -700,9 +796,9 @@ class TicketReservationManagerTest {
     @Test
     void doNothingIfNoReservations() {
         Date now = new Date(Instant.now(ClockProvider.clock()).getEpochSecond());
-        when(ticketReservationRepository.findExpiredReservationForUpdate(eq(now))).thenReturn(Collections.emptyList());
+        when(ticketReservationRepository.findExpiredReservationForUpdate(eq(now), anyInt())).thenReturn(Collections.emptyList());
         trm.cleanupExpiredReservations(now);
-        verify(ticketReservationRepository).findExpiredReservationForUpdate(eq(now));
+        verify(ticketReservationRepository).findExpiredReservationForUpdate(eq(now), eq(TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE));
         verifyNoMoreInteractions(ticketReservationRepository, specialPriceRepository, ticketRepository, waitingQueueManager);
     }
 
@@ -710,16 +806,29 @@ class TicketReservationManagerTest {
     void cancelExpiredReservations() {
         Date now = new Date(Instant.now(ClockProvider.clock()).getEpochSecond());
         List<String> reservationIds = singletonList("reservation-id");
-        when(ticketReservationRepository.findExpiredReservationForUpdate(now)).thenReturn(reservationIds);
+        when(ticketReservationRepository.findExpiredReservationForUpdate(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE)).thenReturn(reservationIds);
         trm.cleanupExpiredReservations(now);
         verify(applicationEventPublisher).publishEvent(new CleanupReservations(null, reservationIds, true, false, false));
-        verify(ticketReservationRepository).findExpiredReservationForUpdate(now);
+        verify(ticketReservationRepository).findExpiredReservationForUpdate(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE);
+        verify(ticketReservationRepository).countExpiredReservations(now);
         verify(ticketReservationRepository).remove(reservationIds);
         verify(waitingQueueManager).cleanExpiredReservations(reservationIds);
         verify(ticketReservationRepository).findReservationsWithPendingTransaction(reservationIds);
         verifyNoMoreInteractions(ticketReservationRepository, specialPriceRepository, ticketRepository, applicationEventPublisher);
     }
 
+    @Test
+    void cancelExpiredReservationsInChunks() {
+        Date now = new Date(Instant.now(ClockProvider.clock()).getEpochSecond());
+        List<String> firstChunk = IntStream.range(0, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE).mapToObj(i -> "reservation-" + i).toList();
+        List<String> secondChunk = List.of("last-reservation");
+        when(ticketReservationRepository.findExpiredReservationForUpdate(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE)).thenReturn(firstChunk).thenReturn(secondChunk);
+        trm.cleanupExpiredReservations(now);
+        verify(ticketReservationRepository, times(2)).findExpiredReservationForUpdate(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE);
+        verify(ticketReservationRepository).remove(firstChunk);
+        verify(ticketReservationRepository).remove(secondChunk);
+    }
+
     @Test
     void countAvailableTickets() {
         //count how many tickets yet available for a category
@@ -1214,7 +1323,7 @@ class TicketReservationManagerTest {
 
     //sendReminderForOptionalInfo
     private void initReminder() {
-        when(purchaseContextFieldRepository.countAdditionalFieldsForEvent(EVENT_ID)).thenReturn(1);
+        when(purchaseContextFieldRepository.findEventIdsWithAdditionalFields(any())).thenReturn(List.of(EVENT_ID));
     }
 
 
@@ -1230,15 +1339,15 @@ class TicketReservationManagerTest {
         when(ticket.getId()).thenReturn(ticketId);
         when(ticket.getPublicUuid()).thenReturn(UUID.randomUUID());
         when(ticket.getEmail()).thenReturn("ciccio");
-        when(ticketRepository.findAllAssignedButNotYetNotifiedForUpdate(EVENT_ID)).thenReturn(singletonList(ticket));
-        when(ticketReservationRepository.findOptionalReservationById(eq(RESERVATION_ID))).thenReturn(Optional.of(ticketReservation));
+        when(ticket.getEventId()).thenReturn(EVENT_ID);
+        when(ticketRepository.findAssignedButNotYetNotifiedForUpdate(any(), anyInt(), anyInt())).thenReturn(singletonList(ticket));
+        when(ticketReservationRepository.findByIds(any())).thenReturn(List.of(ticketReservation));
 
         when(eventRepository.findByReservationId(RESERVATION_ID)).thenReturn(event);
         when(event.getZoneId()).thenReturn(ClockProvider.clock().getZone());
         when(event.getBegin()).thenReturn(ZonedDateTime.now(ClockProvider.clock()).plusDays(1));
-        when(eventRepository.findAll()).thenReturn(singletonList(event));
-        when(ticketRepository.findAllReservationsConfirmedButNotAssignedForUpdate(anyInt())).thenReturn(singleton(RESERVATION_ID));
-        when(ticketRepository.flagTicketAsReminderSent(ticketId)).thenReturn(1);
+        when(eventRepository.findAllActives(any())).thenReturn(singletonList(event));
+        when(ticketRepository.flagTicketsAsReminderSent(List.of(ticketId))).thenReturn(List.of(ticketId));
         when(ticketRepository.findByUUID(anyString())).thenReturn(ticket);
         when(messageSource.getMessage(eq("reminder.ticket-additional-info.subject"), any(), any())).thenReturn("subject");
         when(configurationManager.getFor(eq(OPTIONAL_DATA_REMINDER_ENABLED), any())).thenReturn(
@@ -1263,14 +1372,15 @@ class TicketReservationManagerTest {
         when(ticket.getTicketsReservationId()).thenReturn(RESERVATION_ID);
         int ticketId = 2;
         when(ticket.getId()).thenReturn(ticketId);
-        when(ticketRepository.findAllAssignedButNotYetNotifiedForUpdate(EVENT_ID)).thenReturn(singletonList(ticket));
-        when(ticketReservationRepository.findReservationByIdForUpdate(eq(RESERVATION_ID))).thenReturn(ticketReservation);
+        when(ticket.getEventId()).thenReturn(EVENT_ID);
+        when(ticketRepository.findAssignedButNotYetNotifiedForUpdate(any(), anyInt(), anyInt())).thenReturn(singletonList(ticket));
+        when(ticketReservationRepository.findByIds(any())).thenReturn(List.of(ticketReservation));
 
         when(eventRepository.findByReservationId(RESERVATION_ID)).thenReturn(event);
         when(event.getZoneId()).thenReturn(ClockProvider.clock().getZone());
         when(event.getBegin()).thenReturn(ZonedDateTime.now(ClockProvider.clock()).plusDays(1));
-        when(eventRepository.findAll()).thenReturn(singletonList(event));
-        when(ticketRepository.flagTicketAsReminderSent(ticketId)).thenReturn(1);
+        when(eventRepository.findAllActives(any())).thenReturn(singletonList(event));
+        when(ticketRepository.flagTicketsAsReminderSent(List.of(ticketId))).thenReturn(List.of(ticketId));
         trm.sendReminderForOptionalData();
         verify(notificationManager, never()).sendSimpleEmail(eq(event), anyString(), anyString(), anyString(), any(TemplateGenerator.class));
     }
@@ -1290,14 +1400,15 @@ class TicketReservationManagerTest {
         when(ticket.getTicketsReservationId()).thenReturn(RESERVATION_ID);
         int ticketId = 2;
         when(ticket.getId()).thenReturn(ticketId);
-        when(ticketRepository.findAllAssignedButNotYetNotifiedForUpdate(EVENT_ID)).thenReturn(singletonList(ticket));
-        when(ticketReservationRepository.findReservationByIdForUpdate(eq(RESERVATION_ID))).thenReturn(ticketReservation);
+        when(ticket.getEventId()).thenReturn(EVENT_ID);
+        when(ticketRepository.findAssignedButNotYetNotifiedForUpdate(any(), anyInt(), anyInt())).thenReturn(singletonList(ticket));
+        when(ticketReservationRepository.findByIds(any())).thenReturn(List.of(ticketReservation));
 
         when(eventRepository.findByReservationId(RESERVATION_ID)).thenReturn(event);
         when(event.getZoneId()).thenReturn(ClockProvider.clock().getZone());
         when(event.getBegin()).thenReturn(ZonedDateTime.now(ClockProvider.clock()).plusDays(1));
-        when(eventRepository.findAll()).thenReturn(singletonList(event));
-        when(ticketRepository.flagTicketAsReminderSent(ticketId)).thenReturn(0);
+        when(eventRepository.findAllActives(any())).thenReturn(singletonList(event));
+        when(ticketRepository.flagTicketsAsReminderSent(List.of(ticketId))).thenReturn(List.of());
         trm.sendReminderForOptionalData();
         verify(notificationManager, never()).sendSimpleEmail(eq(event), anyString(), anyString(), anyString(), any(TemplateGenerator.class));
     }
@@ -1509,7 +1620,7 @@ class TicketReservationManagerTest {
 
         @BeforeEach
         void setUp() {
-            when(ticketReservationRepository.findExpiredReservationForUpdate(now)).thenReturn(reservationIds);
+            when(ticketReservationRepository.findExpiredReservationForUpdate(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE)).thenReturn(reservationIds);
             pendingReservationMock = mock(TicketReservation.class);
             when(pendingReservationMock.getId()).thenReturn(PENDING_RESERVATION_ID);
             when(pendingReservationMock.getSrcPriceCts()).thenReturn(100);
@@ -1540,7 +1651,8 @@ class TicketReservationManagerTest {
             when(reservationCostCalculator.totalReservationCostWithVAT(pendingReservationMock)).thenReturn(Pair.of(new TotalPrice(0, 0, 0, 0, "CHF"), Optional.empty()));
             trm.cleanupExpiredReservations(now);
             verify(applicationEventPublisher).publishEvent(new CleanupReservations(null, expiredReservationIds, true, false, false));
-            verify(ticketReservationRepository).findExpiredReservationForUpdate(now);
+            verify(ticketReservationRepository).findExpiredReservationForUpdate(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE);
+            verify(ticketReservationRepository).countExpiredReservations(now);
             verify(ticketReservationRepository).remove(expiredReservationIds);
             verify(waitingQueueManager).cleanExpiredReservations(expiredReservationIds);
             verify(ticketReservationRepository).findReservationsWithPendingTransaction(reservationIds);
@@ -1548,6 +1660,28 @@ class TicketReservationManagerTest {
             verifyNoMoreInteractions(ticketReservationRepository, specialPriceRepository, ticketRepository, applicationEventPublisher);
         }
 
+        @Test
+        void paidReservationsAreSkippedByTheFollowingChunks() {
+            var stripeManager = mock(StripeWebhookPaymentManager.class);
+            when(paymentManager.lookupProviderByTransactionAndCapabilities(transactionMock, List.of(WebhookHandler.class)))
+                .thenReturn(Optional.of(stripeManager));
+            when(stripeManager.forceTransactionCheck(eq(pendingReservationMock), eq(transactionMock), any()))
+                .thenReturn(PaymentWebhookResult.successful(new StripeCreditCardToken("")));
+            when(reservationCostCalculator.totalReservationCostWithVAT(pendingReservationMock)).thenReturn(Pair.of(new TotalPrice(0, 0, 0, 0, "CHF"), Optional.empty()));
+            var firstChunk = Stream.concat(Stream.of(PENDING_RESERVATION_ID),
+                IntStream.range(1, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE).mapToObj(i -> "reservation-" + i)).toList();
+            when(ticketReservationRepository.findExpiredReservationForUpdate(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE)).thenReturn(firstChunk);
+            when(ticketReservationRepository.findReservationsWithPendingTransaction(firstChunk)).thenReturn(List.of(pendingReservationMock));
+            var secondChunk = List.of("last-reservation");
+            when(ticketReservationRepository.findExpiredReservationForUpdateExcluding(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE, Set.of(PENDING_RESERVATION_ID)))
+                .thenReturn(secondChunk);
+            trm.cleanupExpiredReservations(now);
+            verify(ticketReservationRepository).remove(firstChunk.subList(1, firstChunk.size()));
+            verify(ticketReservationRepository).findExpiredReservationForUpdateExcluding(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE, Set.of(PENDING_RESERVATION_ID));
+            verify(ticketReservationRepository).remove(secondChunk);
+            verify(ticketReservationRepository, never()).remove(argThat(ids -> ids.contains(PENDING_RESERVATION_ID)));
+        }
+
         @Test
         void cancelExpiredReservationsPendingPaymentPending() {
             var stripeManager = mock(StripeWebhookPaymentManager.class);
@@ -1566,7 +1700,8 @@ class TicketReservationManagerTest {
             when(ticketReservationRepository.updateReservationStatus(PENDING_RESERVATION_ID, TicketReservationStatus.PENDING.toString()))
                 .thenReturn(1);
             trm.cleanupExpiredReservations(now);
-            verify(ticketReservationRepository).findExpiredReservationForUpdate(now);
+            verify(ticketReservationRepository).findExpiredReservationForUpdate(now, TicketReservationManager.EXPIRED_RESERVATIONS_CHUNK_SIZE);
+            verify(ticketReservationRepository).countExpiredReservations(now);
             verify(applicationEventPublisher).publishEvent(new CleanupReservations(null, reservationIds, true, false, false));
             verify(ticketReservationRepository).remove(reservationIds);
             verify(waitingQueueManager).cleanExpiredReservations(reservationIds);
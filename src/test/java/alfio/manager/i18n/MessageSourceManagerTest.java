@@ -16,11 +16,17 @@
  */
 package alfio.manager.i18n;
 
+import alfio.repository.system.ConfigurationRepository;
+import alfio.util.CustomResourceBundleMessageSource;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 class MessageSourceManagerTest {
 
@@ -38,4 +44,33 @@ class MessageSourceManagerTest {
         assertEquals("blabla{1}", MessageSourceManager.cleanArguments("blabla{1}", "{$1}"));
         assertEquals("blabla{1}", MessageSourceManager.cleanArguments("blabla{{{{{{1}}", "{$1}"));
     }
+
+    @Test
+    void bundleIsRebuiltOnlyWhenSystemOverrideChanges() {
+        var source = spy(new CustomResourceBundleMessageSource());
+        source.setBasenames("alfio.i18n.public");
+        source.setDefaultEncoding(StandardCharsets.UTF_8.displayName());
+        source.setFallbackToSystemLocale(false);
+        source.setAlwaysUseMessageFormat(true);
+        var configurationRepository = mock(ConfigurationRepository.class);
+        when(configurationRepository.findSystemOverrideMessages()).thenReturn(Optional.empty());
+        var messageSourceManager = new MessageSourceManager(source, configurationRepository);
+
+        var first = messageSourceManager.getBundle("alfio.i18n.public", true, "en", MessageSourceManager.PUBLIC_FRONTEND);
+        var second = messageSourceManager.getBundle("alfio.i18n.public", true, "en", MessageSourceManager.PUBLIC_FRONTEND);
+        assertSame(first, second);
+        assertEquals("or", first.messages().get("common.or"));
+        verify(source, times(1)).getKeys("alfio.i18n.public", Locale.ENGLISH);
+
+        when(configurationRepository.findSystemOverrideMessages()).thenReturn(Optional.of("{\"en\": {\"common.or\": \"or else\"}}"));
+        var overridden = messageSourceManager.getBundle("alfio.i18n.public", true, "en", MessageSourceManager.PUBLIC_FRONTEND);
+        assertEquals("or else", overridden.messages().get("common.or"));
+        assertNotEquals(first.hash(), overridden.hash());
+        assertTrue(overridden.json().contains("\"or else\""));
+
+        // the system override must not be considered if not requested
+        var withoutOverride = messageSourceManager.getBundle("alfio.i18n.public", false, "en", MessageSourceManager.PUBLIC_FRONTEND);
+        assertEquals("or", withoutOverride.messages().get("common.or"));
+        assertEquals(first.hash(), withoutOverride.hash());
+    }
 }
\ No newline at end of file
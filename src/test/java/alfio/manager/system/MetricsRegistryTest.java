@@ -0,0 +1,67 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager.system;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static alfio.manager.system.MetricsRegistry.labels;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void disabledRegistryDoesNotCollect() {
+        var registry = new MetricsRegistry(false, 500);
+        registry.recordQuery("TicketRepository", "findById", TimeUnit.MILLISECONDS.toNanos(3));
+        registry.registerGauge("alfio_test", "test", "", () -> 1);
+        assertEquals("", registry.scrape());
+    }
+
+    @Test
+    void histogramIsCumulative() {
+        var registry = new MetricsRegistry(true, 0);
+        registry.recordQuery("TicketRepository", "findById", TimeUnit.MICROSECONDS.toNanos(800));
+        registry.recordQuery("TicketRepository", "findById", TimeUnit.MILLISECONDS.toNanos(30));
+        registry.recordQuery("TicketRepository", "findById", TimeUnit.SECONDS.toNanos(20));
+        var output = registry.scrape();
+        assertTrue(output.contains("# TYPE alfio_query_duration_seconds histogram\n"));
+        String series = "alfio_query_duration_seconds_bucket{repository=\"TicketRepository\",method=\"findById\",";
+        assertTrue(output.contains(series + "le=\"0.001\"} 1\n"));
+        assertTrue(output.contains(series + "le=\"0.025\"} 1\n"));
+        assertTrue(output.contains(series + "le=\"0.05\"} 2\n"));
+        assertTrue(output.contains(series + "le=\"10.0\"} 2\n"));
+        assertTrue(output.contains(series + "le=\"+Inf\"} 3\n"));
+        assertTrue(output.contains("alfio_query_duration_seconds_count{repository=\"TicketRepository\",method=\"findById\"} 3\n"));
+    }
+
+    @Test
+    void gaugesAndCounters() {
+        var registry = new MetricsRegistry(true, 500);
+        registry.registerGauge("alfio_email_queue_pending", "pending", "", () -> 42);
+        registry.registerGauge("alfio_db_pool_connections", "connections", labels("pool", "p\"1", "state", "idle"), () -> null);
+        registry.increment("alfio_db_pool_timeouts_total", "timeouts", labels("pool", "main"));
+        registry.increment("alfio_db_pool_timeouts_total", "timeouts", labels("pool", "main"));
+        var output = registry.scrape();
+        assertTrue(output.contains("alfio_email_queue_pending 42\n"));
+        assertTrue(output.contains("alfio_db_pool_timeouts_total{pool=\"main\"} 2\n"));
+        // null values are skipped
+        assertFalse(output.contains("state=\"idle\""));
+        assertEquals("pool=\"p\\\"1\"", labels("pool", "p\"1"));
+    }
+}
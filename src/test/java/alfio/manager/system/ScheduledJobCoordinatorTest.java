@@ -0,0 +1,208 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.manager.system;
+
+import alfio.model.system.ScheduledJobPartition;
+import alfio.repository.system.ScheduledJobLeaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ScheduledJobCoordinatorTest {
+
+    private ScheduledJobLeaseRepository leaseRepository;
+    private MockEnvironment environment;
+    private final AtomicLong nanoTime = new AtomicLong();
+    private ScheduledJobCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        leaseRepository = mock(ScheduledJobLeaseRepository.class);
+        environment = new MockEnvironment();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if(coordinator != null) {
+            coordinator.destroy();
+        }
+    }
+
+    private ScheduledJobCoordinator newCoordinator() {
+        coordinator = new ScheduledJobCoordinator(leaseRepository, environment, nanoTime::get);
+        return coordinator;
+    }
+
+    private void advanceMillis(long millis) {
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void runOnlyIfLeaseIsAcquired() {
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(eq("sendEmails"), eq(0), anyString(), anyLong())).thenReturn(1, 0);
+        assertTrue(coordinator.tryAcquire("sendEmails", 5000));
+        advanceMillis(5000);
+        assertFalse(coordinator.tryAcquire("sendEmails", 5000));
+        // the lease lasts at least the configured minimum
+        verify(leaseRepository, times(2)).acquire(eq("sendEmails"), eq(0), eq(coordinator.getNodeId()), eq(15_000L));
+        coordinator.tryAcquire("cleanupUnreferencedBlobFiles", 3_600_000);
+        verify(leaseRepository).acquire(eq("cleanupUnreferencedBlobFiles"), eq(0), anyString(), eq(7_200_000L));
+    }
+
+    @Test
+    void leaseIsCheckedAtMostThreeTimesPerDuration() {
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(eq("processPendingExtensionRetry"), eq(0), anyString(), anyLong())).thenReturn(1, 0);
+        when(leaseRepository.acquire(eq("processPendingReservationsRetry"), eq(0), anyString(), anyLong())).thenReturn(0, 1);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(coordinator.tryAcquire("processPendingExtensionRetry", 1000));
+            assertFalse(coordinator.tryAcquire("processPendingReservationsRetry", 1000));
+            advanceMillis(1000);
+        }
+        // both the owner and the other nodes go to the database only once every 5 seconds (a third of the lease)
+        verify(leaseRepository).acquire(eq("processPendingExtensionRetry"), eq(0), anyString(), eq(15_000L));
+        verify(leaseRepository).acquire(eq("processPendingReservationsRetry"), eq(0), anyString(), eq(15_000L));
+        assertFalse(coordinator.tryAcquire("processPendingExtensionRetry", 1000));
+        assertTrue(coordinator.tryAcquire("processPendingReservationsRetry", 1000));
+        verify(leaseRepository, times(2)).acquire(eq("processPendingExtensionRetry"), eq(0), anyString(), eq(15_000L));
+        verify(leaseRepository, times(2)).acquire(eq("processPendingReservationsRetry"), eq(0), anyString(), eq(15_000L));
+    }
+
+    @Test
+    void cronJobLeaseCoversOnlyTheCurrentRun() {
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(anyString(), anyInt(), anyString(), anyLong())).thenReturn(1, 0);
+        var runs = new AtomicLong();
+        assertTrue(coordinator.runOncePerTrigger("assignTicketsToSubscribers", 3_600_000, runs::incrementAndGet));
+        // if the owner crashes, the next execution can be run by another node
+        verify(leaseRepository).acquire(eq("assignTicketsToSubscribers"), eq(0), anyString(), eq(1_800_000L));
+        advanceMillis(3_600_000);
+        assertFalse(coordinator.runOncePerTrigger("assignTicketsToSubscribers", 3_600_000, runs::incrementAndGet));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void leaseIsRenewedWhileTheJobIsRunning() {
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(anyString(), anyInt(), anyString(), anyLong())).thenReturn(1);
+        when(leaseRepository.renew(anyString(), anyInt(), anyString(), anyLong())).thenReturn(1);
+        assertTrue(coordinator.runExclusively("processReservationRequests", 5000, () -> {
+            coordinator.renewRunningLeases();
+            verify(leaseRepository, never()).renew(anyString(), anyInt(), anyString(), anyLong());
+            for (int i = 0; i < 3; i++) {
+                advanceMillis(5000);
+                coordinator.renewRunningLeases();
+            }
+        }));
+        // the lease is not renewed once the job is completed
+        advanceMillis(5000);
+        coordinator.renewRunningLeases();
+        verify(leaseRepository, times(3)).renew("processReservationRequests", 0, coordinator.getNodeId(), 15_000L);
+    }
+
+    @Test
+    void lostLeaseIsCheckedAgainOnNextRun() {
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(anyString(), anyInt(), anyString(), anyLong())).thenReturn(1, 0);
+        when(leaseRepository.renew(anyString(), anyInt(), anyString(), anyLong())).thenReturn(0);
+        assertTrue(coordinator.runPartitioned("sendEmails", 5000, partition -> {
+            assertEquals(ScheduledJobPartition.ALL, partition);
+            advanceMillis(5000);
+            coordinator.renewRunningLeases();
+        }));
+        assertFalse(coordinator.runPartitioned("sendEmails", 5000, partition -> fail("must not run")));
+        verify(leaseRepository, times(2)).acquire(eq("sendEmails"), eq(0), anyString(), anyLong());
+    }
+
+    @Test
+    void partitionedJobAcquiresTheFirstFreeSlot() {
+        environment.setProperty("alfio.jobs.sendEmails.partitions", "3");
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(eq("sendEmails"), eq(0), anyString(), anyLong())).thenReturn(0);
+        when(leaseRepository.acquire(eq("sendEmails"), eq(1), anyString(), anyLong())).thenReturn(1);
+        when(leaseRepository.findActiveSlots("sendEmails", 3)).thenReturn(List.of(0, 1, 2));
+        assertEquals(Optional.of(new ScheduledJobPartition(3, List.of(1))), coordinator.tryAcquirePartition("sendEmails", 5000));
+        advanceMillis(5000);
+        assertEquals(Optional.of(new ScheduledJobPartition(3, List.of(1))), coordinator.tryAcquirePartition("sendEmails", 5000));
+        // the owned slot is renewed first
+        verify(leaseRepository, times(1)).acquire(eq("sendEmails"), eq(0), anyString(), anyLong());
+        verify(leaseRepository, times(2)).acquire(eq("sendEmails"), eq(1), anyString(), anyLong());
+        verify(leaseRepository, never()).acquire(eq("sendEmails"), eq(2), anyString(), anyLong());
+    }
+
+    @Test
+    void freeSlotsAreSharedAmongActiveNodes() {
+        environment.setProperty("alfio.jobs.sendEmails.partitions", "5");
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(eq("sendEmails"), eq(0), anyString(), anyLong())).thenReturn(0);
+        when(leaseRepository.acquire(eq("sendEmails"), eq(1), anyString(), anyLong())).thenReturn(1);
+        when(leaseRepository.findActiveSlots("sendEmails", 5)).thenReturn(List.of(0, 1));
+        // slots 2 and 4 go to the node owning slot 0, slot 3 to the current one
+        assertEquals(Optional.of(new ScheduledJobPartition(5, List.of(1, 3))), coordinator.tryAcquirePartition("sendEmails", 5000));
+    }
+
+    @Test
+    void partitionsAreIgnoredByJobsNotSupportingThem() {
+        environment.setProperty("alfio.jobs.cleanupExpiredPendingReservation.partitions", "3");
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(anyString(), anyInt(), anyString(), anyLong())).thenReturn(0);
+        assertFalse(coordinator.tryAcquire("cleanupExpiredPendingReservation", 30_000));
+        verify(leaseRepository).acquire(eq("cleanupExpiredPendingReservation"), eq(0), anyString(), anyLong());
+        verifyNoMoreInteractions(leaseRepository);
+    }
+
+    @Test
+    void doNotRunIfDatabaseIsUnavailable() {
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(anyString(), anyInt(), anyString(), anyLong())).thenThrow(new QueryTimeoutException("timeout"));
+        assertFalse(coordinator.tryAcquire("sendEmails", 5000));
+    }
+
+    @Test
+    void everyNodeRunsTheJobsIfCoordinationIsDisabled() {
+        environment.setProperty("alfio.jobs.coordination.enabled", "false");
+        var coordinator = newCoordinator();
+        assertTrue(coordinator.tryAcquire("sendEmails", 5000));
+        assertEquals(Optional.of(ScheduledJobPartition.ALL), coordinator.tryAcquirePartition("sendEmails", 5000));
+        coordinator.destroy();
+        verifyNoInteractions(leaseRepository);
+    }
+
+    @Test
+    void releaseLeasesOnShutdown() {
+        var coordinator = newCoordinator();
+        when(leaseRepository.acquire(anyString(), anyInt(), anyString(), anyLong())).thenReturn(1);
+        coordinator.tryAcquire("sendEmails", 5000);
+        coordinator.destroy();
+        verify(leaseRepository).releaseAll(coordinator.getNodeId());
+    }
+}
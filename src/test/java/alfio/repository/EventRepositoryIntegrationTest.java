@@ -29,6 +29,7 @@ import alfio.model.metadata.AlfioMetadata;
 import alfio.model.modification.DateTimeModification;
 import alfio.model.modification.TicketCategoryModification;
 import alfio.model.result.Result;
+import alfio.repository.system.ConfigurationRepository;
 import alfio.repository.user.OrganizationRepository;
 import alfio.test.util.AlfioIntegrationTest;
 import alfio.util.BaseIntegrationTest;
@@ -39,6 +40,8 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 
@@ -50,6 +53,7 @@ import java.time.ZonedDateTime;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 
 import static alfio.test.util.IntegrationTestUtil.DESCRIPTION;
 import static alfio.test.util.IntegrationTestUtil.initEvent;
@@ -78,6 +82,12 @@ class EventRepositoryIntegrationTest extends BaseIntegrationTest {
     private TicketRepository ticketRepository;
     @Autowired
     private TicketReservationRepository ticketReservationRepository;
+    @Autowired
+    private TicketCategoryRepository ticketCategoryRepository;
+    @Autowired
+    private ConfigurationRepository configurationRepository;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
 
     @BeforeEach
     public void setUp() {
@@ -157,4 +167,104 @@ class EventRepositoryIntegrationTest extends BaseIntegrationTest {
         assertEquals(1, checkInStatistics.getCheckedIn());
         assertEquals(5, checkInStatistics.getTotalAttendees());
     }
-}
\ No newline at end of file
+
+    @Test
+    void checkInCountersMatchTicketStatuses() {
+        List<TicketCategoryModification> categories = List.of(unboundedCategory("first"), unboundedCategory("second"));
+        Event event = initEvent(categories, organizationRepository, userManager, eventManager, eventRepository).getKey();
+        List<Integer> categoryIds = jdbcTemplate.queryForList("select id from ticket_category where event_id = :eventId order by id",
+            new MapSqlParameterSource("eventId", event.getId()), Integer.class);
+        var firstCategory = ticketCategoryRepository.getByIdAndActive(categoryIds.get(0), event.getId());
+
+        List<Integer> ids = ticketRepository.selectNotAllocatedTicketsForUpdate(event.getId(), 10, Collections.singletonList(TicketRepository.FREE));
+        String reservationId = UUID.randomUUID().toString();
+        ticketReservationRepository.createNewReservation(reservationId, ZonedDateTime.now(ClockProvider.clock()), DateUtils.addDays(new Date(), 1), null, "en", event.getId(), event.getVat(), event.isVatIncluded(), event.getCurrency(), event.getOrganizationId(), null);
+        assertEquals(10, ticketRepository.reserveTickets(reservationId, ids, firstCategory, "en", event.getVatStatus(), i -> null));
+        assertCheckInCountersMatch(event, categoryIds);
+
+        // confirm
+        ticketRepository.updateTicketsStatusWithReservationId(reservationId, Ticket.TicketStatus.ACQUIRED.name());
+        assertCheckInCountersMatch(event, categoryIds);
+
+        // check in
+        List<Ticket> tickets = ticketRepository.findTicketsInReservation(reservationId);
+        tickets.subList(0, 3).forEach(t -> ticketRepository.updateTicketStatusWithUUID(t.getUuid(), Ticket.TicketStatus.CHECKED_IN.name()));
+        assertCheckInCountersMatch(event, categoryIds);
+
+        // cancel a checked-in and a confirmed ticket
+        jdbcTemplate.update("update ticket set status = 'CANCELLED' where id in (:ids)",
+            new MapSqlParameterSource("ids", List.of(tickets.get(0).getId(), tickets.get(5).getId())));
+        assertCheckInCountersMatch(event, categoryIds);
+
+        // change category
+        jdbcTemplate.update("update ticket set category_id = :categoryId where id in (:ids)",
+            new MapSqlParameterSource("categoryId", categoryIds.get(1)).addValue("ids", List.of(tickets.get(1).getId(), tickets.get(6).getId(), tickets.get(7).getId())));
+        assertCheckInCountersMatch(event, categoryIds);
+        var statistics = eventRepository.retrieveCheckInStatisticsForEvent(event.getId());
+        assertEquals(8, statistics.getTotalAttendees());
+        assertEquals(2, statistics.getCheckedIn());
+    }
+
+    private void assertCheckInCountersMatch(Event event, List<Integer> categoryIds) {
+        assertCheckInCountersMatch(eventRepository.retrieveCheckInStatisticsForEvent(event.getId()), event, categoryIds);
+        for (Integer categoryId : categoryIds) {
+            assertCheckInCountersMatch(eventRepository.retrieveCheckInStatisticsForEvent(event.getId(), List.of(categoryId)), event, List.of(categoryId));
+        }
+    }
+
+    private void assertCheckInCountersMatch(CheckInStatistics statistics, Event event, List<Integer> categoryIds) {
+        var params = new MapSqlParameterSource("eventId", event.getId()).addValue("categoryIds", categoryIds);
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from ticket where event_id = :eventId and category_id in (:categoryIds) and status in ('ACQUIRED', 'CHECKED_IN', 'TO_BE_PAID')", params, Integer.class),
+            statistics.getTotalAttendees());
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from ticket where event_id = :eventId and category_id in (:categoryIds) and status = 'CHECKED_IN'", params, Integer.class),
+            statistics.getCheckedIn());
+    }
+
+    private static TicketCategoryModification unboundedCategory(String name) {
+        return new TicketCategoryModification(null, name, TicketCategory.TicketAccessType.INHERIT, 0,
+            new DateTimeModification(LocalDate.now(ClockProvider.clock()), LocalTime.now(ClockProvider.clock())),
+            new DateTimeModification(LocalDate.now(ClockProvider.clock()), LocalTime.now(ClockProvider.clock())),
+            DESCRIPTION, BigDecimal.TEN, false, "", false, null, null, null, null, null, 0, null, null, AlfioMetadata.empty());
+    }
+
+    @Test
+    void publicDataVersionIsBumpedByTriggers() {
+        List<TicketCategoryModification> categories = Collections.singletonList(
+            new TicketCategoryModification(null, "default", TicketCategory.TicketAccessType.INHERIT, 0,
+                new DateTimeModification(LocalDate.now(ClockProvider.clock()), LocalTime.now(ClockProvider.clock())),
+                new DateTimeModification(LocalDate.now(ClockProvider.clock()), LocalTime.now(ClockProvider.clock())),
+                DESCRIPTION, BigDecimal.TEN, false, "", false, null, null, null, null, null, 0, null, null, AlfioMetadata.empty()));
+        Event event = initEvent(categories, organizationRepository, userManager, eventManager, eventRepository).getKey();
+        Event otherEvent = initEvent(categories, organizationRepository, userManager, eventManager, eventRepository).getKey();
+
+        // event level configuration: only the affected event is bumped
+        long version = dataVersion(event);
+        long otherVersion = dataVersion(otherEvent);
+        configurationRepository.insertEventLevel(event.getOrganizationId(), event.getId(), "TEST_EVENT_KEY", "value", "description");
+        assertTrue(dataVersion(event) > version);
+        assertEquals(otherVersion, dataVersion(otherEvent));
+
+        // ticket category
+        version = dataVersion(event);
+        assertEquals(1, jdbcTemplate.update("update ticket_category set name = 'renamed' where event_id = :eventId", new MapSqlParameterSource("eventId", event.getId())));
+        assertTrue(dataVersion(event) > version);
+        assertEquals(otherVersion, dataVersion(otherEvent));
+
+        // system configuration: insert, update and delete must succeed and bump every event
+        var key = "TEST_" + UUID.randomUUID();
+        version = dataVersion(event);
+        assertEquals(1, configurationRepository.insert(key, "value", "description"));
+        long afterInsert = dataVersion(event);
+        assertTrue(afterInsert > version);
+        assertTrue(dataVersion(otherEvent) > otherVersion);
+        assertEquals(1, configurationRepository.update(key, "new value"));
+        assertTrue(dataVersion(event) > afterInsert);
+        long afterUpdate = dataVersion(event);
+        configurationRepository.deleteByKey(key);
+        assertTrue(dataVersion(event) > afterUpdate);
+    }
+
+    private long dataVersion(Event event) {
+        return eventRepository.findDataVersionByShortName(event.getShortName()).orElseThrow().version();
+    }
+}
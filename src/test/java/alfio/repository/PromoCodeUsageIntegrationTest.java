@@ -0,0 +1,193 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.repository;
+
+import alfio.TestConfiguration;
+import alfio.config.DataSourceConfiguration;
+import alfio.config.Initializer;
+import alfio.manager.EventManager;
+import alfio.manager.TicketReservationManager;
+import alfio.manager.user.UserManager;
+import alfio.model.Event;
+import alfio.model.PromoCodeDiscount;
+import alfio.model.TicketCategory;
+import alfio.model.TicketReservation;
+import alfio.model.metadata.AlfioMetadata;
+import alfio.model.modification.DateTimeModification;
+import alfio.model.modification.TicketCategoryModification;
+import alfio.model.modification.TicketReservationModification;
+import alfio.model.modification.TicketReservationWithOptionalCodeModification;
+import alfio.repository.system.ConfigurationRepository;
+import alfio.repository.user.OrganizationRepository;
+import alfio.test.util.AlfioIntegrationTest;
+import alfio.test.util.IntegrationTestUtil;
+import alfio.util.BaseIntegrationTest;
+import alfio.util.ClockProvider;
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static alfio.test.util.IntegrationTestUtil.AVAILABLE_SEATS;
+import static alfio.test.util.IntegrationTestUtil.DESCRIPTION;
+import static alfio.test.util.IntegrationTestUtil.initEvent;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@AlfioIntegrationTest
+@ContextConfiguration(classes = {DataSourceConfiguration.class, TestConfiguration.class})
+@ActiveProfiles({Initializer.PROFILE_DEV, Initializer.PROFILE_DISABLE_JOBS, Initializer.PROFILE_INTEGRATION_TEST})
+class PromoCodeUsageIntegrationTest extends BaseIntegrationTest {
+
+    // the definitions of the former promocode_count and promocode_count_all views
+    private static final String CATEGORY_MATCHES = """
+        (pc.categories is null or json_array_length(pc.categories::json) = 0 or \
+        ((pc.categories::jsonb) @> ((ticket.category_id::text)::jsonb)))\
+        """;
+    private static final String LEGACY_CONFIRMED = """
+        select count(*) from tickets_reservation tr \
+        inner join promo_code pc on tr.promo_code_id_fk = pc.id \
+        left join ticket on ticket.tickets_reservation_id = tr.id \
+        where pc.id = :id and tr.status in ('OFFLINE_PAYMENT', 'DEFERRED_OFFLINE_PAYMENT', 'COMPLETE', 'STUCK') and \
+        """ + CATEGORY_MATCHES;
+    private static final String LEGACY_USED = """
+        select count(*) from tickets_reservation tr \
+        inner join promo_code pc on tr.promo_code_id_fk = pc.id \
+        left join ticket on ticket.tickets_reservation_id = tr.id \
+        where pc.id = :id and tr.status <> 'CANCELLED' and \
+        """ + CATEGORY_MATCHES;
+
+    @Autowired
+    private EventManager eventManager;
+    @Autowired
+    private OrganizationRepository organizationRepository;
+    @Autowired
+    private UserManager userManager;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private ConfigurationRepository configurationRepository;
+    @Autowired
+    private TicketCategoryRepository ticketCategoryRepository;
+    @Autowired
+    private TicketRepository ticketRepository;
+    @Autowired
+    private TicketReservationRepository ticketReservationRepository;
+    @Autowired
+    private TicketReservationManager ticketReservationManager;
+    @Autowired
+    private PromoCodeDiscountRepository promoCodeDiscountRepository;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void ensureConfiguration() {
+        IntegrationTestUtil.ensureMinimalConfiguration(configurationRepository);
+    }
+
+    @Test
+    void countersMatchTheLegacyViewsForLimitedCodes() {
+        Event event = initEvent(List.of(category("first"), category("second")), organizationRepository, userManager, eventManager, eventRepository).getKey();
+        List<TicketCategory> categories = ticketCategoryRepository.findAllTicketCategories(event.getId());
+        int first = categories.get(0).getId();
+        int second = categories.get(1).getId();
+        int promoCodeId = addPromoCode(event, "LIMITEDCODE", List.of(first), 10);
+
+        String reservationId = reserve(event, first, 3, "LIMITEDCODE");
+        assertCounters(promoCodeId, 3, 0);
+
+        ticketReservationRepository.updateReservationStatus(reservationId, TicketReservation.TicketReservationStatus.COMPLETE.name());
+        assertCounters(promoCodeId, 3, 3);
+
+        int movedTicket = ticketRepository.findTicketIdsInReservation(reservationId).get(0);
+        jdbcTemplate.update("update ticket set category_id = :category where id = :id", new MapSqlParameterSource("category", second).addValue("id", movedTicket));
+        assertCounters(promoCodeId, 2, 2);
+
+        jdbcTemplate.update("update promo_code set categories = :categories where id = :id", new MapSqlParameterSource("categories", "[" + second + "]").addValue("id", promoCodeId));
+        assertCounters(promoCodeId, 1, 1);
+
+        jdbcTemplate.update("update promo_code set categories = null where id = :id", new MapSqlParameterSource("id", promoCodeId));
+        assertCounters(promoCodeId, 3, 3);
+
+        ticketReservationRepository.updateReservationStatus(reservationId, TicketReservation.TicketReservationStatus.CANCELLED.name());
+        assertCounters(promoCodeId, 0, 0);
+    }
+
+    @Test
+    void countersAreMaintainedOnlyWhileTheCodeIsLimited() {
+        Event event = initEvent(List.of(category("default")), organizationRepository, userManager, eventManager, eventRepository).getKey();
+        int categoryId = ticketCategoryRepository.findAllTicketCategories(event.getId()).get(0).getId();
+        int promoCodeId = addPromoCode(event, "UNLIMITEDCODE", null, null);
+
+        String reservationId = reserve(event, categoryId, 2, "UNLIMITEDCODE");
+        ticketReservationRepository.updateReservationStatus(reservationId, TicketReservation.TicketReservationStatus.COMPLETE.name());
+        assertEquals(0, usageRows(promoCodeId));
+
+        jdbcTemplate.update("update promo_code set max_usage = 5 where id = :id", new MapSqlParameterSource("id", promoCodeId));
+        assertEquals(1, usageRows(promoCodeId));
+        assertCounters(promoCodeId, 2, 2);
+
+        jdbcTemplate.update("update promo_code set max_usage = null where id = :id", new MapSqlParameterSource("id", promoCodeId));
+        assertEquals(0, usageRows(promoCodeId));
+    }
+
+    private void assertCounters(int promoCodeId, int used, int confirmed) {
+        var params = new MapSqlParameterSource("id", promoCodeId);
+        assertEquals(used, jdbcTemplate.queryForObject(LEGACY_USED, params, Integer.class));
+        assertEquals(confirmed, jdbcTemplate.queryForObject(LEGACY_CONFIRMED, params, Integer.class));
+        assertEquals(used, promoCodeDiscountRepository.countUsedPromoCode(promoCodeId));
+        assertEquals(confirmed, promoCodeDiscountRepository.countConfirmedPromoCode(promoCodeId));
+    }
+
+    private Integer usageRows(int promoCodeId) {
+        return jdbcTemplate.queryForObject("select count(*) from promo_code_usage where promo_code_id_fk = :id", new MapSqlParameterSource("id", promoCodeId), Integer.class);
+    }
+
+    private int addPromoCode(Event event, String code, List<Integer> categories, Integer maxUsage) {
+        eventManager.addPromoCode(code, event.getId(), null, event.getBegin(), event.getEnd(), 10,
+            PromoCodeDiscount.DiscountType.PERCENTAGE, categories, maxUsage, "description", "email@reference.ch",
+            PromoCodeDiscount.CodeType.DISCOUNT, null, null);
+        return promoCodeDiscountRepository.findPromoCodeInEventOrOrganization(event.getId(), code).orElseThrow().getId();
+    }
+
+    private String reserve(Event event, int categoryId, int amount, String code) {
+        var tr = new TicketReservationModification();
+        tr.setAmount(amount);
+        tr.setTicketCategoryId(categoryId);
+        var mod = new TicketReservationWithOptionalCodeModification(tr, Optional.empty());
+        return ticketReservationManager.createTicketReservation(event, List.of(mod), List.of(), DateUtils.addDays(new Date(), 1),
+            Optional.of(code), Locale.ENGLISH, false, null);
+    }
+
+    private static TicketCategoryModification category(String name) {
+        return new TicketCategoryModification(null, name, TicketCategory.TicketAccessType.INHERIT, AVAILABLE_SEATS / 2,
+            new DateTimeModification(LocalDate.now(ClockProvider.clock()), LocalTime.now(ClockProvider.clock())),
+            new DateTimeModification(LocalDate.now(ClockProvider.clock()), LocalTime.now(ClockProvider.clock())),
+            DESCRIPTION, BigDecimal.TEN, false, "", false, null, null, null, null, null, 0, null, null, AlfioMetadata.empty());
+    }
+}
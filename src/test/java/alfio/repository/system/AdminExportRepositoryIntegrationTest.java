@@ -0,0 +1,126 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.repository.system;
+
+import alfio.TestConfiguration;
+import alfio.config.DataSourceConfiguration;
+import alfio.config.Initializer;
+import alfio.model.system.AdminExport;
+import alfio.test.util.AlfioIntegrationTest;
+import alfio.util.BaseIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@AlfioIntegrationTest
+@ContextConfiguration(classes = {DataSourceConfiguration.class, TestConfiguration.class})
+@ActiveProfiles({Initializer.PROFILE_DEV, Initializer.PROFILE_DISABLE_JOBS, Initializer.PROFILE_INTEGRATION_TEST})
+class AdminExportRepositoryIntegrationTest extends BaseIntegrationTest {
+
+    private static final String USERNAME = "admin";
+
+    @Autowired
+    private AdminExportRepository adminExportRepository;
+
+    @Test
+    void onlyOneActiveExportForTheSameRequest() {
+        var requestHash = UUID.randomUUID().toString();
+        var now = ZonedDateTime.now(ZoneOffset.UTC);
+        var first = insert(requestHash, now);
+        var second = UUID.randomUUID().toString();
+        assertEquals(0, adminExportRepository.insert(second, AdminExport.Type.ATTENDEES, null, "csv", USERNAME, requestHash, Map.of(), now, now.plusHours(1)));
+        assertTrue(adminExportRepository.findOptionalById(second).isEmpty());
+        assertEquals(first, adminExportRepository.findReusable(requestHash, now).orElseThrow().id());
+
+        // the partial index covers IN_PROGRESS exports as well
+        assertEquals(1, adminExportRepository.markInProgress(first, 10));
+        assertEquals(0, adminExportRepository.insert(second, AdminExport.Type.ATTENDEES, null, "csv", USERNAME, requestHash, Map.of(), now, now.plusHours(1)));
+        assertEquals(first, adminExportRepository.findReusable(requestHash, now).orElseThrow().id());
+
+        // once the export has failed, the same request can be registered again
+        assertEquals(1, adminExportRepository.markFailed(first, "error", now));
+        assertTrue(adminExportRepository.findReusable(requestHash, now.minusMinutes(1)).isEmpty());
+        var retry = insert(requestHash, now.plusSeconds(1));
+        assertEquals(retry, adminExportRepository.findReusable(requestHash, now).orElseThrow().id());
+    }
+
+    @Test
+    void readyExportIsReusedWithinTheWindow() {
+        var requestHash = UUID.randomUUID().toString();
+        var now = ZonedDateTime.now(ZoneOffset.UTC);
+        var id = insert(requestHash, now);
+        assertEquals(1, adminExportRepository.markInProgress(id, 1));
+        assertEquals(1, adminExportRepository.markReady(id, "export.csv", "text/csv", 10, now));
+
+        var ready = adminExportRepository.findReusable(requestHash, now.minusSeconds(60)).orElseThrow();
+        assertEquals(id, ready.id());
+        assertEquals(AdminExport.Status.READY, ready.status());
+        assertEquals(1, ready.progress());
+        // completed before the reuse window
+        assertTrue(adminExportRepository.findReusable(requestHash, now.plusSeconds(1)).isEmpty());
+        // ready exports are not covered by the partial index
+        var newer = insert(requestHash, now.plusSeconds(1));
+        assertEquals(newer, adminExportRepository.findReusable(requestHash, now.plusSeconds(1)).orElseThrow().id());
+    }
+
+    @Test
+    void contentIsWrittenInChunkOrder() {
+        var now = ZonedDateTime.now(ZoneOffset.UTC);
+        var id = insert(UUID.randomUUID().toString(), now);
+        var chunks = List.of("first,", "second,", "third");
+        // chunks are inserted out of order on purpose
+        assertEquals(1, adminExportRepository.insertChunk(id, 2, chunks.get(2).getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, adminExportRepository.insertChunk(id, 0, chunks.get(0).getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, adminExportRepository.insertChunk(id, 1, chunks.get(1).getBytes(StandardCharsets.UTF_8)));
+        assertEquals(3, adminExportRepository.countChunks(id));
+
+        var out = new ByteArrayOutputStream();
+        adminExportRepository.writeContent(id, out);
+        assertEquals(String.join("", chunks), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void expiredExportsAreDeletedWithTheirChunks() {
+        var now = ZonedDateTime.now(ZoneOffset.UTC);
+        var id = UUID.randomUUID().toString();
+        assertEquals(1, adminExportRepository.insert(id, AdminExport.Type.SPONSOR_SCANS, null, "excel", USERNAME, UUID.randomUUID().toString(), Map.of(), now.minusHours(2), now.minusHours(1)));
+        assertEquals(1, adminExportRepository.insertChunk(id, 0, new byte[] {1, 2, 3}));
+        var active = insert(UUID.randomUUID().toString(), now);
+
+        assertTrue(adminExportRepository.deleteExpired(now).contains(id));
+        assertTrue(adminExportRepository.findOptionalById(id).isEmpty());
+        assertEquals(0, adminExportRepository.countChunks(id));
+        assertTrue(adminExportRepository.findOptionalById(active).isPresent());
+    }
+
+    private String insert(String requestHash, ZonedDateTime creation) {
+        var id = UUID.randomUUID().toString();
+        assertEquals(1, adminExportRepository.insert(id, AdminExport.Type.ATTENDEES, null, "csv", USERNAME, requestHash, Map.of("fields", List.of("a", "b")), creation, creation.plusHours(1)));
+        return id;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * This file is part of alf.io.
+ *
+ * alf.io is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * alf.io is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with alf.io.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package alfio.repository.system;
+
+import alfio.TestConfiguration;
+import alfio.config.DataSourceConfiguration;
+import alfio.config.Initializer;
+import alfio.model.system.ScheduledJobLease;
+import alfio.test.util.AlfioIntegrationTest;
+import alfio.util.BaseIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@AlfioIntegrationTest
+@ContextConfiguration(classes = {DataSourceConfiguration.class, TestConfiguration.class})
+@ActiveProfiles({Initializer.PROFILE_DEV, Initializer.PROFILE_DISABLE_JOBS, Initializer.PROFILE_INTEGRATION_TEST})
+class ScheduledJobLeaseRepositoryIntegrationTest extends BaseIntegrationTest {
+
+    private static final String FIRST_NODE = "first-node";
+    private static final String SECOND_NODE = "second-node";
+
+    @Autowired
+    private ScheduledJobLeaseRepository leaseRepository;
+
+    @Test
+    void activeLeaseCannotBeTakenOver() {
+        var jobName = UUID.randomUUID().toString();
+        assertEquals(1, leaseRepository.acquire(jobName, 0, FIRST_NODE, 60_000));
+        var acquired = lease(jobName, 0);
+        assertEquals(0, leaseRepository.acquire(jobName, 0, SECOND_NODE, 60_000));
+        // the owner can renew its lease
+        assertEquals(1, leaseRepository.acquire(jobName, 0, FIRST_NODE, 60_000));
+        var renewed = lease(jobName, 0);
+        assertEquals(FIRST_NODE, renewed.owner());
+        assertTrue(renewed.active());
+        assertEquals(acquired.acquiredTimestamp(), renewed.acquiredTimestamp());
+        assertFalse(renewed.expirationTimestamp().isBefore(acquired.expirationTimestamp()));
+        // other slots of the same job are independent
+        assertEquals(1, leaseRepository.acquire(jobName, 1, SECOND_NODE, 60_000));
+        assertEquals(List.of(0, 1), leaseRepository.findActiveSlots(jobName, 2));
+        assertEquals(List.of(0), leaseRepository.findActiveSlots(jobName, 1));
+    }
+
+    @Test
+    void expiredLeaseIsTakenOver() {
+        var jobName = UUID.randomUUID().toString();
+        // negative duration: the lease is already expired
+        assertEquals(1, leaseRepository.acquire(jobName, 0, FIRST_NODE, -1000));
+        var expired = lease(jobName, 0);
+        assertFalse(expired.active());
+        assertTrue(leaseRepository.findActiveSlots(jobName, 1).isEmpty());
+
+        assertEquals(1, leaseRepository.acquire(jobName, 0, SECOND_NODE, 60_000));
+        var takenOver = lease(jobName, 0);
+        assertEquals(SECOND_NODE, takenOver.owner());
+        assertTrue(takenOver.active());
+        assertTrue(takenOver.acquiredTimestamp().isAfter(expired.acquiredTimestamp()));
+        // the previous owner cannot get it back while the new lease is active
+        assertEquals(0, leaseRepository.acquire(jobName, 0, FIRST_NODE, 60_000));
+
+        // releasing the lease lets it expire immediately
+        assertTrue(leaseRepository.releaseAll(SECOND_NODE) > 0);
+        assertTrue(leaseRepository.findActiveSlots(jobName, 1).isEmpty());
+    }
+
+    private ScheduledJobLease lease(String jobName, int slot) {
+        return leaseRepository.findAll().stream()
+            .filter(l -> l.jobName().equals(jobName) && l.slot() == slot)
+            .findFirst()
+            .orElseThrow();
+    }
+}
@@ -18,23 +18,94 @@ package alfio.util;
 
 import alfio.manager.FileBlobCacheManager;
 import alfio.manager.FileUploadManager;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.mock.env.MockEnvironment;
 
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class ImageUtilTest {
 
+    private static final Logger log = LoggerFactory.getLogger(ImageUtilTest.class);
+
     @Test
     public void createQRCodeWithDescription() {
         Map<String, Object> info = new HashMap<>();
         info.put("apiKey", UUID.randomUUID().toString());
         info.put("baseUrl", "https://veeerylongsubdomain.verylongdomain.fiesta");
-        byte[] array = ImageUtil.createQRCodeWithDescription(Json.GSON.toJson(info), "1234567890123456789012345", new FileUploadManager(null, new FileBlobCacheManager(new MockEnvironment())));
+        byte[] array = ImageUtil.createQRCodeWithDescription(Json.GSON.toJson(info), "1234567890123456789012345", new FileUploadManager(null, new FileBlobCacheManager(new MockEnvironment()), new MockEnvironment()));
         assertNotNull(array);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void createQRCodeIsReadable() throws Exception {
+        // the generic detector fails to locate the finder patterns of a few synthetic images, e.g. the first two
+        // texts, regardless of how they're encoded. We only check here that the PNG contains the right matrix
+        var hints = Map.<DecodeHintType, Object>of(DecodeHintType.PURE_BARCODE, Boolean.TRUE);
+        for (String text : List.of("b998b84c-5f66-4ba5-917a-9c88369a2c76", "fa78f2a3-6679-45a6-924b-1f8e59608741", UUID.randomUUID().toString())) {
+            byte[] png = ImageUtil.createQRCode(text);
+            var image = ImageIO.read(new ByteArrayInputStream(png));
+            assertEquals(200, image.getWidth());
+            assertEquals(200, image.getHeight());
+            var bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+            assertEquals(text, new QRCodeReader().decode(bitmap, hints).getText());
+        }
+    }
+
+    @Test
+    public void createQRCodeReturnsACopyOfTheCachedImage() {
+        String text = UUID.randomUUID().toString();
+        byte[] first = ImageUtil.createQRCode(text);
+        byte[] expected = first.clone();
+        Arrays.fill(first, (byte) 0);
+        byte[] second = ImageUtil.createQRCode(text);
+        assertNotSame(first, second);
+        assertArrayEquals(expected, second);
+        assertFalse(Arrays.equals(second, ImageUtil.createQRCode(UUID.randomUUID().toString())));
+    }
+
+    /**
+     * Simulates a bulk send, where the QR code of each ticket is rendered for the e-mail, the PDF and the wallet pass.
+     * Run with ALFIO_RUN_BENCHMARKS=true
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "ALFIO_RUN_BENCHMARKS", matches = "true")
+    public void bulkSendBenchmark() {
+        int tickets = 500;
+        int rendersPerTicket = 3;
+        var codes = IntStream.range(0, tickets).mapToObj(i -> UUID.randomUUID().toString()).toList();
+        long start = System.nanoTime();
+        for (String code : codes) {
+            for (int i = 0; i < rendersPerTicket; i++) {
+                assertNotNull(ImageUtil.renderQRCode(code));
+            }
+        }
+        long uncached = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (String code : codes) {
+            for (int i = 0; i < rendersPerTicket; i++) {
+                assertNotNull(ImageUtil.createQRCode(code));
+            }
+        }
+        long cached = System.nanoTime() - start;
+        log.info("{} tickets, {} QR codes each: {} ms without cache, {} ms with cache",
+            tickets, rendersPerTicket, uncached / 1_000_000, cached / 1_000_000);
+        assertTrue(cached < uncached, "cached QR codes should be faster");
+    }
+}
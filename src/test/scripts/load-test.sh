@@ -0,0 +1,66 @@
+#!/bin/bash
+#
+# Simple throughput test for the public API, used to compare the platform and virtual threads models.
+#
+# Start the server with a fixed heap, once per model, and run this script against it. Additional JVM arguments
+# for bootRun are read from ./custom.jvmargs (one per line), for example:
+#
+#   -Xms512m
+#   -Xmx512m
+#   -Dspring.threads.virtual.enabled=false
+#
+# then run "./gradlew bootRun" and "./load-test.sh my-event". Repeat with -Dspring.threads.virtual.enabled=true
+# and compare the results.
+#
+# Virtual threads require Java 21 or later. On older JVMs the property is ignored.
+#
+# Usage: load-test.sh <event short name> [concurrency (default 200)] [requests (default 20000)] [base url (default http://localhost:8080)]
+#
+EVENT_NAME="$1"
+CONCURRENCY="${2:-200}"
+REQUESTS="${3:-20000}"
+BASE_URL="${4:-http://localhost:8080}"
+
+if [ -z "$EVENT_NAME" ]; then
+  echo "Usage: $0 <event short name> [concurrency] [requests] [base url]"
+  exit 1
+fi
+
+URLS=(
+  "$BASE_URL/api/v2/public/events"
+  "$BASE_URL/api/v2/public/event/$EVENT_NAME"
+  "$BASE_URL/api/v2/public/event/$EVENT_NAME/ticket-categories"
+)
+
+RESULTS=$(mktemp)
+trap 'rm -f "$RESULTS"' EXIT
+
+# warm-up
+for url in "${URLS[@]}"; do
+  curl --silent --output /dev/null "$url"
+done
+
+START=$(date +%s.%N)
+seq 1 "$REQUESTS" | xargs -P "$CONCURRENCY" -I{} sh -c \
+  'curl --silent --output /dev/null --max-time 30 --write-out "%{http_code} %{time_total}\n" "$0"' "${URLS[0]}" \
+  >> "$RESULTS" &
+PIDS=$!
+seq 1 "$REQUESTS" | xargs -P "$CONCURRENCY" -I{} sh -c \
+  'curl --silent --output /dev/null --max-time 30 --write-out "%{http_code} %{time_total}\n" "$0"' "${URLS[1]}" \
+  >> "$RESULTS" &
+PIDS="$PIDS $!"
+seq 1 "$REQUESTS" | xargs -P "$CONCURRENCY" -I{} sh -c \
+  'curl --silent --output /dev/null --max-time 30 --write-out "%{http_code} %{time_total}\n" "$0"' "${URLS[2]}" \
+  >> "$RESULTS" &
+PIDS="$PIDS $!"
+wait $PIDS
+END=$(date +%s.%N)
+
+sort -k2 -n "$RESULTS" | awk -v start="$START" -v end="$END" '
+  { total++; if ($1 != "200") errors++; times[total] = $2 }
+  END {
+    elapsed = end - start
+    printf "requests: %d, errors: %d, elapsed: %.1f s\n", total, errors, elapsed
+    printf "throughput: %.1f req/s\n", total / elapsed
+    printf "latency p50: %.3f s, p95: %.3f s, p99: %.3f s\n", times[int(total * 0.5)], times[int(total * 0.95)], times[int(total * 0.99)]
+  }'